@@ -57,6 +57,16 @@ public abstract class SqlAbstractJetMutex {
 	 */
 	public abstract boolean held();
 
+	/**
+	 * Check whether mutex is locked by the current thread.
+	 * 
+	 * @return true if mutex is locked by the current thread. By default it is
+	 *         the same as {@link #held()}.
+	 */
+	public boolean heldByCurrentThread() {
+		return held();
+	}
+
 	/**
 	 * Run the given operation within an enter - leave block
 	 * 
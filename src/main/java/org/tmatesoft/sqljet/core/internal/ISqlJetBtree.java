@@ -97,7 +97,7 @@ public interface ISqlJetBtree {
 
     SqlJetSafetyLevel getSafetyLevel();
 
-    void setJournalMode(SqlJetPagerJournalMode mode);
+    void setJournalMode(SqlJetPagerJournalMode mode) throws SqlJetException;
 
     SqlJetPagerJournalMode getJournalMode();
 
@@ -186,6 +186,13 @@ public interface ISqlJetBtree {
      */
     int createTable(Set<SqlJetBtreeTableCreateFlags> flags) throws SqlJetException;
 
+    /**
+     * Return true if the database is opened read-only.
+     *
+     * @return
+     */
+    boolean isReadOnly();
+
     /**
      * Return true if a transaction is active.
      *
@@ -348,6 +355,71 @@ public interface ISqlJetBtree {
      */
     int getCacheSize();
 
+    /**
+     * Set the maximum number of bytes of the database file which are memory
+     * mapped for reading. Zero disables memory mapping.
+     *
+     * @param mmapSize
+     */
+    void setMmapSize(long mmapSize);
+
+    long getMmapSize();
+
+    /**
+     * Enable the log of pages changed by commits, which lets other
+     * connections keep the pages of their caches which weren't changed.
+     *
+     * @param enabled
+     * @throws SqlJetException
+     */
+    void setChangeLog(boolean enabled) throws SqlJetException;
+
+    boolean isChangeLog();
+
+    /**
+     * Set the number of frames in the write-ahead log after which a commit
+     * checkpoints the log.
+     *
+     * @param frames
+     */
+    void setWalAutoCheckpoint(int frames);
+
+    int getWalAutoCheckpoint();
+
+    /**
+     * Set the number of frames in the write-ahead log at which a write
+     * transaction waits for readers and checkpoints the log before it starts.
+     *
+     * @param frames
+     */
+    void setWalCheckpointLimit(int frames);
+
+    /**
+     * @return number of frames in the write-ahead log.
+     */
+    int getWalFrameCount();
+
+    /**
+     * Copies the write-ahead log into the database file. Must be called
+     * within a write transaction.
+     *
+     * @return false if other connections are reading the database.
+     * @throws SqlJetException
+     */
+    boolean checkpoint() throws SqlJetException;
+
+    /**
+     * Set the page size of the database. Takes effect only while the database
+     * is empty, afterwards the page size stored in the file is kept.
+     *
+     * @param pageSize
+     *            power of two between 512 and 32768.
+     * @throws SqlJetException
+     */
+    void setPageSize(int pageSize) throws SqlJetException;
+
+    int getPageSize();
+
     void closeAllCursors() throws SqlJetException;
 
     /**
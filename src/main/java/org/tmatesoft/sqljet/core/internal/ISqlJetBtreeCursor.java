@@ -141,6 +141,57 @@ public interface ISqlJetBtreeCursor {
      */
     boolean last() throws SqlJetException;
 
+    /**
+     * Counts entries in the table by summing numbers of cells over its pages,
+     * like sqlite3BtreeCount(). Counts of subtrees are cached until the
+     * database changes. Position of the cursor is not changed.
+     *
+     * @return number of entries in the table.
+     * @throws SqlJetException
+     */
+    long count() throws SqlJetException;
+
+    /**
+     * Move the cursor to the entry at the given position in the table,
+     * skipping whole subtrees by their counts instead of stepping through
+     * entries.
+     *
+     * @param index
+     *            zero-based position of the entry.
+     * @return false if the cursor points to the entry or true if the position
+     *         is outside of the table.
+     * @throws SqlJetException
+     */
+    boolean moveToIndex(long index) throws SqlJetException;
+
+    /**
+     * Returns zero-based position of the entry which the cursor points to,
+     * computed from counts of subtrees to the left of the cursor.
+     *
+     * @return position of the current entry, or number of entries in the
+     *         table if the cursor does not point to an entry.
+     * @throws SqlJetException
+     */
+    long getIndex() throws SqlJetException;
+
+    /**
+     * Moves the cursor to cells of interior pages which split the table into
+     * the given number of parts with about the same number of pages, and
+     * runs the callback at each of them in the order of keys. Interior pages
+     * are read level by level from the root until they have enough cells, so
+     * only the top of a large table is read. Fewer cells are visited if the
+     * table is too small. Position of the cursor is undefined afterwards.
+     *
+     * @param parts
+     *            number of parts.
+     * @param callback
+     *            called with this cursor pointing to a cell of an interior
+     *            page, which holds the largest key of the part for tables with
+     *            integer keys and an entry of the index for indexes.
+     * @throws SqlJetException
+     */
+    void forEachSplit(int parts, ISqlJetCursorCallback callback) throws SqlJetException;
+
     /**
      * Advance the cursor to the next entry in the database.  If
      * successful then return false.  If the cursor
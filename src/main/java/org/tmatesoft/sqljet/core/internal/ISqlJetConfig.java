@@ -31,4 +31,9 @@ public interface ISqlJetConfig {
      * @return
      */
     boolean isSynchronizedThreading();
+
+    /**
+     * @return true if connections to the same file share cached pages.
+     */
+    boolean isSharedCache();
 }
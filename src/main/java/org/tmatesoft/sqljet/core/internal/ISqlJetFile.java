@@ -17,6 +17,7 @@
  */
 package org.tmatesoft.sqljet.core.internal;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 import org.tmatesoft.sqljet.core.SqlJetException;
@@ -101,6 +102,20 @@ public interface ISqlJetFile {
      */
     int read(final ISqlJetMemoryPointer buffer, final int amount, final long offset) throws SqlJetIOException;
 
+    /**
+     * Read data from a file into several buffers with one scattering read:
+     * first amount bytes of every buffer, one after another, starting at
+     * offset.
+     * 
+     * @param buffers
+     * @param amount
+     * @param offset
+     * @return number of bytes read, less than amount of all buffers if the
+     *         end of file is reached.
+     * @throws SqlJetIOException
+     */
+    int read(final ISqlJetMemoryPointer[] buffers, final int amount, final long offset) throws SqlJetIOException;
+
     /**
      * Write data from a buffer into a file. 
      * 
@@ -112,6 +127,18 @@ public interface ISqlJetFile {
      */
     void write(final ISqlJetMemoryPointer buffer, final int amount, final long offset) throws SqlJetIOException;
 
+    /**
+     * Write data from several buffers into a file with one gathering write:
+     * first amount bytes of every buffer, one after another, starting at
+     * offset.
+     * 
+     * @param buffers
+     * @param amount
+     * @param offset
+     * @throws SqlJetIOException
+     */
+    void write(final ISqlJetMemoryPointer[] buffers, final int amount, final long offset) throws SqlJetIOException;
+
     /**
      * Truncate an open file to a specified size
      * 
@@ -147,6 +174,18 @@ public interface ISqlJetFile {
      */
     long fileSize() throws SqlJetException;
 
+    /**
+     * Map a region of the file into memory for reading. The region must lie
+     * within the file.
+     * 
+     * @param offset
+     * @param size
+     * @return read-only buffer with the content of the region, or null if
+     *         this file can't be mapped.
+     * @throws SqlJetIOException
+     */
+    ByteBuffer map(long offset, int size) throws SqlJetIOException;
+
     /**
      * Lock the file with the lock specified by parameter locktype - one
      * of the following:
@@ -19,6 +19,7 @@ package org.tmatesoft.sqljet.core.internal;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
@@ -184,6 +185,16 @@ public interface ISqlJetMemoryBuffer {
      */
     int writeToFile(int pointer, RandomAccessFile file, FileChannel channel, long position, int count) throws IOException;
 
+    /**
+     * Returns byte buffer which shares content of memory chunk from pointer,
+     * positioned at its start and limited by count.
+     *
+     * @param pointer
+     * @param count
+     * @return
+     */
+    ByteBuffer asByteBuffer(int pointer, int count);
+
     /**
      * @param dstPos
      * @param src
@@ -17,6 +17,8 @@
  */
 package org.tmatesoft.sqljet.core.internal;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Default implementation of SQLJet's memory manager. It allows allocate memory
  * chunk {@link ISqlJetMemoryBuffer}.
@@ -83,4 +85,92 @@ public interface ISqlJetMemoryManager {
      */
 	ISqlJetMemoryBuffer allocate(byte[] bytes, SqlJetMemoryBufferType bufferType);
 
+    /**
+     * Allocates zeroed memory chunk for a page, reusing a buffer returned by
+     * {@link #free(ISqlJetMemoryPointer)} if there is one of the same size
+     * and type.
+     * 
+     * @param size
+     *            size of buffer in bytes
+     * @param bufferType
+     * @return allocated buffer
+     */
+    ISqlJetMemoryPointer allocatePooledPtr(int size, SqlJetMemoryBufferType bufferType);
+
+    /**
+     * Returns memory chunk allocated by
+     * {@link #allocatePooledPtr(int, SqlJetMemoryBufferType)} to the pool. It
+     * must not be used after that.
+     * 
+     * @param pointer
+     *            pointer to the beginning of the chunk.
+     */
+    void free(ISqlJetMemoryPointer pointer);
+
+    /**
+     * Records that memory was taken or given back by a page cache, a journal
+     * or another holder of buffers, so that it counts against the soft heap
+     * limit.
+     *
+     * @param bytes
+     *            number of bytes taken, negative if they were given back.
+     */
+    void account(long bytes);
+
+    /**
+     * @return number of bytes accounted by all databases in the process,
+     *         including free page buffers kept for reuse.
+     */
+    long getMemoryUsed();
+
+    /**
+     * @return soft heap limit in bytes, zero if there is no limit.
+     */
+    long getSoftHeapLimit();
+
+    /**
+     * Sets the limit of memory used by all databases in the process. When the
+     * limit is exceeded, memory is released by the registered reclaimers.
+     * The limit is soft: pinned and dirty pages are never released, so the
+     * memory used may stay above the limit.
+     *
+     * @param limit
+     *            limit in bytes, zero or negative removes the limit.
+     */
+    void setSoftHeapLimit(long limit);
+
+    /**
+     * Registers holder of memory which is asked to release it when the soft
+     * heap limit is exceeded. Reclaimers are held with weak references: if a
+     * reclaimer is collected without being removed, the bytes left in its
+     * counter are given back.
+     *
+     * @param reclaimer
+     * @param accounted
+     *            number of bytes the reclaimer has passed to
+     *            {@link #account(long)}, kept up to date by the reclaimer.
+     */
+    void addReclaimer(ISqlJetMemoryReclaimer reclaimer, AtomicLong accounted);
+
+    /**
+     * @param reclaimer
+     */
+    void removeReclaimer(ISqlJetMemoryReclaimer reclaimer);
+
+    /**
+     * Attempts to release memory which is not in use: free page buffers kept
+     * for reuse first, then memory of the registered reclaimers.
+     *
+     * @param bytes
+     *            number of bytes to release.
+     * @return number of bytes released.
+     */
+    long releaseMemory(long bytes);
+
+    /**
+     * Releases memory if the soft heap limit is exceeded. Must not be called
+     * while a lock of a reclaimer is held.
+     */
+    void enforceSoftHeapLimit();
+
 }
@@ -19,8 +19,10 @@ package org.tmatesoft.sqljet.core.internal;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarint;
 import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarintResult;
 import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarintResult32;
 
@@ -170,6 +172,15 @@ public interface ISqlJetMemoryPointer {
      */
     int writeToFile(RandomAccessFile file, FileChannel channel, long position, int count) throws IOException;
 
+    /**
+     * Returns byte buffer which shares content at current address, limited by
+     * count.
+     *
+     * @param count
+     * @return
+     */
+    ByteBuffer asByteBuffer(int count);
+
     /**
      * Read byte at pointer.
      *
@@ -342,6 +353,24 @@ public interface ISqlJetMemoryPointer {
      * Return the number of bytes read. The value is stored in *v.
      */
     SqlJetVarintResult getVarint();
+
+    /**
+     * Allocation-free variant of {@link #getVarint32(int)}: returns the value
+     * and the number of bytes read packed into a long, which are taken apart
+     * by {@link SqlJetVarint#value(long)} and {@link SqlJetVarint#length(long)}.
+     */
+    long getVarint32Packed(int offset);
+
+    /**
+     * Allocation-free variant of {@link #getVarint(int)} which returns only
+     * the value.
+     */
+    long getVarintValue(int offset);
+
+    /**
+     * @return number of bytes of the 64-bit variable-length integer at offset.
+     */
+    int getVarintLength(int offset);
     
     /**
      * <p>Write a 64-bit variable-length integer to memory starting at p[0]. The
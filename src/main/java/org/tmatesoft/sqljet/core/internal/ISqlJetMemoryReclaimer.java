@@ -0,0 +1,40 @@
+/**
+ * ISqlJetMemoryReclaimer.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal;
+
+/**
+ * Holder of memory which can be released when the process exceeds the soft
+ * heap limit, see {@link ISqlJetMemoryManager#setSoftHeapLimit(long)}.
+ * Usually it is a page cache which holds unpinned clean pages.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+public interface ISqlJetMemoryReclaimer {
+
+    /**
+     * Releases memory which is not in use. May be called from any thread.
+     *
+     * @param bytes
+     *            number of bytes which should be released.
+     * @return number of bytes which were released, it may be more or less
+     *         than requested.
+     */
+    long reclaim(long bytes);
+
+}
@@ -51,6 +51,18 @@ public interface ISqlJetPageCache {
      */
     ISqlJetPage fetch(int pageNumber, boolean createFlag) throws SqlJetException;
 
+    /**
+     * Obtain a page from the cache, creating it if necessary, but only by
+     * using a free slot or recycling a clean unpinned page. Unlike
+     * {@link #fetch(int, boolean)} this never asks the pager to spill a dirty
+     * page, so it may return null when the cache is full.
+     * 
+     * @param pageNumber
+     *            Page number to obtain
+     * @return page or null if there is no room without a spill.
+     */
+    ISqlJetPage fetchNoSpill(int pageNumber);
+
     /**
      * Remove page from cache
      * 
@@ -147,4 +159,27 @@ public interface ISqlJetPageCache {
      */
     void setCacheSize(int cacheSize);
 
+    /**
+     * Get the policy used to choose pages to recycle when the cache is full.
+     *
+     * @return
+     */
+    SqlJetPageCachePolicy getPolicy();
+
+    /**
+     * Set the policy used to choose pages to recycle when the cache is full.
+     * Pages which are already cached are kept.
+     *
+     * @param policy
+     */
+    void setPolicy(SqlJetPageCachePolicy policy);
+
+    /**
+     * Set the type of content buffers of pages which are created from now on.
+     * Pages which are already cached keep their buffers.
+     *
+     * @param bufferType
+     */
+    void setBufferType(SqlJetMemoryBufferType bufferType);
+
 }
@@ -40,6 +40,16 @@ public interface ISqlJetPager {
 
 	String JOURNAL = "-journal";
 
+	/**
+	 * Suffix of the write-ahead log file name.
+	 */
+	String WAL = "-wal";
+
+	/**
+	 * Suffix of the name of the file which logs pages changed by commits.
+	 */
+	String CHANGES = "-changes";
+
 	/**
 	 * Journal files begin with the following magic string. The data was
 	 * obtained from /dev/random. It is used only as a sanity check.
@@ -153,9 +163,11 @@ public interface ISqlJetPager {
 	 * Set the journal-mode for this pager.
 	 * 
 	 * @param journalMode
-	 * @return
+	 * @throws SqlJetException
+	 *             if WAL mode is entered or left on a memory, temporary or
+	 *             read-only database, or while a transaction is open.
 	 */
-	void setJournalMode(final SqlJetPagerJournalMode journalMode);
+	void setJournalMode(final SqlJetPagerJournalMode journalMode) throws SqlJetException;
 
 	/**
 	 * Get the size-limit used for persistent journal files.
@@ -240,6 +252,79 @@ public interface ISqlJetPager {
 	 */
 	void setCacheSize(final int cacheSize);
 
+	/**
+	 * Set the maximum number of bytes of the database file which are memory
+	 * mapped. Pages within that range are read directly from the mapping and
+	 * copied only when they are written. Zero disables memory mapping.
+	 * 
+	 * @param mmapSize
+	 */
+	void setMmapSize(long mmapSize);
+
+	/**
+	 * @return maximum number of bytes of the database file which are memory
+	 *         mapped.
+	 */
+	long getMmapSize();
+
+	/**
+	 * Enables the log of pages changed by commits, see
+	 * {@link org.tmatesoft.sqljet.core.internal.pager.SqlJetChangeLog}. When
+	 * enabled commits of the pager are logged, and the pager keeps pages of its
+	 * cache which weren't changed by logged commits of other connections.
+	 * 
+	 * @param enabled
+	 * @throws SqlJetException
+	 */
+	void setChangeLog(boolean enabled) throws SqlJetException;
+
+	/**
+	 * @return true if the log of changed pages is enabled.
+	 */
+	boolean isChangeLog();
+
+	/**
+	 * Set the number of frames in the write-ahead log after which a commit
+	 * checkpoints the log. Zero or negative value disables checkpoints on
+	 * commit.
+	 * 
+	 * @param frames
+	 */
+	void setWalAutoCheckpoint(int frames);
+
+	/**
+	 * @return number of frames in the write-ahead log after which a commit
+	 *         checkpoints the log.
+	 */
+	int getWalAutoCheckpoint();
+
+	/**
+	 * Set the number of frames in the write-ahead log at which a write
+	 * transaction checkpoints the log before it starts, waiting through the
+	 * busy handler until other connections finish reading. If they don't,
+	 * the transaction fails with BUSY. Zero or negative value disables the
+	 * limit.
+	 * 
+	 * @param frames
+	 */
+	void setWalCheckpointLimit(int frames);
+
+	/**
+	 * @return number of frames in the write-ahead log, zero if the pager is
+	 *         not in WAL journal mode.
+	 */
+	int getWalFrameCount();
+
+	/**
+	 * Copies the write-ahead log into the database file. Must be called
+	 * within a write transaction.
+	 * 
+	 * @return false if the log couldn't be checkpointed because other
+	 *         connections are reading the database.
+	 * @throws SqlJetException
+	 */
+	boolean checkpoint() throws SqlJetException;
+
 	/**
 	 * Read the first N bytes from the beginning of the file into memory that
 	 * buffer points to.
@@ -270,6 +355,17 @@ public interface ISqlJetPager {
 	 */
 	int getPageCount() throws SqlJetException;
 
+	/**
+	 * Returns a number which changes whenever the content of the database
+	 * seen by the pager may have changed: pages written by this pager, pages
+	 * rolled back, or changes by other connections detected at the beginning
+	 * of a read transaction. Allows to keep information derived from the
+	 * content of pages until the database changes.
+	 * 
+	 * @return data version.
+	 */
+	long getDataVersion();
+
 	/**
 	 * Shutdown the page cache. Free all memory and close all files.
 	 * 
@@ -357,6 +453,19 @@ public interface ISqlJetPager {
 	 */
 	ISqlJetPage lookupPage(final int pageNumber) throws SqlJetException;
 
+	/**
+	 * Read pages which are not in the in-memory cache into the cache without
+	 * acquiring them, so that following {@link #getPage(int)} calls find them
+	 * there. Pages with adjacent numbers are read by one scattering read.
+	 * Pages which are cached already, or which are served from the
+	 * write-ahead log or the memory mapping, are skipped.
+	 * 
+	 * @param pageNumbers
+	 *            numbers of pages which are going to be read soon
+	 * @throws SqlJetException
+	 */
+	void prefetch(final int[] pageNumbers) throws SqlJetException;
+
 	/**
 	 * Acquire a write-lock on the database. The lock is removed when the any of
 	 * the following happen:
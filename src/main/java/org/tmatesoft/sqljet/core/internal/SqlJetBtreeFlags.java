@@ -49,7 +49,10 @@ public enum SqlJetBtreeFlags {
     READWRITE,
 
     /** Create the database if it does not exist */
-    CREATE;
+    CREATE,
+
+    /** Share cached pages with other connections to the same file */
+    SHARED_CACHE(SqlJetPagerFlags.SHARED_CACHE);
 
     private final SqlJetPagerFlags pagerFlag;
     
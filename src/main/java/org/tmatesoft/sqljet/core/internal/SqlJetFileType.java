@@ -29,7 +29,9 @@ public enum SqlJetFileType {
     MAIN_JOURNAL,
     TEMP_JOURNAL,
     SUBJOURNAL,
-    MASTER_JOURNAL;
+    MASTER_JOURNAL,
+    WAL,
+    CHANGE_LOG;
 	
 	public boolean noLock() {
 		return MAIN_DB != this;
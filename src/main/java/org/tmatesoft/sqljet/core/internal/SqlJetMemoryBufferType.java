@@ -4,5 +4,8 @@ package org.tmatesoft.sqljet.core.internal;
  * Types of buffers implementation.
  */
 public enum SqlJetMemoryBufferType {
-    ARRAY, BUFFER, DIRECT
+    ARRAY, BUFFER, DIRECT,
+
+    /** Array which may be replaced by a slice of a memory mapped file */
+    MAPPED
 }
\ No newline at end of file
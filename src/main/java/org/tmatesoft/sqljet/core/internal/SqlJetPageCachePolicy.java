@@ -0,0 +1,35 @@
+/**
+ * SqlJetPageCachePolicy.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal;
+
+/**
+ * Valid values for {@link ISqlJetPageCache#setPolicy(SqlJetPageCachePolicy)}.
+ * Both policies keep interior b-tree pages longer than leaf pages.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+public enum SqlJetPageCachePolicy {
+
+    /** Recycle the least recently used page */
+    LRU,
+
+    /** Recycle the first page without reference bit, second chance clock */
+    CLOCK
+
+}
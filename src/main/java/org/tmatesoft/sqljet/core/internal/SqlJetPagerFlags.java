@@ -32,6 +32,9 @@ public enum SqlJetPagerFlags {
     OMIT_JOURNAL,
 
     /** Omit readlocks on readonly files */
-    NO_READLOCK
+    NO_READLOCK,
+
+    /** Share cached pages with other pagers of the same file */
+    SHARED_CACHE
 
 }
@@ -40,6 +40,9 @@ public enum SqlJetPagerJournalMode {
     TRUNCATE,
     
     /** In-memory journal file */
-    MEMORY
+    MEMORY,
+
+    /** Commit by appending pages to the write-ahead log */
+    WAL
     
 }
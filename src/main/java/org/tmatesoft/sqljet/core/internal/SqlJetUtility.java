@@ -103,6 +103,10 @@ public final class SqlJetUtility {
         return Integer.parseInt(System.getProperty(propName, Integer.toString(defValue)));
     }
 
+    public static long getLongSysProp(final String propName, final long defValue) {
+        return Long.parseLong(System.getProperty(propName, Long.toString(defValue)));
+    }
+
     /**
      * @param string
      * @param b
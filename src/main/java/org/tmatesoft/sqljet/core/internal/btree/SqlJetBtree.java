@@ -266,6 +266,77 @@ public class SqlJetBtree implements ISqlJetBtree {
         return pBt.pPager.getCacheSize();
     }
 
+    @Override
+    public void setMmapSize(long mmapSize) {
+        assert db.getMutex().held();
+        pBt.pPager.setMmapSize(mmapSize);
+    }
+
+    @Override
+    public long getMmapSize() {
+        return pBt.pPager.getMmapSize();
+    }
+
+    @Override
+    public void setChangeLog(boolean enabled) throws SqlJetException {
+        assert db.getMutex().held();
+        pBt.pPager.setChangeLog(enabled);
+    }
+
+    @Override
+    public boolean isChangeLog() {
+        return pBt.pPager.isChangeLog();
+    }
+
+    @Override
+    public void setWalAutoCheckpoint(int frames) {
+        assert db.getMutex().held();
+        pBt.pPager.setWalAutoCheckpoint(frames);
+    }
+
+    @Override
+    public int getWalAutoCheckpoint() {
+        return pBt.pPager.getWalAutoCheckpoint();
+    }
+
+    @Override
+    public void setWalCheckpointLimit(int frames) {
+        assert db.getMutex().held();
+        pBt.pPager.setWalCheckpointLimit(frames);
+    }
+
+    @Override
+    public int getWalFrameCount() {
+        return pBt.pPager.getWalFrameCount();
+    }
+
+    @Override
+    public boolean checkpoint() throws SqlJetException {
+        assert db.getMutex().held();
+        SqlJetAssert.assertTrue(inTrans == TransMode.WRITE, SqlJetErrorCode.MISUSE);
+        return pBt.pPager.checkpoint();
+    }
+
+    @Override
+    public void setPageSize(int pageSize) throws SqlJetException {
+        assert db.getMutex().held();
+        SqlJetAssert.assertTrue(pageSize >= ISqlJetLimits.SQLJET_MIN_PAGE_SIZE
+                && pageSize <= ISqlJetLimits.SQLJET_MAX_PAGE_SIZE && (pageSize - 1 & pageSize) == 0,
+                SqlJetErrorCode.MISUSE);
+        /* Like pageSizeFixed in SQLite: the first page was not written yet. */
+        if (pBt.pPage1 == null && pBt.pPager.getPageCount() == 0) {
+            /* Bytes reserved at the end of each page stay reserved. */
+            final int nReserve = pBt.getPageSize() - pBt.usableSize;
+            pBt.setPageSize(pBt.pPager.setPageSize(pageSize));
+            pBt.usableSize = pBt.getPageSize() - nReserve;
+        }
+    }
+
+    @Override
+    public int getPageSize() {
+        return pBt.getPageSize();
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -285,7 +356,7 @@ public class SqlJetBtree implements ISqlJetBtree {
     }
 
     @Override
-	public void setJournalMode(SqlJetPagerJournalMode mode) {
+	public void setJournalMode(SqlJetPagerJournalMode mode) throws SqlJetException {
         assert db.getMutex().held();
         pBt.pPager.setJournalMode(mode);
     }
@@ -330,7 +401,7 @@ public class SqlJetBtree implements ISqlJetBtree {
             if (nPage > 0) {
                 ISqlJetMemoryPointer page1 = pPage1.getData();
                 SqlJetAssert.assertTrue(SqlJetUtility.memcmp(page1, zMagicHeader, 16) == 0, SqlJetErrorCode.NOTADB);
-                if (page1.getByteUnsigned(18) > 1) {
+                if (page1.getByteUnsigned(18) > 2) {
                     readOnly = true;
                 }
                 //SqlJetAssert.assertFalse(page1.getByteUnsigned(19) > 1, SqlJetErrorCode.NOTADB);
@@ -617,6 +688,7 @@ public class SqlJetBtree implements ISqlJetBtree {
         return doCreateTable(flags);
     }
 
+    @Override
     public boolean isReadOnly() {
 		return readOnly;
 	}
@@ -19,9 +19,15 @@ package org.tmatesoft.sqljet.core.internal.btree;
 
 import static org.tmatesoft.sqljet.core.internal.btree.SqlJetBtree.TRACE;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor;
+import org.tmatesoft.sqljet.core.internal.ISqlJetCursorCallback;
 import org.tmatesoft.sqljet.core.internal.ISqlJetDbHandle;
 import org.tmatesoft.sqljet.core.internal.ISqlJetKeyInfo;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
@@ -31,6 +37,7 @@ import org.tmatesoft.sqljet.core.internal.SqlJetAssert;
 import org.tmatesoft.sqljet.core.internal.SqlJetCloneable;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.internal.btree.SqlJetBtree.TransMode;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarint;
 import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetUnpackedRecord;
 
 /**
@@ -39,6 +46,15 @@ import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetUnpackedRecord;
  *
  */
 public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCursor {
+
+    /**
+     * Number of leaf pages which are read ahead when a cursor steps from leaf
+     * to leaf in one direction. Zero disables read-ahead.
+     */
+    private static final String SQLJET_READ_AHEAD_PAGES_PROP = "SQLJET.READ_AHEAD_PAGES";
+
+    private static final int SQLJET_READ_AHEAD_PAGES = SqlJetUtility.getIntSysProp(SQLJET_READ_AHEAD_PAGES_PROP, 16);
+
     /** The Btree to which this cursor belongs */
     private final SqlJetBtree pBtree;
 
@@ -78,6 +94,18 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
     
     private final SqlJetIndexedMemPages pages;
 
+    /** Number of leaf pages entered one after another by next() or previous() */
+    private int sequentialLeaves;
+
+    /** True if the leaf pages were entered by next() */
+    private boolean readAheadForward;
+
+    /** Parent page of the leaf pages which were read ahead, zero if none */
+    private int readAheadParent;
+
+    /** Index of the last child of readAheadParent which was read ahead */
+    private int readAheadIndex;
+
     /**
      * Create a new cursor for the BTree whose root is on the page iTable. The
      * act of acquiring a cursor gets a read lock on the database file.
@@ -208,6 +236,8 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
         this.info.nSize = 0;
         this.atLast = false;
         this.validNKey = false;
+        this.sequentialLeaves = 0;
+        this.readAheadParent = 0;
 
         if (pRoot.nCell == 0 && !pRoot.leaf) {
             assert pRoot.pgno == 1;
@@ -346,9 +376,9 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
                 if (pPage.intKey) {
                     ISqlJetMemoryPointer pCell = pPage.findCell(idx).pointer(pPage.getChildPtrSize());
                     if (pPage.hasData) {
-                        pCell.movePointer(pCell.getVarint32().getOffset());
+                        pCell.movePointer(SqlJetVarint.length(pCell.getVarint32Packed(0)));
                     }
-                    key = pCell.getVarint().getValue();
+                    key = pCell.getVarintValue(0);
                     c = Long.compare(key, intKey);
                 } else {
                     int[] available = new int[1];
@@ -776,6 +806,7 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
             if (!pPage.leaf) {
                 this.moveToChild(pPage.getData().getInt(pPage.getHdrOffset() + 8));
                 this.moveToLeftmost();
+                this.readAhead(true);
                 return false;
             }
             do {
@@ -795,9 +826,218 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
             return false;
         }
         this.moveToLeftmost();
+        this.readAhead(true);
         return false;
     }
 
+    /**
+     * Called when the cursor has just entered a leaf page from its sibling.
+     * Once a few leaf pages were entered one after another, the pages of the
+     * following children of the parent page are read into the page cache in
+     * advance, so that a scan of a table which is not cached does fewer and
+     * larger reads. They are read again when the cursor comes half way
+     * through the pages which were read ahead.
+     *
+     * @param forward
+     *            true if the cursor moves by next(), false if by previous().
+     * @throws SqlJetException
+     */
+    private void readAhead(boolean forward) throws SqlJetException {
+        final int n = Integer.min(SQLJET_READ_AHEAD_PAGES, pBtree.pBt.pPager.getCacheSize() / 4);
+        if (n <= 0 || pages.getNumberOfPages() < 2 || !pages.getCurrentPage().leaf) {
+            return;
+        }
+        if (forward != this.readAheadForward) {
+            this.readAheadForward = forward;
+            this.sequentialLeaves = 0;
+            this.readAheadParent = 0;
+        }
+        if (++this.sequentialLeaves < 2) {
+            return;
+        }
+        final int depth = pages.getNumberOfPages() - 2;
+        final SqlJetMemPage pParent = pages.getPage(depth);
+        final int idx = pages.getIndexOnPage(depth);
+        final int step = forward ? 1 : -1;
+        int from = idx + step;
+        if (pParent.pgno == this.readAheadParent) {
+            if ((this.readAheadIndex - idx) * step > n / 2) {
+                return;
+            }
+            from = this.readAheadIndex + step;
+        }
+        final int to = forward ? Integer.min(pParent.nCell, idx + n) : Integer.max(0, idx - n);
+        this.readAheadParent = pParent.pgno;
+        this.readAheadIndex = to;
+        final int count = (to - from) * step + 1;
+        if (count <= 0) {
+            return;
+        }
+        final int[] pageNumbers = new int[count];
+        for (int i = 0; i < count; i++) {
+            pageNumbers[i] = SqlJetBtreeShared.getChildPage(pParent, from + i * step);
+        }
+        pBtree.pBt.pPager.prefetch(pageNumbers);
+    }
+
+    @Override
+	public long count() throws SqlJetException {
+        assert this.pBtree.db.getMutex().held();
+        return pBtree.pBt.countEntries(this.pgnoRoot);
+    }
+
+    @Override
+	public boolean moveToIndex(long index) throws SqlJetException {
+        assert this.pBtree.db.getMutex().held();
+        this.moveToRoot();
+        this.skip = 0;
+        if (this.eState.isInvalid()) {
+            return true;
+        }
+        long n = index;
+        SqlJetMemPage pPage;
+        while (!(pPage = pages.getCurrentPage()).leaf) {
+            final long[] counts = pBtree.pBt.getSubtreeCounts(pPage);
+            if (n < 0 || n >= counts[pPage.nCell]) {
+                this.eState = SqlJetCursorState.INVALID;
+                return true;
+            }
+            /* The first child whose subtree ends after the entry */
+            int lwr = 0;
+            int upr = pPage.nCell;
+            while (lwr < upr) {
+                final int mid = (lwr + upr) >>> 1;
+                if (counts[mid] > n) {
+                    upr = mid;
+                } else {
+                    lwr = mid + 1;
+                }
+            }
+            final long start = lwr == 0 ? 0 : counts[lwr - 1] + (pPage.intKey ? 0 : 1);
+            if (n < start) {
+                /* The entry is in the cell of the interior page of an index */
+                pages.setIndexOnCurrentPage(lwr - 1);
+                this.info.nSize = 0;
+                this.validNKey = false;
+                return false;
+            }
+            n -= start;
+            pages.setIndexOnCurrentPage(lwr);
+            this.moveToChild(SqlJetBtreeShared.getChildPage(pPage, lwr));
+        }
+        if (n < 0 || n >= pPage.nCell) {
+            this.eState = SqlJetCursorState.INVALID;
+            return true;
+        }
+        pages.setIndexOnCurrentPage((int) n);
+        this.info.nSize = 0;
+        this.validNKey = false;
+        return false;
+    }
+
+    @Override
+    public void forEachSplit(int parts, ISqlJetCursorCallback callback) throws SqlJetException {
+        assert this.pBtree.db.getMutex().held();
+        this.moveToRoot();
+        if (this.eState.isInvalid() || parts < 2) {
+            return;
+        }
+        int depth = 0;
+        int cells = 0;
+        List<Integer> level = Collections.singletonList(Integer.valueOf(this.pgnoRoot));
+        while (cells < parts - 1 && !level.isEmpty()) {
+            final List<Integer> children = new ArrayList<>();
+            for (Integer pgno : level) {
+                final SqlJetMemPage pPage = pBtree.pBt.getAndInitPage(pgno.intValue());
+                try {
+                    if (!pPage.leaf) {
+                        cells += pPage.nCell;
+                        for (int i = 0; i <= pPage.nCell; i++) {
+                            children.add(Integer.valueOf(SqlJetBtreeShared.getChildPage(pPage, i)));
+                        }
+                    }
+                } finally {
+                    SqlJetMemPage.releasePage(pPage);
+                }
+            }
+            if (!children.isEmpty()) {
+                depth++;
+            }
+            level = children;
+        }
+        if (0 == depth) {
+            return;
+        }
+        final BitSet splits = new BitSet(cells);
+        for (int i = 1; i < parts; i++) {
+            splits.set(Integer.max(0, (int) ((long) i * (cells + 1) / parts) - 1));
+        }
+        forEachSplit(depth, splits, 0, callback);
+        this.moveToRoot();
+    }
+
+    /**
+     * Walks cells of interior pages above the given depth in the order of
+     * keys, starting from the current page.
+     *
+     * @param depth
+     *            number of levels of interior pages to walk.
+     * @param splits
+     *            ordinal numbers of cells at which the callback is run.
+     * @param cell
+     *            ordinal number of the first cell of the current page.
+     * @return ordinal number of the cell which follows the current page.
+     */
+    private int forEachSplit(int depth, BitSet splits, int cell, ISqlJetCursorCallback callback)
+            throws SqlJetException {
+        final SqlJetMemPage pPage = pages.getCurrentPage();
+        int n = cell;
+        for (int i = 0; i <= pPage.nCell; i++) {
+            pages.setIndexOnCurrentPage(i);
+            if (depth > 1) {
+                this.moveToChild(SqlJetBtreeShared.getChildPage(pPage, i));
+                if (!pages.getCurrentPage().leaf) {
+                    n = forEachSplit(depth - 1, splits, n, callback);
+                }
+                this.moveToParent();
+                pages.setIndexOnCurrentPage(i);
+            }
+            if (i < pPage.nCell) {
+                if (splits.get(n)) {
+                    this.info.nSize = 0;
+                    this.validNKey = false;
+                    callback.cursorCallback(this);
+                }
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+	public long getIndex() throws SqlJetException {
+        assert this.pBtree.db.getMutex().held();
+        this.restoreCursorPosition();
+        if (this.eState.isInvalid()) {
+            return count();
+        }
+        long index = 0;
+        final int depth = pages.getNumberOfPages();
+        for (int k = 0; k < depth; k++) {
+            final SqlJetMemPage pPage = pages.getPage(k);
+            final int i = pages.getIndexOnPage(k);
+            if (pPage.leaf) {
+                index += i;
+            } else if (k == depth - 1) {
+                /* Cursor points to the cell of an interior page of an index */
+                index += pBtree.pBt.getSubtreeCounts(pPage)[i];
+            } else if (i > 0) {
+                index += pBtree.pBt.getSubtreeCounts(pPage)[i - 1] + (pPage.intKey ? 0 : 1);
+            }
+        }
+        return index;
+    }
+
     /**
      * Move the cursor up to the parent page.
      *
@@ -838,6 +1078,7 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
             int idx = pages.getIndexOnCurrentPage();
             this.moveToChild(pPage.findCell(idx).getInt());
             this.moveToRightmost();
+            this.readAhead(false);
         } else {
             while (pages.getIndexOnCurrentPage() == 0) {
                 if (pages.hasExactlyOnePage()) {
@@ -20,6 +20,9 @@ package org.tmatesoft.sqljet.core.internal.btree;
 import static org.tmatesoft.sqljet.core.internal.btree.SqlJetBtree.TRACE;
 import static org.tmatesoft.sqljet.core.internal.btree.SqlJetBtree.traceInt;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
@@ -67,6 +70,12 @@ public class SqlJetBtreeShared {
     /** Number of usable bytes on each page */
     int usableSize;
 
+    /** Entries counts of subtrees of interior pages, see getSubtreeCounts() */
+    private final Map<Integer, long[]> subtreeCounts = new HashMap<>();
+
+    /** Data version of the pager which subtreeCounts correspond to */
+    private long subtreeCountsVersion = -1;
+
     /**
      * maxLocal is the maximum amount of payload to store locally for a
      * cell. Make sure it is small enough so that at least minFanout
@@ -796,6 +805,84 @@ public class SqlJetBtreeShared {
 
     }
 
+    /**
+     * Returns the number of a child page of an interior page.
+     *
+     * @param pPage
+     *            interior page.
+     * @param i
+     *            index of the cell which points to the child, or nCell for
+     *            the right-most child.
+     * @return number of the child page.
+     */
+    static int getChildPage(SqlJetMemPage pPage, int i) {
+        assert !pPage.leaf && i >= 0 && i <= pPage.nCell;
+        if (i < pPage.nCell) {
+            return pPage.findCell(i).getInt();
+        }
+        return pPage.getData().getInt(pPage.getHdrOffset() + 8);
+    }
+
+    /**
+     * Counts entries of the tree rooted at the given page, like
+     * sqlite3BtreeCount(). Only interior pages are read for subtrees whose
+     * counts are cached.
+     *
+     * @param pgno
+     *            number of the root page of the tree.
+     * @return number of entries in the tree.
+     * @throws SqlJetException
+     */
+    long countEntries(int pgno) throws SqlJetException {
+        final SqlJetMemPage pPage = getAndInitPage(pgno);
+        try {
+            if (pPage.leaf) {
+                return pPage.nCell;
+            }
+            return getSubtreeCounts(pPage)[pPage.nCell];
+        } finally {
+            SqlJetMemPage.releasePage(pPage);
+        }
+    }
+
+    /**
+     * Returns cumulative counts of entries below an interior page: element i
+     * is the number of entries in children 0..i of the page, plus entries of
+     * cells 0..i-1 in index trees, where interior cells hold entries too. The
+     * last element is the number of entries in the whole subtree.
+     *
+     * Counts are cached until the data version of the pager changes, so they
+     * are valid until the next write or a change made by other connections.
+     *
+     * @param pPage
+     *            interior page.
+     * @return cumulative counts, nCell+1 elements. Must not be modified.
+     * @throws SqlJetException
+     */
+    long[] getSubtreeCounts(SqlJetMemPage pPage) throws SqlJetException {
+        assert !pPage.leaf;
+        final long version = pPager.getDataVersion();
+        if (version != subtreeCountsVersion) {
+            subtreeCounts.clear();
+            subtreeCountsVersion = version;
+        }
+        final Integer key = Integer.valueOf(pPage.pgno);
+        long[] counts = subtreeCounts.get(key);
+        if (counts == null) {
+            counts = new long[pPage.nCell + 1];
+            long n = 0;
+            for (int i = 0; i <= pPage.nCell; i++) {
+                n += countEntries(getChildPage(pPage, i));
+                counts[i] = n;
+                if (!pPage.intKey && i < pPage.nCell) {
+                    n++;
+                }
+            }
+            subtreeCounts.put(key, counts);
+        }
+        return counts;
+    }
+
     /**
      * Given the page number of an overflow page in the database (parameter
      * ovfl), this function finds the page number of the next page in the linked
@@ -826,7 +913,7 @@ public class SqlJetBtreeShared {
         int next = 0;
 
         /* One of these must not be NULL. Otherwise, why call this function? */
-        assert ppPage != null && ppPage.length != 0;
+        assert ppPage != null && ppPage.length != 0 || pPgnoNext != 0;
 
         /*
          * If pPgnoNext is NULL, then this function is being called to obtain a
@@ -124,6 +124,10 @@ public class SqlJetIndexedMemPages {
     public int getIndexOnCurrentPage() {
     	return getCurrentIndexedPage().getIndex();
     }
+
+    public int getIndexOnPage(int num) {
+    	return apPage[num].getIndex();
+    }
     
     public int getNumberOfPages() {
     	return iPage+1;
@@ -1002,7 +1006,7 @@ public class SqlJetIndexedMemPages {
 			 * value from the cell on pPage into the pSpace buffer.
 			 */
 			pCell = pPage.findCell(pPage.nCell - 1);
-			pStop = pCell.getMoved(9);
+			pStop = pCell.getMoved(Math.min(9, pCell.remaining()));
 			// while( (*(pCell++)&0x80) && pCell<pStop );
 			do {
 				boolean b = (pCell.getByteUnsigned() & 0x80) == 0;
@@ -1011,7 +1015,7 @@ public class SqlJetIndexedMemPages {
 					break;
 				}
 			} while (pCell.getPointer() < pStop.getPointer());
-			pStop = pCell.getMoved(9);
+			pStop = pCell.getMoved(Math.min(9, pCell.remaining()));
 			// while( ((*(pOut++) = *(pCell++))&0x80) && pCell<pStop );
 			do {
 				pOut.putByteUnsigned(pCell.getByteUnsigned());
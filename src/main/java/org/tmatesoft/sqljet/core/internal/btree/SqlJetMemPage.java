@@ -28,8 +28,7 @@ import org.tmatesoft.sqljet.core.internal.ISqlJetPage;
 import org.tmatesoft.sqljet.core.internal.SqlJetAssert;
 import org.tmatesoft.sqljet.core.internal.SqlJetCloneable;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
-import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarintResult;
-import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarintResult32;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarint;
 
 /**
  * As each page of the file is loaded into memory, an instance of the following
@@ -108,6 +107,13 @@ public class SqlJetMemPage extends SqlJetCloneable {
     /** Page number for this page */
     protected int pgno = 0;
 
+    /**
+     * @return true if this is an initialized interior page of a b-tree.
+     */
+    public boolean isInterior() {
+        return isInit && !leaf;
+    }
+
     public SqlJetMemPage(ISqlJetPage pDbPage) {
     	this.pDbPage = pDbPage;
     	this.aData = pDbPage.getData();
@@ -377,21 +383,20 @@ public class SqlJetMemPage extends SqlJetCloneable {
         
         if (intKey) {
             if (hasData) {
-            	SqlJetVarintResult32 res = pCell.getVarint32(n);
-            	nPayload = res.getValue();
-                n += res.getOffset();
+                final long res = pCell.getVarint32Packed(n);
+                nPayload = SqlJetVarint.value(res);
+                n += SqlJetVarint.length(res);
             } else {
                 nPayload = 0;
             }
-            SqlJetVarintResult varint = pCell.getVarint(n);
-            n += varint.getOffset();
-            nKey = varint.getValue();
+            nKey = pCell.getVarintValue(n);
+            n += pCell.getVarintLength(n);
             nData = nPayload;
         } else {
             nData = 0;
-            SqlJetVarintResult32 res = pCell.getVarint32(n);
-            n += res.getOffset();
-            nPayload = res.getValue();
+            final long res = pCell.getVarint32Packed(n);
+            n += SqlJetVarint.length(res);
+            nPayload = SqlJetVarint.value(res);
             nKey = nPayload;
         }
         
@@ -608,9 +613,9 @@ public class SqlJetMemPage extends SqlJetCloneable {
 
 		if (this.intKey) {
 			if (this.hasData) {
-				SqlJetVarintResult32 res = pIter.getVarint32();
-				nSize = res.getValue();
-				pIter.movePointer(res.getOffset());
+				final long res = pIter.getVarint32Packed(0);
+				nSize = SqlJetVarint.value(res);
+				pIter.movePointer(SqlJetVarint.length(res));
 			}
 
 			/*
@@ -628,9 +633,9 @@ public class SqlJetMemPage extends SqlJetCloneable {
 				}
 			}
 		} else {
-			SqlJetVarintResult32 res = pIter.getVarint32();
-			nSize = res.getValue();
-			pIter.movePointer(res.getOffset());
+			final long res = pIter.getVarint32Packed(0);
+			nSize = SqlJetVarint.value(res);
+			pIter.movePointer(SqlJetVarint.length(res));
 		}
 
 		if (nSize > this.maxLocal) {
@@ -30,6 +30,9 @@ public class SqlJetConfig implements ISqlJetConfig {
     private static final String SQLJET_SYNCHRONIZED_THREADING = "SQLJET_SYNCHRONIZED_THREADING";
     private final boolean synchronizedThreading = SqlJetUtility.getBoolSysProp(SQLJET_SYNCHRONIZED_THREADING, true);
 
+    private static final String SQLJET_SHARED_CACHE = "SQLJET_SHARED_CACHE";
+    private final boolean sharedCache = SqlJetUtility.getBoolSysProp(SQLJET_SHARED_CACHE, false);
+
     /**
      * @return the synchronizedThreading
      */
@@ -38,4 +41,12 @@ public class SqlJetConfig implements ISqlJetConfig {
         return synchronizedThreading;
     }
 
+    /**
+     * @return the sharedCache
+     */
+    @Override
+	public boolean isSharedCache() {
+        return sharedCache;
+    }
+
 }
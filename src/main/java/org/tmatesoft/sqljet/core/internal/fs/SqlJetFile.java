@@ -246,6 +246,8 @@ public class SqlJetFile extends SqlJetNoLockFile implements ISqlJetFile {
         try {
             synchronized (openFiles) {
 
+                SqlJetFileLockManager.beforeLock();
+
                 /*
                  * If some thread using this PID has a lock via a different
                  * unixFile handle that precludes the requested lock, return
@@ -286,6 +288,7 @@ public class SqlJetFile extends SqlJetNoLockFile implements ISqlJetFile {
 	                        if(null != sharedLock) {
 	                        	sharedLock.release();
 	                        	lockInfo.sharedLock = null;
+	                        	SqlJetFileLockManager.afterRelease();
 	                        }
 						}
                     }
@@ -315,6 +318,7 @@ public class SqlJetFile extends SqlJetNoLockFile implements ISqlJetFile {
                     if (null != pendingLock) {
                         pendingLock.release();
                         locks.remove(SqlJetLockType.PENDING);
+                        SqlJetFileLockManager.afterRelease();
                     }
 
                     if (null == sharedLock) {
@@ -468,6 +472,7 @@ public class SqlJetFile extends SqlJetNoLockFile implements ISqlJetFile {
 
                 }
                 this.lockType = lockType;
+                SqlJetFileLockManager.afterRelease();
 
             } catch (IOException e) {
                 throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_LOCK, e);
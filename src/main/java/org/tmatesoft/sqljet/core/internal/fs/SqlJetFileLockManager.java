@@ -42,6 +42,15 @@ public class SqlJetFileLockManager {
 
     private static final Map<String, List<SqlJetFileLock>> locks = new ConcurrentHashMap<>();
 
+    /*
+     * Count of releases of locks in this JVM, threads which failed to lock a
+     * file wait on releasesMonitor until it changes.
+     */
+    private static volatile long releasesCount;
+    private static final Object releasesMonitor = new Object();
+    private static final ThreadLocal<long[]> seenReleasesCount = ThreadLocal
+            .withInitial(() -> new long[] { releasesCount });
+
     private interface ILockCreator {
         FileLock createLock(long position, long size, boolean shared) throws IOException;
     }
@@ -110,6 +119,51 @@ public class SqlJetFileLockManager {
         }
     }
 
+    /**
+     * Remembers count of released locks before current thread tries to lock
+     * a file, so {@link #awaitRelease(long)} after failed attempt doesn't
+     * miss a release which happens in between.
+     */
+    public static void beforeLock() {
+        seenReleasesCount.get()[0] = releasesCount;
+    }
+
+    /**
+     * Wakes threads which wait in {@link #awaitRelease(long)}, should be
+     * called when a file lock is released or lowered.
+     */
+    public static void afterRelease() {
+        synchronized (releasesMonitor) {
+            releasesCount++;
+            releasesMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until some lock is released in this JVM after the last attempt
+     * of current thread to lock a file, or until timeout. Locks held by other
+     * processes aren't tracked, so for them it just sleeps for the timeout.
+     * 
+     * @param timeout
+     *            time to wait in milliseconds.
+     * @return true if a lock was released.
+     * @throws InterruptedException
+     */
+    public static boolean awaitRelease(long timeout) throws InterruptedException {
+        final long[] seen = seenReleasesCount.get();
+        final long deadline = System.currentTimeMillis() + timeout;
+        synchronized (releasesMonitor) {
+            long remaining = timeout;
+            while (releasesCount == seen[0] && remaining > 0) {
+                releasesMonitor.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            final boolean released = releasesCount != seen[0];
+            seen[0] = releasesCount;
+            return released;
+        }
+    }
+
     public void deleteLock(SqlJetFileLock lock) {
 		synchronized (locks) {
 			if (locks.containsKey(filePath)) {
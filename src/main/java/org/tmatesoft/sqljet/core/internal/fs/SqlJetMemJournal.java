@@ -17,6 +17,7 @@
  */
 package org.tmatesoft.sqljet.core.internal.fs;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -76,6 +77,17 @@ public class SqlJetMemJournal implements ISqlJetFile {
         return amount - nRead;
     }
 
+    @Override
+	public int read(ISqlJetMemoryPointer[] buffers, int amount, long offset) {
+        int read = 0;
+        long o = offset;
+        for (ISqlJetMemoryPointer buffer : buffers) {
+            read += read(buffer, amount, o);
+            o += amount;
+        }
+        return read;
+    }
+
     @Override
 	public void write(ISqlJetMemoryPointer buffer, int amount, long offset) {
         int nWrite = amount;
@@ -96,6 +108,8 @@ public class SqlJetMemJournal implements ISqlJetFile {
                 /* New chunk is required to extend the file. */
                 pChunk = SqlJetUtility.memoryManager.allocatePtr(JOURNAL_CHUNKSIZE);
                 chunks.add(pChunk);
+                SqlJetUtility.memoryManager.account(JOURNAL_CHUNKSIZE);
+                SqlJetUtility.memoryManager.enforceSoftHeapLimit();
             }
 
             pChunk.copyFrom(iChunkOffset, buffer, zWrite, iSpace);
@@ -112,6 +126,9 @@ public class SqlJetMemJournal implements ISqlJetFile {
     @Override
 	public void close() {
         truncate(0);
+        SqlJetUtility.memoryManager.account(-(long) chunks.size() * JOURNAL_CHUNKSIZE);
+        chunks.clear();
+        offset = 0;
     }
 
     @Override
@@ -123,6 +140,20 @@ public class SqlJetMemJournal implements ISqlJetFile {
         return offset;
     }
 
+    @Override
+	public void write(ISqlJetMemoryPointer[] buffers, int amount, long offset) {
+        long o = offset;
+        for (ISqlJetMemoryPointer buffer : buffers) {
+            write(buffer, amount, o);
+            o += amount;
+        }
+    }
+
+    @Override
+	public ByteBuffer map(long offset, int size) {
+        return null;
+    }
+
     @Override
 	public boolean checkReservedLock() {
         return false;
@@ -20,6 +20,7 @@ package org.tmatesoft.sqljet.core.internal.fs;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.EnumSet;
 import java.util.Set;
@@ -140,6 +141,38 @@ public class SqlJetNoLockFile implements ISqlJetFile {
         }
     }
 
+    @Override
+	public synchronized int read(ISqlJetMemoryPointer[] buffers, int amount, long offset) throws SqlJetIOException {
+        assert (amount > 0);
+        assert (offset >= 0);
+        assert (buffers != null);
+        assert (file != null);
+        assert (channel != null);
+        final ByteBuffer[] dsts = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            assert (buffers[i].remaining() >= amount);
+            dsts[i] = buffers[i].asByteBuffer(amount);
+        }
+        try {
+            SqlJetTimer timer = new SqlJetTimer();
+            final long total = (long) amount * buffers.length;
+            long read = 0;
+            channel.position(offset);
+            while (read < total) {
+                final long n = channel.read(dsts);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            timer.end();
+            OSTRACE("READ %s %5d %7d %s\n", this.filePath, Long.valueOf(read), Long.valueOf(offset), timer.format());
+            return (int) read;
+        } catch (IOException e) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_READ, e);
+        }
+    }
+
     @Override
 	public synchronized void write(ISqlJetMemoryPointer buffer, int amount, long offset) throws SqlJetIOException {
         assert (amount > 0);
@@ -158,6 +191,33 @@ public class SqlJetNoLockFile implements ISqlJetFile {
         }
     }
 
+    @Override
+	public synchronized void write(ISqlJetMemoryPointer[] buffers, int amount, long offset) throws SqlJetIOException {
+        assert (amount > 0);
+        assert (offset >= 0);
+        assert (buffers != null);
+        assert (file != null);
+        assert (channel != null);
+        final ByteBuffer[] srcs = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            assert (buffers[i].remaining() >= amount);
+            srcs[i] = buffers[i].asByteBuffer(amount);
+        }
+        try {
+            SqlJetTimer timer = new SqlJetTimer();
+            final long total = (long) amount * buffers.length;
+            long write = 0;
+            channel.position(offset);
+            while (write < total) {
+                write += channel.write(srcs);
+            }
+            timer.end();
+            OSTRACE("WRITE %s %5d %7d %s\n", this.filePath, Long.valueOf(write), Long.valueOf(offset), timer.format());
+        } catch (IOException e) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_WRITE, e);
+        }
+    }
+
     @Override
 	public synchronized void truncate(long size) throws SqlJetIOException {
         assert (size >= 0);
@@ -190,6 +250,20 @@ public class SqlJetNoLockFile implements ISqlJetFile {
         }
     }
 
+    @Override
+	public synchronized ByteBuffer map(long offset, int size) throws SqlJetIOException {
+        assert (offset >= 0);
+        assert (size >= 0);
+        assert (file != null);
+        try {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            OSTRACE("MAP     %s %7d %7d\n", this.filePath, Long.valueOf(offset), Integer.valueOf(size));
+            return buffer;
+        } catch (IOException e) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_READ, e);
+        }
+    }
+
     @Override
 	public synchronized SqlJetLockType getLockType() {
         return lockType;
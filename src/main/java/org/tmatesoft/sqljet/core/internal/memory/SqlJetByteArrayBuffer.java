@@ -19,6 +19,7 @@ package org.tmatesoft.sqljet.core.internal.memory;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
@@ -142,6 +143,11 @@ public class SqlJetByteArrayBuffer extends SqlJetAbstractMemoryBuffer implements
         return count;
     }
 
+    @Override
+    public ByteBuffer asByteBuffer(int pointer, int count) {
+        return ByteBuffer.wrap(buffer, pointer, count);
+    }
+
     @Override
 	public byte[] asArray() {
         return buffer;
@@ -154,6 +154,13 @@ public class SqlJetByteBuffer extends SqlJetAbstractMemoryBuffer implements ISql
         }
     }
 
+    @Override
+    public ByteBuffer asByteBuffer(int pointer, int count) {
+        final ByteBuffer b = buffer.duplicate();
+        b.limit(pointer + count).position(pointer);
+        return b;
+    }
+
     @Override
 	public byte[] asArray() {
         return buffer.array();
@@ -27,6 +27,8 @@ import java.util.Arrays;
  */
 public class SqlJetDirectByteBuffer extends SqlJetByteBuffer {
 
+    private static final byte[] ZEROES = new byte[4096];
+
     public SqlJetDirectByteBuffer(int size) {
         super(ByteBuffer.allocateDirect(size));
     }
@@ -40,6 +42,12 @@ public class SqlJetDirectByteBuffer extends SqlJetByteBuffer {
     
     @Override
     public void fill(int from, int count, byte value) {
+        if (value == 0) {
+            for (int i = 0; i < count; i += ZEROES.length) {
+                putBytes(from + i, ZEROES, 0, Math.min(ZEROES.length, count - i));
+            }
+            return;
+        }
         final byte[] b = new byte[count];
         Arrays.fill(b, value);
         putBytes(from,b,0,count);
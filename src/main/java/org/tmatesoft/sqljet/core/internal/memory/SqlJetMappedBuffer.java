@@ -0,0 +1,281 @@
+/**
+ * SqlJetMappedBuffer.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.memory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryBuffer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryManager;
+
+/**
+ * Buffer which may be backed by a read-only slice of a memory mapped file,
+ * or by a read-only page image shared with other buffers. While it is
+ * mapped, reads go straight to the mapping. The first write copies the
+ * content into a private array which then backs the buffer until it is
+ * mapped again, so writes never reach the file or the shared image through
+ * the mapping.
+ *
+ * The private array is allocated on first use and dropped when the buffer is
+ * mapped, a buffer which is only ever mapped takes no heap memory for its
+ * content.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+public class SqlJetMappedBuffer extends SqlJetAbstractMemoryBuffer implements ISqlJetMemoryBuffer {
+
+    private final int size;
+
+    /** Mapped content, or null if the buffer holds private content */
+    private ByteBuffer mapped;
+
+    /** Private content */
+    private byte[] array;
+
+    public SqlJetMappedBuffer(int size) {
+        assert (size >= 0);
+
+        this.size = size;
+    }
+
+    /**
+     * Serve the content from a mapped slice, dropping private content.
+     *
+     * @param slice
+     *            buffer of exactly the size of this one.
+     */
+    public void map(ByteBuffer slice) {
+        assert (slice != null && slice.capacity() == size);
+
+        mapped = slice;
+        array = null;
+    }
+
+    /**
+     * @return true if the content is served from a mapping.
+     */
+    public boolean isMapped() {
+        return mapped != null;
+    }
+
+    private byte[] array() {
+        if (array == null) {
+            array = new byte[size];
+        }
+        return array;
+    }
+
+    /**
+     * Switch to private content before a write.
+     *
+     * @param keep
+     *            false if the whole content is overwritten, so the mapped
+     *            content needs not be copied.
+     */
+    private byte[] own(boolean keep) {
+        final byte[] a = array();
+        if (mapped != null) {
+            if (keep) {
+                final ByteBuffer b = mapped.duplicate();
+                b.clear();
+                b.get(a, 0, size);
+            }
+            mapped = null;
+        }
+        return a;
+    }
+
+    private byte[] own() {
+        return own(true);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public byte getByte(int pointer) {
+        assert (pointer >= 0);
+        assert (pointer < size);
+
+        final ByteBuffer m = mapped;
+        return m != null ? m.get(pointer) : array()[pointer];
+    }
+
+    @Override
+    public short getShort(int pointer) {
+        assert (pointer >= 0);
+        assert (pointer <= size - ISqlJetMemoryManager.SHORT_SIZE);
+
+        final ByteBuffer m = mapped;
+        return m != null ? m.getShort(pointer) : SqlJetBytesUtility.getShort(array(), pointer);
+    }
+
+    @Override
+    public int getInt(int pointer) {
+        assert (pointer >= 0);
+        assert (pointer <= size - ISqlJetMemoryManager.INT_SIZE);
+
+        final ByteBuffer m = mapped;
+        return m != null ? m.getInt(pointer) : SqlJetBytesUtility.getInt(array(), pointer);
+    }
+
+    @Override
+    public long getLong(int pointer) {
+        assert (pointer >= 0);
+        assert (pointer <= size - ISqlJetMemoryManager.LONG_SIZE);
+
+        final ByteBuffer m = mapped;
+        return m != null ? m.getLong(pointer) : SqlJetBytesUtility.getLong(array(), pointer);
+    }
+
+    @Override
+    public void putByte(int pointer, byte value) {
+        assert (pointer >= 0);
+        assert (pointer < size);
+
+        own()[pointer] = value;
+    }
+
+    @Override
+    public void putShort(int pointer, short value) {
+        assert (pointer >= 0);
+        assert (pointer <= size - ISqlJetMemoryManager.SHORT_SIZE);
+
+        SqlJetBytesUtility.putShort(own(), pointer, value);
+    }
+
+    @Override
+    public void putInt(int pointer, int value) {
+        assert (pointer >= 0);
+        assert (pointer <= size - ISqlJetMemoryManager.INT_SIZE);
+
+        SqlJetBytesUtility.putInt(own(), pointer, value);
+    }
+
+    @Override
+    public void putLong(int pointer, long value) {
+        assert (pointer >= 0);
+        assert (pointer <= size - ISqlJetMemoryManager.LONG_SIZE);
+
+        SqlJetBytesUtility.putLong(own(), pointer, value);
+    }
+
+    @Override
+    public int readFromFile(int pointer, RandomAccessFile file, FileChannel channel, long position, int count)
+            throws IOException {
+        assert (pointer >= 0);
+        assert (pointer < size);
+        assert (file != null);
+        assert (position >= 0);
+        assert (count > 0);
+
+        final byte[] a = own(pointer > 0 || count < size);
+        file.seek(position);
+        return file.read(a, pointer, count);
+    }
+
+    @Override
+    public int writeToFile(int pointer, RandomAccessFile file, FileChannel channel, long position, int count)
+            throws IOException {
+        assert (pointer >= 0);
+        assert (pointer < size);
+        assert (file != null);
+        assert (position >= 0);
+        assert (count > 0);
+
+        final ByteBuffer m = mapped;
+        if (m != null) {
+            final ByteBuffer b = m.duplicate();
+            b.limit(pointer + count).position(pointer);
+            return channel.write(b, position);
+        }
+        file.seek(position);
+        file.write(array(), pointer, count);
+        return count;
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer(int pointer, int count) {
+        final ByteBuffer m = mapped;
+        if (m != null) {
+            final ByteBuffer b = m.duplicate();
+            b.limit(pointer + count).position(pointer);
+            return b;
+        }
+        return ByteBuffer.wrap(array(), pointer, count);
+    }
+
+    @Override
+    public byte[] asArray() {
+        return own();
+    }
+
+    @Override
+    public void copyFrom(int dstPos, ISqlJetMemoryBuffer src, int srcPos, int count) {
+        src.getBytes(srcPos, own(src == this || dstPos > 0 || count < size), dstPos, count);
+    }
+
+    @Override
+    public void fill(int from, int count, byte value) {
+        Arrays.fill(own(from > 0 || count < size), from, from + count, value);
+    }
+
+    @Override
+    public void getBytes(int pointer, byte[] bytes, int to, int count) {
+        final ByteBuffer m = mapped;
+        if (m != null) {
+            final ByteBuffer b = m.duplicate();
+            b.position(pointer);
+            b.get(bytes, to, count);
+        } else {
+            System.arraycopy(array(), pointer, bytes, to, count);
+        }
+    }
+
+    @Override
+    public void putBytes(int pointer, byte[] bytes, int from, int count) {
+        System.arraycopy(bytes, from, own(pointer > 0 || count < size), pointer, count);
+    }
+
+    @Override
+    public int compareTo(int pointer, ISqlJetMemoryBuffer buffer, int bufferPointer) {
+        final int thisCount = size - pointer;
+        final int bufferCount = buffer.getSize() - bufferPointer;
+        final int count = thisCount > bufferCount ? bufferCount : thisCount;
+        final ByteBuffer m = mapped;
+        final byte[] a = m != null ? null : array();
+        for (int i = 0; i < count; i++) {
+            final byte x = m != null ? m.get(pointer + i) : a[pointer + i];
+            final byte y = buffer.getByte(bufferPointer + i);
+            if (x != y) {
+                return Byte.compare(x, y);
+            }
+        }
+        if (thisCount != bufferCount) {
+            return thisCount > bufferCount ? 1 : -1;
+        }
+        return 0;
+    }
+
+}
@@ -17,9 +17,22 @@
  */
 package org.tmatesoft.sqljet.core.internal.memory;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryBuffer;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryManager;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryReclaimer;
 import org.tmatesoft.sqljet.core.internal.SqlJetMemoryBufferType;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 
@@ -33,6 +46,52 @@ public class SqlJetMemoryManager implements ISqlJetMemoryManager {
     private final SqlJetMemoryBufferType defaultBufferType = SqlJetUtility.getEnumSysProp(
             "SqlJetMemoryManager.defaultBufferType", SqlJetMemoryBufferType.ARRAY);
 
+    /**
+     * Maximum number of bytes in free page buffers which are kept for reuse,
+     * shared by all databases. Zero disables the pool.
+     */
+    private static final String SQLJET_PAGE_POOL_SIZE_PROP = "SQLJET.PAGE_POOL_SIZE";
+
+    private static final long SQLJET_PAGE_POOL_SIZE = SqlJetUtility.getLongSysProp(SQLJET_PAGE_POOL_SIZE_PROP,
+            8L * 1024 * 1024);
+
+    /** Free page buffers by size and type */
+    private final Map<Integer, Deque<ISqlJetMemoryBuffer>> pool = new HashMap<>();
+
+    /** Number of bytes in free page buffers */
+    private long poolSize;
+
+    /**
+     * Soft limit of memory used by all databases in the process. Zero means
+     * no limit.
+     */
+    private static final String SQLJET_SOFT_HEAP_LIMIT_PROP = "SQLJET.SOFT_HEAP_LIMIT";
+
+    private volatile long softHeapLimit = Math.max(0, SqlJetUtility.getLongSysProp(SQLJET_SOFT_HEAP_LIMIT_PROP, 0));
+
+    /** Number of bytes accounted by page caches and journals */
+    private final AtomicLong memoryUsed = new AtomicLong();
+
+    /** Holders of memory which may be released */
+    private final List<ReclaimerRef> reclaimers = new ArrayList<>();
+
+    /** Receives references of reclaimers which were collected */
+    private final ReferenceQueue<ISqlJetMemoryReclaimer> collectedReclaimers = new ReferenceQueue<>();
+
+    /** Reclaimer to start with next time, so that memory is taken evenly */
+    private int nextReclaimer;
+
+    private static class ReclaimerRef extends WeakReference<ISqlJetMemoryReclaimer> {
+        /** Bytes accounted by the reclaimer, outlives it */
+        final AtomicLong accounted;
+
+        ReclaimerRef(ISqlJetMemoryReclaimer reclaimer, AtomicLong accounted,
+                ReferenceQueue<ISqlJetMemoryReclaimer> queue) {
+            super(reclaimer, queue);
+            this.accounted = accounted;
+        }
+    }
+
     @Override
 	public ISqlJetMemoryPointer allocatePtr(int size) {
         return allocate(size).getPointer(0);
@@ -67,6 +126,9 @@ public class SqlJetMemoryManager implements ISqlJetMemoryManager {
             case DIRECT:
                 buffer = new SqlJetDirectByteBuffer(size);
                 break;
+            case MAPPED:
+                buffer = new SqlJetMappedBuffer(size);
+                break;
             default:
                 buffer = new SqlJetByteArrayBuffer(size);
             }
@@ -76,6 +138,168 @@ public class SqlJetMemoryManager implements ISqlJetMemoryManager {
         }
     }
     
+    private static Integer poolKey(int size, SqlJetMemoryBufferType bufferType) {
+        return Integer.valueOf(size * SqlJetMemoryBufferType.values().length + bufferType.ordinal());
+    }
+
+    private static SqlJetMemoryBufferType typeOf(ISqlJetMemoryBuffer buffer) {
+        if (buffer instanceof SqlJetDirectByteBuffer) {
+            return SqlJetMemoryBufferType.DIRECT;
+        } else if (buffer instanceof SqlJetByteArrayBuffer) {
+            return SqlJetMemoryBufferType.ARRAY;
+        } else if (buffer instanceof SqlJetMappedBuffer) {
+            return SqlJetMemoryBufferType.MAPPED;
+        }
+        return SqlJetMemoryBufferType.BUFFER;
+    }
+
+    @Override
+    public ISqlJetMemoryPointer allocatePooledPtr(int size, SqlJetMemoryBufferType bufferType) {
+        ISqlJetMemoryBuffer buffer = null;
+        synchronized (pool) {
+            final Deque<ISqlJetMemoryBuffer> free = pool.get(poolKey(size, bufferType));
+            if (null != free && !free.isEmpty()) {
+                buffer = free.pop();
+                poolSize -= size;
+            }
+        }
+        if (null == buffer) {
+            return allocatePtr(size, bufferType);
+        }
+        buffer.fill(0, size, (byte) 0);
+        return buffer.getPointer(0);
+    }
+
+    @Override
+    public void free(ISqlJetMemoryPointer pointer) {
+        final ISqlJetMemoryBuffer buffer = pointer.getBuffer();
+        final int size = buffer.getSize();
+        final SqlJetMemoryBufferType bufferType = typeOf(buffer);
+        if (bufferType == SqlJetMemoryBufferType.MAPPED || pointer.getPointer() != 0) {
+            return;
+        }
+        synchronized (pool) {
+            if (poolSize + size <= SQLJET_PAGE_POOL_SIZE && !isOverSoftHeapLimit(size)) {
+                pool.computeIfAbsent(poolKey(size, bufferType), k -> new ArrayDeque<>()).push(buffer);
+                poolSize += size;
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes in free page buffers kept for reuse.
+     */
+    public long getPoolSize() {
+        synchronized (pool) {
+            return poolSize;
+        }
+    }
+
+    @Override
+    public void account(long bytes) {
+        memoryUsed.addAndGet(bytes);
+    }
+
+    @Override
+    public long getMemoryUsed() {
+        expungeReclaimers();
+        return memoryUsed.get() + getPoolSize();
+    }
+
+    @Override
+    public long getSoftHeapLimit() {
+        return softHeapLimit;
+    }
+
+    @Override
+    public void setSoftHeapLimit(long limit) {
+        softHeapLimit = Math.max(0, limit);
+        enforceSoftHeapLimit();
+    }
+
+    private boolean isOverSoftHeapLimit(long bytes) {
+        final long limit = softHeapLimit;
+        return limit > 0 && getMemoryUsed() + bytes > limit;
+    }
+
+    @Override
+    public void addReclaimer(ISqlJetMemoryReclaimer reclaimer, AtomicLong accounted) {
+        expungeReclaimers();
+        synchronized (reclaimers) {
+            reclaimers.add(new ReclaimerRef(reclaimer, accounted, collectedReclaimers));
+        }
+    }
+
+    @Override
+    public void removeReclaimer(ISqlJetMemoryReclaimer reclaimer) {
+        synchronized (reclaimers) {
+            reclaimers.removeIf(ref -> ref.get() == reclaimer);
+        }
+    }
+
+    /**
+     * Gives back memory of reclaimers which were collected without being
+     * removed, e.g. page caches of databases which were never closed.
+     */
+    private void expungeReclaimers() {
+        Reference<? extends ISqlJetMemoryReclaimer> ref;
+        while ((ref = collectedReclaimers.poll()) != null) {
+            synchronized (reclaimers) {
+                reclaimers.remove(ref);
+            }
+            memoryUsed.addAndGet(-((ReclaimerRef) ref).accounted.getAndSet(0));
+        }
+    }
+
+    @Override
+    public long releaseMemory(long bytes) {
+        long released = 0;
+        synchronized (pool) {
+            for (Iterator<Map.Entry<Integer, Deque<ISqlJetMemoryBuffer>>> i = pool.entrySet().iterator(); i
+                    .hasNext() && released < bytes;) {
+                final Deque<ISqlJetMemoryBuffer> free = i.next().getValue();
+                while (!free.isEmpty() && released < bytes) {
+                    final int size = free.pop().getSize();
+                    poolSize -= size;
+                    released += size;
+                }
+                if (free.isEmpty()) {
+                    i.remove();
+                }
+            }
+        }
+        if (released >= bytes) {
+            return released;
+        }
+        /* Reclaimers are called without the lock, they take locks of their own. */
+        final List<ISqlJetMemoryReclaimer> list = new ArrayList<>();
+        final int start;
+        synchronized (reclaimers) {
+            for (ReclaimerRef ref : reclaimers) {
+                final ISqlJetMemoryReclaimer reclaimer = ref.get();
+                if (null != reclaimer) {
+                    list.add(reclaimer);
+                }
+            }
+            start = list.isEmpty() ? 0 : nextReclaimer++ % list.size();
+        }
+        for (int i = 0; i < list.size() && released < bytes; i++) {
+            released += list.get((start + i) % list.size()).reclaim(bytes - released);
+        }
+        return released;
+    }
+
+    @Override
+    public void enforceSoftHeapLimit() {
+        final long limit = softHeapLimit;
+        if (limit > 0) {
+            final long excess = getMemoryUsed() - limit;
+            if (excess > 0) {
+                releaseMemory(excess);
+            }
+        }
+    }
+
     @Override
     public ISqlJetMemoryBuffer allocate(byte[] bytes, SqlJetMemoryBufferType bufferType) {
     	if (bytes != null) {
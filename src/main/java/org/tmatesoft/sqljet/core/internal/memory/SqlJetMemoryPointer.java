@@ -19,6 +19,7 @@ package org.tmatesoft.sqljet.core.internal.memory;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryBuffer;
@@ -156,6 +157,14 @@ public final class SqlJetMemoryPointer implements ISqlJetMemoryPointer {
 		return buffer.writeToFile(pointer, file, channel, position, count);
 	}
 
+	@Override
+	final public ByteBuffer asByteBuffer(int count) {
+		assert count >= 0;
+		assert pointer + count <= buffer.getSize();
+
+		return buffer.asByteBuffer(pointer, count);
+	}
+
 	@Override
 	final public int getAbsolute(int pointer) {
 		return this.pointer + pointer;
@@ -285,17 +294,32 @@ public final class SqlJetMemoryPointer implements ISqlJetMemoryPointer {
 
 	@Override
 	public SqlJetVarintResult getVarint(int offset) {
+		return new SqlJetVarintResult(getVarintLength(offset), getVarintValue(offset));
+	}
+
+	@Override
+	public long getVarintValue(int offset) {
+		final int p = pointer + offset;
 		long l = 0;
-		for (byte i = 0; i < 8; i++) {
-			final int b = getByteUnsigned(i + offset);
+		for (int i = 0; i < 8; i++) {
+			final int b = buffer.getByteUnsigned(p + i);
 			l = l << 7 | b & 0x7f;
 			if ((b & 0x80) == 0) {
-				return new SqlJetVarintResult(++i, l);
+				return l;
 			}
 		}
-		final int b = getByteUnsigned(8 + offset);
-		l = l << 8 | b;
-		return new SqlJetVarintResult(9, l);
+		return l << 8 | buffer.getByteUnsigned(p + 8);
+	}
+
+	@Override
+	public int getVarintLength(int offset) {
+		final int p = pointer + offset;
+		for (int i = 0; i < 8; i++) {
+			if ((buffer.getByteUnsigned(p + i) & 0x80) == 0) {
+				return i + 1;
+			}
+		}
+		return 9;
 	}
 
 	/**
@@ -314,60 +338,61 @@ public final class SqlJetMemoryPointer implements ISqlJetMemoryPointer {
 
 	@Override
 	public SqlJetVarintResult32 getVarint32(int offset) {
-		int i = offset;
-		int x = getByteUnsigned(i);
-		if (x < 0x80) {
-			return new SqlJetVarintResult32(1, x);
-		}
+		final long packed = getVarint32Packed(offset);
+		return new SqlJetVarintResult32(SqlJetVarint.length(packed), SqlJetVarint.value(packed));
+	}
 
+	@Override
+	public long getVarint32Packed(int offset) {
+		int i = pointer + offset;
 		int a, b;
 
-		a = getByteUnsigned(i);
+		a = buffer.getByteUnsigned(i);
 		/* a: p0 (unmasked) */
 		if ((a & 0x80) == 0) {
-			return new SqlJetVarintResult32(1, a);
+			return SqlJetVarint.pack(1, a);
 		}
 
 		i++;
-		b = getByteUnsigned(i);
+		b = buffer.getByteUnsigned(i);
 		/* b: p1 (unmasked) */
 		if ((b & 0x80) == 0) {
 			a &= 0x7f;
 			a = a << 7;
-			return new SqlJetVarintResult32(2, a | b);
+			return SqlJetVarint.pack(2, a | b);
 		}
 
 		i++;
 		a = a << 14;
-		a |= getByteUnsigned(i);
+		a |= buffer.getByteUnsigned(i);
 		/* a: p0<<14 | p2 (unmasked) */
 		if ((a & 0x80) == 0) {
 			a &= 0x7f << 14 | 0x7f;
 			b &= 0x7f;
 			b = b << 7;
-			return new SqlJetVarintResult32(3, a | b);
+			return SqlJetVarint.pack(3, a | b);
 		}
 
 		i++;
 		b = b << 14;
-		b |= getByteUnsigned(i);
+		b |= buffer.getByteUnsigned(i);
 		/* b: p1<<14 | p3 (unmasked) */
 		if ((b & 0x80) == 0) {
 			b &= 0x7f << 14 | 0x7f;
 			a &= 0x7f << 14 | 0x7f;
 			a = a << 7;
-			return new SqlJetVarintResult32(4, a | b);
+			return SqlJetVarint.pack(4, a | b);
 		}
 
 		i++;
 		a = a << 14;
-		a |= getByteUnsigned(i);
+		a |= buffer.getByteUnsigned(i);
 		/* a: p0<<28 | p2<<14 | p4 (unmasked) */
 		if ((a & 0x80) == 0) {
 			a &= 0x7f << 28 | 0x7f << 14 | 0x7f;
 			b &= 0x7f << 28 | 0x7f << 14 | 0x7f;
 			b = b << 7;
-			return new SqlJetVarintResult32(5, a | b);
+			return SqlJetVarint.pack(5, a | b);
 		}
 
 		/*
@@ -375,7 +400,7 @@ public final class SqlJetMemoryPointer implements ISqlJetMemoryPointer {
 		 * that case we are not in any hurry. Use the (relatively slow)
 		 * general-purpose sqlite3GetVarint() routine to extract the value.
 		 */
-		return getVarint(offset).to32();
+		return SqlJetVarint.pack(getVarintLength(offset), (int) getVarintValue(offset));
 	}
 
 	@Override
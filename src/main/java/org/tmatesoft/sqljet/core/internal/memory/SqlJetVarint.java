@@ -0,0 +1,51 @@
+/**
+ * SqlJetVarint.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.memory;
+
+/**
+ * Packing of a decoded 32-bit varint into a single long: the value takes the
+ * low 32 bits and the number of bytes read the high ones. Lets hot paths
+ * decode varints without allocating {@link SqlJetVarintResult32} objects.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+public final class SqlJetVarint {
+
+    private SqlJetVarint() {
+    }
+
+    public static long pack(int length, int value) {
+        return (long) length << 32 | value & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return decoded value of a packed varint.
+     */
+    public static int value(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * @return number of bytes the packed varint was read from.
+     */
+    public static int length(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+}
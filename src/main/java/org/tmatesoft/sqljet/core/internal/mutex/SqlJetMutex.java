@@ -53,6 +53,11 @@ public class SqlJetMutex extends SqlAbstractJetMutex {
         return lock.isLocked();
     }
 
+    @Override
+	public boolean heldByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+
     /* (non-Javadoc)
      * @see org.tmatesoft.sqljet.core.ISqlJetMutex#leave()
      */
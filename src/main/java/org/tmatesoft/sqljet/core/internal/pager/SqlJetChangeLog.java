@@ -0,0 +1,329 @@
+/**
+ * SqlJetChangeLog.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.SqlJetAssert;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileAccesPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+
+/**
+ * Log of pages changed by commits to a database file in rollback journal
+ * modes, which lets connections in other processes keep their page caches
+ * when the database is changed.
+ *
+ * Every commit appends a record to the "-changes" file while the exclusive
+ * lock is held. The record holds the 16 version bytes from offset 24 of the
+ * database file which the transaction has started from, the version bytes it
+ * has committed and the numbers of the pages it has changed. A reader which
+ * finds that the version of the file differs from the version of its cache
+ * follows the records back from the current version to its own one and drops
+ * only the pages they list. If there is no such chain of records, because the
+ * database was changed by a writer which does not keep the log or the log
+ * was restarted, the reader discards the whole cache as before.
+ *
+ * The file starts with a header of a magic number and a random salt, which is
+ * changed when a writer restarts the log after it has grown over its size
+ * limit. Each record is a count of page ranges, the two versions, the ranges
+ * as pairs of first page and number of pages, and a CRC32 of all that.
+ * Records are read incrementally and a torn record ends the log.
+ *
+ * The log is never synced. It only describes page caches in memory, which
+ * don't survive a crash of the system, and all processes see the same file
+ * content through the operating system cache. Records lost by a crash make
+ * readers discard their caches. A record of a commit which was lost itself
+ * can't be mistaken for a later commit which reaches the same version,
+ * because the latest record which leads to a version is the one used.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+public class SqlJetChangeLog {
+
+    private static final int MAGIC = 0x53434c47;
+
+    private static final int HEADER_SIZE = 8;
+
+    /** Size of version bytes of the database file. */
+    private static final int VERSION_SIZE = 16;
+
+    private static final Random RND = new Random();
+
+    private static class Record {
+        final byte[] from;
+        final byte[] to;
+        final int[] ranges;
+
+        Record(byte[] from, byte[] to, int[] ranges) {
+            this.from = from;
+            this.to = to;
+            this.ranges = ranges;
+        }
+    }
+
+    private final ISqlJetFileSystem fileSystem;
+    private final File fileName;
+    private final long sizeLimit;
+    private ISqlJetFile fd;
+
+    /** Salt of the log which records are known, 0 if none */
+    private int salt;
+
+    /** Offset after the last valid record */
+    private long end;
+
+    private final List<Record> records = new ArrayList<>();
+
+    /**
+     * @param fileSystem
+     *            file system to open the log with.
+     * @param fileName
+     *            name of the log file.
+     * @param sizeLimit
+     *            size of the log in bytes after which writers restart it.
+     */
+    public SqlJetChangeLog(final ISqlJetFileSystem fileSystem, final File fileName, final long sizeLimit) {
+        this.fileSystem = fileSystem;
+        this.fileName = fileName;
+        this.sizeLimit = sizeLimit;
+    }
+
+    /**
+     * @return name of the log file.
+     */
+    public File getFileName() {
+        return fileName;
+    }
+
+    private boolean open(boolean write) throws SqlJetException {
+        if (null == fd) {
+            if (!write) {
+                if (!fileSystem.access(fileName, SqlJetFileAccesPermission.EXISTS)) {
+                    return false;
+                }
+                fd = fileSystem.open(fileName, SqlJetFileType.CHANGE_LOG,
+                        SqlJetUtility.of(SqlJetFileOpenPermission.READONLY));
+            } else {
+                fd = fileSystem.open(fileName, SqlJetFileType.CHANGE_LOG, SqlJetUtility.of(
+                        SqlJetFileOpenPermission.READWRITE, SqlJetFileOpenPermission.CREATE));
+            }
+        } else if (write && fd.getPermissions().contains(SqlJetFileOpenPermission.READONLY)) {
+            close();
+            return open(true);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the log file. The file itself is left in place.
+     *
+     * @throws SqlJetException
+     */
+    public void close() throws SqlJetException {
+        if (null != fd) {
+            try {
+                fd.close();
+            } finally {
+                fd = null;
+            }
+        }
+    }
+
+    private void clear() {
+        records.clear();
+        salt = 0;
+        end = 0;
+    }
+
+    private byte[] read(long offset, int count) throws SqlJetException {
+        final ISqlJetMemoryPointer buffer = SqlJetUtility.memoryManager.allocatePtr(count);
+        if (fd.read(buffer, count, offset) < count) {
+            return null;
+        }
+        return buffer.getBytes();
+    }
+
+    /**
+     * Reads records appended since the previous call.
+     *
+     * @return false if there is no log.
+     * @throws SqlJetException
+     */
+    private boolean refresh(boolean write) throws SqlJetException {
+        if (null != fd && !fileSystem.access(fileName, SqlJetFileAccesPermission.EXISTS)) {
+            close();
+        }
+        if (!open(write)) {
+            clear();
+            return false;
+        }
+        final long size = fd.fileSize();
+        final byte[] header = size >= HEADER_SIZE ? read(0, HEADER_SIZE) : null;
+        final ByteBuffer h = null == header ? null : ByteBuffer.wrap(header);
+        if (null == h || h.getInt(0) != MAGIC) {
+            clear();
+            return true;
+        }
+        if (h.getInt(4) != salt || size < end) {
+            clear();
+            salt = h.getInt(4);
+            end = HEADER_SIZE;
+        }
+        if (size > end) {
+            final byte[] tail = read(end, (int) Math.min(Integer.MAX_VALUE, size - end));
+            if (null != tail) {
+                end += parse(ByteBuffer.wrap(tail));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return length of the valid records at the beginning of the buffer.
+     */
+    private int parse(ByteBuffer b) {
+        final CRC32 crc = new CRC32();
+        int valid = 0;
+        while (b.remaining() >= 4) {
+            final int start = b.position();
+            final int count = b.getInt();
+            /* Count of a torn record may be anything, it must fit into the rest. */
+            final int rest = b.remaining() - 2 * VERSION_SIZE - 4;
+            if (count < 0 || rest < 0 || count > rest / 8) {
+                break;
+            }
+            final int length = 2 * VERSION_SIZE + count * 8;
+            crc.reset();
+            crc.update(b.array(), start, 4 + length);
+            if (b.getInt(start + 4 + length) != (int) crc.getValue()) {
+                break;
+            }
+            final byte[] from = new byte[VERSION_SIZE];
+            final byte[] to = new byte[VERSION_SIZE];
+            b.get(from).get(to);
+            final int[] ranges = new int[count * 2];
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = b.getInt();
+            }
+            b.getInt();
+            records.add(new Record(from, to, ranges));
+            valid = b.position();
+        }
+        return valid;
+    }
+
+    /**
+     * Finds pages changed between two versions of the database file.
+     *
+     * @param from
+     *            version bytes of the database which the cache holds.
+     * @param to
+     *            current version bytes of the database file.
+     * @return numbers of the changed pages, or null if the log doesn't tell
+     *         which pages have changed.
+     * @throws SqlJetException
+     */
+    public BitSet getChangedPages(ISqlJetMemoryPointer from, ISqlJetMemoryPointer to) throws SqlJetException {
+        if (!refresh(false)) {
+            return null;
+        }
+        final byte[] target = from.getBytes();
+        byte[] version = to.getBytes();
+        final BitSet changed = new BitSet();
+        /* The latest record which has led to a version is the committed one. */
+        for (int i = records.size() - 1; i >= 0 && !Arrays.equals(version, target); i--) {
+            final Record r = records.get(i);
+            if (Arrays.equals(r.to, version)) {
+                for (int j = 0; j < r.ranges.length; j += 2) {
+                    changed.set(r.ranges[j], r.ranges[j] + r.ranges[j + 1]);
+                }
+                version = r.from;
+            }
+        }
+        return Arrays.equals(version, target) ? changed : null;
+    }
+
+    /**
+     * Appends record of a commit. Must be called while the database file is
+     * locked exclusively.
+     *
+     * @param from
+     *            version bytes of the database when the transaction started.
+     * @param to
+     *            version bytes written by the transaction.
+     * @param changed
+     *            numbers of pages changed by the transaction.
+     * @throws SqlJetException
+     */
+    public void append(ISqlJetMemoryPointer from, ISqlJetMemoryPointer to, BitSet changed)
+            throws SqlJetException {
+        SqlJetAssert.assertTrue(from.remaining() >= VERSION_SIZE && to.remaining() >= VERSION_SIZE,
+                SqlJetErrorCode.INTERNAL);
+        refresh(true);
+        if (salt == 0 || end > sizeLimit) {
+            restart();
+        }
+        final List<int[]> ranges = new ArrayList<>();
+        for (int pgno = changed.nextSetBit(0); pgno >= 0; pgno = changed.nextSetBit(pgno)) {
+            final int next = changed.nextClearBit(pgno);
+            ranges.add(new int[] { pgno, next - pgno });
+            pgno = next;
+        }
+        final ByteBuffer b = ByteBuffer.allocate(4 + 2 * VERSION_SIZE + ranges.size() * 8 + 4);
+        b.putInt(ranges.size());
+        b.put(from.getBytes(), 0, VERSION_SIZE).put(to.getBytes(), 0, VERSION_SIZE);
+        for (int[] range : ranges) {
+            b.putInt(range[0]).putInt(range[1]);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(b.array(), 0, b.position());
+        b.putInt((int) crc.getValue());
+        fd.write(SqlJetUtility.wrapPtr(b.array()), b.capacity(), end);
+        end += parse(ByteBuffer.wrap(b.array()));
+    }
+
+    private void restart() throws SqlJetException {
+        clear();
+        int s;
+        do {
+            s = RND.nextInt();
+        } while (s == 0);
+        final ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE);
+        h.putInt(MAGIC).putInt(s);
+        fd.truncate(0);
+        fd.write(SqlJetUtility.wrapPtr(h.array()), HEADER_SIZE, 0);
+        salt = s;
+        end = HEADER_SIZE;
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * SqlJetClockPageReplacement.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import org.tmatesoft.sqljet.core.internal.SqlJetPageCachePolicy;
+
+/**
+ * Clock (second chance) replacement. Pages join the ring when they are
+ * released for the first time and stay there while they are in the cache.
+ * Releasing a page sets its reference count, which the hand decrements as it
+ * passes over the page, and a page is recycled when the hand finds it
+ * unreferenced. Interior b-tree pages get two chances instead of one. Unlike
+ * LRU, re-using a cached page costs no list manipulation.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+class SqlJetClockPageReplacement extends SqlJetPageReplacement {
+
+    private final PageList ring = new PageList();
+
+    /** Next page to look at */
+    private SqlJetPage hand;
+
+    @Override
+    SqlJetPageCachePolicy getPolicy() {
+        return SqlJetPageCachePolicy.CLOCK;
+    }
+
+    @Override
+    void unpinned(SqlJetPage page) {
+        page.lruWeight = page.isInterior() ? 2 : 1;
+        if (null == page.lruList) {
+            /* New pages are looked at last. */
+            ring.addBefore(page, hand);
+        }
+    }
+
+    @Override
+    void pinned(SqlJetPage page) {
+    }
+
+    @Override
+    void removed(SqlJetPage page) {
+        if (page.lruList == ring) {
+            if (hand == page) {
+                hand = ring.size > 1 ? next(page) : null;
+            }
+            ring.remove(page);
+        }
+    }
+
+    @Override
+    SqlJetPage victim() {
+        if (null == hand) {
+            hand = ring.head;
+        }
+        for (int i = 3 * ring.size; i > 0; i--) {
+            final SqlJetPage page = hand;
+            hand = next(page);
+            if (!isRecyclable(page)) {
+                continue;
+            }
+            if (page.lruWeight > 0) {
+                page.lruWeight--;
+                continue;
+            }
+            return page;
+        }
+        return null;
+    }
+
+    @Override
+    void clear() {
+        ring.clear();
+        hand = null;
+    }
+
+    private SqlJetPage next(SqlJetPage page) {
+        return null != page.lruNext ? page.lruNext : ring.head;
+    }
+
+}
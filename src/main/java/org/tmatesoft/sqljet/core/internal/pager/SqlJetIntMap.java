@@ -0,0 +1,154 @@
+/**
+ * SqlJetIntMap.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.util.Arrays;
+
+/**
+ * Map of positive int keys to int values, laid out as
+ * {@link SqlJetPageHash}: open addressing with linear probing over plain
+ * arrays, zero key marks an empty slot. Absent keys have value 0.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+class SqlJetIntMap {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return value of the key, or 0 if there is no such key.
+     */
+    int get(int key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            final int k = keys[i];
+            if (k == key) {
+                return values[i];
+            } else if (k == 0) {
+                return 0;
+            }
+        }
+    }
+
+    void put(int key, int value) {
+        assert key > 0;
+        int i = slot(key);
+        for (; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length >> 1) {
+            resize(keys.length << 1);
+        }
+    }
+
+    void remove(int key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            final int k = keys[i];
+            if (k == key) {
+                delete(i);
+                return;
+            } else if (k == 0) {
+                return;
+            }
+        }
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+    }
+
+    /**
+     * Slots are iterated from 0 to {@link #capacity()}, empty slots have key
+     * 0.
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private int slot(int key) {
+        final int h = key * 0x9E3779B9;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    /**
+     * Empties a slot and moves back the following entries of its probe
+     * sequence, so lookups never need tombstones.
+     */
+    private void delete(int i) {
+        size--;
+        for (int j = (i + 1) & mask;; j = (j + 1) & mask) {
+            final int k = keys[j];
+            if (k == 0) {
+                break;
+            }
+            final int home = slot(k);
+            /* Entry at j may fill slot i unless its home lies in (i, j]. */
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = k;
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = 0;
+    }
+
+    private void resize(int capacity) {
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final int k = oldKeys[i];
+            if (k != 0) {
+                int j = slot(k);
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = k;
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * SqlJetLruPageReplacement.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import org.tmatesoft.sqljet.core.internal.SqlJetPageCachePolicy;
+
+/**
+ * Least recently used replacement. Interior b-tree pages are kept in a
+ * separate list which is only used when no leaf page can be recycled. That
+ * list may take up to a half of the cache; when it grows beyond that, its
+ * oldest pages are moved to the list of other pages. Pages which can not be
+ * recycled yet are kept apart as well, so the oldest page of a list is always
+ * the victim and no page is passed over.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+class SqlJetLruPageReplacement extends SqlJetPageReplacement {
+
+    /** Unpinned leaf and non-btree pages */
+    private final PageList pages = new PageList();
+
+    /** Unpinned interior pages */
+    private final PageList retained = new PageList();
+
+    /** Unpinned pages which are dirty or need a journal sync */
+    private final PageList held = new PageList();
+
+    @Override
+    SqlJetPageCachePolicy getPolicy() {
+        return SqlJetPageCachePolicy.LRU;
+    }
+
+    @Override
+    void unpinned(SqlJetPage page) {
+        unlink(page);
+        if (!isRecyclable(page)) {
+            held.addFirst(page);
+        } else if (page.isInterior()) {
+            retained.addFirst(page);
+            while (retained.size > capacity / 2) {
+                final SqlJetPage oldest = retained.tail;
+                retained.remove(oldest);
+                pages.addFirst(oldest);
+            }
+        } else {
+            pages.addFirst(page);
+        }
+    }
+
+    @Override
+    void pinned(SqlJetPage page) {
+        unlink(page);
+    }
+
+    @Override
+    void removed(SqlJetPage page) {
+        unlink(page);
+    }
+
+    @Override
+    SqlJetPage victim() {
+        final SqlJetPage page = oldest(pages);
+        return null != page ? page : oldest(retained);
+    }
+
+    @Override
+    void clear() {
+        pages.clear();
+        retained.clear();
+        held.clear();
+    }
+
+    /**
+     * @return the oldest page of the list. A page which has become
+     *         unrecyclable since it was unpinned is moved to the held pages.
+     */
+    private SqlJetPage oldest(PageList list) {
+        for (SqlJetPage page = list.tail; null != page; page = list.tail) {
+            if (isRecyclable(page)) {
+                return page;
+            }
+            list.remove(page);
+            held.addFirst(page);
+        }
+        return null;
+    }
+
+    private static void unlink(SqlJetPage page) {
+        if (null != page.lruList) {
+            page.lruList.remove(page);
+        }
+    }
+
+}
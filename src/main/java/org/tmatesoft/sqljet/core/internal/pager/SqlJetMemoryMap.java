@@ -0,0 +1,114 @@
+/**
+ * SqlJetMemoryMap.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.nio.ByteBuffer;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+
+/**
+ * Read-only memory mapping of the first bytes of a database file, made of
+ * chunks which are mapped when a page in them is read for the first time. The
+ * chunk size is a multiple of every page size, so no page crosses chunks. A
+ * chunk which was mapped while the file was shorter is mapped again when a
+ * page beyond its end is read.
+ *
+ * Mapped buffers are released by the garbage collector once no page refers
+ * to them, so replacing a chunk never invalidates pages which were already
+ * served from it.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+class SqlJetMemoryMap {
+
+    private static final int CHUNK_SHIFT = 26;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+    private final ISqlJetFile fd;
+
+    /** Maximum number of bytes to map */
+    private final long limit;
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+
+    SqlJetMemoryMap(ISqlJetFile fd, long limit) {
+        this.fd = fd;
+        this.limit = limit;
+    }
+
+    long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return slice of the mapping with content of the page, or null if the
+     *         page is out of the mapped range or the file.
+     */
+    ByteBuffer page(int pageNumber, int pageSize) {
+        final long offset = (long) (pageNumber - 1) * pageSize;
+        if (offset + pageSize > limit) {
+            return null;
+        }
+        final int index = (int) (offset >>> CHUNK_SHIFT);
+        final int start = (int) (offset & (CHUNK_SIZE - 1));
+        ByteBuffer chunk = index < chunks.length ? chunks[index] : null;
+        if (null == chunk || chunk.capacity() < start + pageSize) {
+            chunk = mapChunk(index);
+            if (null == chunk || chunk.capacity() < start + pageSize) {
+                return null;
+            }
+        }
+        final ByteBuffer slice = chunk.duplicate();
+        slice.limit(start + pageSize).position(start);
+        return slice.slice();
+    }
+
+    /**
+     * Forget all chunks, before the file is truncated.
+     */
+    void reset() {
+        chunks = new ByteBuffer[0];
+    }
+
+    private ByteBuffer mapChunk(int index) {
+        final long start = index * CHUNK_SIZE;
+        final ByteBuffer chunk;
+        try {
+            final long end = Math.min(Math.min(fd.fileSize(), limit), start + CHUNK_SIZE);
+            if (end <= start) {
+                return null;
+            }
+            chunk = fd.map(start, (int) (end - start));
+        } catch (SqlJetException e) {
+            /* Out of address space for example, read pages instead. */
+            return null;
+        }
+        if (null != chunk) {
+            if (index >= chunks.length) {
+                final ByteBuffer[] grown = new ByteBuffer[index + 1];
+                System.arraycopy(chunks, 0, grown, 0, chunks.length);
+                chunks = grown;
+            }
+            chunks[index] = chunk;
+        }
+        return chunk;
+    }
+
+}
@@ -66,11 +66,19 @@ public class SqlJetPage implements ISqlJetPage {
     /** Cache that owns this page */
     SqlJetPageCache pCache;
 
+    /** Replacement policy list which holds this page, and neighbours in it */
+    SqlJetPageReplacement.PageList lruList;
+    SqlJetPage lruPrev;
+    SqlJetPage lruNext;
+
+    /** Reference count of the clock replacement policy */
+    int lruWeight;
+
     /**
      * 
      */
-    SqlJetPage(int szPage, int pgno) {
-        this.pData = SqlJetUtility.memoryManager.allocatePtr(szPage, BUFFER_TYPE);
+    SqlJetPage(int szPage, int pgno, SqlJetMemoryBufferType bufferType) {
+        this.pData = SqlJetUtility.memoryManager.allocatePooledPtr(szPage, bufferType);
         this.pgno = pgno;
     }
 
@@ -174,6 +182,13 @@ public class SqlJetPage implements ISqlJetPage {
         this.pExtra = extra;
     }
 
+    /**
+     * @return true if the page is known to be an interior b-tree page.
+     */
+    boolean isInterior() {
+        return null != pPager && null != pExtra && pExtra.isInterior();
+    }
+
     @Override
 	public void move(int pageNumber, boolean isCommit) throws SqlJetException {
 
@@ -230,6 +245,7 @@ public class SqlJetPage implements ISqlJetPage {
 
         
         makeDirty();
+        pPager.dataVersion++;
         pPager.dirtyCache = true;
         pPager.dbModified = true;
 
@@ -413,6 +429,7 @@ public class SqlJetPage implements ISqlJetPage {
          * journal then we can return right away.
          */
         makeDirty();
+        pPager.dataVersion++;
         if (pageInJournal()) {
             pPager.dirtyCache = true;
             pPager.dbModified = true;
@@ -427,7 +444,8 @@ public class SqlJetPage implements ISqlJetPage {
             assert pPager.state != SqlJetPagerState.UNLOCK;
             pPager.begin(false);
             assert pPager.state.compareTo(SqlJetPagerState.RESERVED) >= 0;
-            if (!pPager.journalOpen && pPager.useJournal && pPager.getJournalMode() != SqlJetPagerJournalMode.OFF) {
+            if (!pPager.journalOpen && pPager.useJournal && pPager.getJournalMode() != SqlJetPagerJournalMode.OFF
+                    && !pPager.walMode()) {
                 pPager.openJournal();
             }
             pPager.dirtyCache = true;
@@ -18,29 +18,32 @@
 package org.tmatesoft.sqljet.core.internal.pager;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryReclaimer;
 import org.tmatesoft.sqljet.core.internal.ISqlJetPage;
 import org.tmatesoft.sqljet.core.internal.ISqlJetPageCache;
 import org.tmatesoft.sqljet.core.internal.ISqlJetPageCallback;
+import org.tmatesoft.sqljet.core.internal.SqlJetMemoryBufferType;
+import org.tmatesoft.sqljet.core.internal.SqlJetPageCachePolicy;
 import org.tmatesoft.sqljet.core.internal.SqlJetPageFlags;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 
 /**
  * A complete page cache is an instance of this structure.
  * 
+ * Memory of the cached pages is accounted by the memory manager. When the
+ * soft heap limit of the process is exceeded, the memory manager takes
+ * unpinned clean pages from the caches of all databases.
+ * 
  * @author TMate Software Ltd.
  * @author Sergey Scherbina (sergey.scherbina@gmail.com)
  * 
  */
-public class SqlJetPageCache implements ISqlJetPageCache {
+public class SqlJetPageCache implements ISqlJetPageCache, ISqlJetMemoryReclaimer {
     /**
      * System property name for cache size configuration.
      */
@@ -49,6 +52,12 @@ public class SqlJetPageCache implements ISqlJetPageCache {
     private static final int PAGE_CACHE_SIZE = SqlJetUtility.getIntSysProp(SQLJET_PAGE_CACHE_SIZE, PAGE_CACHE_SIZE_DEFAULT);
     /** Configured minimum cache size */
     public static final int PAGE_CACHE_SIZE_MINIMUM = 10;
+    /**
+     * System property name for the default replacement policy.
+     */
+    private static final String SQLJET_PAGE_CACHE_POLICY = "SQLJET.PAGE_CACHE_POLICY";
+    private static final SqlJetPageCachePolicy PAGE_CACHE_POLICY = SqlJetUtility.getEnumSysProp(SQLJET_PAGE_CACHE_POLICY,
+            SqlJetPageCachePolicy.LRU);
 
     /** List of dirty pages in LRU order */
     protected final List<ISqlJetPage> dirtyList = new LinkedList<>();
@@ -58,6 +67,8 @@ public class SqlJetPageCache implements ISqlJetPageCache {
     private int nMax = PAGE_CACHE_SIZE_DEFAULT;
     /** Size of every page in this cache */
     private int szPage;
+    /** Type of content buffers of new pages */
+    private volatile SqlJetMemoryBufferType bufferType = SqlJetPage.BUFFER_TYPE;
     /** True if pages are on backing store */
     final boolean bPurgeable;
     /** Call to try make a page clean */
@@ -83,10 +94,14 @@ public class SqlJetPageCache implements ISqlJetPageCache {
         if (PAGE_CACHE_SIZE >= PAGE_CACHE_SIZE_MINIMUM) {
 			nMax = PAGE_CACHE_SIZE;
 		}
+        pCache.setCapacity(nMax);
 
         this.szPage = szPage;
         this.bPurgeable = purgeable;
         this.xStress = stress;
+        if (purgeable) {
+            SqlJetUtility.memoryManager.addReclaimer(this, pCache.accounted);
+        }
     }
 
     /*
@@ -144,11 +159,23 @@ public class SqlJetPageCache implements ISqlJetPageCache {
             pPage = pCache.fetch(pgno, true);
         }
 
+        if (pPage != null && createFlag) {
+            SqlJetUtility.memoryManager.enforceSoftHeapLimit();
+        }
+        return pPage;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.ISqlJetPageCache#fetchNoSpill(int)
+     */
+    @Override
+    public ISqlJetPage fetchNoSpill(int pgno) {
+        assert pgno > 0;
+        final SqlJetPage pPage = pCache.fetch(pgno, true);
         if (pPage != null) {
-            if (0 == pPage.nRef) {
-                nRef++;
-            }
-            pPage.nRef++;
+            SqlJetUtility.memoryManager.enforceSoftHeapLimit();
         }
         return pPage;
     }
@@ -167,7 +194,7 @@ public class SqlJetPageCache implements ISqlJetPageCache {
             p.removeFromDirtyList();
         }
         nRef--;
-        pCache.unpin(p, true);
+        pCache.unpin((SqlJetPage) p, true);
     }
 
     /*
@@ -180,6 +207,8 @@ public class SqlJetPageCache implements ISqlJetPageCache {
         while (!dirtyList.isEmpty()) {
             dirtyList.iterator().next().makeClean();
         }
+        /* Pages changed by a large transaction may be released now. */
+        SqlJetUtility.memoryManager.enforceSoftHeapLimit();
     }
 
     /*
@@ -217,7 +246,8 @@ public class SqlJetPageCache implements ISqlJetPageCache {
      */
     @Override
 	public void close() {
-        pCache.clear();
+        SqlJetUtility.memoryManager.removeReclaimer(this);
+        pCache.free();
     }
 
     /*
@@ -280,6 +310,52 @@ public class SqlJetPageCache implements ISqlJetPageCache {
     @Override
 	public void setCacheSize(int mxPage) {
         nMax = mxPage;
+        pCache.setCapacity(mxPage);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.ISqlJetPageCache#getPolicy()
+     */
+    @Override
+    public SqlJetPageCachePolicy getPolicy() {
+        return pCache.getPolicy();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.ISqlJetPageCache#setPolicy(org.tmatesoft.sqljet
+     * .core.internal.SqlJetPageCachePolicy)
+     */
+    @Override
+    public void setPolicy(SqlJetPageCachePolicy policy) {
+        pCache.setPolicy(policy);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.ISqlJetPageCache#setBufferType(org.tmatesoft
+     * .sqljet.core.internal.SqlJetMemoryBufferType)
+     */
+    @Override
+    public void setBufferType(SqlJetMemoryBufferType bufferType) {
+        this.bufferType = bufferType;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetMemoryReclaimer#reclaim(long)
+     */
+    @Override
+    public long reclaim(long bytes) {
+        return pCache.reclaim(bytes);
     }
 
     /*
@@ -299,9 +375,27 @@ public class SqlJetPageCache implements ISqlJetPageCache {
     class PCache {
 
         /** Hash table for fast lookup by key */
-        private final Map<Integer, SqlJetPage> apHash = new HashMap<>();
+        private final SqlJetPageHash apHash = new SqlJetPageHash();
 
-        private final Set<Integer> unpinned = new HashSet<>();
+        /** Chooses pages to recycle */
+        private SqlJetPageReplacement replacement = SqlJetPageReplacement.create(PAGE_CACHE_POLICY, nMax);
+
+        /**
+         * Number of bytes reported to the memory manager, which gives them
+         * back if the cache is collected without being closed.
+         */
+        private final AtomicLong accounted = new AtomicLong();
+
+        /**
+         * Reports change of the number of cached pages to the memory manager.
+         */
+        private void account() {
+            final long size = (long) apHash.size() * szPage;
+            final long old = accounted.getAndSet(size);
+            if (size != old) {
+                SqlJetUtility.memoryManager.account(size - old);
+            }
+        }
 
         public synchronized int getPageCount() {
             return apHash.size();
@@ -346,18 +440,23 @@ public class SqlJetPageCache implements ISqlJetPageCache {
          * proceed to step 5.
          * 
          * 5. Otherwise, allocate and return a new page buffer.
+         * 
+         * The page returned is pinned while the lock is held, so that it
+         * can't be taken by another thread which releases memory.
          * @param pager 
          */
         public synchronized SqlJetPage fetch(final int key, final boolean createFlag) {
-            Integer keyObj = Integer.valueOf(key);
-			SqlJetPage pPage = apHash.get(keyObj);
+            SqlJetPage pPage = apHash.get(key);
 
             if (pPage != null || !createFlag) {
+                if (pPage != null) {
+                    pin(pPage);
+                }
                 return pPage;
             }
 
             /* Step 3 of header comment. */
-            if (bPurgeable && getPageCount() == nMax) {
+            if (bPurgeable && getPageCount() >= nMax && !recycle()) {
                 return null;
             }
 
@@ -365,9 +464,11 @@ public class SqlJetPageCache implements ISqlJetPageCache {
              * If a usable page buffer has still not been found, attempt to
              * allocate a new one.
              */
-            pPage = new SqlJetPage(szPage, key);
+            pPage = new SqlJetPage(szPage, key, bufferType);
             pPage.pCache = SqlJetPageCache.this;
-            apHash.put(keyObj, pPage);
+            apHash.put(key, pPage);
+            account();
+            pin(pPage);
 
             return pPage;
         }
@@ -391,15 +492,28 @@ public class SqlJetPageCache implements ISqlJetPageCache {
          * calls to xFetch().
          * 
          */
-        public synchronized void unpin(ISqlJetPage page, boolean discard) {
-            Integer pageNumber = Integer.valueOf(page.getPageNumber());
-            if (discard || bPurgeable && getPageCount() == nMax) {
-                apHash.remove(pageNumber);
+        public synchronized void unpin(SqlJetPage page, boolean discard) {
+            if (discard) {
+                apHash.remove(page.getPageNumber());
+                replacement.removed(page);
+                account();
             } else {
-                unpinned.add(pageNumber);
+                replacement.unpinned(page);
             }
         }
 
+        /**
+         * Pin a page for one more reference, telling the replacement policy
+         * if an unpinned page is used again.
+         */
+        private void pin(SqlJetPage page) {
+            if (0 == page.nRef) {
+                nRef++;
+                replacement.pinned(page);
+            }
+            page.nRef++;
+        }
+
         /**
          * The xRekey() method is used to change the key value associated with
          * the page passed as the second argument from oldKey to newKey. If the
@@ -409,9 +523,13 @@ public class SqlJetPageCache implements ISqlJetPageCache {
          * 
          */
         public synchronized void rekey(SqlJetPage page, int newKey) {
-            apHash.remove(Integer.valueOf(page.getPageNumber()));
-            apHash.put(Integer.valueOf(newKey), page);
+            apHash.remove(page.getPageNumber());
+            final SqlJetPage old = apHash.put(newKey, page);
+            if (null != old && old != page) {
+                replacement.removed(old);
+            }
             page.setPageNumber(newKey);
+            account();
         }
 
         /**
@@ -423,16 +541,8 @@ public class SqlJetPageCache implements ISqlJetPageCache {
          * 
          */
         public synchronized void truncate(int iLimit) {
-            List<Integer> l = new ArrayList<>();
-            for (Integer i : apHash.keySet()) {
-                if (i.intValue() >= iLimit) {
-                    l.add(i);
-                }
-            }
-            for (Integer i : l) {
-				apHash.remove(i);
-				unpinned.remove(i);
-			}
+            apHash.truncate(iLimit, replacement);
+            account();
         }
 
         /**
@@ -444,26 +554,76 @@ public class SqlJetPageCache implements ISqlJetPageCache {
          */
         public synchronized void clear() {
             apHash.clear();
-            unpinned.clear();
+            replacement.clear();
+            account();
         }
 
         /**
+         * Recycle one unpinned clean page, chosen by the replacement policy.
+         */
+        public synchronized void cleanUnpinned() {
+            recycle();
+        }
+
+        private boolean recycle() {
+            final SqlJetPage victim = replacement.victim();
+            if (null == victim) {
+                return false;
+            }
+            apHash.remove(victim.getPageNumber());
+            replacement.removed(victim);
+            account();
+            SqlJetUtility.memoryManager.free(victim.getData());
+            return true;
+        }
+
+        /**
+         * Recycle unpinned clean pages to release memory for other caches.
          * 
+         * @return number of bytes released.
+         */
+        public synchronized long reclaim(long bytes) {
+            long released = 0;
+            while (released < bytes && recycle()) {
+                released += szPage;
+            }
+            return released;
+        }
+
+        /**
+         * Discards all pages and returns buffers of pages which are not
+         * referenced to the pool, when the cache is closed.
          */
-        public void cleanUnpinned() {
-            final Iterator<Integer> i = unpinned.iterator();
-            while (i.hasNext()) {
-                final Integer next = i.next();
-                final SqlJetPage p = apHash.get(next);
-                if (p==null || p.getRefCount()>0) {
-                    i.remove();
-                    continue;
+        public synchronized void free() {
+            for (SqlJetPage page : apHash) {
+                if (page.nRef == 0) {
+                    SqlJetUtility.memoryManager.free(page.getData());
                 }
-                final Set<SqlJetPageFlags> flags = p.getFlags();
-                if (!flags.contains(SqlJetPageFlags.DIRTY) && !flags.contains(SqlJetPageFlags.NEED_SYNC)) {
-	                apHash.remove(next);
-	                i.remove();
-	                return;
+            }
+            clear();
+        }
+
+        public synchronized void setCapacity(int capacity) {
+            replacement.setCapacity(capacity);
+        }
+
+        public synchronized SqlJetPageCachePolicy getPolicy() {
+            return replacement.getPolicy();
+        }
+
+        /**
+         * Switch to another replacement policy, handing the unpinned pages
+         * over to it.
+         */
+        public synchronized void setPolicy(SqlJetPageCachePolicy policy) {
+            if (policy == replacement.getPolicy()) {
+                return;
+            }
+            replacement.clear();
+            replacement = SqlJetPageReplacement.create(policy, nMax);
+            for (SqlJetPage page : apHash) {
+                if (page.nRef == 0 && !page.getFlags().contains(SqlJetPageFlags.DIRTY)) {
+                    replacement.unpinned(page);
                 }
             }
         }
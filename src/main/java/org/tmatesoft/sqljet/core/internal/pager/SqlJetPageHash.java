@@ -0,0 +1,216 @@
+/**
+ * SqlJetPageHash.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash table of cached pages keyed by page number. Open addressing with
+ * linear probing over plain arrays, so lookups neither box page numbers nor
+ * allocate. Page numbers are always positive, zero marks an empty slot.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+class SqlJetPageHash implements Iterable<SqlJetPage> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private SqlJetPage[] pages = new SqlJetPage[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size;
+
+    /** No page with a larger number is in the table */
+    private int maxKey;
+
+    int size() {
+        return size;
+    }
+
+    SqlJetPage get(int key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            final int k = keys[i];
+            if (k == key) {
+                return pages[i];
+            } else if (k == 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return page previously stored with this key, or null.
+     */
+    SqlJetPage put(int key, SqlJetPage page) {
+        assert key > 0 && page != null;
+        int i = slot(key);
+        for (; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                final SqlJetPage old = pages[i];
+                pages[i] = page;
+                return old;
+            }
+        }
+        keys[i] = key;
+        pages[i] = page;
+        if (key > maxKey) {
+            maxKey = key;
+        }
+        if (++size > keys.length >> 1) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return removed page, or null.
+     */
+    SqlJetPage remove(int key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            final int k = keys[i];
+            if (k == key) {
+                final SqlJetPage page = pages[i];
+                delete(i);
+                return page;
+            } else if (k == 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Removes all pages with numbers greater than or equal to iLimit and
+     * reports them to the replacement policy. Looks up every number in that
+     * range when it is shorter than the table, which is the usual case as
+     * files are truncated by a few pages at a time.
+     */
+    void truncate(int iLimit, SqlJetPageReplacement replacement) {
+        if (iLimit > maxKey) {
+            return;
+        }
+        if (iLimit > 0 && maxKey - iLimit < keys.length) {
+            for (int key = iLimit; key <= maxKey && size > 0; key++) {
+                final SqlJetPage page = remove(key);
+                if (null != page) {
+                    replacement.removed(page);
+                }
+            }
+        } else {
+            for (int i = 0; i < keys.length && size > 0;) {
+                if (keys[i] != 0 && keys[i] >= iLimit) {
+                    final SqlJetPage page = pages[i];
+                    /* Another entry may be shifted into this slot. */
+                    delete(i);
+                    replacement.removed(page);
+                } else {
+                    i++;
+                }
+            }
+        }
+        maxKey = Math.max(0, iLimit - 1);
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            Arrays.fill(pages, null);
+            size = 0;
+        }
+        maxKey = 0;
+    }
+
+    @Override
+    public Iterator<SqlJetPage> iterator() {
+        return new Iterator<SqlJetPage>() {
+            private int i = advance(0);
+
+            private int advance(int from) {
+                while (from < keys.length && keys[from] == 0) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return i < keys.length;
+            }
+
+            @Override
+            public SqlJetPage next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final SqlJetPage page = pages[i];
+                i = advance(i + 1);
+                return page;
+            }
+        };
+    }
+
+    private int slot(int key) {
+        final int h = key * 0x9E3779B9;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    /**
+     * Empties a slot and moves back the following entries of its probe
+     * sequence, so lookups never need tombstones.
+     */
+    private void delete(int i) {
+        size--;
+        for (int j = (i + 1) & mask;; j = (j + 1) & mask) {
+            final int k = keys[j];
+            if (k == 0) {
+                break;
+            }
+            final int home = slot(k);
+            /* Entry at j may fill slot i unless its home lies in (i, j]. */
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = k;
+                pages[i] = pages[j];
+                i = j;
+            }
+        }
+        keys[i] = 0;
+        pages[i] = null;
+    }
+
+    private void resize(int capacity) {
+        final int[] oldKeys = keys;
+        final SqlJetPage[] oldPages = pages;
+        keys = new int[capacity];
+        pages = new SqlJetPage[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final int k = oldKeys[i];
+            if (k != 0) {
+                int j = slot(k);
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = k;
+                pages[j] = oldPages[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * SqlJetPageReplacement.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.util.Set;
+
+import org.tmatesoft.sqljet.core.internal.SqlJetPageCachePolicy;
+import org.tmatesoft.sqljet.core.internal.SqlJetPageFlags;
+
+/**
+ * Chooses which page of a full page cache is recycled to make room for a new
+ * one. The page cache reports every page which becomes unpinned, pinned again
+ * or removed, and asks for a victim when it has reached its size limit.
+ *
+ * Pages are linked into the lists of a policy through their own fields, so
+ * no memory is allocated on the paths above.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+abstract class SqlJetPageReplacement {
+
+    /** Maximum number of pages in the cache */
+    protected int capacity;
+
+    static SqlJetPageReplacement create(SqlJetPageCachePolicy policy, int capacity) {
+        final SqlJetPageReplacement replacement;
+        switch (policy) {
+        case CLOCK:
+            replacement = new SqlJetClockPageReplacement();
+            break;
+        default:
+            replacement = new SqlJetLruPageReplacement();
+        }
+        replacement.capacity = capacity;
+        return replacement;
+    }
+
+    abstract SqlJetPageCachePolicy getPolicy();
+
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * A page became unreferenced: its last reference was released, or it was
+     * made clean while unreferenced. The page may still be dirty or need a
+     * journal sync, then it must not be recycled until it is reported again.
+     */
+    abstract void unpinned(SqlJetPage page);
+
+    /**
+     * An unpinned page was referenced again.
+     */
+    abstract void pinned(SqlJetPage page);
+
+    /**
+     * A page was removed from the cache.
+     */
+    abstract void removed(SqlJetPage page);
+
+    /**
+     * @return page which should be recycled, or null if every page is in use
+     *         or dirty.
+     */
+    abstract SqlJetPage victim();
+
+    /**
+     * Forget all pages.
+     */
+    abstract void clear();
+
+    /**
+     * @return true if the page may be recycled.
+     */
+    static boolean isRecyclable(SqlJetPage page) {
+        if (page.nRef > 0) {
+            return false;
+        }
+        final Set<SqlJetPageFlags> flags = page.getFlags();
+        return !flags.contains(SqlJetPageFlags.DIRTY) && !flags.contains(SqlJetPageFlags.NEED_SYNC);
+    }
+
+    /**
+     * Doubly-linked list of pages, most recently added first.
+     */
+    static final class PageList {
+        SqlJetPage head;
+        SqlJetPage tail;
+        int size;
+
+        void addFirst(SqlJetPage page) {
+            assert null == page.lruList;
+            page.lruList = this;
+            page.lruPrev = null;
+            page.lruNext = head;
+            if (null != head) {
+                head.lruPrev = page;
+            } else {
+                tail = page;
+            }
+            head = page;
+            size++;
+        }
+
+        /**
+         * Inserts a page before another one, or at the end of the list if
+         * <code>next</code> is null.
+         */
+        void addBefore(SqlJetPage page, SqlJetPage next) {
+            if (next == head) {
+                addFirst(page);
+                return;
+            }
+            assert null == page.lruList && (null == next || next.lruList == this);
+            final SqlJetPage prev = null != next ? next.lruPrev : tail;
+            page.lruList = this;
+            page.lruPrev = prev;
+            page.lruNext = next;
+            prev.lruNext = page;
+            if (null != next) {
+                next.lruPrev = page;
+            } else {
+                tail = page;
+            }
+            size++;
+        }
+
+        void remove(SqlJetPage page) {
+            assert page.lruList == this;
+            if (null != page.lruPrev) {
+                page.lruPrev.lruNext = page.lruNext;
+            } else {
+                head = page.lruNext;
+            }
+            if (null != page.lruNext) {
+                page.lruNext.lruPrev = page.lruPrev;
+            } else {
+                tail = page.lruPrev;
+            }
+            page.lruList = null;
+            page.lruPrev = null;
+            page.lruNext = null;
+            size--;
+        }
+
+        void clear() {
+            while (null != head) {
+                remove(head);
+            }
+        }
+    }
+
+}
@@ -18,10 +18,15 @@
 package org.tmatesoft.sqljet.core.internal.pager;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -43,6 +48,7 @@ import org.tmatesoft.sqljet.core.internal.SqlJetFileAccesPermission;
 import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
 import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
 import org.tmatesoft.sqljet.core.internal.SqlJetLockType;
+import org.tmatesoft.sqljet.core.internal.SqlJetMemoryBufferType;
 import org.tmatesoft.sqljet.core.internal.SqlJetPageFlags;
 import org.tmatesoft.sqljet.core.internal.SqlJetPagerFlags;
 import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
@@ -51,6 +57,7 @@ import org.tmatesoft.sqljet.core.internal.SqlJetSafetyLevel;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.internal.fs.SqlJetFile;
 import org.tmatesoft.sqljet.core.internal.memory.SqlJetBytesUtility;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetMappedBuffer;
 import org.tmatesoft.sqljet.core.table.ISqlJetBusyHandler;
 
 /**
@@ -89,6 +96,46 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
     private static final boolean SQLJET_LOG_PAGER = SqlJetUtility.getBoolSysProp(SQLJET_LOG_PAGER_PROP, false);
 
+    /**
+     * Number of frames in the write-ahead log after which a commit tries to
+     * checkpoint the log. Zero or negative value disables automatic
+     * checkpoints.
+     */
+    private static final String SQLJET_WAL_AUTOCHECKPOINT_PROP = "SQLJET.WAL_AUTOCHECKPOINT";
+
+    private static final int SQLJET_WAL_AUTOCHECKPOINT = SqlJetUtility.getIntSysProp(SQLJET_WAL_AUTOCHECKPOINT_PROP, 1000);
+
+    /**
+     * Default maximum number of bytes of the database file which are memory
+     * mapped for reading. Zero disables memory mapping.
+     */
+    private static final String SQLJET_MMAP_SIZE_PROP = "SQLJET.MMAP_SIZE";
+
+    private static final long SQLJET_MMAP_SIZE = SqlJetUtility.getLongSysProp(SQLJET_MMAP_SIZE_PROP, 0);
+
+    /**
+     * Maximum number of adjacent pages written to the database file by one
+     * gathering write. Value less than two writes every page separately.
+     */
+    private static final String SQLJET_WRITE_BATCH_PAGES_PROP = "SQLJET.WRITE_BATCH_PAGES";
+
+    private static final int SQLJET_WRITE_BATCH_PAGES = SqlJetUtility.getIntSysProp(SQLJET_WRITE_BATCH_PAGES_PROP, 256);
+
+    /**
+     * Enables the log of changed pages by default, see {@link SqlJetChangeLog}.
+     */
+    private static final String SQLJET_CHANGE_LOG_PROP = "SQLJET.CHANGE_LOG";
+
+    private static final boolean SQLJET_CHANGE_LOG = SqlJetUtility.getBoolSysProp(SQLJET_CHANGE_LOG_PROP, false);
+
+    /**
+     * Size in bytes after which the log of changed pages is restarted.
+     */
+    private static final String SQLJET_CHANGE_LOG_SIZE_PROP = "SQLJET.CHANGE_LOG_SIZE";
+
+    private static final long SQLJET_CHANGE_LOG_SIZE = SqlJetUtility.getLongSysProp(SQLJET_CHANGE_LOG_SIZE_PROP,
+            1024 * 1024);
+
     static void PAGERTRACE(String format, Object... args) {
         if (SQLJET_LOG_PAGER) {
             SqlJetUtility.log(pagerLogger, format, args);
@@ -205,6 +252,60 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
     /** Name of the journal file */
     private final File journal;
 
+    /** Name of the write-ahead log file */
+    private final File walName;
+
+    /** Write-ahead log, if the pager reads or writes one */
+    private SqlJetWal wal;
+
+    /** True if the connection was switched out of WAL mode and has not yet recovered the log */
+    private boolean leavingWal;
+
+    /** True if the header of the database file is known to mark WAL mode */
+    private boolean walFormatMarked;
+
+    /** Change counter of the database file seen by the last WAL read */
+    private final ISqlJetMemoryPointer walDbFileVers = SqlJetUtility.memoryManager.allocatePtr(16);
+
+    /** Pages of the database file shared with other pagers, if enabled */
+    private SqlJetSharedPageCache sharedCache;
+
+    /** Change number of the shared cache which the page cache corresponds to */
+    private long sharedSeq = -1;
+
+    /** True if the database file was written by the current transaction */
+    private boolean dbFileChanged;
+
+    /** Incremented whenever content of the database seen by the pager may change */
+    protected long dataVersion;
+
+    /** Pages written by the commit in progress, to publish in the shared cache */
+    private Map<Integer, byte[]> sharedCommitPages;
+
+    /** Pages changed by the commit in progress */
+    private BitSet sharedCommitChanged;
+
+    /** Pages written into the database file to spill the cache */
+    private BitSet spilledPages;
+
+    /** Log of pages changed by commits, if enabled */
+    private SqlJetChangeLog changeLog;
+
+    /** Number of frames in the write-ahead log to checkpoint on commit */
+    private int walAutoCheckpoint = SQLJET_WAL_AUTOCHECKPOINT;
+
+    /** Number of frames in the write-ahead log to checkpoint before a write */
+    private int walCheckpointLimit;
+
+    /** Version of the database file the write transaction has started from */
+    private ISqlJetMemoryPointer changeLogFrom;
+
+    /** Maximum number of bytes to memory map */
+    private long mmapSize;
+
+    /** Memory mapping of the database file, or null */
+    private SqlJetMemoryMap mmap;
+
     /** Directory hold database and journal files */
     private final File directory;
 
@@ -334,6 +435,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
             this.directory = this.fileName.getParentFile();
             this.journal = new File(this.directory, this.fileName.getName() + JOURNAL);
+            this.walName = new File(this.directory, this.fileName.getName() + WAL);
 
             this.fd = this.fileSystem.open(this.fileName, this.type, this.permissions);
             this.readOnly = this.fd.getPermissions().contains(SqlJetFileOpenPermission.READONLY);
@@ -365,6 +467,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
              */
             this.directory = null;
             this.journal = null;
+            this.walName = null;
             this.readOnly = false;
             this.tempFile = true;
             this.state = SqlJetPagerState.EXCLUSIVE;
@@ -392,6 +495,12 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             journalMode = SqlJetPagerJournalMode.MEMORY;
         }
         setSafetyLevel(SqlJetSafetyLevel.NORMAL);
+
+        if (flags.contains(SqlJetPagerFlags.SHARED_CACHE) && !tempFile) {
+            sharedCache = SqlJetSharedPageCache.acquire(this.fileName);
+        }
+        setMmapSize(SQLJET_MMAP_SIZE);
+        setChangeLog(SQLJET_CHANGE_LOG);
     }
 
     /**
@@ -514,10 +623,42 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
      * .core.SqlJetPagerJournalMode)
      */
     @Override
-	public void setJournalMode(final SqlJetPagerJournalMode journalMode) {
+	public void setJournalMode(final SqlJetPagerJournalMode journalMode) throws SqlJetException {
+        if (journalMode == this.journalMode) {
+            return;
+        }
+        if (journalMode == SqlJetPagerJournalMode.WAL || this.journalMode == SqlJetPagerJournalMode.WAL) {
+            /*
+             * The write-ahead log can be entered or left only while there is
+             * no transaction, otherwise pages already read would not match the
+             * snapshot of the other mode.
+             */
+            SqlJetAssert.assertFalse(memDb || tempFile, SqlJetErrorCode.MISUSE,
+                    "Memory and temporary databases have no write-ahead log");
+            SqlJetAssert.assertFalse(readOnly, SqlJetErrorCode.READONLY);
+            SqlJetAssert.assertTrue(state == SqlJetPagerState.UNLOCK, SqlJetErrorCode.MISUSE,
+                    "Journal mode can't be changed to or from WAL within a transaction");
+            if (null != wal) {
+                /* The log is checkpointed by the next read transaction. */
+                try {
+                    wal.close();
+                } finally {
+                    wal = null;
+                }
+            }
+            leavingWal = journalMode != SqlJetPagerJournalMode.WAL;
+            walFormatMarked = false;
+        }
         this.journalMode = journalMode;
     }
 
+    /**
+     * @return true if commits are appended to the write-ahead log.
+     */
+    boolean walMode() {
+        return null != wal && journalMode == SqlJetPagerJournalMode.WAL;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -650,6 +791,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         if (null != errCode) {
 			return;
 		}
+        dataVersion++;
         if (pageCache != null) {
             pageCache.clear();
         }
@@ -685,6 +827,101 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         return pageCache.getCachesize();
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#setMmapSize(long)
+     */
+    @Override
+    public void setMmapSize(long mmapSize) {
+        this.mmapSize = Math.max(0, mmapSize);
+        if (this.mmapSize > 0 && !memDb && !tempFile && null != fd) {
+            if (null == mmap || mmap.getLimit() != this.mmapSize) {
+                mmap = new SqlJetMemoryMap(fd, this.mmapSize);
+            }
+            pageCache.setBufferType(SqlJetMemoryBufferType.MAPPED);
+        } else {
+            mmap = null;
+            /* Pages share images of the shared cache instead of copying them. */
+            pageCache.setBufferType(null != sharedCache ? SqlJetMemoryBufferType.MAPPED : SqlJetPage.BUFFER_TYPE);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#getMmapSize()
+     */
+    @Override
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#setChangeLog(boolean)
+     */
+    @Override
+    public void setChangeLog(boolean enabled) throws SqlJetException {
+        if (enabled && !memDb && !tempFile && null != fileName) {
+            if (null == changeLog) {
+                changeLog = new SqlJetChangeLog(fileSystem, new File(directory, fileName.getName() + CHANGES),
+                        SQLJET_CHANGE_LOG_SIZE);
+            }
+        } else if (null != changeLog) {
+            try {
+                changeLog.close();
+            } finally {
+                changeLog = null;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#isChangeLog()
+     */
+    @Override
+    public boolean isChangeLog() {
+        return null != changeLog;
+    }
+
+    @Override
+    public void setWalAutoCheckpoint(int frames) {
+        walAutoCheckpoint = frames;
+    }
+
+    @Override
+    public int getWalAutoCheckpoint() {
+        return walAutoCheckpoint;
+    }
+
+    @Override
+    public void setWalCheckpointLimit(int frames) {
+        walCheckpointLimit = frames;
+    }
+
+    @Override
+    public int getWalFrameCount() {
+        return walMode() ? wal.getFrameCount() : 0;
+    }
+
+    @Override
+    public boolean checkpoint() throws SqlJetException {
+        SqlJetAssert.assertTrue(state.compareTo(SqlJetPagerState.RESERVED) >= 0, SqlJetErrorCode.MISUSE);
+        if (!walMode() || wal.getFrameCount() == 0) {
+            return true;
+        }
+        if (!fd.lock(SqlJetLockType.EXCLUSIVE)) {
+            return false;
+        }
+        walCheckpoint();
+        PAGERTRACE("CHECKPOINT %s\n", PAGERID());
+        return true;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -704,6 +941,16 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         }
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.ISqlJetPager#getDataVersion()
+     */
+    @Override
+	public long getDataVersion() {
+        return dataVersion;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -717,6 +964,13 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
         if (dbSizeValid) {
             n = dbSize;
+        } else if (null != wal && wal.getDbSize() > 0) {
+            n = wal.getDbSize();
+            if (SqlJetPagerState.UNLOCK != state) {
+                dbSize = n;
+                dbFileSize = n;
+                dbSizeValid = true;
+            }
         } else {
             assert null != fd || tempFile;
             long l = 0;
@@ -864,6 +1118,9 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
              */
             journalHdr = -1;
             unlockAndRollback();
+            if (null != wal) {
+                closeWal();
+            }
         }
         PAGERTRACE("CLOSE %s\n", PAGERID());
         if (journalOpen) {
@@ -873,6 +1130,10 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         }
         pagesInJournal = null;
         pagesAlwaysRollback.clear();
+        mmap = null;
+        if (null != changeLog) {
+            changeLog.close();
+        }
         if (null != fd) {
 			fd.close();
 		}
@@ -885,6 +1146,10 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         if (pageCache != null) {
             pageCache.close();
         }
+        if (null != sharedCache) {
+            sharedCache.release();
+            sharedCache = null;
+        }
     }
 
     /*
@@ -1034,13 +1299,43 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         }
         final long offset = (long) (pageNumber - 1) * pageSize;
         final ISqlJetMemoryPointer data = page.getData();
-        fd.read(data, pageSize, offset);
+        final int frame = null != wal ? wal.findFrame(pageNumber) : 0;
+        if (frame > 0) {
+            wal.readFrame(frame, data);
+        } else if (mapDbPage(data, pageNumber)) {
+            PAGERTRACE("MAP %s page %d\n", PAGERID(), Integer.valueOf(pageNumber));
+        } else if (!useSharedCache() || !sharedCache.read(sharedSeq, pageNumber, data, pageSize)) {
+            fd.read(data, pageSize, offset);
+            if (useSharedCache()) {
+                sharedCache.write(sharedSeq, pageNumber, data, pageSize);
+            }
+        }
         if (1 == pageNumber) {
             dbFileVers.copyFrom(0, data, 24, dbFileVers.remaining());
         }
         PAGERTRACE("FETCH %s page %d\n", PAGERID(), Integer.valueOf(page.getPageNumber()));
     }
 
+    /**
+     * Serve the content of a page from the memory mapping of the database
+     * file. The page buffer copies the content when it is written, so the
+     * mapping is never modified. In WAL mode the database file is written by
+     * checkpoints while pages may be cached, so pages are always read there.
+     *
+     * @return false if the page has to be read.
+     */
+    private boolean mapDbPage(final ISqlJetMemoryPointer data, int pageNumber) {
+        if (null == mmap || null != wal || 0 != data.getPointer() || !(data.getBuffer() instanceof SqlJetMappedBuffer)) {
+            return false;
+        }
+        final ByteBuffer slice = mmap.page(pageNumber, pageSize);
+        if (null == slice) {
+            return false;
+        }
+        ((SqlJetMappedBuffer) data.getBuffer()).map(slice);
+        return true;
+    }
+
     /**
      * This function is called to obtain the shared lock required before data
      * may be read from the pager cache. If the shared lock has already been
@@ -1203,7 +1498,13 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
                 }
 
-                if (pageCache.getPageCount() > 0) {
+                if (null == wal && null != walName) {
+                    openWal();
+                }
+
+                if (null != wal) {
+                    beginWalRead();
+                } else if (pageCache.getPageCount() > 0 || null != sharedCache) {
                     /*
                      * The shared-lock has just been acquired on the database
                      * file and there are already pages in the cache (from a
@@ -1236,9 +1537,14 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                         dbFileVers.fill(dbFileVers.remaining(), (byte) 0);
                     }
 
-                    if (SqlJetUtility.memcmp(this.dbFileVers, dbFileVers, dbFileVers.remaining()) != 0) {
-                        reset();
+                    if (null != sharedCache) {
+                        beginSharedRead(dbFileVers);
+                    } else if (SqlJetUtility.memcmp(this.dbFileVers, dbFileVers, dbFileVers.remaining()) != 0) {
+                        revalidate(dbFileVers);
                     }
+                } else {
+                    /* Nothing is cached, so changes of the file are not checked */
+                    dataVersion++;
                 }
                 assert SqlJetPagerLockingMode.EXCLUSIVE == lockingMode || SqlJetPagerState.SHARED == state;
 
@@ -1249,6 +1555,310 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 		}
     }
 
+    /**
+     * Synchronizes the page cache with the shared cache at the beginning of a
+     * read transaction. If the database was changed by other pagers which use
+     * the shared cache, only the pages they have changed are dropped from the
+     * page cache. Otherwise the whole page cache is discarded if the database
+     * has changed.
+     *
+     * @param dbFileVers
+     *            version bytes read from the database file.
+     * @throws SqlJetException
+     */
+    private void beginSharedRead(ISqlJetMemoryPointer dbFileVers) throws SqlJetException {
+        final BitSet changed = new BitSet();
+        final long seq = sharedCache.synchronize(dbFileVers, pageSize, sharedSeq, changed);
+        if (SqlJetUtility.memcmp(this.dbFileVers, dbFileVers, dbFileVers.remaining()) != 0) {
+            if (seq < 0) {
+                revalidate(dbFileVers);
+            } else {
+                dataVersion++;
+                dropPages(changed);
+            }
+            this.dbFileVers.copyFrom(dbFileVers, dbFileVers.remaining());
+        }
+        sharedSeq = seq < 0 ? ~seq : seq;
+    }
+
+    /**
+     * Brings the page cache up to date with a database file which was changed
+     * by other connections. If the log of changed pages tells which pages
+     * have changed since the version of the cache, only they are dropped,
+     * otherwise the whole cache is discarded.
+     *
+     * @param dbFileVers
+     *            version bytes read from the database file.
+     * @throws SqlJetException
+     */
+    private void revalidate(ISqlJetMemoryPointer dbFileVers) throws SqlJetException {
+        final BitSet changed = null != changeLog ? changeLog.getChangedPages(this.dbFileVers, dbFileVers) : null;
+        if (null == changed) {
+            reset();
+        } else {
+            PAGERTRACE("REVALIDATE %s %d pages\n", PAGERID(), Integer.valueOf(changed.cardinality()));
+            dataVersion++;
+            dropPages(changed);
+            this.dbFileVers.copyFrom(dbFileVers, dbFileVers.remaining());
+        }
+    }
+
+    private void dropPages(BitSet changed) throws SqlJetException {
+        if (pageCache.getPageCount() > 0) {
+            for (int pgno = changed.nextSetBit(0); pgno >= 0; pgno = changed.nextSetBit(pgno + 1)) {
+                final ISqlJetPage page = pageCache.fetch(pgno, false);
+                if (null != page) {
+                    pageCache.drop(page);
+                }
+            }
+        }
+    }
+
+    /**
+     * The shared cache is bypassed in WAL mode, where the content of a page
+     * depends on the snapshot of the log, and after the current transaction
+     * has written pages into the database file.
+     */
+    private boolean useSharedCache() {
+        return null != sharedCache && null == wal && !dbFileChanged;
+    }
+
+    /**
+     * Publishes the pages written by a successful commit in the shared cache
+     * and in the log of changed pages. Called while the exclusive lock is
+     * still held.
+     */
+    private void publishCommit() {
+        if (null != sharedCache && null != sharedCommitPages) {
+            sharedSeq = sharedCache.commit(sharedSeq, dbFileVers, pageSize, sharedCommitPages, sharedCommitChanged,
+                    dbSize);
+        }
+        if (null != changeLog && null != changeLogFrom && null != sharedCommitChanged) {
+            try {
+                changeLog.append(changeLogFrom, dbFileVers, sharedCommitChanged);
+            } catch (SqlJetException e) {
+                /* The commit is done, readers will just discard their caches. */
+                PAGERTRACE("CHANGES %s %s\n", PAGERID(), e.getMessage());
+            }
+        }
+        sharedCommitPages = null;
+        sharedCommitChanged = null;
+    }
+
+    /**
+     * Starts a read transaction on the write-ahead log. Pages committed to the
+     * log by other connections since the previous read transaction are
+     * dropped from the cache. The whole cache is discarded if the log has been
+     * checkpointed into the database file in the meantime.
+     *
+     * @throws SqlJetException
+     */
+    private void beginWalRead() throws SqlJetException {
+        final ISqlJetMemoryPointer dbFileVers = SqlJetUtility.memoryManager.allocatePtr(walDbFileVers.remaining());
+        if (fd.fileSize() >= 24 + dbFileVers.remaining()) {
+            fd.read(dbFileVers, dbFileVers.remaining(), 24);
+        }
+        final boolean dbChanged = SqlJetUtility.memcmp(walDbFileVers, dbFileVers, dbFileVers.remaining()) != 0;
+        walDbFileVers.copyFrom(dbFileVers, dbFileVers.remaining());
+
+        final BitSet changed = wal.beginRead();
+        if (wal.getFrameCount() > 0 && wal.getPageSize() != pageSize) {
+            setPageSize(wal.getPageSize());
+        }
+        if (null == changed || dbChanged) {
+            reset();
+        } else if (!changed.isEmpty()) {
+            dataVersion++;
+            dropPages(changed);
+        }
+        PAGERTRACE("WAL READ %s %d frames\n", PAGERID(), Integer.valueOf(wal.getFrameCount()));
+    }
+
+    /**
+     * Opens the write-ahead log when a read transaction starts. The database
+     * is in WAL mode if the connection was switched into it, if bytes 18 and
+     * 19 of the database header are 2 (as SQLite marks it), or if other
+     * connection in this JVM uses the log. Then the connection uses the log
+     * as well, whatever journal mode it has. Otherwise a log left in place is
+     * recovered into the database file.
+     *
+     * @throws SqlJetException
+     */
+    private void openWal() throws SqlJetException {
+        final boolean exists = fileSystem.access(walName, SqlJetFileAccesPermission.EXISTS);
+        if (readOnly) {
+            if (exists) {
+                wal = new SqlJetWal(fileSystem, walName, pageSize, true);
+            }
+            return;
+        }
+        if (journalMode != SqlJetPagerJournalMode.WAL && !leavingWal
+                && (getFileFormat() == 2 || SqlJetWal.isRegistered(walName))) {
+            journalMode = SqlJetPagerJournalMode.WAL;
+        }
+        if (journalMode != SqlJetPagerJournalMode.WAL) {
+            if (exists || (leavingWal && getFileFormat() == 2)) {
+                recoverWal();
+            }
+            leavingWal = false;
+            return;
+        }
+        wal = new SqlJetWal(fileSystem, walName, pageSize, false);
+        wal.register();
+        if (!walFormatMarked) {
+            markWalFormat();
+        }
+    }
+
+    /**
+     * @return file format version from byte 18 of the database header, or 0
+     *         if the database file has no header yet.
+     * @throws SqlJetException
+     */
+    private int getFileFormat() throws SqlJetException {
+        if (fd.fileSize() < 100) {
+            return 0;
+        }
+        final ISqlJetMemoryPointer version = SqlJetUtility.memoryManager.allocatePtr(2);
+        fd.read(version, 2, 18);
+        return version.getByteUnsigned(0);
+    }
+
+    /**
+     * Writes file format version into bytes 18 and 19 of the header of the
+     * database file, and increments the change counter so other connections
+     * drop their cached copy of the first page. The exclusive lock must be
+     * held.
+     *
+     * @param version
+     *            1 for rollback journal modes, 2 for WAL mode.
+     * @throws SqlJetException
+     */
+    private void setFileFormat(int version) throws SqlJetException {
+        if (fd.fileSize() < 100) {
+            return;
+        }
+        final ISqlJetMemoryPointer header = SqlJetUtility.memoryManager.allocatePtr(28);
+        fd.read(header, 28, 0);
+        if (header.getByteUnsigned(18) == version && header.getByteUnsigned(19) == version) {
+            return;
+        }
+        header.putByteUnsigned(18, (byte) version);
+        header.putByteUnsigned(19, (byte) version);
+        header.putIntUnsigned(24, header.getInt(24) + 1);
+        fd.write(header, 28, 0);
+        if (!noSync) {
+            fd.sync();
+        }
+    }
+
+    /**
+     * Marks WAL mode in the header of the database file. Frames of the log
+     * mark it in the first page as well, but that reaches the database file
+     * only with a checkpoint, so until then the file itself is marked here.
+     * This needs the exclusive lock which is only tried: while other
+     * connections read, marking is retried by the next read transaction.
+     *
+     * @throws SqlJetException
+     */
+    private void markWalFormat() throws SqlJetException {
+        if (fd.fileSize() < 100) {
+            return;
+        }
+        if (getFileFormat() == 2) {
+            walFormatMarked = true;
+            return;
+        }
+        final boolean locked = fd.lock(SqlJetLockType.EXCLUSIVE);
+        try {
+            if (locked) {
+                setFileFormat(2);
+                walFormatMarked = true;
+            }
+        } finally {
+            if (!locked || !exclusiveMode()) {
+                fd.unlock(SqlJetLockType.SHARED);
+            } else {
+                state = SqlJetPagerState.EXCLUSIVE;
+            }
+        }
+    }
+
+    /**
+     * Copies pages from a write-ahead log left by a connection in WAL mode
+     * into the database file, deletes the log and marks rollback journal mode
+     * in the database header. This is the analogue of the hot journal
+     * rollback for connections which do not use the log. The log is not
+     * touched while other connection in this JVM uses it.
+     *
+     * @throws SqlJetException
+     */
+    private void recoverWal() throws SqlJetException {
+        if (SqlJetWal.isRegistered(walName)) {
+            throw new SqlJetException(SqlJetErrorCode.BUSY, "Write-ahead log is used by other connection");
+        }
+        if (SqlJetPagerState.EXCLUSIVE.compareTo(state) > 0) {
+            if (!fd.lock(SqlJetLockType.EXCLUSIVE)) {
+                fd.unlock(SqlJetLockType.SHARED);
+                throw new SqlJetException(SqlJetErrorCode.BUSY);
+            }
+            state = SqlJetPagerState.EXCLUSIVE;
+        }
+        try {
+            if (fileSystem.access(walName, SqlJetFileAccesPermission.EXISTS)) {
+                final SqlJetWal log = new SqlJetWal(fileSystem, walName, pageSize, false);
+                try {
+                    log.beginRead();
+                    log.checkpoint(fd, !noSync);
+                } finally {
+                    log.close();
+                }
+                fileSystem.delete(walName, false);
+            }
+            setFileFormat(1);
+            reset();
+        } finally {
+            if (!exclusiveMode()) {
+                fd.unlock(SqlJetLockType.SHARED);
+                state = SqlJetPagerState.SHARED;
+            }
+        }
+    }
+
+    /**
+     * Checkpoints and deletes the write-ahead log when the pager is closed,
+     * provided that no other connection uses the database at the moment. The
+     * log is kept while other connection in this JVM has it open, since that
+     * connection would go on appending to the deleted file. If the checkpoint
+     * fails, the log stays in place for the next connection and the error is
+     * thrown.
+     */
+    private void closeWal() throws SqlJetException {
+        try {
+            if (walMode() && SqlJetPagerState.UNLOCK == state) {
+                try {
+                    if (fd.lock(SqlJetLockType.SHARED) && fd.lock(SqlJetLockType.RESERVED)
+                            && fd.lock(SqlJetLockType.EXCLUSIVE)) {
+                        wal.beginRead();
+                        wal.checkpoint(fd, !noSync);
+                        wal.close();
+                        if (!SqlJetWal.isRegistered(walName)) {
+                            fileSystem.delete(walName, false);
+                        }
+                    }
+                } finally {
+                    fd.unlock(SqlJetLockType.NONE);
+                }
+            }
+        } finally {
+            try {
+                wal.close();
+            } finally {
+                wal = null;
+            }
+        }
+    }
+
     /**
      *
      * Playback the journal and thus restore the database file to the state it
@@ -1303,6 +1913,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
      * @throws SqlJetException
      */
     private void playback(boolean isHot) throws SqlJetException {
+        dataVersion++;
 		try {
 			int nRec = -1; /* Number of Records in the journal */
 			int mxPg = 0; /* Size of the original file in pages */
@@ -1560,6 +2171,11 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         if (state.compareTo(SqlJetPagerState.RESERVED) < 0) {
             return;
         }
+        dbFileChanged = false;
+        spilledPages = null;
+        changeLogFrom = null;
+        sharedCommitPages = null;
+        sharedCommitChanged = null;
         if (journalOpen) {
             pagesInJournal = null;
             pagesAlwaysRollback.clear();
@@ -1806,6 +2422,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                 && (pPg == null || !pPg.getFlags().contains(SqlJetPageFlags.NEED_SYNC)) && null != fd) {
             final long ofst = (pgno - 1) * (long)pageSize;
             fd.write(aData, pageSize, ofst);
+            dbFileChanged = true;
             if (pgno > dbFileSize) {
                 dbFileSize = pgno;
             }
@@ -2165,6 +2782,89 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         return null;
     }
 
+    @Override
+    public void prefetch(final int[] pageNumbers) throws SqlJetException {
+        if (memDb || null == fd || null != mmap || useSharedCache() || SqlJetPagerState.UNLOCK == state
+                || null != errCode) {
+            return;
+        }
+        final int nMax = getPageCount();
+        final int[] sorted = pageNumbers.clone();
+        Arrays.sort(sorted);
+        final List<ISqlJetPage> run = new ArrayList<>();
+        int prev = 0;
+        for (final int pageNumber : sorted) {
+            if (pageNumber == prev) {
+                continue;
+            }
+            if (pageNumber != prev + 1) {
+                readPageRun(run);
+            }
+            prev = pageNumber;
+            if (pageNumber <= 1 || pageNumber > nMax || pageNumber == ISqlJetFile.PENDING_BYTE / pageSize + 1
+                    || (null != wal && wal.findFrame(pageNumber) > 0)) {
+                readPageRun(run);
+                continue;
+            }
+            final ISqlJetPage page = pageCache.fetchNoSpill(pageNumber);
+            if (null == page) {
+                break;
+            }
+            if (null != page.getPager()) {
+                page.unref();
+                readPageRun(run);
+                continue;
+            }
+            page.setPager(this);
+            run.add(page);
+        }
+        readPageRun(run);
+    }
+
+    /**
+     * Reads pages with adjacent numbers which were just created in the cache
+     * by {@link #prefetch(int[])}, unpins them and clears the list. Pages
+     * which could not be read completely are dropped from the cache.
+     *
+     * @param run
+     *            pages sorted by page number without gaps.
+     * @throws SqlJetException
+     */
+    private void readPageRun(List<ISqlJetPage> run) throws SqlJetException {
+        if (run.isEmpty()) {
+            return;
+        }
+        final long offset = (long) (run.get(0).getPageNumber() - 1) * pageSize;
+        final int read;
+        try {
+            if (run.size() == 1) {
+                read = fd.read(run.get(0).getData(), pageSize, offset);
+            } else {
+                final ISqlJetMemoryPointer[] buffers = new ISqlJetMemoryPointer[run.size()];
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i] = run.get(i).getData();
+                }
+                read = fd.read(buffers, pageSize, offset);
+            }
+        } catch (SqlJetIOException e) {
+            for (ISqlJetPage page : run) {
+                pageCache.drop(page);
+            }
+            run.clear();
+            throw e;
+        }
+        for (int i = 0; i < run.size(); i++) {
+            final ISqlJetPage page = run.get(i);
+            if (read >= (i + 1) * pageSize) {
+                PAGERTRACE("PREFETCH %s page %d\n", PAGERID(), Integer.valueOf(page.getPageNumber()));
+                page.unref();
+            } else {
+                pageCache.drop(page);
+            }
+        }
+        run.clear();
+    }
+
     @Override
 	public void truncateImage(int pagesNumber) {
         assert dbSizeValid;
@@ -2200,6 +2900,9 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             newSize = (long)pageSize * pageNumber;
             if (currentSize != newSize) {
                 if (currentSize > newSize) {
+                    if (null != mmap) {
+                        mmap.reset();
+                    }
                     fd.truncate(newSize);
                 } else {
                     final ISqlJetMemoryPointer b = SqlJetUtility.memoryManager.allocatePtr(1);
@@ -2341,9 +3044,29 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             assert !memDb;
             if (fd.lock(SqlJetLockType.RESERVED)) {
                 state = SqlJetPagerState.RESERVED;
+                if (walMode()) {
+                    /*
+                     * Writers of the log do not need an exclusive lock, but
+                     * they must not build on a snapshot which is not the
+                     * latest one.
+                     */
+                    if (!wal.beginWrite(pageSize)) {
+                        fd.unlock(SqlJetLockType.SHARED);
+                        state = SqlJetPagerState.SHARED;
+                        throw new SqlJetException(SqlJetErrorCode.BUSY);
+                    }
+                    walCheckpointLimit();
+                    dirtyCache = false;
+                    PAGERTRACE("TRANSACTION %s WAL\n", PAGERID());
+                    return;
+                }
                 if (exclusive) {
                     waitOnLock(SqlJetLockType.EXCLUSIVE);
                 }
+                if (null != changeLog) {
+                    changeLogFrom = SqlJetUtility.memoryManager.allocatePtr(dbFileVers.remaining());
+                    changeLogFrom.copyFrom(dbFileVers, dbFileVers.remaining());
+                }
                 dirtyCache = false;
                 PAGERTRACE("TRANSACTION %s\n", PAGERID());
                 if (useJournal && !tempFile && journalMode != SqlJetPagerJournalMode.OFF) {
@@ -2555,6 +3278,12 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                  */
                 incrChangeCounter();
 
+                if (walMode()) {
+                    walCommit(!this.noSync && !noSync);
+                    state = SqlJetPagerState.SYNCED;
+                    return;
+                }
+
                 if (journalMode != SqlJetPagerJournalMode.OFF) {
 
                     if (dbSize < dbOrigSize) {
@@ -2581,7 +3310,11 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                 }
 
                 /* Write all dirty pages to the database file */
-                writePageList(pageCache.getDirtyList());
+                final List<ISqlJetPage> dirtyList = pageCache.getDirtyList();
+                writePageList(dirtyList);
+                if (null != sharedCache || null != changeLog) {
+                    collectCommit(dirtyList);
+                }
                 /*
                  * The error might have left the dirty list all fouled up here,
                  * but that does not matter because if the if the dirty list did
@@ -2619,6 +3352,167 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         }
     }
 
+    /**
+     * Remembers the pages written by the commit in progress, so that
+     * {@link #commitPhaseTwo()} can publish them in the shared cache and in
+     * the log of changed pages. Pages spilled to the database file earlier in
+     * the transaction are not known at this point any more, so they are only
+     * marked as changed.
+     *
+     * @param dirtyList
+     *            pages written to the database file by the commit.
+     * @throws SqlJetException
+     */
+    private void collectCommit(List<ISqlJetPage> dirtyList) throws SqlJetException {
+        sharedCommitPages = null != sharedCache ? new HashMap<>() : null;
+        sharedCommitChanged = new BitSet();
+        for (ISqlJetPage page : dirtyList) {
+            final int pgno = page.getPageNumber();
+            if (pgno <= dbSize && !page.getFlags().contains(SqlJetPageFlags.DONT_WRITE)) {
+                if (null != sharedCommitPages) {
+                    final byte[] image = SqlJetSharedPageCache.copy(page.getData(), pageSize);
+                    sharedCommitPages.put(Integer.valueOf(pgno), image);
+                    /* The image has the same content, the private copy can go. */
+                    SqlJetSharedPageCache.share(page.getData(), image);
+                }
+                sharedCommitChanged.set(pgno);
+            }
+        }
+        if (null != spilledPages) {
+            sharedCommitChanged.or(spilledPages);
+        }
+        final int nFile = Math.max(dbFileSize, dbOrigSize);
+        if (dbSize < nFile) {
+            sharedCommitChanged.set(dbSize + 1, nFile + 1);
+        }
+    }
+
+    /**
+     * Appends all dirty pages to the write-ahead log, the last of them as the
+     * commit frame.
+     *
+     * @param sync
+     *            true if the log should be synced.
+     * @throws SqlJetException
+     */
+    private void walCommit(boolean sync) throws SqlJetException {
+        final List<ISqlJetPage> pages = new ArrayList<>();
+        for (ISqlJetPage page : pageCache.getDirtyList()) {
+            if (page.getPageNumber() <= dbSize && !page.getFlags().contains(SqlJetPageFlags.DONT_WRITE)) {
+                pages.add(page);
+                if (page.getPageNumber() == 1) {
+                    dbFileVers.copyFrom(0, page.getData(), 24, dbFileVers.remaining());
+                }
+            }
+        }
+        if (pages.isEmpty() && wal.hasUncommittedFrames()) {
+            /* All changes were spilled to the log, but a commit frame is needed. */
+            final ISqlJetPage page = getPage(1);
+            try {
+                wal.writeFrames(Collections.singletonList(page), dbSize, true, sync);
+            } finally {
+                page.unref();
+            }
+        } else if (!pages.isEmpty()) {
+            wal.writeFrames(pages, dbSize, true, sync);
+        }
+        pageCache.cleanAll();
+    }
+
+    /**
+     * Tries to checkpoint the write-ahead log once it grows beyond the
+     * configured number of frames. This needs the exclusive lock; if other
+     * connections are reading, the checkpoint is attempted after a later
+     * commit instead.
+     */
+    private void walAutoCheckpoint() {
+        if (walAutoCheckpoint > 0 && wal.getFrameCount() >= walAutoCheckpoint) {
+            try {
+                if (fd.lock(SqlJetLockType.EXCLUSIVE)) {
+                    walCheckpoint();
+                }
+            } catch (SqlJetException e) {
+                PAGERTRACE("CHECKPOINT %s failed: %s\n", PAGERID(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checkpoints the write-ahead log at the start of a write transaction once
+     * it has reached its limit. Unlike {@link #walAutoCheckpoint()} this waits
+     * through the busy handler until other connections stop reading, and
+     * fails the transaction if they don't, so the log can't grow without
+     * bound.
+     *
+     * @throws SqlJetException
+     */
+    private void walCheckpointLimit() throws SqlJetException {
+        if (walCheckpointLimit <= 0 || wal.getFrameCount() < walCheckpointLimit) {
+            return;
+        }
+        int n = 0;
+        while (!fd.lock(SqlJetLockType.EXCLUSIVE)) {
+            if (null == busyHandler || !busyHandler.call(n++)) {
+                fd.unlock(SqlJetLockType.SHARED);
+                state = SqlJetPagerState.SHARED;
+                throw new SqlJetException(SqlJetErrorCode.BUSY,
+                        "Write-ahead log has reached its limit while other connections are reading");
+            }
+        }
+        walCheckpoint();
+        PAGERTRACE("CHECKPOINT %s at limit\n", PAGERID());
+    }
+
+    /**
+     * Copies the write-ahead log into the database file. The exclusive lock
+     * must be held.
+     *
+     * @throws SqlJetException
+     */
+    private void walCheckpoint() throws SqlJetException {
+        wal.checkpoint(fd, !noSync);
+        dbFileSize = dbSize;
+        if (fd.fileSize() >= 24 + walDbFileVers.remaining()) {
+            fd.read(walDbFileVers, walDbFileVers.remaining(), 24);
+        }
+    }
+
+    /**
+     * Discards changes of the write transaction in WAL mode. Frames spilled to
+     * the log are forgotten and cached pages which were changed are reloaded.
+     *
+     * @throws SqlJetException
+     */
+    private void walRollback() throws SqlJetException {
+        final BitSet pages = wal.rollbackWrite();
+        for (ISqlJetPage page : pageCache.getDirtyList()) {
+            pages.set(page.getPageNumber());
+        }
+        dbSizeValid = false;
+        final int nPage = getPageCount();
+        for (int pgno = pages.nextSetBit(0); pgno >= 0; pgno = pages.nextSetBit(pgno + 1)) {
+            final ISqlJetPage page = lookup(pgno);
+            if (null == page) {
+                continue;
+            }
+            if (page.getRefCount() == 1) {
+                /* Nobody else uses the page, so it is simply forgotten. */
+                pageCache.drop(page);
+                continue;
+            }
+            if (pgno > nPage) {
+                page.getData().fill(pageSize, (byte) 0);
+            } else {
+                readDbPage(page, pgno);
+                if (null != reiniter) {
+                    reiniter.pageCallback(page);
+                }
+            }
+            page.makeClean();
+            page.release();
+        }
+    }
+
     /**
      * Given a list of pages (connected by the PgHdr.pDirty pointer) write every
      * one of those pages out to the database file. No calls are made to the
@@ -2659,6 +3553,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         	fd = openTemp(type);
         }*/
 
+        final List<ISqlJetPage> run = new ArrayList<>();
         for (ISqlJetPage page : pList) {
             /*
              * If there are dirty pages in the page cache with page numbers
@@ -2667,24 +3562,56 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
              * Do not write any such pages to the file.
              */
             if (page.getPageNumber() <= dbSize && !page.getFlags().contains(SqlJetPageFlags.DONT_WRITE)) {
-
-                final long offset = (long) (page.getPageNumber() - 1) * pageSize;
                 PAGERTRACE("STORE %s page %d\n", PAGERID(), Integer.valueOf(page.getPageNumber()));
 
-                ISqlJetMemoryPointer pData = page.getData();
-
-                fd.write(pData, pageSize, offset);
-                if (page.getPageNumber() == 1) {
-                    dbFileVers.copyFrom(0, pData, 24, dbFileVers.remaining());
-                }
-                if (page.getPageNumber() > dbFileSize) {
-                    dbFileSize = page.getPageNumber();
+                /*
+                 * The dirty list is sorted by page number, so adjacent pages
+                 * are written by one gathering write.
+                 */
+                if (!run.isEmpty() && (run.size() >= SQLJET_WRITE_BATCH_PAGES
+                        || run.get(run.size() - 1).getPageNumber() + 1 != page.getPageNumber())) {
+                    writePageRun(run);
                 }
+                run.add(page);
             } else {
                 PAGERTRACE("NOSTORE %s page %d\n", PAGERID(), Integer.valueOf(page.getPageNumber()));
             }
         }
+        writePageRun(run);
+    }
 
+    /**
+     * Writes pages with adjacent numbers to the database file and clears the
+     * list.
+     *
+     * @param run
+     *            pages sorted by page number without gaps.
+     * @throws SqlJetException
+     */
+    private void writePageRun(List<ISqlJetPage> run) throws SqlJetException {
+        if (run.isEmpty()) {
+            return;
+        }
+        final ISqlJetPage first = run.get(0);
+        final long offset = (long) (first.getPageNumber() - 1) * pageSize;
+        if (run.size() == 1) {
+            fd.write(first.getData(), pageSize, offset);
+        } else {
+            final ISqlJetMemoryPointer[] buffers = new ISqlJetMemoryPointer[run.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = run.get(i).getData();
+            }
+            fd.write(buffers, pageSize, offset);
+        }
+        dbFileChanged = true;
+        if (first.getPageNumber() == 1) {
+            dbFileVers.copyFrom(0, first.getData(), 24, dbFileVers.remaining());
+        }
+        final int last = run.get(run.size() - 1).getPageNumber();
+        if (last > dbFileSize) {
+            dbFileSize = last;
+        }
+        run.clear();
     }
 
     /**
@@ -2729,6 +3656,13 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 	            int changeCounter = dbFileVers.getInt() + 1;
 	            page.getData().putIntUnsigned(24, changeCounter);
 
+	            /* Bytes 18 and 19 tell other connections whether the log is used. */
+	            final byte version = (byte) (walMode() ? 2 : 1);
+	            if (page.getData().getByteUnsigned(18) <= 2) {
+	                page.getData().putByteUnsigned(18, version);
+	                page.getData().putByteUnsigned(19, version);
+	            }
+
             /* Release the page reference. */
             }
             finally {
@@ -2753,6 +3687,11 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         PAGERTRACE("COMMIT %s\n", PAGERID());
 
         assert state == SqlJetPagerState.SYNCED || memDb || !dirtyCache;
+        if (walMode()) {
+            walAutoCheckpoint();
+        } else {
+            publishCommit();
+        }
         try {
             endTransaction(false);
         } catch (SqlJetException e) {
@@ -2763,7 +3702,16 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
     @Override
 	public void rollback() throws SqlJetException {
         PAGERTRACE("ROLLBACK %s\n", PAGERID());
-        if (!dirtyCache || !journalOpen) {
+        dataVersion++;
+        if (walMode() && state.compareTo(SqlJetPagerState.RESERVED) >= 0) {
+            try {
+                walRollback();
+            } catch (SqlJetException e) {
+                error(e);
+            } finally {
+                endTransaction(false);
+            }
+        } else if (!dirtyCache || !journalOpen) {
             endTransaction(false);
         } else if (null != errCode && errCode != SqlJetErrorCode.FULL) {
             if (state.compareTo(SqlJetPagerState.EXCLUSIVE) >= 0) {
@@ -2822,7 +3770,13 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         }
 
         assert pPg.getFlags().contains(SqlJetPageFlags.DIRTY);
-        if (errCode == null) {
+        if (errCode == null && walMode()) {
+            try {
+                wal.writeFrames(Collections.singletonList(pPg), 0, false, false);
+            } catch (SqlJetException e) {
+                error(e);
+            }
+        } else if (errCode == null) {
             try {
                 if (pPg.getFlags().contains(SqlJetPageFlags.NEED_SYNC)) {
                     syncJournal();
@@ -2832,6 +3786,12 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                     }
                 }
                 writePageList(Collections.singletonList(pPg));
+                if (null != sharedCache || null != changeLog) {
+                    if (null == spilledPages) {
+                        spilledPages = new BitSet();
+                    }
+                    spilledPages.set(pPg.getPageNumber());
+                }
             } catch (SqlJetException e) {
                 error(e);
             }
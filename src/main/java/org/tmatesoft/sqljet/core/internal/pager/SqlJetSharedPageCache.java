@@ -0,0 +1,357 @@
+/**
+ * SqlJetSharedPageCache.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryReclaimer;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetMappedBuffer;
+
+/**
+ * Process-wide cache of committed page images of a database file, shared by
+ * all pagers which have the file open with the shared cache enabled.
+ *
+ * Every pager still keeps its own page cache, because the b-tree layer
+ * changes cached pages in place. The shared cache sits below the private
+ * caches and holds one read-only image of each cached page: a page missing
+ * in the private cache is served from the shared image instead of being read
+ * from the file, and every page read from the file is published here for
+ * the other pagers.
+ *
+ * Pagers using the shared cache allocate {@link SqlJetMappedBuffer} page
+ * buffers, which are mapped onto the shared image instead of holding a copy.
+ * The first write to a page copies the image into a private array of the
+ * page, so the image itself never changes. Pages written by a commit are
+ * published as new images and mapped onto them again. So the content of a
+ * page read by several connections is held once, and a connection holds
+ * private copies only of the pages changed by its current transaction.
+ * Buffers of other types get a copy of the image.
+ *
+ * The content is valid for one version of the database file, identified by
+ * the 16 bytes at offset 24 of the file header. A pager which commits
+ * publishes the pages it has written together with the new version, and the
+ * commit is recorded in a short log of changed page numbers. A pager which
+ * starts a read transaction after commits of other pagers drops only the
+ * pages changed since its previous transaction from its private cache. If
+ * the file was changed by somebody who does not use this cache, the cache is
+ * cleared and the pagers discard their private caches as before.
+ *
+ * Pages may only be read or published while the file is locked by the
+ * caller, so that the file cannot change in the meantime.
+ *
+ * Memory of the cached pages is accounted by the memory manager like memory
+ * of the private caches, and the least recently used pages are dropped when
+ * the soft heap limit is exceeded. Private caches account the full page size
+ * for mapped pages too, so the accounted memory is an upper bound. An image
+ * dropped from the shared cache stays in memory while pages mapped onto it
+ * are cached.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+class SqlJetSharedPageCache implements ISqlJetMemoryReclaimer {
+
+    /**
+     * System property name for the maximum number of pages in a shared
+     * cache.
+     */
+    private static final String SQLJET_SHARED_CACHE_SIZE = "SQLJET.SHARED_CACHE_SIZE";
+    private static final int SHARED_CACHE_SIZE = SqlJetUtility.getIntSysProp(SQLJET_SHARED_CACHE_SIZE, 10000);
+
+    /** Number of commits remembered for page-level invalidation */
+    private static final int CHANGE_LOG_SIZE = 64;
+
+    private static final Map<File, SqlJetSharedPageCache> caches = new HashMap<>();
+
+    /** Canonical name of the database file */
+    private final File fileName;
+
+    /** Number of pagers using this cache */
+    private int nRef;
+
+    /** Size of cached pages */
+    private int pageSize;
+
+    /** Version of the database file the cached pages belong to */
+    private final byte[] dbFileVers = new byte[16];
+
+    /** Number of the last change of the cache content */
+    private long seq;
+
+    /** First change number from which the change log is complete */
+    private long logStart;
+
+    /** Page numbers changed by the last commits, oldest first */
+    private final Deque<Change> changeLog = new ArrayDeque<>();
+
+    /** Number of bytes reported to the memory manager */
+    private final AtomicLong accounted = new AtomicLong();
+
+    /** Page images in the least recently used order */
+    private final LinkedHashMap<Integer, byte[]> pages = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > SHARED_CACHE_SIZE;
+        }
+    };
+
+    private static class Change {
+        final long seq;
+        final BitSet pages;
+
+        Change(long seq, BitSet pages) {
+            this.seq = seq;
+            this.pages = pages;
+        }
+    }
+
+    private SqlJetSharedPageCache(File fileName) {
+        this.fileName = fileName;
+        SqlJetUtility.memoryManager.addReclaimer(this, accounted);
+    }
+
+    /**
+     * Returns the shared cache of a database file, creating it if the file
+     * is not opened by other pagers. Every call must be paired with
+     * {@link #release()}.
+     *
+     * @param file
+     *            database file.
+     * @return shared cache of the file.
+     */
+    static SqlJetSharedPageCache acquire(File file) {
+        File key;
+        try {
+            key = file.getCanonicalFile();
+        } catch (IOException e) {
+            key = file.getAbsoluteFile();
+        }
+        synchronized (caches) {
+            SqlJetSharedPageCache cache = caches.get(key);
+            if (null == cache) {
+                cache = new SqlJetSharedPageCache(key);
+                caches.put(key, cache);
+            }
+            cache.nRef++;
+            return cache;
+        }
+    }
+
+    /**
+     * Releases a reference obtained from {@link #acquire(File)}. The cache is
+     * discarded when the last pager releases it.
+     */
+    void release() {
+        synchronized (caches) {
+            if (--nRef == 0) {
+                caches.remove(fileName);
+                SqlJetUtility.memoryManager.removeReclaimer(this);
+                discard();
+            }
+        }
+    }
+
+    /**
+     * Brings the cache in line with the current version of the database file
+     * and tells a pager what it has to drop from its private cache.
+     *
+     * @param fileVers
+     *            version bytes read from the database file.
+     * @param pageSize
+     *            page size of the pager.
+     * @param since
+     *            change number the private cache of the pager corresponds to.
+     * @param changed
+     *            receives numbers of pages changed since <code>since</code>.
+     * @return current change number, or negative number if the pages changed
+     *         are not known and the whole private cache must be discarded.
+     *         The current change number is then its complement.
+     */
+    synchronized long synchronize(ISqlJetMemoryPointer fileVers, int pageSize, long since, BitSet changed) {
+        if (this.pageSize != pageSize || !versionEquals(fileVers)) {
+            /* The file was changed by somebody who does not use this cache. */
+            clear();
+            this.pageSize = pageSize;
+            fileVers.getBuffer().getBytes(fileVers.getPointer(), dbFileVers, 0, dbFileVers.length);
+        }
+        if (since < logStart) {
+            return ~seq;
+        }
+        for (Change change : changeLog) {
+            if (change.seq > since) {
+                changed.or(change.pages);
+            }
+        }
+        return seq;
+    }
+
+    /**
+     * Serves a page from the cache.
+     *
+     * @param since
+     *            change number of the caller, see
+     *            {@link #synchronize(ISqlJetMemoryPointer, int, long, BitSet)}.
+     * @return true if the page was found, false if it has to be read from
+     *         the file.
+     */
+    synchronized boolean read(long since, int pgno, ISqlJetMemoryPointer data, int pageSize) {
+        if (since != seq || this.pageSize != pageSize) {
+            return false;
+        }
+        final byte[] image = pages.get(Integer.valueOf(pgno));
+        if (null == image) {
+            return false;
+        }
+        if (!share(data, image)) {
+            data.getBuffer().putBytes(data.getPointer(), image, 0, pageSize);
+        }
+        return true;
+    }
+
+    /**
+     * Publishes a page which was read from the file.
+     */
+    synchronized void write(long since, int pgno, ISqlJetMemoryPointer data, int pageSize) {
+        if (since == seq && this.pageSize == pageSize) {
+            final byte[] image = copy(data, pageSize);
+            pages.put(Integer.valueOf(pgno), image);
+            account();
+            share(data, image);
+        }
+    }
+
+    /**
+     * Publishes pages written to the file by a commit.
+     *
+     * @param since
+     *            change number of the committing pager.
+     * @param fileVers
+     *            version of the database file after the commit.
+     * @param images
+     *            images of the pages written.
+     * @param changed
+     *            numbers of all pages changed by the commit, including pages
+     *            removed from the file.
+     * @param nPage
+     *            size of the database file in pages after the commit.
+     * @return change number which corresponds to the committed content.
+     */
+    synchronized long commit(long since, ISqlJetMemoryPointer fileVers, int pageSize, Map<Integer, byte[]> images,
+            BitSet changed, int nPage) {
+        if (since != seq || this.pageSize != pageSize) {
+            clear();
+            this.pageSize = pageSize;
+        }
+        seq++;
+        fileVers.getBuffer().getBytes(fileVers.getPointer(), dbFileVers, 0, dbFileVers.length);
+        for (Iterator<Integer> i = pages.keySet().iterator(); i.hasNext();) {
+            final int pgno = i.next().intValue();
+            if (pgno > nPage || changed.get(pgno)) {
+                i.remove();
+            }
+        }
+        pages.putAll(images);
+        account();
+        changeLog.addLast(new Change(seq, changed));
+        while (changeLog.size() > CHANGE_LOG_SIZE) {
+            logStart = changeLog.removeFirst().seq;
+        }
+        return seq;
+    }
+
+    /**
+     * Drops the least recently used pages.
+     */
+    @Override
+    public synchronized long reclaim(long bytes) {
+        long released = 0;
+        for (Iterator<byte[]> i = pages.values().iterator(); i.hasNext() && released < bytes;) {
+            released += i.next().length;
+            i.remove();
+        }
+        account();
+        return released;
+    }
+
+    /**
+     * Maps a page buffer onto a read-only image, if it is a mapped buffer
+     * which holds exactly one page.
+     *
+     * @return true if the buffer was mapped.
+     */
+    static boolean share(ISqlJetMemoryPointer data, byte[] image) {
+        if (0 != data.getPointer() || !(data.getBuffer() instanceof SqlJetMappedBuffer)
+                || data.getBuffer().getSize() != image.length) {
+            return false;
+        }
+        ((SqlJetMappedBuffer) data.getBuffer()).map(ByteBuffer.wrap(image).asReadOnlyBuffer());
+        return true;
+    }
+
+    static byte[] copy(ISqlJetMemoryPointer data, int pageSize) {
+        final byte[] image = new byte[pageSize];
+        data.getBuffer().getBytes(data.getPointer(), image, 0, pageSize);
+        return image;
+    }
+
+    private boolean versionEquals(ISqlJetMemoryPointer fileVers) {
+        final byte[] vers = new byte[dbFileVers.length];
+        fileVers.getBuffer().getBytes(fileVers.getPointer(), vers, 0, vers.length);
+        return Arrays.equals(vers, dbFileVers);
+    }
+
+    private void clear() {
+        pages.clear();
+        account();
+        changeLog.clear();
+        seq++;
+        logStart = seq;
+    }
+
+    private synchronized void discard() {
+        pages.clear();
+        account();
+    }
+
+    /**
+     * Reports change of the number of cached pages to the memory manager.
+     */
+    private void account() {
+        final long size = (long) pages.size() * pageSize;
+        final long old = accounted.getAndSet(size);
+        if (size != old) {
+            SqlJetUtility.memoryManager.account(size - old);
+        }
+    }
+
+}
@@ -0,0 +1,629 @@
+/**
+ * SqlJetWal.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetIOException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem;
+import org.tmatesoft.sqljet.core.internal.ISqlJetLimits;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetPage;
+import org.tmatesoft.sqljet.core.internal.SqlJetAssert;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileAccesPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+
+/**
+ * Write-ahead log of a database file.
+ *
+ * In WAL journal mode changed pages are not written into the database file
+ * when a transaction commits. They are appended to the "-wal" file as frames
+ * instead, and readers look up the latest committed frame of a page before
+ * falling back to the database file. A checkpoint copies the logged pages back
+ * into the database file and restarts the log.
+ *
+ * The log uses the SQLite WAL file format: a 32-byte header followed by
+ * frames, each frame being a 24-byte frame header and a page image. The
+ * frame header holds the page number, the database size in pages for commit
+ * frames (zero otherwise), a copy of the header salt and a cumulative
+ * checksum. Frames after the last valid commit frame are ignored.
+ *
+ * The wal-index which SQLite keeps in the shared "-shm" file is held in the
+ * memory of every connection and is brought up to date incrementally at the
+ * beginning of each read transaction, so the frames committed since the
+ * previous transaction are the only ones read.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+public class SqlJetWal {
+
+    /** Magic number of a log which checksums are computed on big-endian words. */
+    private static final int WAL_MAGIC = 0x377f0683;
+
+    /** Version of the log file format. */
+    private static final int WAL_VERSION = 3007000;
+
+    /** Size of the log header. */
+    static final int WAL_HDRSIZE = 32;
+
+    /** Size of the header of every frame. */
+    static final int WAL_FRAME_HDRSIZE = 24;
+
+    private static final Random RND = new Random();
+
+    /** Numbers of writable opened logs in this JVM by absolute path of the log */
+    private static final Map<String, Integer> openLogs = new HashMap<>();
+
+    private final ISqlJetFileSystem fileSystem;
+    private final File fileName;
+    private final boolean readOnly;
+    private ISqlJetFile fd;
+
+    /** True if the log is counted in openLogs */
+    private boolean registered;
+
+    /** Size of pages stored in the log */
+    private int pageSize;
+
+    /** True if the log header has been read or written */
+    private boolean hasHeader;
+
+    /** True if checksums are computed on big-endian words */
+    private boolean bigEndianCksum = true;
+
+    /** Checkpoint sequence number and salts from the log header */
+    private int ckptSeq;
+    private int salt1;
+    private int salt2;
+
+    /** Checksum of the last committed frame, or of the header */
+    private int cksum1;
+    private int cksum2;
+
+    /** Running checksum of frames written by the current write transaction */
+    private int wCksum1;
+    private int wCksum2;
+
+    /** Last committed frame visible to this connection */
+    private int mxFrame;
+
+    /** Last frame written by this connection, committed or not */
+    private int nFrame;
+
+    /** Size of the database in pages after the last commit, 0 if none */
+    private int dbSize;
+
+    /** Latest frame of every page which is logged */
+    private final SqlJetIntMap index = new SqlJetIntMap();
+
+    /** Page number stored in each frame */
+    private int[] framePgno = new int[64];
+
+    private ISqlJetMemoryPointer frameBuffer;
+
+    /**
+     * @param fileSystem
+     *            file system to open the log with.
+     * @param fileName
+     *            name of the log file.
+     * @param pageSize
+     *            size of pages of the database.
+     * @param readOnly
+     *            true if the log should never be written.
+     */
+    public SqlJetWal(final ISqlJetFileSystem fileSystem, final File fileName, final int pageSize,
+            final boolean readOnly) {
+        this.fileSystem = fileSystem;
+        this.fileName = fileName;
+        this.readOnly = readOnly;
+        setPageSize(pageSize);
+    }
+
+    private void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        this.frameBuffer = SqlJetUtility.memoryManager.allocatePtr(WAL_FRAME_HDRSIZE + pageSize);
+    }
+
+    /**
+     * @return name of the log file.
+     */
+    public File getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return size of pages stored in the log.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return number of committed frames in the log.
+     */
+    public int getFrameCount() {
+        return mxFrame;
+    }
+
+    /**
+     * @return size of the database in pages as of the last commit in the log,
+     *         or 0 if the log contains no commits.
+     */
+    public int getDbSize() {
+        return dbSize;
+    }
+
+    /**
+     * @return true if pages written by the current write transaction have not
+     *         been committed yet.
+     */
+    public boolean hasUncommittedFrames() {
+        return nFrame > mxFrame;
+    }
+
+    private boolean open() throws SqlJetException {
+        if (null == fd) {
+            if (readOnly) {
+                if (!fileSystem.access(fileName, SqlJetFileAccesPermission.EXISTS)) {
+                    return false;
+                }
+                fd = fileSystem.open(fileName, SqlJetFileType.WAL, SqlJetUtility.of(SqlJetFileOpenPermission.READONLY));
+            } else {
+                fd = fileSystem.open(fileName, SqlJetFileType.WAL, SqlJetUtility.of(
+                        SqlJetFileOpenPermission.READWRITE, SqlJetFileOpenPermission.CREATE));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts this log as used by a connection in WAL mode, until it is
+     * closed. Connections which are not in WAL mode must not recover and
+     * delete a log which is used.
+     */
+    public void register() {
+        if (!registered) {
+            synchronized (openLogs) {
+                openLogs.merge(fileName.getAbsolutePath(), Integer.valueOf(1),
+                        (a, b) -> Integer.valueOf(a.intValue() + b.intValue()));
+            }
+            registered = true;
+        }
+    }
+
+    /**
+     * @param fileName
+     *            name of the log file.
+     * @return true if a connection in this JVM uses the log in WAL mode.
+     */
+    public static boolean isRegistered(final File fileName) {
+        synchronized (openLogs) {
+            return openLogs.containsKey(fileName.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Closes the log file. The file itself is left in place.
+     *
+     * @throws SqlJetException
+     */
+    public void close() throws SqlJetException {
+        if (registered) {
+            synchronized (openLogs) {
+                openLogs.computeIfPresent(fileName.getAbsolutePath(),
+                        (name, n) -> n.intValue() > 1 ? Integer.valueOf(n.intValue() - 1) : null);
+            }
+            registered = false;
+        }
+        if (null != fd) {
+            try {
+                fd.close();
+            } finally {
+                fd = null;
+            }
+        }
+    }
+
+    private long frameOffset(int frame) {
+        return WAL_HDRSIZE + (long) (frame - 1) * (WAL_FRAME_HDRSIZE + pageSize);
+    }
+
+    /**
+     * Starts a read transaction. Frames committed by other connections since
+     * the previous call are added to the index.
+     *
+     * @return numbers of pages which were changed by the newly found commits,
+     *         or null if the log was restarted since the previous call and
+     *         there is no way to tell which pages have changed.
+     * @throws SqlJetException
+     */
+    public BitSet beginRead() throws SqlJetException {
+        final BitSet changed = new BitSet();
+        if (null != fd && !fileSystem.access(fileName, SqlJetFileAccesPermission.EXISTS)) {
+            /* The log was deleted by a checkpoint of other connection. */
+            close();
+        }
+        final long size = open() ? fd.fileSize() : 0;
+        final ISqlJetMemoryPointer hdr = SqlJetUtility.memoryManager.allocatePtr(WAL_HDRSIZE);
+        if (size < WAL_HDRSIZE || !readHeader(hdr)) {
+            if (hasHeader) {
+                final boolean hadFrames = mxFrame > 0;
+                clear();
+                return hadFrames ? null : changed;
+            }
+            return changed;
+        }
+        if (!hasHeader || !sameHeader(hdr)) {
+            final boolean hadFrames = mxFrame > 0;
+            clear();
+            adoptHeader(hdr);
+            scan(size, changed, true);
+            return hadFrames ? null : changed;
+        }
+        scan(size, changed, true);
+        return changed;
+    }
+
+    /**
+     * Starts a write transaction.
+     *
+     * @param pageSize
+     *            current page size of the database.
+     * @return false if other connection has committed since the read
+     *         transaction of this connection was started, so changes made on
+     *         top of the snapshot would be lost.
+     * @throws SqlJetException
+     */
+    public boolean beginWrite(final int pageSize) throws SqlJetException {
+        SqlJetAssert.assertFalse(readOnly, SqlJetErrorCode.READONLY);
+        open();
+        if (pageSize != this.pageSize) {
+            /* A log with frames of other size is adopted by the pager on read. */
+            SqlJetAssert.assertTrue(mxFrame == 0, SqlJetErrorCode.CORRUPT);
+            setPageSize(pageSize);
+        }
+        final long size = fd.fileSize();
+        final ISqlJetMemoryPointer hdr = SqlJetUtility.memoryManager.allocatePtr(WAL_HDRSIZE);
+        if (size >= WAL_HDRSIZE && readHeader(hdr)) {
+            if (!hasHeader || !sameHeader(hdr)) {
+                /* Only a writer restarts the log, so this may be a stale header. */
+                final SqlJetWal probe = new SqlJetWal(fileSystem, fileName, pageSize, true);
+                probe.adoptHeader(hdr);
+                probe.fd = fd;
+                if (probe.scan(size, null, false) > 0) {
+                    return false;
+                }
+            } else if (scan(size, null, false) > mxFrame) {
+                return false;
+            }
+        }
+        nFrame = mxFrame;
+        wCksum1 = cksum1;
+        wCksum2 = cksum2;
+        return true;
+    }
+
+    /**
+     * Appends pages to the log.
+     *
+     * @param pages
+     *            pages to write.
+     * @param nTruncate
+     *            size of the database in pages after the commit.
+     * @param isCommit
+     *            true if the last frame written ends a transaction.
+     * @param sync
+     *            true if the log should be synced after a commit.
+     * @throws SqlJetException
+     */
+    public void writeFrames(final List<ISqlJetPage> pages, final int nTruncate, final boolean isCommit,
+            final boolean sync) throws SqlJetException {
+        SqlJetAssert.assertFalse(readOnly, SqlJetErrorCode.READONLY);
+        open();
+        if (nFrame == 0) {
+            writeHeader();
+        }
+        final int frameSize = WAL_FRAME_HDRSIZE + pageSize;
+        int left = pages.size();
+        for (final ISqlJetPage page : pages) {
+            final int frame = ++nFrame;
+            final int pgno = page.getPageNumber();
+            frameBuffer.putInt(0, pgno);
+            frameBuffer.putInt(4, isCommit && --left == 0 ? nTruncate : 0);
+            frameBuffer.putInt(8, salt1);
+            frameBuffer.putInt(12, salt2);
+            frameBuffer.copyFrom(WAL_FRAME_HDRSIZE, page.getData(), 0, pageSize);
+            long cksum = checksum(frameBuffer, 0, 8, wCksum1, wCksum2);
+            cksum = checksum(frameBuffer, WAL_FRAME_HDRSIZE, pageSize, (int) (cksum >>> 32), (int) cksum);
+            wCksum1 = (int) (cksum >>> 32);
+            wCksum2 = (int) cksum;
+            frameBuffer.putInt(16, wCksum1);
+            frameBuffer.putInt(20, wCksum2);
+            fd.write(frameBuffer, frameSize, frameOffset(frame));
+            setFramePgno(frame, pgno);
+            index.put(pgno, frame);
+            SqlJetPager.PAGERTRACE("WAL %s frame %d page %d\n", fileName, Integer.valueOf(frame), Integer.valueOf(pgno));
+        }
+        if (isCommit) {
+            if (sync) {
+                fd.sync();
+            }
+            mxFrame = nFrame;
+            dbSize = nTruncate;
+            cksum1 = wCksum1;
+            cksum2 = wCksum2;
+        }
+    }
+
+    /**
+     * Discards frames written by the current write transaction.
+     *
+     * @return numbers of pages which had frames discarded.
+     */
+    public BitSet rollbackWrite() {
+        final BitSet undone = new BitSet();
+        for (int frame = mxFrame + 1; frame <= nFrame; frame++) {
+            undone.set(framePgno[frame]);
+        }
+        for (int pgno = undone.nextSetBit(0); pgno >= 0; pgno = undone.nextSetBit(pgno + 1)) {
+            int prev = mxFrame;
+            while (prev > 0 && framePgno[prev] != pgno) {
+                prev--;
+            }
+            if (prev > 0) {
+                index.put(pgno, prev);
+            } else {
+                index.remove(pgno);
+            }
+        }
+        nFrame = mxFrame;
+        wCksum1 = cksum1;
+        wCksum2 = cksum2;
+        return undone;
+    }
+
+    /**
+     * @param pgno
+     *            page number.
+     * @return the latest frame which holds the page, or 0 if the page should
+     *         be read from the database file.
+     */
+    public int findFrame(final int pgno) {
+        return index.get(pgno);
+    }
+
+    /**
+     * Reads page image from the frame.
+     *
+     * @param frame
+     * @param data
+     * @throws SqlJetException
+     */
+    public void readFrame(final int frame, final ISqlJetMemoryPointer data) throws SqlJetIOException {
+        fd.read(data, pageSize, frameOffset(frame) + WAL_FRAME_HDRSIZE);
+    }
+
+    /**
+     * Copies all committed pages from the log into the database file and
+     * restarts the log. The caller must hold an exclusive lock on the database
+     * and must have no write transaction in progress.
+     *
+     * @param db
+     *            database file.
+     * @param sync
+     *            true if the database and log files should be synced.
+     * @throws SqlJetException
+     */
+    public void checkpoint(final ISqlJetFile db, final boolean sync) throws SqlJetException {
+        assert nFrame == mxFrame;
+        if (mxFrame == 0) {
+            return;
+        }
+        final int[] pages = new int[index.size()];
+        int n = 0;
+        for (int i = 0; i < index.capacity(); i++) {
+            final int pgno = index.keyAt(i);
+            if (pgno != 0 && pgno <= dbSize && index.valueAt(i) <= mxFrame) {
+                pages[n++] = pgno;
+            }
+        }
+        Arrays.sort(pages, 0, n);
+        final ISqlJetMemoryPointer data = SqlJetUtility.memoryManager.allocatePtr(pageSize);
+        for (int i = 0; i < n; i++) {
+            readFrame(findFrame(pages[i]), data);
+            db.write(data, pageSize, (long) (pages[i] - 1) * pageSize);
+        }
+        final long size = (long) dbSize * pageSize;
+        if (db.fileSize() > size) {
+            db.truncate(size);
+        }
+        if (sync) {
+            db.sync();
+        }
+        SqlJetPager.PAGERTRACE("CHECKPOINT %s %d frames\n", fileName, Integer.valueOf(mxFrame));
+        fd.truncate(0);
+        if (sync) {
+            fd.sync();
+        }
+        clear();
+    }
+
+    private void clear() {
+        index.clear();
+        hasHeader = false;
+        mxFrame = 0;
+        nFrame = 0;
+        dbSize = 0;
+        cksum1 = cksum2 = 0;
+        wCksum1 = wCksum2 = 0;
+    }
+
+    private void setFramePgno(int frame, int pgno) {
+        if (frame >= framePgno.length) {
+            framePgno = Arrays.copyOf(framePgno, Math.max(frame + 1, framePgno.length * 2));
+        }
+        framePgno[frame] = pgno;
+    }
+
+    private boolean readHeader(final ISqlJetMemoryPointer hdr) throws SqlJetException {
+        fd.read(hdr, WAL_HDRSIZE, 0);
+        final int magic = hdr.getInt(0);
+        if ((magic & 0xfffffffe) != (WAL_MAGIC & 0xfffffffe) || hdr.getInt(4) != WAL_VERSION) {
+            return false;
+        }
+        final int szPage = hdr.getInt(8);
+        if (szPage < ISqlJetLimits.SQLJET_MIN_PAGE_SIZE || szPage > ISqlJetLimits.SQLJET_MAX_PAGE_SIZE
+                || (szPage - 1 & szPage) != 0) {
+            return false;
+        }
+        final boolean bigEndian = (magic & 1) != 0;
+        final boolean saved = bigEndianCksum;
+        bigEndianCksum = bigEndian;
+        final long cksum = checksum(hdr, 0, 24, 0, 0);
+        bigEndianCksum = saved;
+        return (int) (cksum >>> 32) == hdr.getInt(24) && (int) cksum == hdr.getInt(28);
+    }
+
+    private boolean sameHeader(final ISqlJetMemoryPointer hdr) {
+        return hdr.getInt(12) == ckptSeq && hdr.getInt(16) == salt1 && hdr.getInt(20) == salt2
+                && hdr.getInt(8) == pageSize;
+    }
+
+    private void adoptHeader(final ISqlJetMemoryPointer hdr) {
+        bigEndianCksum = (hdr.getInt(0) & 1) != 0;
+        if (hdr.getInt(8) != pageSize) {
+            setPageSize(hdr.getInt(8));
+        }
+        ckptSeq = hdr.getInt(12);
+        salt1 = hdr.getInt(16);
+        salt2 = hdr.getInt(20);
+        cksum1 = wCksum1 = hdr.getInt(24);
+        cksum2 = wCksum2 = hdr.getInt(28);
+        hasHeader = true;
+    }
+
+    private void writeHeader() throws SqlJetException {
+        final ISqlJetMemoryPointer hdr = SqlJetUtility.memoryManager.allocatePtr(WAL_HDRSIZE);
+        ckptSeq = hasHeader ? ckptSeq + 1 : 0;
+        salt1 = hasHeader ? salt1 + 1 : RND.nextInt();
+        salt2 = RND.nextInt();
+        bigEndianCksum = true;
+        hdr.putInt(0, WAL_MAGIC);
+        hdr.putInt(4, WAL_VERSION);
+        hdr.putInt(8, pageSize);
+        hdr.putInt(12, ckptSeq);
+        hdr.putInt(16, salt1);
+        hdr.putInt(20, salt2);
+        final long cksum = checksum(hdr, 0, 24, 0, 0);
+        cksum1 = wCksum1 = (int) (cksum >>> 32);
+        cksum2 = wCksum2 = (int) cksum;
+        hdr.putInt(24, cksum1);
+        hdr.putInt(28, cksum2);
+        fd.write(hdr, WAL_HDRSIZE, 0);
+        hasHeader = true;
+    }
+
+    /**
+     * Reads frames which follow the last known commit frame.
+     *
+     * @param size
+     *            size of the log file.
+     * @param changed
+     *            receives numbers of pages found in the committed frames.
+     * @param apply
+     *            if true then found commits are added to the index.
+     * @return number of the last valid commit frame.
+     * @throws SqlJetException
+     */
+    private int scan(final long size, final BitSet changed, final boolean apply) throws SqlJetException {
+        final int frameSize = WAL_FRAME_HDRSIZE + pageSize;
+        int c1 = cksum1, c2 = cksum2;
+        int lastCommit = mxFrame;
+        for (int frame = mxFrame + 1; frameOffset(frame) + frameSize <= size; frame++) {
+            fd.read(frameBuffer, frameSize, frameOffset(frame));
+            final int pgno = frameBuffer.getInt(0);
+            final int nTruncate = frameBuffer.getInt(4);
+            if (pgno <= 0 || frameBuffer.getInt(8) != salt1 || frameBuffer.getInt(12) != salt2) {
+                break;
+            }
+            long cksum = checksum(frameBuffer, 0, 8, c1, c2);
+            cksum = checksum(frameBuffer, WAL_FRAME_HDRSIZE, pageSize, (int) (cksum >>> 32), (int) cksum);
+            c1 = (int) (cksum >>> 32);
+            c2 = (int) cksum;
+            if (c1 != frameBuffer.getInt(16) || c2 != frameBuffer.getInt(20)) {
+                break;
+            }
+            if (apply) {
+                setFramePgno(frame, pgno);
+            }
+            if (nTruncate != 0) {
+                if (apply) {
+                    for (int f = lastCommit + 1; f <= frame; f++) {
+                        index.put(framePgno[f], f);
+                        changed.set(framePgno[f]);
+                    }
+                    dbSize = nTruncate;
+                    cksum1 = c1;
+                    cksum2 = c2;
+                }
+                lastCommit = frame;
+            }
+        }
+        if (apply) {
+            mxFrame = nFrame = lastCommit;
+            wCksum1 = cksum1;
+            wCksum2 = cksum2;
+        }
+        return lastCommit;
+    }
+
+    /**
+     * Computes the cumulative checksum of the log. The content is processed as
+     * pairs of 32-bit words, so the length must be a multiple of 8.
+     *
+     * @return first checksum value in the high and second one in the low 32
+     *         bits.
+     */
+    private long checksum(final ISqlJetMemoryPointer data, final int offset, final int length, int s1, int s2) {
+        assert (length & 7) == 0;
+        for (int i = offset; i < offset + length; i += 8) {
+            int x0 = data.getInt(i);
+            int x1 = data.getInt(i + 4);
+            if (!bigEndianCksum) {
+                x0 = Integer.reverseBytes(x0);
+                x1 = Integer.reverseBytes(x1);
+            }
+            s1 += x0 + s2;
+            s2 += x1 + s1;
+        }
+        return (long) s1 << 32 | s2 & 0xffffffffL;
+    }
+
+}
@@ -22,10 +22,14 @@ import static org.tmatesoft.sqljet.core.internal.SqlJetAssert.assertNotEmpty;
 import static org.tmatesoft.sqljet.core.internal.SqlJetAssert.assertNotNull;
 import static org.tmatesoft.sqljet.core.internal.SqlJetAssert.assertTrue;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -108,6 +112,16 @@ public class SqlJetSchema implements ISqlJetSchema {
     private final Map<String, ISqlJetViewDef> viewDefs = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
     private final Map<String, ISqlJetTriggerDef> triggerDefs = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 
+    /** Tables opened for writing in the current transaction, by name */
+    private final Map<String, SqlJetBtreeDataTable> writeTables = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /** Tables given to cursors in the current transaction, with their write flag */
+    private final Map<SqlJetBtreeDataTable, Boolean> cursorTables = new IdentityHashMap<>();
+
+    /** Tables of closed cursors kept for reuse in the current transaction, by name */
+    private final Map<String, Deque<SqlJetBtreeDataTable>> idleTables = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Deque<SqlJetBtreeDataTable>> idleWriteTables = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
     private enum SqlJetSchemaObjectType {
         TABLE("table"),
         INDEX("index"),
@@ -412,7 +426,10 @@ public class SqlJetSchema implements ISqlJetSchema {
     }
 
     public ISqlJetTableDef createTable(String sql) throws SqlJetException {
-        return db.getMutex().run(x -> createTableSafe(sql, false));
+        return db.getMutex().run(x -> {
+            closeTables();
+            return createTableSafe(sql, false);
+        });
     }
 
     private ISqlJetTableDef createTableSafe(String sql, boolean internal) throws SqlJetException {
@@ -600,6 +617,113 @@ public class SqlJetSchema implements ISqlJetSchema {
         }
     }
 
+    /**
+     * Returns table opened for writing which is shared by write operations
+     * of the current transaction, so that they don't open the table and its
+     * indexes every time. It stays open until {@link #closeTables()} is
+     * called at the end of the transaction or the schema is changed, callers
+     * must not close it.
+     *
+     * @param tableName
+     *            name of the table.
+     * @return opened table.
+     * @throws SqlJetException
+     */
+    public ISqlJetBtreeDataTable getWriteTable(String tableName) throws SqlJetException {
+        return db.getMutex().run(x -> {
+            SqlJetBtreeDataTable table = writeTables.get(tableName);
+            if (null == table) {
+                table = new SqlJetBtreeDataTable(btree, tableName, true);
+                writeTables.put(tableName, table);
+            }
+            return table;
+        });
+    }
+
+    /**
+     * Returns table for a cursor. Within a transaction the table of a cursor
+     * which was closed is given to the next cursor on the same table, so
+     * that a sequence of lookups doesn't open the table and its indexes
+     * every time. Closing the table returns it to the schema, see
+     * {@link #releaseTable(SqlJetBtreeDataTable)}.
+     *
+     * @param tableName
+     *            name of the table.
+     * @param write
+     *            true if the cursor may change the table.
+     * @return opened table.
+     * @throws SqlJetException
+     */
+    public SqlJetBtreeDataTable openTable(String tableName, boolean write) throws SqlJetException {
+        return db.getMutex().run(x -> {
+            if (!btree.isInTrans()) {
+                return new SqlJetBtreeDataTable(btree, tableName, write);
+            }
+            final Deque<SqlJetBtreeDataTable> idle = getIdleTables(write).get(tableName);
+            SqlJetBtreeDataTable table = null != idle ? idle.poll() : null;
+            if (null == table) {
+                table = new SqlJetBtreeDataTable(btree, tableName, write);
+            }
+            cursorTables.put(table, Boolean.valueOf(write));
+            return table;
+        });
+    }
+
+    /**
+     * Takes back table which is being closed, if it was given by
+     * {@link #openTable(String, boolean)} in the current transaction.
+     *
+     * @param table
+     *            table which is being closed.
+     * @return true if the table is kept for reuse, false if it has to be
+     *         closed.
+     * @throws SqlJetException
+     */
+    public boolean releaseTable(SqlJetBtreeDataTable table) throws SqlJetException {
+        return db.getMutex().run(x -> {
+            final Boolean write = cursorTables.remove(table);
+            if (null == write) {
+                return Boolean.FALSE;
+            }
+            table.resetStates();
+            getIdleTables(write.booleanValue())
+                    .computeIfAbsent(table.getDefinition().getName(), name -> new ArrayDeque<>()).push(table);
+            return Boolean.TRUE;
+        }).booleanValue();
+    }
+
+    private Map<String, Deque<SqlJetBtreeDataTable>> getIdleTables(boolean write) {
+        return write ? idleWriteTables : idleTables;
+    }
+
+    /**
+     * Closes tables opened by {@link #getWriteTable(String)} and tables kept
+     * for reuse by {@link #releaseTable(SqlJetBtreeDataTable)}. Tables of
+     * cursors which are still open are closed with the cursors. Must be
+     * called before the transaction ends.
+     *
+     * @throws SqlJetException
+     */
+    public void closeTables() throws SqlJetException {
+        db.getMutex().runVoid(x -> {
+            cursorTables.clear();
+            if (writeTables.isEmpty() && idleTables.isEmpty() && idleWriteTables.isEmpty()) {
+                return;
+            }
+            final List<SqlJetBtreeDataTable> tables = new ArrayList<>(writeTables.values());
+            writeTables.clear();
+            for (Map<String, Deque<SqlJetBtreeDataTable>> idle : Arrays.asList(idleTables, idleWriteTables)) {
+                for (Deque<SqlJetBtreeDataTable> deque : idle.values()) {
+                    tables.addAll(deque);
+                }
+                idle.clear();
+            }
+            for (SqlJetBtreeDataTable table : tables) {
+                table.close();
+            }
+        });
+    }
+
     /**
      * @throws SqlJetException
      */
@@ -627,7 +751,10 @@ public class SqlJetSchema implements ISqlJetSchema {
     }
 
     public ISqlJetIndexDef createIndex(String sql) throws SqlJetException {
-        return db.getMutex().run(x -> createIndexSafe(sql));
+        return db.getMutex().run(x -> {
+            closeTables();
+            return createIndexSafe(sql);
+        });
     }
 
     private ISqlJetIndexDef createIndexSafe(String sql) throws SqlJetException {
@@ -699,7 +826,10 @@ public class SqlJetSchema implements ISqlJetSchema {
     }
 
     public void dropTable(String tableName) throws SqlJetException {
-        db.getMutex().runVoid(x -> dropTableSafe(tableName));
+        db.getMutex().runVoid(x -> {
+            closeTables();
+            dropTableSafe(tableName);
+        });
     }
 
     private void dropTableSafe(String tableName) throws SqlJetException {
@@ -850,7 +980,10 @@ public class SqlJetSchema implements ISqlJetSchema {
     }
 
     public void dropIndex(String indexName) throws SqlJetException {
-        db.getMutex().runVoid(x -> dropIndexSafe(indexName));
+        db.getMutex().runVoid(x -> {
+            closeTables();
+            dropIndexSafe(indexName);
+        });
     }
 
     private void dropIndexSafe(String indexName) throws SqlJetException {
@@ -1058,7 +1191,10 @@ public class SqlJetSchema implements ISqlJetSchema {
     public ISqlJetTableDef alterTable(String sql) throws SqlJetException {
         final SqlJetAlterTableDef alterTableDef = new SqlJetAlterTableDef(parseSqlStatement(sql));
 
-        return db.getMutex().run(x -> alterTableSafe(alterTableDef));
+        return db.getMutex().run(x -> {
+            closeTables();
+            return alterTableSafe(alterTableDef);
+        });
     }
 
     public ISqlJetVirtualTableDef createVirtualTable(String sql, int page) throws SqlJetException {
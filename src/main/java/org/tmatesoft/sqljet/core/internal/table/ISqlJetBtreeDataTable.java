@@ -18,11 +18,14 @@
 package org.tmatesoft.sqljet.core.internal.table;
 
 import java.util.Map;
+import java.util.Optional;
 
 import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
 import org.tmatesoft.sqljet.core.schema.ISqlJetIndexDef;
 import org.tmatesoft.sqljet.core.schema.ISqlJetTableDef;
 import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
+import org.tmatesoft.sqljet.core.table.SqlJetColumnBatch;
 
 /**
  * @author TMate Software Ltd.
@@ -46,11 +49,12 @@ public interface ISqlJetBtreeDataTable extends ISqlJetBtreeTable {
     Map<String, ISqlJetIndexDef> getIndexDefinitions();
 
     /**
-     * Get indexes which are related with table.
+     * Get indexes which are related with table. Opens all of them.
      * 
      * @return
+     * @throws SqlJetException
      */
-    Map<String, ISqlJetBtreeIndexTable> getIndexesTables();
+    Map<String, ISqlJetBtreeIndexTable> getIndexesTables() throws SqlJetException;
 
     /**
      * Go to record with given rowID. Return boolean to indicate success.
@@ -186,9 +190,82 @@ public interface ISqlJetBtreeDataTable extends ISqlJetBtreeTable {
     long insertWithRowId(SqlJetConflictAction onConflict, long rowId, Object[] values) throws SqlJetException;
 
     /**
+     * Inserts rows with default conflict resolution. Keys of non-unique
+     * indexes are collected while rows are inserted and written into indexes
+     * in key order at the end.
+     *
+     * @param rows
+     * @return count of inserted rows.
+     * @throws SqlJetException
+     */
+    long insertBatch(Iterable<Object[]> rows) throws SqlJetException;
+
+    /**
+     * Get index of the table, opening it if it is used first.
+     * 
      * @param indexName
-     * @return
+     * @return index or null if the table has no such index.
+     * @throws SqlJetException
+     */
+    ISqlJetBtreeIndexTable getIndex(String indexName) throws SqlJetException;
+
+    /**
+     * Get numbers of fields in entries of the index for fields of the table.
+     * Fields which are not in the index have -1, the INTEGER PRIMARY KEY
+     * field has number of the rowid at the end of the entry.
+     * 
+     * @param indexName
+     * @return numbers of fields in index entries.
+     */
+    int[] getIndexFields(String indexName);
+
+    /**
+     * Read value of the field of the row from the current entry of the index,
+     * with defaults and affinity applied as when the field is read from the
+     * row.
+     * 
+     * @param index
+     * @param field
+     *            number of the field in the table.
+     * @param indexField
+     *            number of the field in the index entry, see
+     *            {@link #getIndexFields(String)}.
+     * @return value of the field.
+     * @throws SqlJetException
+     */
+    Optional<ISqlJetVdbeMem> getIndexedValue(ISqlJetBtreeIndexTable index, int field, int indexField)
+            throws SqlJetException;
+
+    /**
+     * Put value of the field of the current row into the column of the last
+     * row of the batch, with defaults and affinity applied, the INTEGER
+     * PRIMARY KEY field has value of the rowid. Texts of UTF-8 databases and
+     * blobs are copied from the record without decoding.
+     * 
+     * @param field
+     * @param batch
+     * @param column
+     *            number of the column in the batch.
+     * @throws SqlJetException
+     */
+    void fetchField(int field, SqlJetColumnBatch batch, int column) throws SqlJetException;
+
+    /**
+     * Put value of the field of the row from the current entry of the index
+     * into the column of the last row of the batch, as
+     * {@link #getIndexedValue(ISqlJetBtreeIndexTable, int, int)} reads it.
+     * 
+     * @param index
+     * @param field
+     *            number of the field in the table.
+     * @param indexField
+     *            number of the field in the index entry.
+     * @param batch
+     * @param column
+     *            number of the column in the batch.
+     * @throws SqlJetException
      */
-    ISqlJetBtreeIndexTable getIndex(String indexName);
+    void fetchIndexedField(ISqlJetBtreeIndexTable index, int field, int indexField, SqlJetColumnBatch batch,
+            int column) throws SqlJetException;
 
-}
\ No newline at end of file
+}
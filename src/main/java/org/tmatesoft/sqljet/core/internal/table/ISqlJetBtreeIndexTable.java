@@ -52,6 +52,36 @@ public interface ISqlJetBtreeIndexTable extends ISqlJetBtreeTable {
      */
     void insert(long rowId, boolean append, Object... key) throws SqlJetException;
 
+    /**
+     * Starts buffering of keys written by {@link #insert(long, boolean, Object...)}:
+     * they aren't visible in the index until {@link #endBatch()}.
+     */
+    void beginBatch();
+
+    /**
+     * Sorts keys buffered since {@link #beginBatch()} and writes them into the
+     * index in key order. Keys are also written this way whenever the buffered
+     * ones reach <code>SQLJET.INDEX_BATCH_SIZE</code> bytes.
+     * 
+     * @throws SqlJetException
+     */
+    void endBatch() throws SqlJetException;
+
+    /**
+     * Marks keys buffered so far as keys of completely inserted records. Only
+     * such keys are written before {@link #endBatch()}.
+     */
+    void markBatch();
+
+    /**
+     * Drops keys buffered since the last {@link #markBatch()}, which belong
+     * to a record whose insertion has failed, writes the other keys like
+     * {@link #endBatch()} does and stops buffering.
+     * 
+     * @throws SqlJetException
+     */
+    void discardBatch() throws SqlJetException;
+
     /**
      * Delete entry which matches to key and point to given rowId.
      * 
@@ -40,7 +40,7 @@ public interface ISqlJetBtreeRecord {
     /**
      * @return
      */
-    ISqlJetMemoryPointer getRawRecord();
+    ISqlJetMemoryPointer getRawRecord() throws SqlJetException;
 
     /**
      * @param field
@@ -53,15 +53,35 @@ public interface ISqlJetBtreeRecord {
      * @param field
      * @return
      */
-    long getIntField(int field);
+    long getIntField(int field) throws SqlJetException;
 
     /**
      * @param field
      * @return
      */
-    double getRealField(int field);
+    double getRealField(int field) throws SqlJetException;
 
-	ISqlJetVdbeMem getRawField(int field);
+	ISqlJetVdbeMem getRawField(int field) throws SqlJetException;
 
-	ISqlJetVdbeMem getLastRawField();
+	ISqlJetVdbeMem getLastRawField() throws SqlJetException;
+
+    /**
+     * @param field
+     * @return serial type of the field as it is stored in the record, or -1
+     *         if the record is not read from a b-tree.
+     */
+    int getSerialType(int field);
+
+    /**
+     * Returns bytes of the field as they are stored in the record, without
+     * decoding them. The pointer refers to the page of the cursor unless the
+     * field is on overflow pages, so it is valid while the cursor stays on
+     * the record.
+     *
+     * @param field
+     * @return stored bytes of the field, the length is given by its serial
+     *         type.
+     * @throws SqlJetException
+     */
+    ISqlJetMemoryPointer getFieldBytes(int field) throws SqlJetException;
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.tmatesoft.sqljet.core.SqlJetEncoding;
@@ -82,6 +83,49 @@ public interface ISqlJetBtreeTable {
      */
     boolean previous() throws SqlJetException;
 
+    /**
+     * Get count of records. Counts are taken from pages of the B-Tree and
+     * cached until the database changes, records are not visited.
+     * 
+     * @return count of records.
+     * @throws SqlJetException
+     */
+    long getCount() throws SqlJetException;
+
+    /**
+     * Go to record at given position.
+     * 
+     * @param index
+     *            position of record begin from zero.
+     * @return true if there is record at this position.
+     * @throws SqlJetException
+     */
+    boolean goToIndex(long index) throws SqlJetException;
+
+    /**
+     * Get position of current record.
+     * 
+     * @return position of current record begin from zero, or count of records
+     *         if end of cursor is reached.
+     * @throws SqlJetException
+     */
+    long getIndex() throws SqlJetException;
+
+    /**
+     * Get keys which split records into the given number of parts of about
+     * the same size, taken from interior pages of the B-Tree. Fewer keys are
+     * returned if the B-Tree is too small. Cursor is moved to the first
+     * record afterwards.
+     * 
+     * @param parts
+     *            number of parts.
+     * @return keys in ascending order, each is the largest key of its part:
+     *         row ID for tables and values of all fields, including row ID,
+     *         for indexes.
+     * @throws SqlJetException
+     */
+    List<Object[]> getSplitKeys(int parts) throws SqlJetException;
+
     /**
      * @return
      * @throws SqlJetException
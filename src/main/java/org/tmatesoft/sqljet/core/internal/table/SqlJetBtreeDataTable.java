@@ -28,21 +28,24 @@ import java.util.TreeMap;
 import org.tmatesoft.sqljet.core.SqlJetEncoding;
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetValueType;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.schema.SqlJetSchema;
 import org.tmatesoft.sqljet.core.internal.schema.SqlJetTableDef;
 import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetBtreeRecord;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetVdbeSerialType;
 import org.tmatesoft.sqljet.core.schema.ISqlJetColumnConstraint;
 import org.tmatesoft.sqljet.core.schema.ISqlJetColumnDef;
 import org.tmatesoft.sqljet.core.schema.ISqlJetColumnDefault;
 import org.tmatesoft.sqljet.core.schema.ISqlJetIndexDef;
 import org.tmatesoft.sqljet.core.schema.ISqlJetIndexedColumn;
-import org.tmatesoft.sqljet.core.schema.ISqlJetSchema;
 import org.tmatesoft.sqljet.core.schema.ISqlJetTableDef;
 import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
 import org.tmatesoft.sqljet.core.schema.SqlJetTypeAffinity;
+import org.tmatesoft.sqljet.core.table.SqlJetColumnBatch;
 
 /**
  * @author TMate Software Ltd.
@@ -66,19 +69,29 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
     private ISqlJetBtreeRecord defaults;
 
     /**
-     * Open data table by name.
+     * Open data table by name. Indexes of the table are opened when they are
+     * used first.
      *
      * @throws SqlJetException
      */
     public SqlJetBtreeDataTable(ISqlJetBtree btree, String tableName, boolean write) throws SqlJetException {
         super(btree, ((SqlJetTableDef) btree.getSchema().getTable(tableName)).getPage(), write, false);
         this.tableDef = (SqlJetTableDef) btree.getSchema().getTable(tableName);
-        defaults = SqlJetBtreeRecord.getRecord(getEncoding(), getDefaults());
-        openIndexes(btree.getSchema());
+        for (final ISqlJetIndexDef indexDef : btree.getSchema().getIndexes(tableDef.getName())) {
+            indexesDefs.put(indexDef.getName(), indexDef);
+        }
     }
 
+    /**
+     * Tables given to cursors by the schema are returned to it for reuse
+     * instead of being closed.
+     */
     @Override
     public void close() throws SqlJetException {
+        final SqlJetSchema schema = btree.getSchema();
+        if (null != schema && schema.releaseTable(this)) {
+            return;
+        }
     	for (ISqlJetBtreeIndexTable table : indexesTables.values()) {
     		table.close();
     	}
@@ -90,27 +103,39 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
     }
 
     /**
-     * Open all indexes
+     * Drops states pushed on the table and its indexes, so that the table
+     * can be given to another cursor.
+     *
+     * @throws SqlJetException
+     */
+    public void resetStates() throws SqlJetException {
+        while (popState()) {
+            /* down to the first state */
+        }
+        for (ISqlJetBtreeIndexTable table : indexesTables.values()) {
+            while (table.popState()) {
+                /* down to the first state */
+            }
+        }
+    }
+
+    /**
+     * Open index
      *
      * @throws SqlJetException
      *
      */
-    private void openIndexes(ISqlJetSchema schema) throws SqlJetException {
-        for (final ISqlJetIndexDef indexDef : schema.getIndexes(tableDef.getName())) {
-            indexesDefs.put(indexDef.getName(), indexDef);
-            final SqlJetBtreeIndexTable indexTable;
-            if (indexDef.getColumns().size() > 0) {
-                indexTable = new SqlJetBtreeIndexTable(btree, indexDef.getName(), this.write);
+    private ISqlJetBtreeIndexTable openIndex(ISqlJetIndexDef indexDef) throws SqlJetException {
+        if (indexDef.getColumns().size() > 0) {
+            return new SqlJetBtreeIndexTable(btree, indexDef.getName(), this.write);
+        } else {
+            int columns;
+            if (tableDef.getTableIndexConstraint(indexDef.getName()) != null) {
+                columns = tableDef.getTableIndexConstraint(indexDef.getName()).getColumns().size();
             } else {
-                int columns;
-                if (tableDef.getTableIndexConstraint(indexDef.getName()) != null) {
-                    columns = tableDef.getTableIndexConstraint(indexDef.getName()).getColumns().size();
-                } else {
-                    columns = 1; // tableDef.getColumnIndexConstraint(indexDef.getName()).getColumn().getName();
-                }
-                indexTable = new SqlJetBtreeIndexTable(btree, indexDef.getName(), columns, this.write);
+                columns = 1; // tableDef.getColumnIndexConstraint(indexDef.getName()).getColumn().getName();
             }
-            indexesTables.put(indexDef.getName(), indexTable);
+            return new SqlJetBtreeIndexTable(btree, indexDef.getName(), columns, this.write);
         }
     }
 
@@ -193,6 +218,48 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
         return rowId;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeDataTable#
+     * insertBatch(java.lang.Iterable)
+     */
+    @Override
+    public long insertBatch(Iterable<Object[]> rows) throws SqlJetException {
+        final List<ISqlJetBtreeIndexTable> batched = new ArrayList<>(indexesDefs.size());
+        for (final ISqlJetIndexDef indexDef : indexesDefs.values()) {
+            if (!isUniqueIndex(indexDef)) {
+                final ISqlJetBtreeIndexTable indexTable = getIndex(indexDef.getName());
+                indexTable.beginBatch();
+                batched.add(indexTable);
+            }
+        }
+        long count = 0;
+        try {
+            for (final Object[] values : rows) {
+                insertWithRowId(null, 0, values);
+                count++;
+                for (final ISqlJetBtreeIndexTable indexTable : batched) {
+                    indexTable.markBatch();
+                }
+            }
+            for (final ISqlJetBtreeIndexTable indexTable : batched) {
+                indexTable.endBatch();
+            }
+        } catch (SqlJetException e) {
+            /* Keys of the failed record are dropped, keys of inserted records are kept. */
+            for (final ISqlJetBtreeIndexTable indexTable : batched) {
+                try {
+                    indexTable.discardBatch();
+                } catch (SqlJetException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return count;
+    }
+
     private void adjustRowIdPosition(Object[] values, final Object[] row) {
         if (row != null && row.length > 1 && tableDef.isRowIdPrimaryKey()) {
             if (values == null || values.length < row.length && row[values.length] == null) {
@@ -699,13 +766,12 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
                     continue;
                 }
             }
-            final ISqlJetBtreeIndexTable indexTable = indexesTables.get(indexDef.getName());
+            final ISqlJetBtreeIndexTable indexTable = getIndex(indexDef.getName());
             indexKeys.add(new IndexKeys(indexTable, currentKey, key));
 
             // check unique indexes
             if (Action.DELETE != action && !hasNull(key)) {
-                if (indexDef.isUnique() || tableDef.getColumnIndexConstraint(indexDef.getName()) != null
-                        || tableDef.getTableIndexConstraint(indexDef.getName()) != null) {
+                if (isUniqueIndex(indexDef)) {
                     final long lookup = indexTable.lookup(key);
                     if (lookup != 0) {
                         if (Action.INSERT == action) {
@@ -753,6 +819,11 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
 
     }
 
+    private boolean isUniqueIndex(ISqlJetIndexDef indexDef) {
+        return indexDef.isUnique() || tableDef.getColumnIndexConstraint(indexDef.getName()) != null
+                || tableDef.getTableIndexConstraint(indexDef.getName()) != null;
+    }
+
     /**
      * @param row
      * @return
@@ -860,7 +931,7 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
             if (!indexesDefs.containsKey(indexName)) {
 				throw new SqlJetException(SqlJetErrorCode.MISUSE, "Index not found: " + indexName);
 			}
-            final ISqlJetBtreeIndexTable indexTable = indexesTables.get(indexName);
+            final ISqlJetBtreeIndexTable indexTable = getIndex(indexName);
             final long lookup = indexTable.lookup(key);
             return lookup != 0 && goToRow(lookup);
         } else {
@@ -869,10 +940,15 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
     }
 
     /**
+     * Opens all indexes which are not opened yet.
+     *
      * @return the indexesTables
      */
     @Override
-	public Map<String, ISqlJetBtreeIndexTable> getIndexesTables() {
+	public Map<String, ISqlJetBtreeIndexTable> getIndexesTables() throws SqlJetException {
+        for (final String indexName : indexesDefs.keySet()) {
+            getIndex(indexName);
+        }
         return Collections.unmodifiableMap(indexesTables);
     }
 
@@ -1023,7 +1099,7 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
      */
     @Override
     public void clear() throws SqlJetException {
-        for (ISqlJetBtreeIndexTable index : indexesTables.values()) {
+        for (ISqlJetBtreeIndexTable index : getIndexesTables().values()) {
             index.clear();
         }
         super.clear();
@@ -1038,13 +1114,18 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
      */
     @Override
     protected Optional<ISqlJetVdbeMem> getValueMem(int field) throws SqlJetException {
-        ISqlJetVdbeMem valueMem = super.getValueMem(field)
-        				.filter(v -> !v.isNull())
-        				.orElse(defaults.getRawField(field));
+        return Optional.ofNullable(getFieldValue(field, super.getValueMem(field).orElse(null)));
+    }
+
+    private ISqlJetVdbeMem getFieldValue(int field, ISqlJetVdbeMem value) throws SqlJetException {
+        if (null == defaults) {
+            defaults = SqlJetBtreeRecord.getRecord(getEncoding(), getDefaults());
+        }
+        final ISqlJetVdbeMem valueMem = value != null && !value.isNull() ? value : defaults.getRawField(field);
         if (valueMem != null) {
-        	return Optional.of(valueMem.applyAffinity(getFieldAffinity(field), getEncoding()));
+        	return valueMem.applyAffinity(getFieldAffinity(field), getEncoding());
         }
-        return Optional.empty();
+        return null;
     }
 
     /**
@@ -1061,8 +1142,142 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
     }
 
     @Override
-	public ISqlJetBtreeIndexTable getIndex(String indexName) {
-        return indexesTables.get(indexName);
+    public int[] getIndexFields(String indexName) {
+        final int[] fields = new int[tableDef.getColumns().size()];
+        Arrays.fill(fields, -1);
+        final ISqlJetIndexDef indexDef = indexName != null ? getIndexDefinitions().get(indexName) : null;
+        if (indexDef != null) {
+            final List<ISqlJetIndexedColumn> columns = indexDef.getColumns();
+            for (int i = columns.size() - 1; i >= 0; i--) {
+                final int field = tableDef.getColumnNumber(columns.get(i).getName());
+                if (field >= 0) {
+                    fields[field] = i;
+                }
+            }
+            if (tableDef.getRowIdPrimaryKeyColumnIndex() >= 0) {
+                fields[tableDef.getRowIdPrimaryKeyColumnIndex()] = columns.size();
+            }
+        }
+        return fields;
+    }
+
+    @Override
+    public Optional<ISqlJetVdbeMem> getIndexedValue(ISqlJetBtreeIndexTable index, int field, int indexField)
+            throws SqlJetException {
+        final ISqlJetBtreeRecord record = index.getRecord();
+        if (!checkField(record, indexField)) {
+            return Optional.empty();
+        }
+        if (field == tableDef.getRowIdPrimaryKeyColumnIndex()) {
+            return Optional.of(record.getRawField(indexField));
+        }
+        return Optional.ofNullable(getFieldValue(field, record.getRawField(indexField)));
+    }
+
+    @Override
+    public void fetchField(int field, SqlJetColumnBatch batch, int column) throws SqlJetException {
+        if (field == tableDef.getRowIdPrimaryKeyColumnIndex()) {
+            if (!eof()) {
+                batch.putInteger(column, getRowId());
+            }
+            return;
+        }
+        final ISqlJetBtreeRecord record = getRecord();
+        if (!checkField(record, field)) {
+            putValue(batch, column, getFieldValue(field, null));
+            return;
+        }
+        fetchField(record, field, field, batch, column);
+    }
+
+    @Override
+    public void fetchIndexedField(ISqlJetBtreeIndexTable index, int field, int indexField, SqlJetColumnBatch batch,
+            int column) throws SqlJetException {
+        final ISqlJetBtreeRecord record = index.getRecord();
+        if (!checkField(record, indexField)) {
+            return;
+        }
+        if (field == tableDef.getRowIdPrimaryKeyColumnIndex()) {
+            putValue(batch, column, record.getRawField(indexField));
+            return;
+        }
+        fetchField(record, field, indexField, batch, column);
+    }
+
+    /**
+     * Puts value of the field which the record has into the batch. Stored
+     * texts and blobs which affinity doesn't change are copied as they are,
+     * texts only if the database is in UTF-8. Like {@link #getString(int)},
+     * texts end at the first zero byte.
+     */
+    private void fetchField(ISqlJetBtreeRecord record, int field, int recordField, SqlJetColumnBatch batch,
+            int column) throws SqlJetException {
+        final int type = record.getSerialType(recordField);
+        if (type >= 12) {
+            final boolean text = (type & 0x01) != 0;
+            if (!text || isStoredAsText(field)) {
+                final ISqlJetMemoryPointer bytes = record.getFieldBytes(recordField);
+                int length = SqlJetVdbeSerialType.serialTypeLen(type);
+                if (text) {
+                    for (int i = 0; i < length; i++) {
+                        if (bytes.getByte(i) == 0) {
+                            length = i;
+                            break;
+                        }
+                    }
+                }
+                final int offset = batch.putBytes(column, text ? SqlJetValueType.TEXT : SqlJetValueType.BLOB,
+                        length);
+                bytes.getBuffer().getBytes(bytes.getPointer(), batch.getBytes(column), offset, length);
+                return;
+            }
+        }
+        putValue(batch, column, getFieldValue(field, record.getRawField(recordField)));
+    }
+
+    private boolean isStoredAsText(int field) throws SqlJetException {
+        final SqlJetTypeAffinity affinity = getFieldAffinity(field);
+        return (affinity == SqlJetTypeAffinity.TEXT || affinity == SqlJetTypeAffinity.NONE)
+                && getEncoding() == SqlJetEncoding.UTF8;
+    }
+
+    private static void putValue(SqlJetColumnBatch batch, int column, ISqlJetVdbeMem value) throws SqlJetException {
+        if (null == value) {
+            return;
+        }
+        switch (value.getType()) {
+        case INTEGER:
+            batch.putInteger(column, value.intValue());
+            break;
+        case FLOAT:
+            batch.putFloat(column, value.realValue());
+            break;
+        case TEXT:
+            batch.putText(column, value.stringValue());
+            break;
+        case BLOB:
+            final ISqlJetMemoryPointer bytes = value.blobValue();
+            final int length = bytes.remaining();
+            final int offset = batch.putBytes(column, SqlJetValueType.BLOB, length);
+            bytes.getBuffer().getBytes(bytes.getPointer(), batch.getBytes(column), offset, length);
+            break;
+        default:
+            break;
+        }
+    }
+
+    @Override
+	public ISqlJetBtreeIndexTable getIndex(String indexName) throws SqlJetException {
+        final ISqlJetIndexDef indexDef = indexesDefs.get(indexName);
+        if (null == indexDef) {
+            return null;
+        }
+        ISqlJetBtreeIndexTable indexTable = indexesTables.get(indexDef.getName());
+        if (null == indexTable) {
+            indexTable = openIndex(indexDef);
+            indexesTables.put(indexDef.getName(), indexTable);
+        }
+        return indexTable;
     }
 
     @Override
@@ -17,6 +17,8 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.tmatesoft.sqljet.core.SqlJetEncoding;
@@ -42,9 +44,41 @@ import org.tmatesoft.sqljet.core.schema.SqlJetSortingOrder;
  * 
  */
 public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBtreeIndexTable {
+
+    /**
+     * Size in bytes of keys buffered by a batch: when they reach it, they are
+     * sorted and written into the index, and buffering starts again.
+     */
+    private static final String SQLJET_INDEX_BATCH_SIZE_PROP = "SQLJET.INDEX_BATCH_SIZE";
+
+    private static final int SQLJET_INDEX_BATCH_SIZE = SqlJetUtility.getIntSysProp(SQLJET_INDEX_BATCH_SIZE_PROP,
+            4 * 1024 * 1024);
+
     private final ISqlJetIndexDef indexDef;
     private final int columns;
 
+    /**
+     * Keys written while batch is active, inserted into the b-tree in key
+     * order by {@link #endBatch()} or when they reach the batch size.
+     */
+    private List<BatchKey> batch;
+
+    /** Size in bytes of keys in the batch */
+    private int batchSize;
+
+    /** Number of keys in the batch which belong to completely inserted records */
+    private int batchMark;
+
+    private static class BatchKey {
+        final SqlJetUnpackedRecord unpacked;
+        final ISqlJetMemoryPointer key;
+
+        BatchKey(SqlJetUnpackedRecord unpacked, ISqlJetMemoryPointer key) {
+            this.unpacked = unpacked;
+            this.key = key;
+        }
+    }
+
     /**
      * Open index by name
      * 
@@ -197,10 +231,70 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
         final ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(btree.getDb().getOptions().getEncoding(),
                 SqlJetUtility.addValueToArray(key, Long.valueOf(rowId)));
         final ISqlJetMemoryPointer zKey = rec.getRawRecord();
+        if (batch != null) {
+            if (batchSize >= SQLJET_INDEX_BATCH_SIZE && batchMark == batch.size()) {
+                flushBatch();
+            }
+            batch.add(new BatchKey(getKeyInfo().recordUnpack(zKey.remaining(), zKey), zKey));
+            batchSize += zKey.remaining();
+            return;
+        }
         getCursor().insert(zKey, zKey.remaining(), SqlJetUtility.memoryManager.allocatePtr(0), 0, 0, append);
         clearRecordCache();
     }
 
+    @Override
+    public void beginBatch() {
+        if (batch == null) {
+            batch = new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void endBatch() throws SqlJetException {
+        if (batch == null) {
+            return;
+        }
+        try {
+            flushBatch();
+        } finally {
+            batch = null;
+            batchSize = 0;
+            batchMark = 0;
+        }
+    }
+
+    @Override
+    public void markBatch() {
+        if (batch != null) {
+            batchMark = batch.size();
+        }
+    }
+
+    @Override
+    public void discardBatch() throws SqlJetException {
+        if (batch == null) {
+            return;
+        }
+        batch.subList(batchMark, batch.size()).clear();
+        endBatch();
+    }
+
+    private void flushBatch() throws SqlJetException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batch.sort((a, b) -> a.unpacked.compareTo(b.unpacked));
+        final ISqlJetMemoryPointer data = SqlJetUtility.memoryManager.allocatePtr(0);
+        for (final BatchKey k : batch) {
+            getCursor().insert(k.key, k.key.remaining(), data, 0, 0, true);
+        }
+        batch.clear();
+        batchSize = 0;
+        batchMark = 0;
+        clearRecordCache();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -235,7 +329,7 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
         return false;
     }
 
-    private long getKeyRowId(ISqlJetBtreeRecord record) {
+    private long getKeyRowId(ISqlJetBtreeRecord record) throws SqlJetException {
         if (null == record) {
 			return 0;
 		}
@@ -13,6 +13,8 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Stack;
@@ -180,6 +182,40 @@ public class SqlJetBtreeTable implements ISqlJetBtreeTable {
         return !getCursor().previous();
     }
 
+    @Override
+	public long getCount() throws SqlJetException {
+        return getCursor().count();
+    }
+
+    @Override
+	public boolean goToIndex(long index) throws SqlJetException {
+        clearRecordCache();
+        return !getCursor().moveToIndex(index);
+    }
+
+    @Override
+	public long getIndex() throws SqlJetException {
+        return getCursor().getIndex();
+    }
+
+    @Override
+    public List<Object[]> getSplitKeys(int parts) throws SqlJetException {
+        final List<Object[]> keys = new ArrayList<>();
+        try {
+            getCursor().forEachSplit(parts, cursor -> {
+                clearRecordCache();
+                if (index) {
+                    keys.add(getValues().clone());
+                } else {
+                    keys.add(new Object[] { Long.valueOf(cursor.getKeySize()) });
+                }
+            });
+        } finally {
+            first();
+        }
+        return keys;
+    }
+
     @Override
 	public ISqlJetBtreeRecord getRecord() throws SqlJetException {
         if (eof()) {
@@ -23,10 +23,19 @@ import java.util.Optional;
 
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
 import org.tmatesoft.sqljet.core.SqlJetValueType;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.table.ISqlJetBooleanTransaction;
+import org.tmatesoft.sqljet.core.table.ISqlJetConsumer;
 import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+import org.tmatesoft.sqljet.core.table.ISqlJetDoubleTransaction;
+import org.tmatesoft.sqljet.core.table.ISqlJetIntTransaction;
+import org.tmatesoft.sqljet.core.table.ISqlJetLongTransaction;
+import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
+import org.tmatesoft.sqljet.core.table.SqlJetColumnBatch;
 import org.tmatesoft.sqljet.core.table.SqlJetDb;
+import org.tmatesoft.sqljet.core.table.SqlJetTransactionRunner;
 
 /**
  * Base implementation of {@link ISqlJetCursor}.
@@ -40,90 +49,260 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     protected final ISqlJetBtreeTable btreeTable;
     protected final SqlJetDb db;
 
+    private boolean closed;
+
+    /* Thread which runs forEach(), its calls are in the transaction already */
+    private Thread boundThread;
+    private final SqlJetTransactionRunner<SqlJetDb> boundRunner;
+
+    /* Current record was deleted, which moved the cursor to the next one */
+    private boolean deleted;
+
     protected SqlJetCursor(ISqlJetBtreeTable table, SqlJetDb db) throws SqlJetException {
         if (db.isInTransaction()) {
             this.btreeTable = table;
             this.db = db;
+            this.boundRunner = new BoundRunner(db);
         } else {
             throw new SqlJetException(SqlJetErrorCode.MISUSE, "Cursor requires active transaction");
         }
     }
 
+    /**
+     * Runs read operations of the cursor. Within {@link #forEach} they are run
+     * in the transaction of the scan, without starting a transaction and
+     * locking the database for each call.
+     * 
+     * @return runner of read operations.
+     * @throws SqlJetException
+     */
+    protected SqlJetTransactionRunner<SqlJetDb> read() throws SqlJetException {
+        return boundThread == Thread.currentThread() ? boundRunner : db.read();
+    }
+
+    /**
+     * @return true if the cursor is used by {@link #forEach} on current thread.
+     */
+    protected boolean isBound() {
+        return boundThread == Thread.currentThread();
+    }
+
+    /**
+     * Runs operation in one read transaction, calls of the cursor's methods
+     * by the operation don't start their own transactions.
+     * 
+     * @param op
+     * @return result of the operation.
+     * @throws SqlJetException
+     */
+    protected <T> T runBound(final ISqlJetTransaction<T, SqlJetDb> op) throws SqlJetException {
+        return db.read().as(db -> {
+                final Thread thread = boundThread;
+                boundThread = Thread.currentThread();
+                try {
+                    return op.run(db);
+                } finally {
+                    boundThread = thread;
+                }
+        });
+    }
+
+    @Override
+	public void forEach(final ISqlJetConsumer<ISqlJetCursor> consumer) throws SqlJetException {
+        runBound(db -> {
+                while (!eof()) {
+                    deleted = false;
+                    consumer.run(this);
+                    if (!deleted) {
+                        next();
+                    }
+                }
+                return null;
+        });
+    }
+
+    /**
+     * Called by {@link #delete()} after the current record was deleted and the
+     * cursor was moved to the next record, so that {@link #forEach} doesn't
+     * skip it.
+     */
+    protected void rowDeleted() {
+        deleted = true;
+    }
+
+    @Override
+	public int fetch(final int maxRows, final int[] fields, final SqlJetColumnBatch batch) throws SqlJetException {
+        return runBound(db -> Integer.valueOf(fetch(this, maxRows, fields, batch))).intValue();
+    }
+
+    /**
+     * Puts value of the field of the current record into the column of the
+     * last row of the batch, for {@link #fetch(int, int[], SqlJetColumnBatch)}.
+     * 
+     * @param field
+     * @param batch
+     * @param column
+     *            number of the column in the batch.
+     * @throws SqlJetException
+     */
+    protected abstract void fetchField(int field, SqlJetColumnBatch batch, int column) throws SqlJetException;
+
+    static int fetch(ISqlJetCursor cursor, int maxRows, int[] fields, SqlJetColumnBatch batch)
+            throws SqlJetException {
+        if (fields.length != batch.getColumnsCount()) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Number of fields differs from columns of the batch");
+        }
+        batch.clear();
+        final int rows = Math.min(maxRows, batch.getCapacity());
+        while (batch.getRowsCount() < rows && !cursor.eof()) {
+            batch.addRow(cursor.getRowId());
+            for (int i = 0; i < fields.length; i++) {
+                fetchField(cursor, fields[i], batch, i);
+            }
+            cursor.next();
+        }
+        return batch.getRowsCount();
+    }
+
+    static void fetchField(ISqlJetCursor cursor, int field, SqlJetColumnBatch batch, int column)
+            throws SqlJetException {
+        if (cursor instanceof SqlJetCursor) {
+            ((SqlJetCursor) cursor).fetchField(field, batch, column);
+            return;
+        } else if (cursor instanceof SqlJetReverseOrderCursor) {
+            ((SqlJetReverseOrderCursor) cursor).fetchField(field, batch, column);
+            return;
+        }
+        throw new SqlJetException(SqlJetErrorCode.MISUSE, "Cursor doesn't support fetch");
+    }
+
+    /**
+     * Runner of operations which are called in the transaction already.
+     */
+    private static class BoundRunner extends SqlJetTransactionRunner<SqlJetDb> {
+
+        private final SqlJetDb db;
+
+        public BoundRunner(SqlJetDb db) {
+            super(SqlJetTransactionMode.READ_ONLY, db);
+            this.db = db;
+        }
+
+        @Override
+        public <T> T as(ISqlJetTransaction<T, SqlJetDb> op) throws SqlJetException {
+            return op.run(db);
+        }
+
+        @Override
+        public void asVoid(ISqlJetConsumer<SqlJetDb> op) throws SqlJetException {
+            op.run(db);
+        }
+
+        @Override
+        public boolean asBool(ISqlJetBooleanTransaction<SqlJetDb> op) throws SqlJetException {
+            return op.run(db);
+        }
+
+        @Override
+        public double asDouble(ISqlJetDoubleTransaction<SqlJetDb> op) throws SqlJetException {
+            return op.run(db);
+        }
+
+        @Override
+        public long asLong(ISqlJetLongTransaction<SqlJetDb> op) throws SqlJetException {
+            return op.run(db);
+        }
+
+        @Override
+        public int asInt(ISqlJetIntTransaction<SqlJetDb> op) throws SqlJetException {
+            return op.run(db);
+        }
+    }
+
+    /**
+     * The table may be given to another cursor once this one is closed, so
+     * it is closed only once.
+     */
     @Override
 	public void close() throws SqlJetException {
-        db.read().asVoid(db -> btreeTable.close());
+        read().asVoid(db -> {
+            if (!closed) {
+                closed = true;
+                btreeTable.close();
+            }
+        });
     }
 
     @Override
 	public boolean eof() throws SqlJetException {
-        return db.read().asBool(db -> btreeTable.eof());
+        return read().asBool(db -> btreeTable.eof());
     }
 
     @Override
 	public boolean first() throws SqlJetException {
-        return db.read().asBool(db -> btreeTable.first());
+        return read().asBool(db -> btreeTable.first());
     }
 
     @Override
 	public boolean last() throws SqlJetException {
-        return db.read().asBool(db -> btreeTable.last());
+        return read().asBool(db -> btreeTable.last());
     }
 
     @Override
 	public boolean next() throws SqlJetException {
-        return db.read().asBool(db -> btreeTable.next());
+        return read().asBool(db -> btreeTable.next());
     }
 
     @Override
 	public boolean previous() throws SqlJetException {
-        return db.read().asBool(db -> btreeTable.previous());
+        return read().asBool(db -> btreeTable.previous());
     }
 
     @Override
 	public int getFieldsCount() throws SqlJetException {
-        return db.read().asInt(db -> btreeTable.getFieldsCount());
+        return read().asInt(db -> btreeTable.getFieldsCount());
     }
 
     @Override
 	public SqlJetValueType getFieldType(final int field) throws SqlJetException {
-        return db.read().as(db -> btreeTable.getFieldType(field));
+        return read().as(db -> btreeTable.getFieldType(field));
     }
 
     @Override
 	public boolean isNull(final int field) throws SqlJetException {
-        return db.read().asBool(db -> btreeTable.isNull(field));
+        return read().asBool(db -> btreeTable.isNull(field));
     }
 
     @Override
 	public String getString(final int field) throws SqlJetException {
-        return db.read().as(db -> btreeTable.getString(field));
+        return read().as(db -> btreeTable.getString(field));
     }
 
     @Override
 	public long getInteger(final int field) throws SqlJetException {
-        return db.read().asLong(db -> btreeTable.getInteger(field));
+        return read().asLong(db -> btreeTable.getInteger(field));
     }
 
     @Override
 	public double getFloat(final int field) throws SqlJetException {
-        return db.read().asDouble(db -> btreeTable.getFloat(field));
+        return read().asDouble(db -> btreeTable.getFloat(field));
     }
 
     @Override
 	public Optional<byte[]> getBlobAsArray(final int field) throws SqlJetException {
-        return db.read().as(db -> btreeTable.getBlob(field).map(ISqlJetMemoryPointer::getBytes));
+        return read().as(db -> btreeTable.getBlob(field).map(ISqlJetMemoryPointer::getBytes));
     }
 
     @Override
 	public Optional<InputStream> getBlobAsStream(final int field) throws SqlJetException {
-        return db.read().as(db -> 
+        return read().as(db -> 
                 btreeTable.getBlob(field).map(buffer -> new ByteArrayInputStream(buffer.getBytes()))
         );
     }
 
     @Override
 	public Object getValue(final int field) throws SqlJetException {
-        return db.read().as(db -> {
+        return read().as(db -> {
                 Object value = btreeTable.getValue(field);
                 if (value instanceof ISqlJetMemoryPointer) {
                     return new ByteArrayInputStream(((ISqlJetMemoryPointer) value).getBytes());
@@ -134,7 +313,7 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
 
     @Override
 	public boolean getBoolean(final int field) throws SqlJetException {
-        return db.read().asBool(db -> (btreeTable.getInteger(field) != 0));
+        return read().asBool(db -> (btreeTable.getInteger(field) != 0));
     }
 
     @Override
@@ -142,4 +321,9 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
         return new SqlJetReverseOrderCursor(this);
     }
 
+    @Override
+	public ISqlJetCursor project(String... fieldNames) throws SqlJetException {
+        return this;
+    }
+
 }
@@ -17,8 +17,16 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Optional;
+
 import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetValueType;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
 import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+import org.tmatesoft.sqljet.core.table.SqlJetColumnBatch;
 import org.tmatesoft.sqljet.core.table.SqlJetDb;
 
 /**
@@ -28,6 +36,17 @@ import org.tmatesoft.sqljet.core.table.SqlJetDb;
  */
 public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISqlJetCursor {
     protected final ISqlJetBtreeIndexTable indexTable;
+    private final String indexName;
+
+    /* Numbers of fields in index entries, when projected fields are in the index */
+    private int[] indexFields;
+
+    /* Row of the current index entry which isn't looked up yet */
+    private boolean rowPending;
+    private long pendingRowId;
+
+    /* Row was moved by goTo() away from the current index entry */
+    private boolean rowMoved;
 
     /**
      * @param table
@@ -37,18 +56,19 @@ public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISq
     public SqlJetIndexOrderCursor(ISqlJetBtreeDataTable table, SqlJetDb db, String indexName) throws SqlJetException {
         super(table, db);
         String newIndexName = indexName != null ? indexName : table.getPrimaryKeyIndex();
-        this.indexTable = newIndexName != null ? table.getIndexesTables().get(newIndexName) : null;
+        this.indexTable = newIndexName != null ? table.getIndex(newIndexName) : null;
+        this.indexName = newIndexName;
         first();
     }
 
     @Override
     public boolean first() throws SqlJetException {
-        return db.read().asBool(db -> {
+        return read().asBool(db -> {
                 if (indexTable == null) {
                     return SqlJetIndexOrderCursor.super.first();
                 } else {
                     if (indexTable.first()) {
-                        return firstRowNum(goTo(indexTable.getKeyRowId()));
+                        return firstRowNum(seekRow(indexTable.getKeyRowId()));
                     }
                 }
                 return false;
@@ -57,12 +77,12 @@ public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISq
 
     @Override
     public boolean next() throws SqlJetException {
-        return db.read().asBool(db -> {
+        return read().asBool(db -> {
                 if (indexTable == null) {
                     return SqlJetIndexOrderCursor.super.next();
                 } else {
                     if (indexTable.next()) {
-                        return nextRowNum(goTo(indexTable.getKeyRowId()));
+                        return nextRowNum(seekRow(indexTable.getKeyRowId()));
                     }
                 }
                 return false;
@@ -71,7 +91,7 @@ public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISq
 
     @Override
     public boolean eof() throws SqlJetException {
-        return db.read().asBool(db -> {
+        return read().asBool(db -> {
                 if (indexTable == null) {
                     return SqlJetIndexOrderCursor.super.eof();
                 } else {
@@ -82,12 +102,12 @@ public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISq
 
     @Override
     public boolean last() throws SqlJetException {
-        return db.read().asBool(db -> {
+        return read().asBool(db -> {
                 if (indexTable == null) {
                     return SqlJetIndexOrderCursor.super.last();
                 } else {
                     if (indexTable.last()) {
-                        return lastRowNum(goTo(indexTable.getKeyRowId()));
+                        return lastRowNum(seekRow(indexTable.getKeyRowId()));
                     }
                 }
                 return false;
@@ -96,12 +116,12 @@ public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISq
 
     @Override
     public boolean previous() throws SqlJetException {
-        return db.read().asBool(db -> {
+        return read().asBool(db -> {
                 if (indexTable == null) {
                     return SqlJetIndexOrderCursor.super.previous();
                 } else {
                     if (indexTable.previous()) {
-                        return previousRowNum(goTo(indexTable.getKeyRowId()));
+                        return previousRowNum(seekRow(indexTable.getKeyRowId()));
                     }
                 }
                 return false;
@@ -116,20 +136,208 @@ public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISq
         super.delete();
         if (indexTable != null) {
             goTo(indexTable.getKeyRowId());
+            rowMoved = false;
+        }
+    }
+
+    /**
+     * Goes to the row without moving the index, so until the cursor moves
+     * again the fields are read from the table even if they are in the index.
+     */
+    @Override
+    public boolean goTo(final long rowId) throws SqlJetException {
+        return read().asBool(db -> {
+                rowPending = false;
+                rowMoved = indexTable != null;
+                return SqlJetIndexOrderCursor.super.goTo(rowId);
+        });
+    }
+
+    @Override
+    protected ISqlJetBtreeTable getRowsTable() {
+        return indexTable != null ? indexTable : super.getRowsTable();
+    }
+
+    @Override
+    protected void goToCountedRecord() throws SqlJetException {
+        if (indexTable != null) {
+            seekRow(indexTable.getKeyRowId());
         }
     }
 
     @Override
     protected void computeRows(boolean current) throws SqlJetException {
         if (indexTable != null) {
-            db.read().asVoid(db -> indexTable.pushState());
+            read().asVoid(db -> indexTable.pushState());
         } 
         try {
             super.computeRows(current);
         } finally {
             if (indexTable != null) {
-                db.read().asVoid(db -> indexTable.popState());
+                read().asVoid(db -> indexTable.popState());
             }
         }
     }
+
+    /**
+     * Goes to the row of the current index entry. If the cursor reads fields
+     * from the index, the row is looked up only when the table is accessed by
+     * {@link #getBtreeDataTable()}.
+     * 
+     * @param rowId
+     * @return true if cursor is on a record.
+     * @throws SqlJetException
+     */
+    protected boolean seekRow(long rowId) throws SqlJetException {
+        if (indexFields == null) {
+            final boolean result = goTo(rowId);
+            rowMoved = false;
+            return result;
+        }
+        rowMoved = false;
+        pendingRowId = rowId;
+        rowPending = true;
+        return !eof();
+    }
+
+    @Override
+    protected ISqlJetBtreeDataTable getBtreeDataTable() throws SqlJetException {
+        final ISqlJetBtreeDataTable table = super.getBtreeDataTable();
+        if (rowPending) {
+            rowPending = false;
+            table.goToRow(pendingRowId);
+        }
+        return table;
+    }
+
+    @Override
+    public ISqlJetCursor project(final String... fieldNames) throws SqlJetException {
+        read().asVoid(db -> {
+                indexFields = null;
+                if (indexTable == null) {
+                    return;
+                }
+                final ISqlJetBtreeDataTable table = (ISqlJetBtreeDataTable) btreeTable;
+                final int[] fields = table.getIndexFields(indexName);
+                for (String fieldName : fieldNames) {
+                    if (!SqlJetBtreeDataTable.isFieldNameRowId(fieldName)) {
+                        final int field = table.getDefinition().getColumnNumber(fieldName);
+                        if (field < 0 || fields[field] < 0) {
+                            return;
+                        }
+                    }
+                }
+                indexFields = fields;
+        });
+        return this;
+    }
+
+    private boolean isIndexed(int field) throws SqlJetException {
+        return indexFields != null && !rowMoved && field >= 0 && field < indexFields.length && indexFields[field] >= 0
+                && !indexTable.eof();
+    }
+
+    private Optional<ISqlJetVdbeMem> getIndexedValue(int field) throws SqlJetException {
+        return ((ISqlJetBtreeDataTable) btreeTable).getIndexedValue(indexTable, field, indexFields[field]);
+    }
+
+    @Override
+    protected void fetchField(int field, SqlJetColumnBatch batch, int column) throws SqlJetException {
+        if (isIndexed(field)) {
+            ((ISqlJetBtreeDataTable) btreeTable).fetchIndexedField(indexTable, field, indexFields[field], batch,
+                    column);
+        } else {
+            super.fetchField(field, batch, column);
+        }
+    }
+
+    @Override
+    public long getRowId() throws SqlJetException {
+        return read().asLong(db -> rowPending ? pendingRowId : SqlJetIndexOrderCursor.super.getRowId());
+    }
+
+    @Override
+    public int getFieldsCount() throws SqlJetException {
+        return read().asInt(db -> getBtreeDataTable().getFieldsCount());
+    }
+
+    @Override
+    public SqlJetValueType getFieldType(final int field) throws SqlJetException {
+        return read().as(db -> isIndexed(field)
+                ? getIndexedValue(field).map(ISqlJetVdbeMem::getType).orElse(SqlJetValueType.NULL)
+                : getBtreeDataTable().getFieldType(field));
+    }
+
+    @Override
+    public boolean isNull(final int field) throws SqlJetException {
+        return read().asBool(db -> isIndexed(field)
+                ? getIndexedValue(field).map(ISqlJetVdbeMem::isNull).orElse(Boolean.TRUE).booleanValue()
+                : getBtreeDataTable().isNull(field));
+    }
+
+    @Override
+    public String getString(final int field) throws SqlJetException {
+        return read().as(db -> isIndexed(field)
+                ? getIndexedValue(field).map(ISqlJetVdbeMem::stringValue).orElse(null)
+                : getBtreeDataTable().getString(field));
+    }
+
+    @Override
+    public long getInteger(final int field) throws SqlJetException {
+        return read().asLong(db -> isIndexed(field)
+                ? getIndexedValue(field).map(ISqlJetVdbeMem::intValue).orElse(Long.valueOf(0)).longValue()
+                : getBtreeDataTable().getInteger(field));
+    }
+
+    @Override
+    public double getFloat(final int field) throws SqlJetException {
+        return read().asDouble(db -> isIndexed(field)
+                ? getIndexedValue(field).map(ISqlJetVdbeMem::realValue).orElse(Double.valueOf(0.0)).doubleValue()
+                : getBtreeDataTable().getFloat(field));
+    }
+
+    private Optional<ISqlJetMemoryPointer> getBlob(int field) throws SqlJetException {
+        return isIndexed(field) ? getIndexedValue(field).map(ISqlJetVdbeMem::blobValue)
+                : getBtreeDataTable().getBlob(field);
+    }
+
+    @Override
+    public Optional<byte[]> getBlobAsArray(final int field) throws SqlJetException {
+        return read().as(db -> getBlob(field).map(ISqlJetMemoryPointer::getBytes));
+    }
+
+    @Override
+    public Optional<InputStream> getBlobAsStream(final int field) throws SqlJetException {
+        return read().as(db -> getBlob(field).map(buffer -> new ByteArrayInputStream(buffer.getBytes())));
+    }
+
+    @Override
+    public Object getValue(final int field) throws SqlJetException {
+        return read().as(db -> {
+                final Object value = isIndexed(field) ? getIndexedValue(field).map(ISqlJetVdbeMem::toObject).orElse(null)
+                        : getBtreeDataTable().getValue(field);
+                if (value instanceof ISqlJetMemoryPointer) {
+                    return new ByteArrayInputStream(((ISqlJetMemoryPointer) value).getBytes());
+                }
+                return value;
+        });
+    }
+
+    @Override
+    public Object getValue(final String fieldName) throws SqlJetException {
+        return read().as(db -> {
+                if (indexFields != null && !SqlJetBtreeDataTable.isFieldNameRowId(fieldName)) {
+                    final int field = getFieldSafe(fieldName);
+                    if (isIndexed(field)) {
+                        return getIndexedValue(field).map(ISqlJetVdbeMem::toObject).orElse(null);
+                    }
+                }
+                return SqlJetIndexOrderCursor.super.getValue(fieldName);
+        });
+    }
+
+    @Override
+    public boolean getBoolean(final int field) throws SqlJetException {
+        return read().asBool(db -> getInteger(field) != 0);
+    }
 }
@@ -78,6 +78,15 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
         first();
     }
 
+    /**
+     * Rows are limited by the scope, so they are counted by stepping through
+     * them.
+     */
+    @Override
+    protected ISqlJetBtreeTable getRowsTable() {
+        return null;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -86,7 +95,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
      */
     @Override
     public boolean goTo(final long rowId) throws SqlJetException {
-        return db.read().asBool(db -> {
+        return read().asBool(db -> {
                 SqlJetIndexScopeCursor.super.goTo(rowId);
                 return !eof();
         });
@@ -100,7 +109,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
      */
     @Override
     public boolean first() throws SqlJetException {
-        return db.read().asBool(this::firstSafe);
+        return read().asBool(this::firstSafe);
     }
 
     private boolean firstSafe(SqlJetDb db) throws SqlJetException {
@@ -125,7 +134,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
                 }
             }
             if (lookup != 0) {
-                return firstRowNum(goTo(lookup));
+                return firstRowNum(seekRow(lookup));
             }
         }
         return false;
@@ -133,7 +142,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
     
     @Override
     public boolean next() throws SqlJetException {
-        return db.read().asBool(this::nextSafe);
+        return read().asBool(this::nextSafe);
     }
 
 	private boolean nextSafe(SqlJetDb db) throws SqlJetException {
@@ -144,7 +153,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
             return !eof();
         } else {
             if (indexTable.next() && !eof()) {
-                return nextRowNum(goTo(indexTable.getKeyRowId()));
+                return nextRowNum(seekRow(indexTable.getKeyRowId()));
             }
         }
         return false;
@@ -152,7 +161,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
 
     @Override
     public boolean previous() throws SqlJetException {
-        return db.read().asBool(this::previousSafe);
+        return read().asBool(this::previousSafe);
     }
     
     private boolean previousSafe(SqlJetDb db) throws SqlJetException {
@@ -163,7 +172,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
             return !eof();
         } else {
             if (indexTable.previous() && !eof()) {
-                return previousRowNum(goTo(indexTable.getKeyRowId()));
+                return previousRowNum(seekRow(indexTable.getKeyRowId()));
             }
         }
         return false;
@@ -171,7 +180,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
 
     @Override
     public boolean eof() throws SqlJetException {
-        return db.read().asBool(db -> SqlJetIndexScopeCursor.super.eof() || !checkScope());
+        return read().asBool(db -> SqlJetIndexScopeCursor.super.eof() || !checkScope());
     }
 
     /**
@@ -225,7 +234,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
      */
     @Override
     public boolean last() throws SqlJetException {
-        return db.read().asBool(db -> {
+        return read().asBool(db -> {
                 if (lastKey == null) {
                     return SqlJetIndexScopeCursor.super.last();
                 } else if (indexTable == null) {
@@ -247,7 +256,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
                         }
                     }
                     if (lookup != 0) {
-                        return lastRowNum(goTo(lookup));
+                        return lastRowNum(seekRow(lookup));
                     }
                 }
                 return false;
@@ -267,7 +276,7 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
                 SqlJetIndexScopeCursor.super.delete();
                 return null;
         });
-        db.read().asVoid(db -> {
+        read().asVoid(db -> {
                 if (!checkScope()) {
 					next();
 				}
@@ -282,12 +291,17 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
      */
     @Override
     public long getRowId() throws SqlJetException {
-        return db.runSynchronized(db -> {
-                if (indexTable != null && !indexTable.eof()) {
-                    return Long.valueOf(indexTable.getKeyRowId());
-                }
-                return Long.valueOf(SqlJetIndexScopeCursor.super.getRowId());
-        }).longValue();
+        if (isBound()) {
+            return getCurrentRowId();
+        }
+        return db.runSynchronized(db -> Long.valueOf(getCurrentRowId())).longValue();
+    }
+
+    private long getCurrentRowId() throws SqlJetException {
+        if (indexTable != null && !indexTable.eof()) {
+            return indexTable.getKeyRowId();
+        }
+        return super.getRowId();
     }
 
 }
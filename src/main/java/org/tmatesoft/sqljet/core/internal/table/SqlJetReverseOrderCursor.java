@@ -24,7 +24,11 @@ import java.util.Optional;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.SqlJetValueType;
 import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
+import org.tmatesoft.sqljet.core.table.ISqlJetConsumer;
 import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
+import org.tmatesoft.sqljet.core.table.SqlJetColumnBatch;
+import org.tmatesoft.sqljet.core.table.SqlJetDb;
 
 /**
  * @author TMate Software Ltd.
@@ -36,6 +40,9 @@ public class SqlJetReverseOrderCursor implements ISqlJetCursor {
     private ISqlJetCursor cursor;
     private boolean eof;
 
+    /* Current record was deleted, which moved the cursor to the next one */
+    private boolean deleted;
+
     public SqlJetReverseOrderCursor(ISqlJetCursor cursor) throws SqlJetException {
         this.cursor = cursor;
         first();
@@ -60,7 +67,8 @@ public class SqlJetReverseOrderCursor implements ISqlJetCursor {
 	public void delete() throws SqlJetException {
         if (!eof) {
             cursor.delete();
-            eof = cursor.eof();
+            eof = !(cursor.eof() ? cursor.last() : cursor.previous());
+            deleted = true;
         }
     }
 
@@ -419,6 +427,61 @@ public class SqlJetReverseOrderCursor implements ISqlJetCursor {
         return new SqlJetReverseOrderCursor(this);
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetCursor#project(java.lang.String[])
+     */
+    @Override
+	public ISqlJetCursor project(String... fieldNames) throws SqlJetException {
+        cursor.project(fieldNames);
+        return this;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetCursor#forEach(org.tmatesoft.sqljet.core.table.ISqlJetConsumer)
+     */
+    @Override
+	public void forEach(final ISqlJetConsumer<ISqlJetCursor> consumer) throws SqlJetException {
+        runBound(db -> {
+                while (!eof()) {
+                    deleted = false;
+                    consumer.run(this);
+                    if (!deleted) {
+                        next();
+                    }
+                }
+                return null;
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetCursor#fetch(int, int[],
+     * org.tmatesoft.sqljet.core.table.SqlJetColumnBatch)
+     */
+    @Override
+	public int fetch(final int maxRows, final int[] fields, final SqlJetColumnBatch batch) throws SqlJetException {
+        return runBound(db -> Integer.valueOf(SqlJetCursor.fetch(this, maxRows, fields, batch))).intValue();
+    }
+
+    <T> T runBound(ISqlJetTransaction<T, SqlJetDb> op) throws SqlJetException {
+        if (cursor instanceof SqlJetCursor) {
+            return ((SqlJetCursor) cursor).runBound(op);
+        } else if (cursor instanceof SqlJetReverseOrderCursor) {
+            return ((SqlJetReverseOrderCursor) cursor).runBound(op);
+        } else {
+            return op.run(null);
+        }
+    }
+
+    void fetchField(int field, SqlJetColumnBatch batch, int column) throws SqlJetException {
+        SqlJetCursor.fetchField(cursor, field, batch, column);
+    }
+
     /*
      * (non-Javadoc)
      *
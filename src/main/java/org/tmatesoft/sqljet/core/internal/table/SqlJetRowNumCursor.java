@@ -74,6 +74,11 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
     @Override
 	public long getRowCount() throws SqlJetException {
 
+        final ISqlJetBtreeTable rows = getCountedTable();
+        if (rows != null) {
+            return read().asLong(db -> rows.getCount());
+        }
+
         if (rowsCount < 0) {
             computeRows(false);
         }
@@ -81,11 +86,35 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
         return rowsCount;
     }
 
+    /**
+     * Returns B-Tree whose records correspond one to one to rows of the
+     * cursor, in the same order. Count and positions of rows are then taken
+     * from pages of the B-Tree instead of stepping through all rows.
+     * 
+     * @return B-Tree of rows, or null if the cursor filters rows.
+     */
+    protected ISqlJetBtreeTable getRowsTable() {
+        return null;
+    }
+
+    /**
+     * Moves the cursor to the row of the current record of
+     * {@link #getRowsTable()}, after that B-Tree was positioned.
+     * 
+     * @throws SqlJetException
+     */
+    protected void goToCountedRecord() throws SqlJetException {
+    }
+
+    private ISqlJetBtreeTable getCountedTable() {
+        return limit == 0 ? getRowsTable() : null;
+    }
+
     /**
      * @throws SqlJetException
      */
     protected void computeRows(final boolean current) throws SqlJetException {
-        db.read().asVoid(db -> {
+        read().asVoid(db -> {
                 try {
                     internalMove = true;
 
@@ -120,6 +149,11 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
     @Override
 	public long getRowIndex() throws SqlJetException {
 
+        final ISqlJetBtreeTable rows = getCountedTable();
+        if (rows != null) {
+            return read().asLong(db -> rows.eof() ? rows.getCount() : rows.getIndex() + 1);
+        }
+
         if (currentRowNum < 0 || rowsCount < 0 && eof() || currentRowId != getRowIdSafe()) {
             computeRows(true);
         }
@@ -129,6 +163,19 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
 
     @Override
 	public boolean goToRow(long rowNum) throws SqlJetException {
+        final ISqlJetBtreeTable rows = getCountedTable();
+        if (rows != null) {
+            return read().asBool(db -> {
+                if (rowNum < 1 || rowNum > rows.getCount() || !rows.goToIndex(rowNum - 1)) {
+                    return false;
+                }
+                goToCountedRecord();
+                currentRowNum = rowNum;
+                currentRowId = getRowIdSafe();
+                return true;
+            });
+        }
+
         try {
             internalMove = true;
 
@@ -209,6 +256,7 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
         rowsCount--;
         currentRowNum--;
         currentRowId = getRowIdSafe();
+        rowDeleted();
     }
 
     @Override
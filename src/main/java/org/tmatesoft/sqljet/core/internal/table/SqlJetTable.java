@@ -17,19 +17,30 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.schema.SqlJetSchema;
 import org.tmatesoft.sqljet.core.schema.ISqlJetIndexDef;
 import org.tmatesoft.sqljet.core.schema.ISqlJetTableDef;
 import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
+import org.tmatesoft.sqljet.core.table.ISqlJetConsumer;
 import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
 import org.tmatesoft.sqljet.core.table.ISqlJetTable;
 import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
@@ -46,13 +57,11 @@ import org.tmatesoft.sqljet.core.table.SqlJetScope;
 public class SqlJetTable implements ISqlJetTable {
 
     private final SqlJetDb db;
-    private final ISqlJetBtree btree;
     private final String tableName;
     private final boolean write;
 
-    public SqlJetTable(SqlJetDb db, ISqlJetBtree btree, String tableName, boolean write) throws SqlJetException {
+    public SqlJetTable(SqlJetDb db, String tableName, boolean write) throws SqlJetException {
         this.db = db;
-        this.btree = btree;
         this.tableName = tableName;
         this.write = write;
         if (null == getDefinition()) {
@@ -78,7 +87,7 @@ public class SqlJetTable implements ISqlJetTable {
 
     @Override
 	public ISqlJetTableDef getDefinition() throws SqlJetException {
-        return btree.getSchema().getTable(tableName);
+        return db.getBtree().getSchema().getTable(tableName);
     };
 
     /*
@@ -89,7 +98,7 @@ public class SqlJetTable implements ISqlJetTable {
      */
     @Override
 	public Set<ISqlJetIndexDef> getIndexesDefs() throws SqlJetException {
-        return btree.getSchema().getIndexes(tableName);
+        return db.getBtree().getSchema().getIndexes(tableName);
     }
 
     /*
@@ -128,29 +137,51 @@ public class SqlJetTable implements ISqlJetTable {
         		.orElse(null);
     }
 
+    /**
+     * Opens table on the B-Tree used by the current thread, which is
+     * read-only during concurrent read transactions. Tables of closed
+     * cursors are reused within a transaction, see
+     * {@link SqlJetSchema#openTable(String, boolean)}.
+     */
+    private SqlJetBtreeDataTable openDataTable() throws SqlJetException {
+        final ISqlJetBtree btree = db.getBtree();
+        return btree.getSchema().openTable(tableName, write && !btree.isReadOnly());
+    }
+
     @Override
 	public ISqlJetCursor open() throws SqlJetException {
-        return db.runWithLock(db -> new SqlJetTableDataCursor(new SqlJetBtreeDataTable(btree, tableName, write), db));
+        return db.runWithLock(db -> new SqlJetTableDataCursor(openDataTable(), db));
     }
 
     @Override
 	public ISqlJetCursor lookup(final String indexName, final Object... key) throws SqlJetException {
         final Object[] k = SqlJetUtility.adjustNumberTypes(key);
         return db.runWithLock(db -> {
-                final SqlJetBtreeDataTable table = new SqlJetBtreeDataTable(btree, tableName, write);
+                final SqlJetBtreeDataTable table = openDataTable();
                 checkIndexName(indexName, table);
                 return new SqlJetIndexScopeCursor(table, db, indexName, k, k);
         });
     }
 
+    /**
+     * Runs write operation on the table which is kept open by the schema
+     * until the end of the transaction, so that a sequence of writes in one
+     * transaction opens the table and its indexes once. The table is closed
+     * if the operation fails, as its cursors may be left in any state.
+     */
     private <T> T runWriteTransaction(final ISqlJetTransaction<T, ISqlJetBtreeDataTable> op) throws SqlJetException {
         return db.write().as(db -> {
-                final ISqlJetBtreeDataTable table = new SqlJetBtreeDataTable(btree, tableName, write);
-                try {
-                    return op.run(table);
-                } finally {
-                    table.close();
+            final SqlJetSchema schema = db.getBtree().getSchema();
+            boolean success = false;
+            try {
+                final T result = op.run(schema.getWriteTable(tableName));
+                success = true;
+                return result;
+            } finally {
+                if (!success) {
+                    schema.closeTables();
                 }
+            }
         });
     }
 
@@ -159,6 +190,11 @@ public class SqlJetTable implements ISqlJetTable {
         return insertOr(null, values);
     }
 
+    @Override
+	public long insertBatch(final Iterable<Object[]> rows) throws SqlJetException {
+        return runWriteTransaction(table -> Long.valueOf(table.insertBatch(rows))).longValue();
+    }
+
     @Override
 	public long insertByFieldNames(final Map<String, Object> values) throws SqlJetException {
         return insertByFieldNamesOr(null, values);
@@ -188,7 +224,7 @@ public class SqlJetTable implements ISqlJetTable {
     @Override
 	public ISqlJetCursor order(final String indexName) throws SqlJetException {
         return db.runWithLock(db -> {
-                final SqlJetBtreeDataTable table = new SqlJetBtreeDataTable(btree, tableName, write);
+                final SqlJetBtreeDataTable table = openDataTable();
                 checkIndexName(indexName, table);
                 return new SqlJetIndexOrderCursor(table, db, indexName);
         });
@@ -203,7 +239,7 @@ public class SqlJetTable implements ISqlJetTable {
 	public ISqlJetCursor scope(final String indexName, SqlJetScope scope)  throws SqlJetException {
         final SqlJetScope adjustedScope = SqlJetUtility.adjustScopeNumberTypes(scope);
         return db.runWithLock(db -> {
-                final SqlJetBtreeDataTable table = new SqlJetBtreeDataTable(btree, tableName, write);
+                final SqlJetBtreeDataTable table = openDataTable();
                 checkIndexName(indexName, table);
                 if (isNeedReverse(getIndexTable(indexName, table), adjustedScope)) {
                     return new SqlJetReverseOrderCursor(new SqlJetIndexScopeCursor(table, db, indexName, adjustedScope.reverse()));
@@ -213,6 +249,129 @@ public class SqlJetTable implements ISqlJetTable {
         });
     }
 
+    @Override
+    public List<SqlJetScope> split(final String indexName, final int parts) throws SqlJetException {
+        return db.runWithLock(db -> {
+                final SqlJetBtreeDataTable table = openDataTable();
+                try {
+                    checkIndexName(indexName, table);
+                    final ISqlJetBtreeIndexTable indexTable = getIndexTable(indexName, table);
+                    final List<Object[]> keys = new ArrayList<>();
+                    if (null == indexTable) {
+                        /* Row ID scopes treat zero as no bound */
+                        for (Object[] key : table.getSplitKeys(parts)) {
+                            if (((Long) key[0]).longValue() > 0) {
+                                keys.add(key);
+                            }
+                        }
+                    } else {
+                        /* Values of indexed fields without row ID, entries with equal values stay in one scope */
+                        for (Object[] entry : indexTable.getSplitKeys(parts)) {
+                            final Object[] key = Arrays.copyOf(entry, entry.length - 1);
+                            if (keys.isEmpty() || indexTable.compareKeys(keys.get(keys.size() - 1), key) != 0) {
+                                keys.add(key);
+                            }
+                        }
+                    }
+                    final List<SqlJetScope> scopes = new ArrayList<>();
+                    Object[] firstKey = null;
+                    for (Object[] key : keys) {
+                        scopes.add(new SqlJetScope(firstKey, false, key, true));
+                        firstKey = key;
+                    }
+                    scopes.add(new SqlJetScope(firstKey, false, null, true));
+                    return scopes;
+                } finally {
+                    table.close();
+                }
+        });
+    }
+
+    @Override
+    public void parallelScan(final String indexName, final int parts, final ISqlJetConsumer<ISqlJetCursor> consumer)
+            throws SqlJetException {
+        if (db.isRunByCurrentThread()) {
+            for (SqlJetScope scope : split(indexName, parts)) {
+                scan(indexName, scope, consumer);
+            }
+            return;
+        }
+        final List<SqlJetScope> scopes = db.read().as(db -> split(indexName, parts));
+        final int threads = Math.min(scopes.size(), Runtime.getRuntime().availableProcessors());
+        final AtomicInteger number = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "SqlJet scan " + tableName + " #" + number.incrementAndGet()));
+        try {
+            scan(indexName, scopes, executor, consumer);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public void parallelScan(final String indexName, final int parts, final Executor executor,
+            final ISqlJetConsumer<ISqlJetCursor> consumer) throws SqlJetException {
+        if (db.isRunByCurrentThread()) {
+            for (SqlJetScope scope : split(indexName, parts)) {
+                scan(indexName, scope, consumer);
+            }
+            return;
+        }
+        scan(indexName, db.read().as(db -> split(indexName, parts)), executor, consumer);
+    }
+
+    private void scan(final String indexName, final List<SqlJetScope> scopes, final Executor executor,
+            final ISqlJetConsumer<ISqlJetCursor> consumer) throws SqlJetException {
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(scopes.size());
+        for (final SqlJetScope scope : scopes) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        db.read().asVoid(db -> scan(indexName, scope, consumer));
+                    } catch (SqlJetException | RuntimeException | Error e) {
+                        errors.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                errors.add(e);
+                done.countDown();
+            }
+        }
+        boolean interrupted = false;
+        while (done.getCount() > 0) {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (!errors.isEmpty()) {
+            final Throwable e = errors.get(0);
+            if (e instanceof SqlJetException) {
+                throw (SqlJetException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw (Error) e;
+        }
+    }
+
+    private void scan(final String indexName, final SqlJetScope scope, final ISqlJetConsumer<ISqlJetCursor> consumer)
+            throws SqlJetException {
+        final ISqlJetCursor cursor = scope(indexName, scope);
+        try {
+            consumer.run(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Override
 	public void clear() throws SqlJetException {
         runWriteTransaction(table -> {
@@ -244,7 +403,7 @@ public class SqlJetTable implements ISqlJetTable {
         return false;
     }
 
-    private ISqlJetBtreeIndexTable getIndexTable(final String indexName, final SqlJetBtreeDataTable table) {
+    private ISqlJetBtreeIndexTable getIndexTable(final String indexName, final SqlJetBtreeDataTable table) throws SqlJetException {
         final String index = indexName == null ? table.getPrimaryKeyIndex() : indexName;
         return index != null ? table.getIndex(index) : null;
     }
@@ -255,7 +414,7 @@ public class SqlJetTable implements ISqlJetTable {
         }
     }
 
-    private boolean isIndexNameValid(final String indexName, final SqlJetBtreeDataTable table) {
+    private boolean isIndexNameValid(final String indexName, final SqlJetBtreeDataTable table) throws SqlJetException {
         if (indexName != null) {
             return getIndexTable(indexName, table) != null;
         } else {
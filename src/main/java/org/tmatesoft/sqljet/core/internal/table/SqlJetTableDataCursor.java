@@ -17,7 +17,6 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.Map;
 import java.util.Optional;
@@ -25,8 +24,8 @@ import java.util.Optional;
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.SqlJetValueType;
-import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
+import org.tmatesoft.sqljet.core.table.SqlJetColumnBatch;
 import org.tmatesoft.sqljet.core.table.SqlJetDb;
 
 /**
@@ -43,13 +42,18 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
         super.first();
     }
 
-    protected ISqlJetBtreeDataTable getBtreeDataTable() {
+    protected ISqlJetBtreeDataTable getBtreeDataTable() throws SqlJetException {
         return (ISqlJetBtreeDataTable) btreeTable;
     }
 
+    @Override
+    protected ISqlJetBtreeTable getRowsTable() {
+        return btreeTable;
+    }
+
     @Override
 	public long getRowId() throws SqlJetException {
-        return db.read().asLong(db -> {
+        return read().asLong(db -> {
                 final ISqlJetBtreeDataTable table = getBtreeDataTable();
                 if (table.eof()) {
                     throw new SqlJetException(SqlJetErrorCode.MISUSE,
@@ -61,14 +65,14 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
 
     @Override
 	public boolean goTo(final long rowId) throws SqlJetException {
-        return db.read().asBool(db -> {
+        return read().asBool(db -> {
                 final ISqlJetBtreeDataTable table = getBtreeDataTable();
                 return table.goToRow(rowId);
         });
     }
 
-    private int getFieldSafe(String fieldName) throws SqlJetException {
-        final ISqlJetBtreeDataTable table = getBtreeDataTable();
+    protected int getFieldSafe(String fieldName) throws SqlJetException {
+        final ISqlJetBtreeDataTable table = (ISqlJetBtreeDataTable) btreeTable;
         if (eof()) {
             throw new SqlJetException(SqlJetErrorCode.MISUSE,
                     "Table is empty or the current record doesn't point to a data row");
@@ -85,50 +89,48 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
 
     @Override
 	public SqlJetValueType getFieldType(final String fieldName) throws SqlJetException {
-        return db.read().as(db -> getBtreeDataTable().getFieldType(getFieldSafe(fieldName)));
+        return read().as(db -> getFieldType(getFieldSafe(fieldName)));
     }
 
     @Override
 	public boolean isNull(final String fieldName) throws SqlJetException {
-        return db.read().asBool(db -> getBtreeDataTable().isNull(getFieldSafe(fieldName)));
+        return read().asBool(db -> isNull(getFieldSafe(fieldName)));
     }
 
     @Override
 	public String getString(final String fieldName) throws SqlJetException {
-        return db.read().as(db -> getBtreeDataTable().getString(getFieldSafe(fieldName)));
+        return read().as(db -> getString(getFieldSafe(fieldName)));
     }
 
     @Override
 	public long getInteger(final String fieldName) throws SqlJetException {
-        return db.read().asLong(db -> {
+        return read().asLong(db -> {
                 if (SqlJetBtreeDataTable.isFieldNameRowId(fieldName)) {
                     return getBtreeDataTable().getRowId();
                 } else {
-                    return getBtreeDataTable().getInteger(getFieldSafe(fieldName));
+                    return getInteger(getFieldSafe(fieldName));
                 }
         });
     }
 
     @Override
 	public double getFloat(final String fieldName) throws SqlJetException {
-        return db.read().asDouble(db -> getBtreeDataTable().getFloat(getFieldSafe(fieldName)));
+        return read().asDouble(db -> getFloat(getFieldSafe(fieldName)));
     }
 
     @Override
 	public Optional<byte[]> getBlobAsArray(final String fieldName) throws SqlJetException {
-        return db.read().as(db -> getBtreeDataTable().getBlob(getFieldSafe(fieldName)).map(ISqlJetMemoryPointer::getBytes));
+        return read().as(db -> getBlobAsArray(getFieldSafe(fieldName)));
     }
 
     @Override
 	public Optional<InputStream> getBlobAsStream(final String fieldName) throws SqlJetException {
-        return db.read().as(db -> 
-                getBtreeDataTable().getBlob(getFieldSafe(fieldName)).map(
-                		buffer -> new ByteArrayInputStream(buffer.getBytes())));
+        return read().as(db -> getBlobAsStream(getFieldSafe(fieldName)));
     }
 
     @Override
 	public Object getValue(final String fieldName) throws SqlJetException {
-        return db.read().as(db -> {
+        return read().as(db -> {
                 if (SqlJetBtreeDataTable.isFieldNameRowId(fieldName)) {
                     return Long.valueOf(getBtreeDataTable().getRowId());
                 } else {
@@ -137,9 +139,19 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
         });
     }
 
+    @Override
+	public int getFieldsCount() throws SqlJetException {
+        return read().asInt(db -> getBtreeDataTable().getFieldsCount());
+    }
+
+    @Override
+    protected void fetchField(int field, SqlJetColumnBatch batch, int column) throws SqlJetException {
+        getBtreeDataTable().fetchField(field, batch, column);
+    }
+
     @Override
 	public boolean getBoolean(final String fieldName) throws SqlJetException {
-        return db.read().asBool(db -> getBoolean(getFieldSafe(fieldName)));
+        return read().asBool(db -> getBoolean(getFieldSafe(fieldName)));
     }
 
     @Override
@@ -210,7 +222,7 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
 
     @Override
 	public Object[] getRowValues() throws SqlJetException {
-        return db.read().as(db -> {
+        return read().as(db -> {
                 Object[] values = getBtreeDataTable().getValues();
                 return values.clone();
         });
@@ -20,6 +20,7 @@ package org.tmatesoft.sqljet.core.internal.vdbe;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.tmatesoft.sqljet.core.SqlJetEncoding;
@@ -31,7 +32,7 @@ import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.internal.memory.SqlJetMemoryPointer;
-import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarintResult32;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarint;
 import org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeRecord;
 import org.tmatesoft.sqljet.core.table.ISqlJetOptions;
 
@@ -43,17 +44,58 @@ import org.tmatesoft.sqljet.core.table.ISqlJetOptions;
  * 
  */
 public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
-    private final List<ISqlJetVdbeMem> fields;
+
+    private static final int[] NO_FIELDS = new int[0];
+
     private final int fileFormat;
 
+    /** Cursor which points to the record, null if values were given */
+    private final ISqlJetBtreeCursor cursor;
+    private final boolean isIndex;
+    private SqlJetEncoding encoding;
+
+    private final int fieldsCount;
+
+    /** Serial types of fields */
+    private final int[] types;
+
+    /** Offsets of fields from the beginning of the record */
+    private final int[] offsets;
+
+    /** Fields which have already been decoded */
+    private final ISqlJetVdbeMem[] fields;
+
+    /**
+     * Parses the header of the record the cursor points to. Fields are decoded
+     * only when they are accessed, so the cursor must stay on the record while
+     * this object is in use.
+     */
 	public SqlJetBtreeRecord(ISqlJetBtreeCursor cursor, boolean isIndex, int fileFormat) throws SqlJetException {
         this.fileFormat = fileFormat;
-        fields = read(cursor, isIndex);
+        this.cursor = cursor;
+        this.isIndex = isIndex;
+        final long payloadSize = isIndex ? cursor.getKeySize() : cursor.getDataSize();
+        if (payloadSize == 0) {
+            this.types = NO_FIELDS;
+            this.offsets = NO_FIELDS;
+            this.fieldsCount = 0;
+        } else {
+            final int[][] header = { new int[16], new int[16] };
+            this.fieldsCount = readHeader(cursor, isIndex, payloadSize, header);
+            this.types = header[0];
+            this.offsets = header[1];
+        }
+        this.fields = new ISqlJetVdbeMem[fieldsCount];
     }
 
     private SqlJetBtreeRecord(List<ISqlJetVdbeMem> values) {
         this.fileFormat = ISqlJetOptions.SQLJET_DEFAULT_FILE_FORMAT;
-        fields = values;
+        this.cursor = null;
+        this.isIndex = false;
+        this.types = NO_FIELDS;
+        this.offsets = NO_FIELDS;
+        this.fieldsCount = values.size();
+        this.fields = values.toArray(new ISqlJetVdbeMem[fieldsCount]);
     }
 
     public static ISqlJetBtreeRecord getRecord(SqlJetEncoding encoding, Object... values) throws SqlJetException {
@@ -91,28 +133,21 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
 
     @Override
 	public int getFieldsCount() {
-        return fields.size();
+        return fieldsCount;
     }
 
     /**
-     * Read and parse the table header. Store the results of the parse into the
-     * record header cache fields of the cursor.
+     * Read and parse the record header: the serial type of every field and
+     * the offset of its data.
      * 
+     * @param header
+     *            arrays for types and offsets, replaced by larger ones when
+     *            there are more fields.
+     * @return number of fields.
      * @throws SqlJetException
      */
-    private static List<ISqlJetVdbeMem> read(ISqlJetBtreeCursor cursor, boolean isIndex) throws SqlJetException {
-    	List<ISqlJetVdbeMem> result = new ArrayList<>();
-        /*
-         * This block sets the variable payloadSize to be the total number
-         * of bytes in the record.
-         */
-    	long payloadSize = isIndex ? cursor.getKeySize() : cursor.getDataSize(); /* Number of bytes in the record */
-    	
-        /* If payloadSize is 0, then just store a NULL */
-        if (payloadSize == 0) {
-            return result;
-        }
-        
+    private static int readHeader(ISqlJetBtreeCursor cursor, boolean isIndex, long payloadSize, int[][] header)
+            throws SqlJetException {
         int[] avail = { 0 }; /* Number of bytes of available data */
 
         /* Figure out how many bytes are in the header */
@@ -122,9 +157,9 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
          * database file has been corrupted externally.* assert( zRec!=0 ||
          * avail>=payloadSize || avail>=9 );
          */
-        SqlJetVarintResult32 res = zData.getVarint32();
-        int offset = res.getValue(); /* Offset into the data */
-        int szHdrSz = res.getOffset(); /* Size of the header size field at start of record */
+        final long res = zData.getVarint32Packed(0);
+        int offset = SqlJetVarint.value(res); /* Offset into the data */
+        int szHdrSz = SqlJetVarint.length(res); /* Size of the header size field at start of record */
 
         /*
          * The KeyFetch() or DataFetch() above are fast and will get the
@@ -136,7 +171,6 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
         if (avail[0] < offset) {
             zData = SqlJetVdbeMemFactory.fromBtree(cursor, 0, offset, isIndex);
         }
-//        ISqlJetMemoryPointer zEndHdr = zData.pointer(offset); /* Pointer to first byte after the header */
         int zEndHdr = zData.getAbsolute(offset); /* Pointer to first byte after the header */
         ISqlJetMemoryPointer zIdx = zData.pointer(szHdrSz); /* Index into header */
 
@@ -146,14 +180,18 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
          * column and aOffset[i] will contain the offset from the beginning*
          * of the record to the start of the data for the i-th column
          */
-        for (int i = 0; i < ISqlJetLimits.SQLJET_MAX_COLUMN && zIdx.getPointer() < zEndHdr && offset <= payloadSize; i++) {
-        	int cOffset = offset;
-            SqlJetVarintResult32 res2 = zIdx.getVarint32();
-            int a = res2.getValue();
-            zIdx.movePointer(res2.getOffset());
+        int i = 0;
+        for (; i < ISqlJetLimits.SQLJET_MAX_COLUMN && zIdx.getPointer() < zEndHdr && offset <= payloadSize; i++) {
+            if (i == header[0].length) {
+                header[0] = Arrays.copyOf(header[0], i * 2);
+                header[1] = Arrays.copyOf(header[1], i * 2);
+            }
+            final long res2 = zIdx.getVarint32Packed(0);
+            int a = SqlJetVarint.value(res2);
+            zIdx.movePointer(SqlJetVarint.length(res2));
+            header[0][i] = a;
+            header[1][i] = offset;
             offset += SqlJetVdbeSerialType.serialTypeLen(a);
-
-            result.add(getField(cursor, isIndex, i, a, cOffset));
         }
 
         /*
@@ -167,7 +205,7 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
                 || zIdx.getPointer() == zEndHdr && offset != payloadSize) {
             throw new SqlJetException(SqlJetErrorCode.CORRUPT);
         }
-        return result;
+        return i;
     }
 
     /**
@@ -176,84 +214,36 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
      * Interpret the data that cursor P1 points to as a structure built using
      * the MakeRecord instruction. (See the MakeRecord opcode for additional
      * information about the format of the data.) Extract the P2-th column from
-     * this record. If there are less that (P2+1) values in the record, extract
-     * a NULL.
-     * 
-     * The value extracted is stored in register P3.
+     * this record. Only the bytes of this column are read, overflow pages
+     * which hold other columns only are not copied.
      * 
-     * If the column contains fewer than P2 fields, then extract a NULL. Or, if
-     * the P4 argument is a P4_MEM use the value of the P4 argument as the
-     * result.
-     * 
-     * @param pCrsr
-     *            The BTree cursor
-     * @param fieldNum
+     * @param column
      *            column number to retrieve
-     * @param isIndex
-     *            True if an index containing keys only - no data
-     * @param aType
-     *            Type values for all entries in the record
-     * @param aOffset
-     *            Cached offsets to the start of each columns data
-     * @param pDest
      * @throws SqlJetException
      */
-    private static ISqlJetVdbeMem getField(ISqlJetBtreeCursor cursor, boolean isIndex, int column, 
-    		int type, int offset) throws SqlJetException {
-
-        long payloadSize; /* Number of bytes in the record */
-        int len; /* The length of the serialized data for the column */
-        /* For storing the record being decoded */
-        ISqlJetVdbeMem pDest = SqlJetVdbeMemFactory.getNull();
-
-        /*
-         * This block sets the variable payloadSize to be the total number
-         * of* bytes in the record.
-         */
-        if (isIndex) {
-            payloadSize = cursor.getKeySize();
-        } else {
-            payloadSize = cursor.getDataSize();
-        }
-
-        /* If payloadSize is 0, then just store a NULL */
-        if (payloadSize == 0) {
-            return pDest;
-        }
-
-        /*
-         * Get the column information. If aOffset[p2] is non-zero, then*
-         * deserialize the value from the record. If aOffset[p2] is zero,*
-         * then there are not enough fields in the record to satisfy the*
-         * request. In this case, set the value NULL or to P4 if P4 is* a
-         * pointer to a Mem object.
-         */
-        if (offset != 0) {
-            len = SqlJetVdbeSerialType.serialTypeLen(type);
-            ISqlJetMemoryPointer z = SqlJetVdbeMemFactory.fromBtree(cursor, offset, len, isIndex);
-            SqlJetEncoding encoding = cursor.getCursorDb().getOptions().getEncoding();
-			pDest = SqlJetVdbeMemFactory.serialGet(z, type, encoding).getValue();
+    private ISqlJetVdbeMem getField(int column) throws SqlJetException {
+        final int type = types[column];
+        final ISqlJetMemoryPointer z = getFieldBytes(column);
+        if (null == encoding) {
+            encoding = cursor.getCursorDb().getOptions().getEncoding();
         }
-
-        return pDest;
-
+        return SqlJetVdbeMemFactory.serialGet(z, type, encoding).getValue();
     }
 
     @Override
 	public String getStringField(int field) throws SqlJetException {
-        return fields.get(field).stringValue();
+        return getRawField(field).stringValue();
     }
 
     @Override
-	public long getIntField(int field) {
-        return fields.get(field).intValue();
+	public long getIntField(int field) throws SqlJetException {
+        return getRawField(field).intValue();
     }
 
     @Override
-	public double getRealField(int field) {
-        return fields.get(field).realValue();
+	public double getRealField(int field) throws SqlJetException {
+        return getRawField(field).realValue();
     }
-
     /**
      * Assuming the record contains N fields, the record format looks like this:
      * 
@@ -276,7 +266,7 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
      * record to data0.
      */
     @Override
-	public ISqlJetMemoryPointer getRawRecord() {
+	public ISqlJetMemoryPointer getRawRecord() throws SqlJetException {
         int nData = 0; /* Number of bytes of data space */
         int nHdr = 0; /* Number of bytes of header space */
         int nByte = 0; /* Data space required for this record */
@@ -286,7 +276,8 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
          * Loop through the elements that will make up the record to figure* out
          * how much space is required for the new record.
          */
-        for (ISqlJetVdbeMem value : fields) {
+        for (int f = 0; f < fieldsCount; f++) {
+            final ISqlJetVdbeMem value = getRawField(f);
             int serialType = value.serialType(fileFormat);
             int len = SqlJetVdbeSerialType.serialTypeLen(serialType);
             nData += len;
@@ -312,7 +303,8 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
         /* Write the record */
         int i = zNewRecord.putVarint32(0, nHdr);
         int t = nHdr;
-        for (ISqlJetVdbeMem value : fields) {
+        for (int f = 0; f < fieldsCount; f++) {
+            final ISqlJetVdbeMem value = fields[f];
             /* serial type */
             i += zNewRecord.putVarint32(i, value.serialType(fileFormat));
             /* serial data */
@@ -324,12 +316,28 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
     }
 
 	@Override
-	public ISqlJetVdbeMem getRawField(int field) {
-		return fields.get(field);
+	public ISqlJetVdbeMem getRawField(int field) throws SqlJetException {
+		ISqlJetVdbeMem value = fields[field];
+		if (null == value) {
+			value = getField(field);
+			fields[field] = value;
+		}
+		return value;
 	}
 
 	@Override
-	public ISqlJetVdbeMem getLastRawField() {
-		return fields.isEmpty() ? null : fields.get(fields.size()-1);
+	public ISqlJetVdbeMem getLastRawField() throws SqlJetException {
+		return fieldsCount == 0 ? null : getRawField(fieldsCount - 1);
 	}
+
+    @Override
+    public int getSerialType(int field) {
+        return null == cursor ? -1 : types[field];
+    }
+
+    @Override
+    public ISqlJetMemoryPointer getFieldBytes(int field) throws SqlJetException {
+        final int len = SqlJetVdbeSerialType.serialTypeLen(types[field]);
+        return SqlJetVdbeMemFactory.fromBtree(cursor, offsets[field], len, isIndex);
+    }
 }
@@ -27,7 +27,7 @@ import org.tmatesoft.sqljet.core.internal.ISqlJetKeyInfo;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
 import org.tmatesoft.sqljet.core.internal.SqlJetResultWithOffset;
-import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarintResult32;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarint;
 
 /**
  * @author TMate Software Ltd.
@@ -48,18 +48,20 @@ public class SqlJetKeyInfo implements ISqlJetKeyInfo {
 	@Override
 	public SqlJetUnpackedRecord recordUnpack(int nKey, ISqlJetMemoryPointer pKey) {
         List<ISqlJetVdbeMem> pMem = new ArrayList<>(this.aSortOrder.length+1);
-        SqlJetVarintResult32 res = pKey.getVarint32();
-        int idx = res.getOffset();
-        int d = res.getValue();
+        final long res = pKey.getVarint32Packed(0);
+        final int szHdr = SqlJetVarint.value(res);
+        int idx = SqlJetVarint.length(res);
+        int d = szHdr;
         int u = 0;
 
-        while (idx < res.getValue() && u < this.aSortOrder.length+1) {
-            SqlJetVarintResult32 res2 = pKey.pointer(idx).getVarint32();
-            idx += res2.getOffset();
-            if (d >= nKey && SqlJetVdbeSerialType.serialTypeLen(res2.getValue()) > 0) {
+        while (idx < szHdr && u < this.aSortOrder.length+1) {
+            final long res2 = pKey.getVarint32Packed(idx);
+            final int serialType = SqlJetVarint.value(res2);
+            idx += SqlJetVarint.length(res2);
+            if (d >= nKey && SqlJetVdbeSerialType.serialTypeLen(serialType) > 0) {
 				break;
 			}
-            SqlJetResultWithOffset<ISqlJetVdbeMem> result = SqlJetVdbeMemFactory.serialGet(pKey, d, res2.getValue(), this.enc);
+            SqlJetResultWithOffset<ISqlJetVdbeMem> result = SqlJetVdbeMemFactory.serialGet(pKey, d, serialType, this.enc);
             d += result.getOffset();
             pMem.add(result.getValue());
             u++;
@@ -95,7 +97,7 @@ public class SqlJetKeyInfo implements ISqlJetKeyInfo {
         this.aSortOrder[i]=desc;
     }
     
-    public boolean getSortOrder(int i) throws SqlJetException {
+    public boolean getSortOrder(int i) {
         if(i>=aSortOrder.length) {
 			return false;
 		}
@@ -17,17 +17,19 @@
  */
 package org.tmatesoft.sqljet.core.internal.vdbe;
 
+import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
+import org.tmatesoft.sqljet.core.SqlJetEncoding;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.internal.ISqlJetUnpackedRecord;
 import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
 import org.tmatesoft.sqljet.core.internal.SqlJetResultWithOffset;
 import org.tmatesoft.sqljet.core.internal.SqlJetUnpackedRecordFlags;
-import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarintResult32;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarint;
 
 /**
  * @author TMate Software Ltd.
@@ -45,6 +47,12 @@ public class SqlJetUnpackedRecord implements ISqlJetUnpackedRecord {
     /* Values */
     private final List<ISqlJetVdbeMem> aMem;
 
+    /* UTF-8 bytes of TEXT values, encoded on first use by compareText() */
+    private byte[][] aText;
+
+    /* Returned by compareField() when the generic comparison is needed */
+    private static final int FALLBACK = Integer.MIN_VALUE;
+
 	public SqlJetUnpackedRecord(SqlJetKeyInfo pKeyInfo, List<ISqlJetVdbeMem> aMem) {
 		this.pKeyInfo = pKeyInfo;
 		this.aMem = aMem;
@@ -55,9 +63,9 @@ public class SqlJetUnpackedRecord implements ISqlJetUnpackedRecord {
         int i = 0;
         int rc = 0;
         
-        SqlJetVarintResult32 res = pKey1.getVarint32();
-        int szHdr1 = res.getValue(); /* Number of bytes in header */
-        int idx1 = res.getOffset(); /* Offset into aKey[] of next header element */
+        final long res = pKey1.getVarint32Packed(0);
+        int szHdr1 = SqlJetVarint.value(res); /* Number of bytes in header */
+        int idx1 = SqlJetVarint.length(res); /* Offset into aKey[] of next header element */
         int d1 = szHdr1;                   /* Offset into aKey[] of next data element */
         if (this.flags.contains(SqlJetUnpackedRecordFlags.IGNORE_ROWID)) {
             szHdr1--;
@@ -65,22 +73,22 @@ public class SqlJetUnpackedRecord implements ISqlJetUnpackedRecord {
         for (ISqlJetVdbeMem mem : aMem) {
 			if (idx1 < szHdr1) {
 	            /* Read the serial types for the next element in each key. */
-	            SqlJetVarintResult32 res2 = pKey1.getVarint32(idx1);
-	            idx1 += res2.getOffset();
-	            if (d1 >= nKey1 && SqlJetVdbeSerialType.serialTypeLen(res2.getValue()) > 0) {
+	            final long res2 = pKey1.getVarint32Packed(idx1);
+	            final int serialType = SqlJetVarint.value(res2);
+	            idx1 += SqlJetVarint.length(res2);
+	            if (d1 >= nKey1 && SqlJetVdbeSerialType.serialTypeLen(serialType) > 0) {
 					break;
 				}
 	
 	            /*
-	             * Extract the values to be compared.
-	             */
-	            SqlJetResultWithOffset<ISqlJetVdbeMem> result = SqlJetVdbeMemFactory.serialGet(pKey1, d1, res2.getValue(), pKeyInfo.getEnc());
-	            d1 += result.getOffset();
-	
-	            /*
-	             * Do the comparison
+	             * Compare in place when possible, otherwise extract the value.
 	             */
-	            rc = result.getValue().compareTo(mem);
+	            rc = compareField(pKey1, d1, serialType, i, mem);
+	            if (rc == FALLBACK) {
+	                SqlJetResultWithOffset<ISqlJetVdbeMem> result = SqlJetVdbeMemFactory.serialGet(pKey1, d1, serialType, pKeyInfo.getEnc());
+	                rc = result.getValue().compareTo(mem);
+	            }
+	            d1 += SqlJetVdbeSerialType.serialTypeLen(serialType);
 	            if (rc != 0) {
 	                break;
 	            }
@@ -112,6 +120,116 @@ public class SqlJetUnpackedRecord implements ISqlJetUnpackedRecord {
         return rc;
     }
 
+    /**
+     * Compares the field stored at offset <code>d1</code> of the key with the
+     * value <code>mem</code> without decoding it, in the order of
+     * {@link ISqlJetVdbeMem#compareTo(ISqlJetVdbeMem)}: NULL, numbers
+     * compared as reals, text and blobs.
+     * 
+     * @return result of comparison or {@link #FALLBACK} if the field should
+     *         be compared by the generic way.
+     */
+    private int compareField(ISqlJetMemoryPointer pKey1, int d1, int serialType, int i, ISqlJetVdbeMem mem) {
+        switch (serialType) {
+        case 0: /* NULL */
+        case 10: /* Reserved for future use */
+        case 11: /* Reserved for future use */
+            return mem.isNull() ? 0 : -1;
+        case 1: /* 1-byte signed integer */
+            return compareReal(pKey1.getByte(d1), mem);
+        case 2: /* 2-byte signed integer */
+            return compareReal((short) (pKey1.getByteUnsigned(d1) << 8 | pKey1.getByteUnsigned(d1 + 1)), mem);
+        case 3: /* 3-byte signed integer */
+            return compareReal(pKey1.getByte(d1) << 16 | pKey1.getByteUnsigned(d1 + 1) << 8
+                    | pKey1.getByteUnsigned(d1 + 2), mem);
+        case 4: /* 4-byte signed integer */
+            return compareReal((int) pKey1.getIntUnsigned(d1), mem);
+        case 5: /* 6-byte signed integer */
+            return compareReal((long) (short) (pKey1.getByteUnsigned(d1) << 8 | pKey1.getByteUnsigned(d1 + 1)) << 32
+                    | pKey1.getIntUnsigned(d1 + 2), mem);
+        case 6: /* 8-byte signed integer */
+            return compareReal((long) (int) pKey1.getIntUnsigned(d1) << 32 | pKey1.getIntUnsigned(d1 + 4), mem);
+        case 7: { /* IEEE floating point */
+            final double r = Double.longBitsToDouble((long) (int) pKey1.getIntUnsigned(d1) << 32
+                    | pKey1.getIntUnsigned(d1 + 4));
+            return Double.isNaN(r) ? (mem.isNull() ? 0 : -1) : compareReal(r, mem);
+        }
+        case 8: /* Integer 0 */
+            return compareReal(0, mem);
+        case 9: /* Integer 1 */
+            return compareReal(1, mem);
+        default:
+            if (mem.isNull() || mem.isNumber()) {
+                return 1;
+            }
+            if ((serialType & 0x01) == 0) { /* Blob */
+                return mem.isString() ? 1 : FALLBACK;
+            }
+            if (!mem.isString()) {
+                return -1;
+            }
+            if (pKeyInfo.getEnc() != SqlJetEncoding.UTF8) {
+                return FALLBACK;
+            }
+            return compareText(pKey1, d1, (serialType - 12) / 2, i, mem);
+        }
+    }
+
+    private static int compareReal(double r, ISqlJetVdbeMem mem) {
+        if (mem.isNull()) {
+            return 1;
+        }
+        if (!mem.isNumber()) {
+            return -1;
+        }
+        return Double.compare(r, mem.realValue());
+    }
+
+    /**
+     * Compares UTF-8 text of the key with the bytes of the string value as
+     * {@link String#compareTo(String)} does with decoded strings. Text ends at
+     * the first zero byte as when it is decoded. Order of
+     * UTF-16 chars is decided here only when the first different bytes are
+     * ASCII, the key could be not well formed otherwise.
+     */
+    private int compareText(ISqlJetMemoryPointer pKey1, int d1, int n1, int i, ISqlJetVdbeMem mem) {
+        if (aText == null) {
+            aText = new byte[aMem.size()][];
+        }
+        byte[] z2 = aText[i];
+        if (z2 == null) {
+            z2 = aText[i] = mem.stringValue().getBytes(StandardCharsets.UTF_8);
+        }
+        for (int k = 0;; k++) {
+            final int c1 = k < n1 ? pKey1.getByteUnsigned(d1 + k) : 0;
+            final int c2 = k < z2.length ? z2[k] & 0xff : 0;
+            if (c1 != c2) {
+                return c1 < 0x80 && c2 < 0x80 ? c1 - c2 : FALLBACK;
+            } else if (c1 == 0) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Compares this record with other record unpacked by the same key info,
+     * in the order of {@link #recordCompare(int, ISqlJetMemoryPointer)}.
+     * 
+     * @param that
+     * @return negative, zero or positive if this record is less, equal or
+     *         greater than other.
+     */
+    public int compareTo(SqlJetUnpackedRecord that) {
+        final int n = Math.min(aMem.size(), that.aMem.size());
+        for (int i = 0; i < n; i++) {
+            final int rc = aMem.get(i).compareTo(that.aMem.get(i));
+            if (rc != 0) {
+                return pKeyInfo.getSortOrder(i) ? -rc : rc;
+            }
+        }
+        return aMem.size() - that.aMem.size();
+    }
+
     /**
      * @return the flags
      */
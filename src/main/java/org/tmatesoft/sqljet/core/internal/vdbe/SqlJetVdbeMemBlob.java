@@ -93,8 +93,12 @@ public class SqlJetVdbeMemBlob extends SqlJetVdbeMemAbstract {
         return len;
 	}
 
+	/**
+	 * Returns a copy of the blob: the value may point into a page of the
+	 * cache, whose buffer is reused for other pages once the page is evicted.
+	 */
 	@Override
 	public Object toObject() {
-        return blobValue();
+        return SqlJetUtility.wrapPtr(z.getBytes());
 	}
 }
@@ -362,7 +362,7 @@ public interface ISqlJetCursor {
     void updateByFieldNamesOr(SqlJetConflictAction onConflict, Map<String, Object> values) throws SqlJetException;
 
     /**
-     * Deletes the current record.
+     * Deletes the current record and moves the cursor to the next record.
      *
      * @throws SqlJetException
      */
@@ -376,6 +376,54 @@ public interface ISqlJetCursor {
      */
     ISqlJetCursor reverse() throws SqlJetException;
 
+    /**
+     * Declares fields which will be read from this cursor. If the cursor
+     * traverses an index and all these fields are in the index, then values
+     * of the fields are read from index entries and rows of the table are not
+     * looked up. Rows are still looked up when other fields are read or the
+     * current record is modified.
+     *
+     * @param fieldNames
+     *            names of fields which will be read.
+     * @return this cursor.
+     * @throws SqlJetException
+     */
+    ISqlJetCursor project(String... fieldNames) throws SqlJetException;
+
+    /**
+     * Passes this cursor to the consumer at each record from the current one
+     * to the end, the cursor is moved to the next record after each call
+     * unless the consumer has deleted the record, which moves the cursor
+     * itself. The whole scan runs in one read transaction, so the cursor's
+     * methods called by the consumer on the same thread don't start a
+     * transaction and don't lock the database each time.
+     *
+     * @param consumer
+     *            receives the cursor at each record.
+     * @throws SqlJetException
+     */
+    void forEach(ISqlJetConsumer<ISqlJetCursor> consumer) throws SqlJetException;
+
+    /**
+     * Reads values of fields of a block of rows into the batch, from the
+     * current record on, and moves the cursor past the read rows. The batch
+     * is cleared first. The block is read in one read transaction, and each
+     * row's record is read once for all fields.
+     *
+     * @param maxRows
+     *            maximal number of rows to read, no more than capacity of the
+     *            batch are read.
+     * @param fields
+     *            numbers of fields to read, their values are put into the
+     *            columns of the batch in this order.
+     * @param batch
+     *            receives values, it should have as many columns as there
+     *            are fields.
+     * @return number of read rows, 0 if the cursor is at the end.
+     * @throws SqlJetException
+     */
+    int fetch(int maxRows, int[] fields, SqlJetColumnBatch batch) throws SqlJetException;
+
     /**
      * Returns number of rows accessible with this cursor.
      *
@@ -17,8 +17,10 @@
  */
 package org.tmatesoft.sqljet.core.table;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.schema.ISqlJetIndexDef;
@@ -204,6 +206,95 @@ public interface ISqlJetTable {
      */
     ISqlJetCursor scope(String indexName, SqlJetScope scope) throws SqlJetException;
 
+    /**
+     * <p>
+     * Split table into scopes of about the same size for
+     * {@link #scope(String, SqlJetScope)}, which together cover all rows of
+     * the table once. Scopes are taken from interior pages of the B-Tree of
+     * the index, so only the top of the B-Tree is read. Fewer scopes are
+     * returned if the table is too small, a table which fits on one page is
+     * not split at all.
+     * </p>
+     * 
+     * <p>
+     * If indexName is NULL then primary key will be used.
+     * </p>
+     * 
+     * <p>
+     * Can be called only within active transaction.
+     * </p>
+     * 
+     * @param indexName
+     *            Name of the index which is split. If null then primary key
+     *            will be used.
+     * @param parts
+     *            number of scopes.
+     * @return scopes in the order of the index.
+     * @throws SqlJetException
+     */
+    List<SqlJetScope> split(String indexName, int parts) throws SqlJetException;
+
+    /**
+     * <p>
+     * Scan table in several threads. The table is split by
+     * {@link #split(String, int)}, and each scope is passed to the consumer
+     * as a cursor in its own read transaction. Scopes are scanned by a pool
+     * of threads, which is not larger than the number of available
+     * processors and is shut down when the scan is done. The consumer is
+     * called concurrently, and the cursor is closed when it returns. Scans
+     * run in parallel only if concurrent reads are enabled by
+     * {@link SqlJetDb#setConcurrentReads(boolean)}, otherwise their
+     * transactions wait for each other.
+     * </p>
+     * 
+     * <p>
+     * Each scope is read in its own transaction, so scopes may see different
+     * states of the database if it is changed during the scan. If called
+     * within active transaction, scopes are scanned one after another in that
+     * transaction by the current thread.
+     * </p>
+     * 
+     * <p>
+     * If indexName is NULL then primary key will be used.
+     * </p>
+     * 
+     * @param indexName
+     *            Name of the index which is split. If null then primary key
+     *            will be used.
+     * @param parts
+     *            number of scopes.
+     * @param consumer
+     *            scans cursor of one scope.
+     * @throws SqlJetException
+     *             the first exception thrown by the consumer or by reading
+     *             the table, after all scopes are done.
+     */
+    void parallelScan(String indexName, int parts, ISqlJetConsumer<ISqlJetCursor> consumer) throws SqlJetException;
+
+    /**
+     * <p>
+     * Scan table in several threads of the given executor. Works like
+     * {@link #parallelScan(String, int, ISqlJetConsumer)}, but each scope is
+     * submitted to the executor as a separate task, and this method waits
+     * until all of them are done.
+     * </p>
+     * 
+     * @param indexName
+     *            Name of the index which is split. If null then primary key
+     *            will be used.
+     * @param parts
+     *            number of scopes.
+     * @param executor
+     *            runs scans of scopes.
+     * @param consumer
+     *            scans cursor of one scope.
+     * @throws SqlJetException
+     *             the first exception thrown by the consumer or by reading
+     *             the table, after all scopes are done.
+     */
+    void parallelScan(String indexName, int parts, Executor executor, ISqlJetConsumer<ISqlJetCursor> consumer)
+            throws SqlJetException;
+
     /**
      * <p>
      * Add new record to the table with specified values.
@@ -456,6 +547,39 @@ public interface ISqlJetTable {
      */
     long insertWithRowIdOr(SqlJetConflictAction onConflict, long rowId, Object... values) throws SqlJetException;
 
+    /**
+     * <p>
+     * Inserts many records, each given by values like in
+     * {@link #insert(Object...)}.
+     * </p>
+     * 
+     * <p>
+     * Unlike sequence of {@link #insert(Object...)} calls it opens table and
+     * its indexes once, and collects keys of non-unique indexes while records
+     * are inserted to write them sorted in large chunks, which makes loads of
+     * many records much faster. Unique indexes are updated for every record,
+     * so constraints are checked as usual.
+     * </p>
+     * 
+     * <p>
+     * Returns count of inserted records.
+     * </p>
+     * 
+     * <p>
+     * Can be used without of active transaction, in this case method begins and
+     * ends own internal transaction, and if insertion of a record fails the
+     * whole batch is rolled back. Within a transaction of the caller records
+     * inserted before the failed one stay in the table and its indexes until
+     * that transaction is committed or rolled back.
+     * </p>
+     * 
+     * @param rows
+     *            values for the new records.
+     * @return count of inserted records.
+     * @throws SqlJetException
+     */
+    long insertBatch(Iterable<Object[]> rows) throws SqlJetException;
+
     /**
      * Clear table. It fast delete of all rows in table.
      * 
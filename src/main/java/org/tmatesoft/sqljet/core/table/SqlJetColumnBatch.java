@@ -0,0 +1,352 @@
+/**
+ * SqlJetColumnBatch.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetValueType;
+
+/**
+ * Values of several fields for a block of rows, filled by
+ * {@link ISqlJetCursor#fetch(int, int[], SqlJetColumnBatch)}.
+ *
+ * Values of each column are kept in arrays indexed by row: integers in
+ * long[], floats in double[], texts (as UTF-8) and blobs in one byte array
+ * with offsets, NULL values are marked in a bitmap. Integer values are also
+ * stored as floats and float values as integers, so numeric columns can be
+ * read from one array whatever type each value has.
+ *
+ * Batch can be reused: each fetch clears it and refills its arrays.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+public class SqlJetColumnBatch {
+
+    private static class Column {
+        private final SqlJetValueType[] types;
+        private final long[] integers;
+        private final double[] floats;
+        private final BitSet nulls;
+        private final int[] offsets;
+        private byte[] bytes;
+
+        Column(int capacity) {
+            types = new SqlJetValueType[capacity];
+            integers = new long[capacity];
+            floats = new double[capacity];
+            nulls = new BitSet(capacity);
+            offsets = new int[capacity + 1];
+            bytes = new byte[0];
+        }
+
+        int reserveBytes(int row, int length) {
+            final int offset = offsets[row];
+            if (offset + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(offset + length, bytes.length * 2));
+            }
+            offsets[row + 1] = offset + length;
+            return offset;
+        }
+    }
+
+    private final Column[] columns;
+    private final long[] rowIds;
+    private int rowsCount;
+
+    /**
+     * Creates batch.
+     *
+     * @param columnsCount
+     *            number of columns, it should be the number of fields passed
+     *            to fetch.
+     * @param capacity
+     *            maximal number of rows in the batch.
+     */
+    public SqlJetColumnBatch(int columnsCount, int capacity) {
+        if (columnsCount < 0 || capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        columns = new Column[columnsCount];
+        for (int i = 0; i < columnsCount; i++) {
+            columns[i] = new Column(capacity);
+        }
+        rowIds = new long[capacity];
+    }
+
+    /**
+     * @return number of columns.
+     */
+    public int getColumnsCount() {
+        return columns.length;
+    }
+
+    /**
+     * @return maximal number of rows in the batch.
+     */
+    public int getCapacity() {
+        return rowIds.length;
+    }
+
+    /**
+     * @return number of rows in the batch.
+     */
+    public int getRowsCount() {
+        return rowsCount;
+    }
+
+    /**
+     * Removes all rows from the batch.
+     */
+    public void clear() {
+        for (Column column : columns) {
+            column.nulls.clear();
+        }
+        rowsCount = 0;
+    }
+
+    /**
+     * Adds row to the batch, all its values are NULL until they are set by
+     * put methods.
+     *
+     * @param rowId
+     *            rowid of the row.
+     * @return number of the added row.
+     * @throws SqlJetException
+     *             if the batch is full.
+     */
+    public int addRow(long rowId) throws SqlJetException {
+        if (rowsCount >= rowIds.length) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Batch is full");
+        }
+        final int row = rowsCount++;
+        rowIds[row] = rowId;
+        for (Column column : columns) {
+            column.types[row] = SqlJetValueType.NULL;
+            column.integers[row] = 0;
+            column.floats[row] = 0;
+            column.nulls.set(row);
+            column.offsets[row + 1] = column.offsets[row];
+        }
+        return row;
+    }
+
+    private Column getLastRow(int column) throws SqlJetException {
+        if (rowsCount == 0) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Batch is empty");
+        }
+        return columns[column];
+    }
+
+    /**
+     * Sets NULL value in the column of the last added row.
+     */
+    public void putNull(int column) throws SqlJetException {
+        final Column c = getLastRow(column);
+        final int row = rowsCount - 1;
+        c.types[row] = SqlJetValueType.NULL;
+        c.integers[row] = 0;
+        c.floats[row] = 0;
+        c.nulls.set(row);
+        c.offsets[row + 1] = c.offsets[row];
+    }
+
+    /**
+     * Sets integer value in the column of the last added row.
+     */
+    public void putInteger(int column, long value) throws SqlJetException {
+        final Column c = getLastRow(column);
+        final int row = rowsCount - 1;
+        c.types[row] = SqlJetValueType.INTEGER;
+        c.integers[row] = value;
+        c.floats[row] = value;
+        c.nulls.clear(row);
+        c.offsets[row + 1] = c.offsets[row];
+    }
+
+    /**
+     * Sets float value in the column of the last added row.
+     */
+    public void putFloat(int column, double value) throws SqlJetException {
+        final Column c = getLastRow(column);
+        final int row = rowsCount - 1;
+        c.types[row] = SqlJetValueType.FLOAT;
+        c.integers[row] = (long) value;
+        c.floats[row] = value;
+        c.nulls.clear(row);
+        c.offsets[row + 1] = c.offsets[row];
+    }
+
+    /**
+     * Sets text value in the column of the last added row, null text sets
+     * NULL.
+     */
+    public void putText(int column, String value) throws SqlJetException {
+        if (value == null) {
+            putNull(column);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        final int offset = putBytes(column, SqlJetValueType.TEXT, bytes.length);
+        System.arraycopy(bytes, 0, columns[column].bytes, offset, bytes.length);
+    }
+
+    /**
+     * Sets blob value in the column of the last added row, null blob sets
+     * NULL.
+     */
+    public void putBlob(int column, byte[] value) throws SqlJetException {
+        if (value == null) {
+            putNull(column);
+            return;
+        }
+        final int offset = putBytes(column, SqlJetValueType.BLOB, value.length);
+        System.arraycopy(value, 0, columns[column].bytes, offset, value.length);
+    }
+
+    /**
+     * Sets text or blob value of the given length in the column of the last
+     * added row, without its bytes. The caller writes bytes of the value (as
+     * UTF-8 for texts) into {@link #getBytes(int)} starting at the returned
+     * offset, so values can be copied there without intermediate arrays.
+     *
+     * @param column
+     *            number of the column.
+     * @param type
+     *            {@link SqlJetValueType#TEXT} or {@link SqlJetValueType#BLOB}.
+     * @param length
+     *            number of bytes of the value.
+     * @return offset of the value in {@link #getBytes(int)}.
+     * @throws SqlJetException
+     *             if the batch is empty or the type is not text or blob.
+     */
+    public int putBytes(int column, SqlJetValueType type, int length) throws SqlJetException {
+        if (type != SqlJetValueType.TEXT && type != SqlJetValueType.BLOB) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Only texts and blobs have bytes");
+        }
+        final Column c = getLastRow(column);
+        final int row = rowsCount - 1;
+        c.types[row] = type;
+        c.integers[row] = 0;
+        c.floats[row] = 0;
+        c.nulls.clear(row);
+        return c.reserveBytes(row, length);
+    }
+
+    /**
+     * @return rowids of rows, only first {@link #getRowsCount()} items are
+     *         valid.
+     */
+    public long[] getRowIds() {
+        return rowIds;
+    }
+
+    public long getRowId(int row) {
+        return rowIds[row];
+    }
+
+    /**
+     * @return types of values in the column.
+     */
+    public SqlJetValueType[] getTypes(int column) {
+        return columns[column].types;
+    }
+
+    public SqlJetValueType getType(int column, int row) {
+        return columns[column].types[row];
+    }
+
+    /**
+     * @return bitmap of rows which have NULL in the column.
+     */
+    public BitSet getNulls(int column) {
+        return columns[column].nulls;
+    }
+
+    public boolean isNull(int column, int row) {
+        return columns[column].nulls.get(row);
+    }
+
+    /**
+     * @return integer values of the column, 0 for NULL, text and blob values.
+     */
+    public long[] getIntegers(int column) {
+        return columns[column].integers;
+    }
+
+    public long getInteger(int column, int row) {
+        return columns[column].integers[row];
+    }
+
+    /**
+     * @return float values of the column, 0 for NULL, text and blob values.
+     */
+    public double[] getFloats(int column) {
+        return columns[column].floats;
+    }
+
+    public double getFloat(int column, int row) {
+        return columns[column].floats[row];
+    }
+
+    /**
+     * Returns bytes of texts and blobs of the column. Value of row
+     * <code>r</code> takes bytes from <code>offsets[r]</code> to
+     * <code>offsets[r + 1]</code>, see {@link #getOffsets(int)}.
+     *
+     * @return bytes of texts and blobs.
+     */
+    public byte[] getBytes(int column) {
+        return columns[column].bytes;
+    }
+
+    /**
+     * @return offsets of values in {@link #getBytes(int)}, it has one more
+     *         item than there are rows.
+     */
+    public int[] getOffsets(int column) {
+        return columns[column].offsets;
+    }
+
+    /**
+     * @return text value of the column, or null if the value is not a text.
+     */
+    public String getString(int column, int row) {
+        final Column c = columns[column];
+        if (c.types[row] != SqlJetValueType.TEXT) {
+            return null;
+        }
+        return new String(c.bytes, c.offsets[row], c.offsets[row + 1] - c.offsets[row], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return blob value of the column, or null if the value is not a blob.
+     */
+    public byte[] getBlob(int column, int row) {
+        final Column c = columns[column];
+        if (c.types[row] != SqlJetValueType.BLOB) {
+            return null;
+        }
+        return Arrays.copyOfRange(c.bytes, c.offsets[row], c.offsets[row + 1]);
+    }
+
+}
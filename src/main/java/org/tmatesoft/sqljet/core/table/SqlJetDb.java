@@ -183,7 +183,102 @@ public class SqlJetDb extends SqlJetEngine {
     public ISqlJetTable getTable(final String tableName) throws SqlJetException {
         checkOpen();
         refreshSchema();
-        return runWithLock(db -> new SqlJetTable(db, btree, tableName, writable));
+        return runWithLock(db -> new SqlJetTable(db, tableName, writable));
+    }
+
+    /**
+     * <p>
+     * Enables or disables concurrent read transactions. By default all
+     * threads which use this connection are serialized. When concurrent reads
+     * are enabled, read transactions run by {@link #read()} on different
+     * threads proceed in parallel, each on its own read-only connection to
+     * the database file taken from a pool. Cached pages are shared between
+     * these connections. Write transactions remain serialized, and read
+     * transactions of the thread which runs a write transaction see its
+     * changes as before.
+     * </p>
+     * 
+     * <p>
+     * Concurrent read transactions see the database as of their beginning.
+     * They can't start write transactions, and transactions started by
+     * {@link #beginTransaction(SqlJetTransactionMode)} are shared by all
+     * threads as before, so reads wait for them. Readers and the writer block
+     * each other only in rollback journal modes while the writer commits, the
+     * {@link org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode#WAL}
+     * journal mode lets them proceed during commits too.
+     * </p>
+     * 
+     * @param concurrentReads
+     *            true to enable concurrent read transactions.
+     * @throws SqlJetException
+     *             if the database is in memory or in a temporary file.
+     */
+    @Override
+    public void setConcurrentReads(final boolean concurrentReads) throws SqlJetException {
+        super.setConcurrentReads(concurrentReads);
+    }
+
+    /**
+     * @return true if concurrent read transactions are enabled.
+     * @see #setConcurrentReads(boolean)
+     */
+    @Override
+    public boolean isConcurrentReads() {
+        return super.isConcurrentReads();
+    }
+
+    /**
+     * <p>
+     * Enables or disables group commit. By default each write transaction run
+     * by {@link #write()} is committed on its own, so threads which write
+     * through this connection pay for the sync of the journal and of the
+     * database file each. When group commit is enabled, write transactions of
+     * threads waiting for the connection are run one after another in one
+     * transaction of the database, which is committed once for all of them.
+     * Each transaction is run once, by the thread which has started it. The
+     * transaction of the database stays open until the last waiting thread
+     * has run its transaction, and operations of other threads wait for it.
+     * </p>
+     * 
+     * <p>
+     * If a transaction of the group fails, the transaction of the database is
+     * rolled back and its exception is thrown to the thread which has run it.
+     * Transactions of the group which have already run in the same
+     * transaction of the database are rolled back too, and their threads get
+     * {@link SqlJetException} with {@link SqlJetErrorCode#ABORT} error code
+     * and the failure as the cause. They are not run again: a caller which
+     * wants to retry should catch this exception and run its transaction
+     * again. Transactions within a transaction started by
+     * {@link #beginTransaction(SqlJetTransactionMode)} and transactions in
+     * {@link SqlJetTransactionMode#EXCLUSIVE} mode are not grouped.
+     * </p>
+     * 
+     * @param groupCommit
+     *            true to enable group commit.
+     * @throws SqlJetException
+     */
+    @Override
+    public void setGroupCommit(final boolean groupCommit) throws SqlJetException {
+        super.setGroupCommit(groupCommit);
+    }
+
+    /**
+     * @return true if group commit is enabled.
+     * @see #setGroupCommit(boolean)
+     */
+    @Override
+    public boolean isGroupCommit() {
+        return super.isGroupCommit();
+    }
+
+    /**
+     * @return number of write transactions waiting to run in a group, or 0
+     *         if group commit is disabled.
+     * @see #setGroupCommit(boolean)
+     */
+    @Override
+    public int getGroupCommitQueueSize() {
+        return super.getGroupCommitQueueSize();
     }
     
     public SqlJetTransactionRunner<SqlJetDb> read() throws SqlJetException {
@@ -1,6 +1,7 @@
 package org.tmatesoft.sqljet.core.table;
 
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.fs.SqlJetFileLockManager;
 
 /**
  * <p>
@@ -13,6 +14,14 @@ import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
  * SQLJET_BUSY_SLEEP system property value in milliseconds).
  * </p>
  * 
+ * <p>
+ * If the lock is held by other connection in this JVM, the retry is made as
+ * soon as that connection releases a lock, without waiting for the whole
+ * interval. Such early retries don't count against number of retries, waiting
+ * for the lock is limited by the total time of all retries instead. Locks held
+ * by other processes are polled once per interval.
+ * </p>
+ * 
  * @author TMate Software Ltd.
  * @author Sergey Scherbina (sergey.scherbina@gmail.com)
  * 
@@ -36,6 +45,9 @@ public class SqlJetDefaultBusyHandler implements ISqlJetBusyHandler {
     private int sleep;
     private boolean cancel = false;
 
+    /* Time when current thread started to wait for the lock */
+    private final ThreadLocal<long[]> waitStart = ThreadLocal.withInitial(() -> new long[1]);
+
     /**
      * Creates busy handler with default parameters.
      */
@@ -129,11 +141,18 @@ public class SqlJetDefaultBusyHandler implements ISqlJetBusyHandler {
         if (cancel) {
             cancel = false;
             return false;
-        } else if (number > retries) {
+        }
+        final long[] start = waitStart.get();
+        final long now = System.currentTimeMillis();
+        if (number == 0) {
+            start[0] = now;
+        }
+        final long remaining = (long) (retries + 1) * sleep - (now - start[0]);
+        if (remaining <= 0) {
             return false;
         } else {
             try {
-                Thread.sleep(sleep);
+                SqlJetFileLockManager.awaitRelease(Math.min(sleep, remaining));
             } catch (InterruptedException e) {
                 return false;
             }
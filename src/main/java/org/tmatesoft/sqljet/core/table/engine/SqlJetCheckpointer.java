@@ -0,0 +1,189 @@
+/**
+ * SqlJetCheckpointer.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table.engine;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+
+/**
+ * Background thread which copies the write-ahead log of an engine into the
+ * database file, so that commits only append to the log. The thread is woken
+ * by commits which have grown the log over the checkpoint threshold. If the
+ * log can't be checkpointed because other connections are reading, the
+ * checkpoint is retried after a delay. Other errors are logged and kept to be
+ * thrown by the next {@link SqlJetEngine#checkpoint()} or
+ * {@link SqlJetEngine#close()}, and the thread waits for the next commit
+ * before it tries again.
+ *
+ * The checkpoint runs in a transaction of the engine, so the other
+ * transactions of the engine wait for it. Once the log has grown to a much
+ * larger limit, write transactions checkpoint it themselves before they
+ * start, waiting for readers through the busy handler, which keeps the log
+ * bounded when the thread can't keep up.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+final class SqlJetCheckpointer implements Runnable {
+
+    /**
+     * Number of frames in the write-ahead log at which write transactions
+     * checkpoint the log themselves while background checkpoints are enabled,
+     * waiting for readers if needed.
+     */
+    private static final String SQLJET_CHECKPOINT_LIMIT_PROP = "SQLJET.CHECKPOINT_LIMIT";
+
+    static final int SQLJET_CHECKPOINT_LIMIT = SqlJetUtility.getIntSysProp(SQLJET_CHECKPOINT_LIMIT_PROP, 10000);
+
+    /**
+     * Delay in milliseconds before a failed checkpoint is retried.
+     */
+    private static final String SQLJET_CHECKPOINT_RETRY_PROP = "SQLJET.CHECKPOINT_RETRY";
+
+    private static final long SQLJET_CHECKPOINT_RETRY = SqlJetUtility.getLongSysProp(SQLJET_CHECKPOINT_RETRY_PROP, 50);
+
+    /**
+     * Activates logging of checkpoints which failed because the database was
+     * busy.
+     */
+    private static final String SQLJET_LOG_CHECKPOINT_PROP = "SQLJET_LOG_CHECKPOINT";
+
+    private static Logger checkpointLogger = Logger.getLogger(SQLJET_LOG_CHECKPOINT_PROP);
+
+    private static final boolean SQLJET_LOG_CHECKPOINT = SqlJetUtility.getBoolSysProp(SQLJET_LOG_CHECKPOINT_PROP,
+            false);
+
+    private final SqlJetEngine engine;
+    private final int threshold;
+    private final Thread thread;
+
+    private boolean pending;
+    private boolean stopped;
+    private SqlJetException error;
+
+    /**
+     * @param engine
+     *            engine whose log is checkpointed.
+     * @param threshold
+     *            number of frames in the log after which it is checkpointed.
+     */
+    SqlJetCheckpointer(SqlJetEngine engine, int threshold) {
+        this.engine = engine;
+        this.threshold = threshold;
+        this.thread = new Thread(this, "SqlJet checkpoint " + engine.getFile());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Called after a commit with the number of frames in the log.
+     */
+    synchronized void committed(int frames) {
+        if (frames > 0 && frames >= threshold) {
+            pending = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the error of a failed checkpoint once.
+     * 
+     * @return the error of the last checkpoint which failed for other reason
+     *         than a busy database since the previous call, or null.
+     */
+    synchronized SqlJetException takeError() {
+        final SqlJetException e = error;
+        error = null;
+        return e;
+    }
+
+    /**
+     * Stops the thread and waits until it finishes the running checkpoint.
+     * Must not be called while the mutex of the engine is held, which the
+     * running checkpoint may wait for.
+     */
+    void stop() {
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+        if (Thread.currentThread() != thread) {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean retry = false;
+        while (true) {
+            synchronized (this) {
+                try {
+                    if (retry) {
+                        wait(SQLJET_CHECKPOINT_RETRY);
+                    } else {
+                        while (!pending && !stopped) {
+                            wait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (stopped) {
+                    return;
+                }
+                pending = false;
+            }
+            try {
+                retry = !engine.checkpointInBackground(threshold);
+            } catch (SqlJetException e) {
+                if (e.getErrorCode() == SqlJetErrorCode.BUSY || e.getErrorCode() == SqlJetErrorCode.LOCKED) {
+                    if (SQLJET_LOG_CHECKPOINT) {
+                        SqlJetUtility.log(checkpointLogger, "CHECKPOINT %s failed: %s", engine.getFile(),
+                                e.getMessage());
+                    }
+                    retry = true;
+                } else {
+                    checkpointLogger.log(Level.WARNING, "CHECKPOINT " + engine.getFile() + " failed", e);
+                    synchronized (this) {
+                        error = e;
+                    }
+                    retry = false;
+                }
+            }
+        }
+    }
+
+}
@@ -20,10 +20,14 @@ package org.tmatesoft.sqljet.core.table.engine;
 import static org.tmatesoft.sqljet.core.internal.SqlJetAssert.assertNotNull;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
+import org.tmatesoft.sqljet.core.SqlAbstractJetMutex;
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
@@ -31,6 +35,7 @@ import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
 import org.tmatesoft.sqljet.core.internal.ISqlJetDbHandle;
 import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
 import org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem;
+import org.tmatesoft.sqljet.core.internal.ISqlJetPager;
 import org.tmatesoft.sqljet.core.internal.SqlJetAssert;
 import org.tmatesoft.sqljet.core.internal.SqlJetBtreeFlags;
 import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
@@ -79,6 +84,21 @@ public abstract class SqlJetEngine {
 
 	private SqlJetTransactionMode transactionMode;
 
+	/** True while a transaction started by {@link #beginTransaction} is active */
+	private volatile boolean connectionTransaction;
+
+	/** Idle read views, null if concurrent reads are disabled */
+	private volatile Deque<SqlJetReadView> readViews;
+
+	/** Read view of the concurrent read transaction of the current thread */
+	private final ThreadLocal<SqlJetReadView> activeReadView = new ThreadLocal<>();
+
+	/** Background checkpoints of the write-ahead log, null if disabled */
+	private SqlJetCheckpointer checkpointer;
+
+	/** Write transactions waiting to be committed together, null if disabled */
+	private volatile SqlJetGroupCommit groupCommit;
+
 	/**
 	 * @param file
 	 * @param writable
@@ -86,6 +106,20 @@ public abstract class SqlJetEngine {
 	 * @throws SqlJetException 
 	 */
 	public SqlJetEngine(final File file, final boolean writable, final ISqlJetFileSystem fs) throws SqlJetException {
+		this(file, writable, fs, false);
+	}
+
+	/**
+	 * @param file
+	 * @param writable
+	 * @param fs
+	 * @param sharedCache
+	 *            share cached pages with other connections to the same file
+	 *            regardless of the configuration.
+	 * @throws SqlJetException
+	 */
+	protected SqlJetEngine(final File file, final boolean writable, final ISqlJetFileSystem fs,
+			final boolean sharedCache) throws SqlJetException {
 		this.file = file;
 		this.fileSystem = fs;
 		
@@ -93,6 +127,9 @@ public abstract class SqlJetEngine {
 		dbHandle.setBusyHandler(new SqlJetDefaultBusyHandler());
 		final Set<SqlJetBtreeFlags> flags = EnumSet
 				.copyOf(writable ? WRITE_FLAGS : READ_FLAGS);
+		if (sharedCache || dbHandle.getConfig().isSharedCache()) {
+			flags.add(SqlJetBtreeFlags.SHARED_CACHE);
+		}
 		final Set<SqlJetFileOpenPermission> permissions = EnumSet
 				.copyOf(writable ? WRITE_PREMISSIONS : READ_PERMISSIONS);
 		final SqlJetFileType type = file != null ? SqlJetFileType.MAIN_DB
@@ -184,13 +221,294 @@ public abstract class SqlJetEngine {
 	public <T> T runSynchronized(ISqlJetTransaction<T, SqlJetEngine> op)
 			throws SqlJetException {
 		checkOpen();
-		return dbHandle.getMutex().run(mutex -> op.run(this));
+		final SqlJetReadView view = getActiveReadView();
+		if (null != view) {
+			return view.runSynchronized(engine -> op.run(this));
+		}
+		return runMutex(op);
 	}
 	
 	public boolean runSynchronizedBool(ISqlJetBooleanTransaction<SqlJetEngine> op)
 			throws SqlJetException {
 		checkOpen();
-		return dbHandle.getMutex().runBool(mutex -> op.run(this));
+		final SqlJetReadView view = getActiveReadView();
+		if (null != view) {
+			return view.runSynchronizedBool(engine -> op.run(this));
+		}
+		return runMutex(engine -> Boolean.valueOf(op.run(this))).booleanValue();
+	}
+
+	/**
+	 * Runs operation on the connection itself, with its mutex locked, also
+	 * within a concurrent read transaction of the current thread.
+	 */
+	private <T> T runLocked(ISqlJetTransaction<T, SqlJetEngine> op) throws SqlJetException {
+		checkOpen();
+		return runMutex(op);
+	}
+
+	/**
+	 * Runs operation with the mutex of the connection locked. While a group
+	 * of write transactions keeps the transaction of the database open for
+	 * the threads in its queue, operations of other threads wait until it is
+	 * committed or rolled back.
+	 */
+	private <T> T runMutex(ISqlJetTransaction<T, SqlJetEngine> op) throws SqlJetException {
+		final SqlAbstractJetMutex mutex = dbHandle.getMutex();
+		final boolean reentered = mutex.heldByCurrentThread();
+		mutex.enter();
+		try {
+			SqlJetGroupCommit group;
+			while (!reentered && null != (group = groupCommit) && group.isOpen()) {
+				mutex.leave();
+				try {
+					group.awaitClosed();
+				} finally {
+					mutex.enter();
+				}
+			}
+			return op.run(this);
+		} finally {
+			mutex.leave();
+		}
+	}
+
+	/**
+	 * Returns B-Tree which operations of the current thread use: B-Tree of
+	 * the read view during a concurrent read transaction, or B-Tree of this
+	 * connection otherwise.
+	 * 
+	 * @return B-Tree of the database.
+	 */
+	public ISqlJetBtree getBtree() {
+		final SqlJetReadView view = getActiveReadView();
+		return null != view ? view.btree : btree;
+	}
+
+	/**
+	 * Enables or disables concurrent read transactions. When enabled, read
+	 * transactions of threads which neither run a write transaction nor use a
+	 * transaction started by {@link #beginTransaction} don't lock this
+	 * connection. Each of them runs on a read view: a read-only connection to
+	 * the same file from a pool, whose cached pages are shared with other
+	 * connections. Write transactions remain serialized by this connection.
+	 * 
+	 * @param concurrentReads
+	 *            true to enable concurrent read transactions.
+	 * @throws SqlJetException
+	 *             if the database is not stored in a file.
+	 */
+	protected void setConcurrentReads(final boolean concurrentReads) throws SqlJetException {
+		checkOpen();
+		if (concurrentReads) {
+			SqlJetAssert.assertTrue(file != null && !ISqlJetPager.MEMORY_DB.equals(file.getPath()),
+					SqlJetErrorCode.MISUSE, "Concurrent reads require database stored in a file");
+			synchronized (activeReadView) {
+				if (null == readViews) {
+					readViews = new ArrayDeque<>();
+				}
+			}
+		} else {
+			closeReadViews();
+		}
+	}
+
+	/**
+	 * @return true if concurrent read transactions are enabled.
+	 */
+	protected boolean isConcurrentReads() {
+		return null != readViews;
+	}
+
+	/**
+	 * Enables or disables group commit. When enabled, write transactions of
+	 * threads which wait for the connection are run one after another in one
+	 * transaction of the database, and share its commit. Each of them is run
+	 * once, by its own thread. If one of them fails, the transaction of the
+	 * database is rolled back, and the others which have already run in it
+	 * fail with {@link SqlJetErrorCode#ABORT}.
+	 * 
+	 * @param groupCommit
+	 *            true to enable group commit.
+	 */
+	protected void setGroupCommit(final boolean groupCommit) throws SqlJetException {
+		runLocked(engine -> {
+			if (!groupCommit) {
+				this.groupCommit = null;
+			} else if (null == this.groupCommit) {
+				this.groupCommit = new SqlJetGroupCommit();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * @return true if group commit is enabled.
+	 */
+	protected boolean isGroupCommit() {
+		return null != groupCommit;
+	}
+
+	/**
+	 * @return number of write transactions waiting to run in a group, or 0
+	 *         if group commit is disabled.
+	 */
+	protected int getGroupCommitQueueSize() {
+		final SqlJetGroupCommit group = groupCommit;
+		return null != group ? group.getQueueSize() : 0;
+	}
+
+	private SqlJetReadView getActiveReadView() {
+		return null == readViews ? null : activeReadView.get();
+	}
+
+	private boolean isConcurrentRead(final SqlJetTransactionMode mode) {
+		return null != readViews && mode == SqlJetTransactionMode.READ_ONLY && !connectionTransaction
+				&& !dbHandle.getMutex().heldByCurrentThread();
+	}
+
+	/**
+	 * Runs read transaction on a read view from the pool.
+	 */
+	private <T> T runConcurrentRead(final ISqlJetTransaction<T, SqlJetEngine> op) throws SqlJetException {
+		SqlJetReadView view;
+		synchronized (activeReadView) {
+			view = null != readViews ? readViews.poll() : null;
+		}
+		if (null == view) {
+			view = new SqlJetReadView(this);
+		}
+		activeReadView.set(view);
+		try {
+			return view.runEngineTransaction(engine -> op.run(this), SqlJetTransactionMode.READ_ONLY);
+		} finally {
+			activeReadView.remove();
+			boolean idle = false;
+			synchronized (activeReadView) {
+				if (null != readViews && open) {
+					readViews.push(view);
+					idle = true;
+				}
+			}
+			if (!idle) {
+				view.close();
+			}
+		}
+	}
+
+	private boolean isGroupCommit(final SqlJetTransactionMode mode) {
+		return null != groupCommit && mode == SqlJetTransactionMode.WRITE && !connectionTransaction
+				&& !dbHandle.getMutex().heldByCurrentThread();
+	}
+
+	/**
+	 * Runs write transaction in a group with write transactions of other
+	 * threads. The transaction is run by the current thread when it gets the
+	 * mutex, then the thread waits until the last transaction of the group
+	 * commits the transaction of the database.
+	 */
+	private <T> T runGroupCommit(final SqlJetGroupCommit group, final SqlJetTransactionMode mode,
+			final ISqlJetTransaction<T, SqlJetEngine> op) throws SqlJetException {
+		final SqlJetGroupCommit.Entry<T> entry = new SqlJetGroupCommit.Entry<>(op);
+		group.add(entry);
+		try {
+			final SqlAbstractJetMutex mutex = dbHandle.getMutex();
+			mutex.enter();
+			try {
+				checkOpen();
+				if (!group.isOpen() && (isInTransaction() || group != groupCommit)) {
+					/*
+					 * Transaction started by beginTransaction() or group commit
+					 * disabled in the meantime.
+					 */
+					group.remove(entry);
+					return runInTransaction(op, mode);
+				}
+				runGroupEntry(group, entry);
+			} finally {
+				mutex.leave();
+			}
+		} finally {
+			group.remove(entry);
+		}
+		entry.await();
+		return entry.getResult();
+	}
+
+	/**
+	 * Runs transaction of the group in the transaction of the database, which
+	 * is begun by the first transaction of the group. The last one commits it.
+	 */
+	private void runGroupEntry(final SqlJetGroupCommit group, final SqlJetGroupCommit.Entry<?> entry)
+			throws SqlJetException {
+		if (!group.isOpen()) {
+			doBeginTransaction(SqlJetTransactionMode.WRITE);
+		}
+		try {
+			entry.run(this);
+		} catch (SqlJetException | RuntimeException | Error e) {
+			group.remove(entry);
+			rollbackGroup(group, e);
+			throw e;
+		}
+		if (group.join(entry)) {
+			commitGroup(group);
+		}
+	}
+
+	private void commitGroup(final SqlJetGroupCommit group) throws SqlJetException {
+		final List<SqlJetGroupCommit.Entry<?>> entries = group.close();
+		boolean success = false;
+		try {
+			doCommitTransaction();
+			success = true;
+		} catch (SqlJetException | RuntimeException | Error e) {
+			for (SqlJetGroupCommit.Entry<?> entry : entries) {
+				entry.fail(e);
+			}
+			throw e;
+		} finally {
+			if (!success) {
+				try {
+					doRollbackTransaction();
+				} finally {
+					transactionMode = null;
+				}
+			}
+		}
+		for (SqlJetGroupCommit.Entry<?> entry : entries) {
+			entry.complete();
+		}
+	}
+
+	/**
+	 * Rolls back the transaction of the database after a transaction of the
+	 * group has failed. Transactions which have run in it before fail too.
+	 */
+	private void rollbackGroup(final SqlJetGroupCommit group, final Throwable cause) throws SqlJetException {
+		final List<SqlJetGroupCommit.Entry<?>> entries = group.close();
+		for (SqlJetGroupCommit.Entry<?> entry : entries) {
+			entry.fail(new SqlJetException(SqlJetErrorCode.ABORT,
+					"Transaction of the group commit was rolled back", cause));
+		}
+		try {
+			doRollbackTransaction();
+		} finally {
+			transactionMode = null;
+		}
+	}
+
+	private void closeReadViews() throws SqlJetException {
+		final Deque<SqlJetReadView> views;
+		synchronized (activeReadView) {
+			views = readViews;
+			readViews = null;
+		}
+		if (null != views) {
+			for (SqlJetReadView view : views) {
+				view.close();
+			}
+		}
 	}
 
 	/**
@@ -199,11 +517,15 @@ public abstract class SqlJetEngine {
 	 * 
 	 * @throws SqlJetException
 	 *             it is possible to get exception if there is actvie
-	 *             transaction and rollback did not success.
+	 *             transaction and rollback did not success, or if a
+	 *             background checkpoint failed since the last
+	 *             {@link #checkpoint()}.
 	 */
 	public void close() throws SqlJetException {
 		if (open) {
-			runSynchronized(engine -> {
+			final SqlJetException checkpointError = stopCheckpointer();
+			closeReadViews();
+			runLocked(engine -> {
 					if (btree != null) {
 						btree.close();
 						btree = null;
@@ -215,6 +537,9 @@ public abstract class SqlJetEngine {
 			if (!open) {
 				dbHandle = null;
 			}
+			if (null != checkpointError) {
+				throw checkpointError;
+			}
 		}
 	}
 
@@ -243,7 +568,7 @@ public abstract class SqlJetEngine {
 	 * @throws SqlJetException
 	 */
 	protected void readSchema() throws SqlJetException {
-		runSynchronized(engline -> {
+		runLocked(engline -> {
 				dbHandle.setOptions(new SqlJetOptions(btree, dbHandle));
 				btree.setSchema(new SqlJetSchema(dbHandle, btree));
 				return null;
@@ -257,6 +582,10 @@ public abstract class SqlJetEngine {
 	 */
 	public ISqlJetOptions getOptions() throws SqlJetException {
 		checkOpen();
+		final SqlJetReadView view = getActiveReadView();
+		if (null != view) {
+			return view.getOptions();
+		}
 		if (null == btree.getSchema()) {
 			readSchema();
 		}
@@ -267,7 +596,10 @@ public abstract class SqlJetEngine {
 	 * Refreshes database schema.
 	 */
 	public void refreshSchema() throws SqlJetException {
-		if (null == btree.getSchema()
+		final SqlJetReadView view = getActiveReadView();
+		if (null != view) {
+			view.refreshSchema();
+		} else if (null == btree.getSchema()
 				|| !getOptions().verifySchemaVersion()) {
 			readSchema();
 		}
@@ -276,7 +608,7 @@ public abstract class SqlJetEngine {
 	protected SqlJetSchema getSchemaInternal() throws SqlJetException {
 		checkOpen();
 		refreshSchema();
-		return btree.getSchema();
+		return getBtree().getSchema();
 	}
 
 	/**
@@ -307,7 +639,7 @@ public abstract class SqlJetEngine {
 	 */
 	public void setCacheSize(final int cacheSize) throws SqlJetException {
 		checkOpen();
-		runSynchronized(engline -> {
+		runLocked(engline -> {
 				btree.setCacheSize(cacheSize);
 				return null;
 		});
@@ -324,6 +656,128 @@ public abstract class SqlJetEngine {
 		return btree.getCacheSize();
 	}
 
+	/**
+	 * Set the limit of memory used by page caches and in-memory journals of
+	 * all databases open in the process, like SQLite's
+	 * <code>sqlite3_soft_heap_limit64()</code>. When the limit is exceeded,
+	 * unpinned clean pages are taken from the caches of all databases, while
+	 * each cache still holds at most its own cache size. The limit is soft:
+	 * pages in use and changed pages are kept. Zero, the default, means no
+	 * limit. The default may be changed with the
+	 * <code>SQLJET.SOFT_HEAP_LIMIT</code> system property.
+	 *
+	 * @param limit
+	 *            limit in bytes.
+	 */
+	public static void setSoftHeapLimit(final long limit) {
+		SqlJetUtility.memoryManager.setSoftHeapLimit(limit);
+	}
+
+	/**
+	 * Get the limit of memory used by all databases in the process.
+	 *
+	 * @return limit in bytes, zero if there is no limit.
+	 */
+	public static long getSoftHeapLimit() {
+		return SqlJetUtility.memoryManager.getSoftHeapLimit();
+	}
+
+	/**
+	 * Get the memory used by page caches and in-memory journals of all
+	 * databases open in the process.
+	 *
+	 * @return number of bytes used.
+	 */
+	public static long getMemoryUsed() {
+		return SqlJetUtility.memoryManager.getMemoryUsed();
+	}
+
+	/**
+	 * Set the maximum number of bytes of the database file which are memory
+	 * mapped for reading, like SQLite's <code>PRAGMA mmap_size</code>. Pages
+	 * within that range are read directly from the mapping and copied to the
+	 * heap only when they are modified. Zero, the default, disables memory
+	 * mapping. The default may be changed with the
+	 * <code>SQLJET.MMAP_SIZE</code> system property.
+	 * 
+	 * @param mmapSize
+	 *            maximum number of mapped bytes.
+	 */
+	public void setMmapSize(final long mmapSize) throws SqlJetException {
+		checkOpen();
+		runLocked(engine -> {
+				btree.setMmapSize(mmapSize);
+				return null;
+		});
+	}
+
+	/**
+	 * Get the maximum number of bytes of the database file which are memory
+	 * mapped for reading.
+	 * 
+	 * @return the maximum number of mapped bytes, zero if memory mapping is
+	 *         disabled.
+	 */
+	public long getMmapSize() throws SqlJetException {
+		checkOpen();
+		return runLocked(engine -> btree.getMmapSize());
+	}
+
+	/**
+	 * Enable the log of pages changed by commits, kept in the "-changes" file
+	 * next to the database. When the database is changed by other connections
+	 * which keep the log, for example in other processes, only pages changed
+	 * by them are dropped from the page cache instead of the whole cache. It
+	 * should be enabled on all connections to the database, and has no effect
+	 * in WAL journal mode. The default may be changed with the
+	 * <code>SQLJET.CHANGE_LOG</code> system property.
+	 * 
+	 * @param enabled
+	 *            true to enable the log.
+	 */
+	public void setChangeLog(final boolean enabled) throws SqlJetException {
+		checkOpen();
+		runLocked(engine -> {
+				btree.setChangeLog(enabled);
+				return null;
+		});
+	}
+
+	/**
+	 * @return true if the log of changed pages is enabled.
+	 */
+	public boolean isChangeLog() throws SqlJetException {
+		checkOpen();
+		return runLocked(engine -> Boolean.valueOf(btree.isChangeLog())).booleanValue();
+	}
+
+	/**
+	 * Set the size of database pages in bytes, like SQLite's
+	 * <code>PRAGMA page_size</code>. It takes effect only while the database
+	 * is empty, the page size of an existing database can't be changed.
+	 * 
+	 * @param pageSize
+	 *            power of two between 512 and 32768.
+	 */
+	public void setPageSize(final int pageSize) throws SqlJetException {
+		checkOpen();
+		runLocked(engine -> {
+				btree.setPageSize(pageSize);
+				return null;
+		});
+	}
+
+	/**
+	 * Get the size of database pages in bytes.
+	 * 
+	 * @return the page size.
+	 */
+	public int getPageSize() throws SqlJetException {
+		checkOpen();
+		refreshSchema();
+		return runLocked(engine -> btree.getPageSize());
+	}
+
 	/**
      * Set safety level
      * 
@@ -332,7 +786,7 @@ public abstract class SqlJetEngine {
      */
     public void setSafetyLevel(final SqlJetSafetyLevel safetyLevel) throws SqlJetException {
         checkOpen();
-        runSynchronized(engine -> {
+        runLocked(engine -> {
                 btree.setSafetyLevel(safetyLevel);
                 return null;
         });
@@ -343,15 +797,145 @@ public abstract class SqlJetEngine {
      * 
      * @param journalMode
      *            
+     * @throws SqlJetException
+     *             if WAL mode is entered or left on a memory, temporary or
+     *             read-only database, or while a transaction is open.
      */
     public void setJournalMode(final SqlJetPagerJournalMode journalMode) throws SqlJetException {
         checkOpen();
-        runSynchronized(engine -> {
+        runLocked(engine -> {
                 btree.setJournalMode(journalMode);
                 return null;
         });
     }
 
+    /**
+     * Enables or disables background checkpoints in WAL journal mode. When
+     * enabled, commits only append pages to the write-ahead log and return
+     * once it is synced, while a background thread copies the log into the
+     * database file. The thread copies the log in a transaction of this
+     * engine, so other transactions of the engine wait while it runs: this
+     * takes checkpoints out of the latency of commits, not out of the work of
+     * the engine.
+     * 
+     * Once the log has grown to the limit set by the
+     * <code>SQLJET.CHECKPOINT_LIMIT</code> system property, because the
+     * thread can't keep up or other connections keep reading, a write
+     * transaction checkpoints the log before it starts. It waits for readers
+     * through the busy handler and fails with BUSY if they don't finish, so
+     * the log doesn't grow without bound.
+     * 
+     * @param enabled
+     *            true to enable background checkpoints.
+     * @throws SqlJetException
+     *             if the database is not in WAL journal mode, or if
+     *             background checkpoints are disabled after one of them
+     *             failed since the last {@link #checkpoint()}.
+     */
+    public void setBackgroundCheckpoint(final boolean enabled) throws SqlJetException {
+        checkOpen();
+        if (!enabled) {
+            final SqlJetException checkpointError = stopCheckpointer();
+            if (null != checkpointError) {
+                throw checkpointError;
+            }
+            return;
+        }
+        runLocked(engine -> {
+                SqlJetAssert.assertTrue(btree.getJournalMode() == SqlJetPagerJournalMode.WAL, SqlJetErrorCode.MISUSE,
+                        "Background checkpoints require WAL journal mode");
+                if (null == checkpointer) {
+                    checkpointer = new SqlJetCheckpointer(this, btree.getWalAutoCheckpoint());
+                    btree.setWalAutoCheckpoint(SqlJetCheckpointer.SQLJET_CHECKPOINT_LIMIT);
+                    btree.setWalCheckpointLimit(SqlJetCheckpointer.SQLJET_CHECKPOINT_LIMIT);
+                }
+                return null;
+        });
+    }
+
+    /**
+     * @return true if background checkpoints are enabled.
+     */
+    public boolean isBackgroundCheckpoint() throws SqlJetException {
+        checkOpen();
+        return runLocked(engine -> Boolean.valueOf(null != checkpointer)).booleanValue();
+    }
+
+    private SqlJetException stopCheckpointer() throws SqlJetException {
+        final SqlJetCheckpointer stopped = runLocked(engine -> {
+                final SqlJetCheckpointer c = checkpointer;
+                if (null != c) {
+                    checkpointer = null;
+                    btree.setWalAutoCheckpoint(c.getThreshold());
+                    btree.setWalCheckpointLimit(0);
+                }
+                return c;
+        });
+        if (null == stopped) {
+            return null;
+        }
+        stopped.stop();
+        return stopped.takeError();
+    }
+
+    /**
+     * Copies the write-ahead log into the database file now. Commits in WAL
+     * journal mode are durable once they return, this only moves them from
+     * the log into the database file, for example before the file is copied.
+     * 
+     * @return false if the log couldn't be checkpointed because other
+     *         connections are reading the database.
+     * @throws SqlJetException
+     *             if the checkpoint fails, or the error of a background
+     *             checkpoint which failed since the last call.
+     */
+    public boolean checkpoint() throws SqlJetException {
+        checkOpen();
+        assertNoConcurrentRead();
+        return runLocked(engine -> {
+                SqlJetAssert.assertFalse(isInTransaction(), SqlJetErrorCode.MISUSE,
+                        "Can't checkpoint within transaction");
+                final SqlJetException checkpointError = null != checkpointer ? checkpointer.takeError() : null;
+                if (null != checkpointError) {
+                    throw checkpointError;
+                }
+                return Boolean.valueOf(doCheckpoint());
+        }).booleanValue();
+    }
+
+    /**
+     * Checkpoint of the background thread, which is skipped while a
+     * transaction is active.
+     * 
+     * @return false if the checkpoint should be retried later.
+     */
+    boolean checkpointInBackground(final int threshold) throws SqlJetException {
+        return runLocked(engine -> {
+                if (isInTransaction()) {
+                    return Boolean.FALSE;
+                }
+                return Boolean.valueOf(btree.getWalFrameCount() < threshold || doCheckpoint());
+        }).booleanValue();
+    }
+
+    private boolean doCheckpoint() throws SqlJetException {
+        if (btree.getWalFrameCount() == 0) {
+            return true;
+        }
+        doBeginTransaction(SqlJetTransactionMode.WRITE);
+        boolean success = false;
+        try {
+            final boolean done = btree.checkpoint();
+            doCommitTransaction();
+            success = true;
+            return done;
+        } finally {
+            if (!success) {
+                doRollbackTransaction();
+            }
+        }
+    }
+
     /**
      * Get safety level
      * 
@@ -371,7 +955,7 @@ public abstract class SqlJetEngine {
     public SqlJetPagerJournalMode getJournalMode() throws SqlJetException {
         checkOpen();
         refreshSchema();
-        return runSynchronized(engine -> btree.getJournalMode());
+        return runLocked(engine -> btree.getJournalMode());
     }
 
 	/**
@@ -380,11 +964,24 @@ public abstract class SqlJetEngine {
 	 * @return true if there is an active running transaction.
 	 */
 	public boolean isInTransaction() {
-		return transactionMode!=null;
+		return getTransactionMode()!=null;
 	}
 
 	public SqlJetTransactionMode getTransactionMode() {
-		return transactionMode;
+		final SqlJetReadView view = getActiveReadView();
+		return null != view ? view.getTransactionMode() : transactionMode;
+	}
+
+	/**
+	 * Returns true if the current thread runs an operation of this engine,
+	 * such as a transaction run by {@link #runEngineTransaction}, or a
+	 * concurrent read transaction. Operations of other threads wait for it
+	 * unless they run concurrent read transactions.
+	 * 
+	 * @return true if the current thread runs an operation of this engine.
+	 */
+	public boolean isRunByCurrentThread() {
+		return null != getActiveReadView() || dbHandle.getMutex().heldByCurrentThread();
 	}
 
 	/**
@@ -396,10 +993,12 @@ public abstract class SqlJetEngine {
 	public void beginTransaction(final SqlJetTransactionMode mode)
 			throws SqlJetException {
 		checkOpen();
-		runSynchronized(engine -> {
+		assertNoConcurrentRead();
+		runLocked(engine -> {
 				if (!isTransactionStarted(mode)) {
 					doBeginTransaction(mode);
 				}
+				connectionTransaction = true;
 				return null;
 		});
 	}
@@ -410,7 +1009,8 @@ public abstract class SqlJetEngine {
 	 */
 	public void commit() throws SqlJetException {
 		checkOpen();
-		runSynchronized(engine -> {
+		assertNoConcurrentRead();
+		runLocked(engine -> {
 				if (isInTransaction()) {
 					doCommitTransaction();
 				}
@@ -424,7 +1024,8 @@ public abstract class SqlJetEngine {
 	 */
 	public void rollback() throws SqlJetException {
 		checkOpen();
-		runSynchronized(engine -> {
+		assertNoConcurrentRead();
+		runLocked(engine -> {
 				doRollbackTransaction();
 				return null;
 		});
@@ -445,25 +1046,38 @@ public abstract class SqlJetEngine {
 	public <T> T runEngineTransaction(final ISqlJetTransaction<T, SqlJetEngine> op,
 			final SqlJetTransactionMode mode) throws SqlJetException {
 		checkOpen();
-		return runSynchronized(engine -> {
-				if (isTransactionStarted(mode)) {
-					return op.run(SqlJetEngine.this);
-				} else {
-					doBeginTransaction(mode);
-					boolean success = false;
-					try {
-						final T result = op.run(SqlJetEngine.this);
-						doCommitTransaction();
-						success = true;
-						return result;
-					} finally {
-						if (!success) {
-							doRollbackTransaction();
-						}
-						transactionMode = null;
-					}
+		if (null != getActiveReadView()) {
+			assertReadOnly(mode);
+			return runSynchronized(engine -> op.run(SqlJetEngine.this));
+		} else if (isConcurrentRead(mode)) {
+			return runConcurrentRead(engine -> op.run(SqlJetEngine.this));
+		}
+		final SqlJetGroupCommit group = groupCommit;
+		if (null != group && isGroupCommit(mode)) {
+			return runGroupCommit(group, mode, op);
+		}
+		return runSynchronized(engine -> runInTransaction(op, mode));
+	}
+
+	private <T> T runInTransaction(final ISqlJetTransaction<T, SqlJetEngine> op, final SqlJetTransactionMode mode)
+			throws SqlJetException {
+		if (isTransactionStarted(mode)) {
+			return op.run(SqlJetEngine.this);
+		} else {
+			doBeginTransaction(mode);
+			boolean success = false;
+			try {
+				final T result = op.run(SqlJetEngine.this);
+				doCommitTransaction();
+				success = true;
+				return result;
+			} finally {
+				if (!success) {
+					doRollbackTransaction();
 				}
-		});
+				transactionMode = null;
+			}
+		}
 	}
 	
 	/**
@@ -481,6 +1095,16 @@ public abstract class SqlJetEngine {
 	public boolean runEngineTransactionBool(final ISqlJetBooleanTransaction<SqlJetEngine> op,
 			final SqlJetTransactionMode mode) throws SqlJetException {
 		checkOpen();
+		if (null != getActiveReadView()) {
+			assertReadOnly(mode);
+			return runSynchronizedBool(engine -> op.run(SqlJetEngine.this));
+		} else if (isConcurrentRead(mode)) {
+			return runConcurrentRead(engine -> Boolean.valueOf(op.run(SqlJetEngine.this))).booleanValue();
+		}
+		final SqlJetGroupCommit group = groupCommit;
+		if (null != group && isGroupCommit(mode)) {
+			return runGroupCommit(group, mode, engine -> Boolean.valueOf(op.run(SqlJetEngine.this))).booleanValue();
+		}
 		return runSynchronizedBool(engine -> {
 			if (isTransactionStarted(mode)) {
 				return op.run(SqlJetEngine.this);
@@ -502,6 +1126,16 @@ public abstract class SqlJetEngine {
 		});
 	}
 
+	private void assertNoConcurrentRead() throws SqlJetException {
+		SqlJetAssert.assertTrue(null == getActiveReadView(), SqlJetErrorCode.MISUSE,
+				"Can't control transactions within concurrent read transaction");
+	}
+
+	private static void assertReadOnly(final SqlJetTransactionMode mode) throws SqlJetException {
+		SqlJetAssert.assertTrue(mode == SqlJetTransactionMode.READ_ONLY, SqlJetErrorCode.MISUSE,
+				"Can't start write transaction within concurrent read transaction");
+	}
+
 	private boolean isTransactionStarted(final SqlJetTransactionMode mode) {
 		return transactionMode != null
 				&& (transactionMode == mode || mode == SqlJetTransactionMode.READ_ONLY);
@@ -515,15 +1149,35 @@ public abstract class SqlJetEngine {
 	}
 
 	private void doCommitTransaction() throws SqlJetException {
+		closeTables();
 		btree.closeAllCursors();
 		btree.commit();
 		transactionMode = null;
+		connectionTransaction = false;
+		if (null != checkpointer) {
+			checkpointer.committed(btree.getWalFrameCount());
+		}
+	}
+
+	/**
+	 * Closes tables kept open by operations of the transaction.
+	 */
+	private void closeTables() throws SqlJetException {
+		final SqlJetSchema schema = btree.getSchema();
+		if (null != schema) {
+			schema.closeTables();
+		}
 	}
 
 	private void doRollbackTransaction() throws SqlJetException {
-		btree.closeAllCursors();
+		try {
+			closeTables();
+		} finally {
+			btree.closeAllCursors();
+		}
 		btree.rollback();
 		transactionMode = null;
+		connectionTransaction = false;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+/**
+ * SqlJetGroupCommit.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
+
+/**
+ * Queue of write transactions waiting for the connection, and the group of
+ * transactions which have run in the open transaction of the database. Each
+ * thread runs its own transaction when it gets the mutex of the connection.
+ * The transaction of the database is left open for the threads still in the
+ * queue and is committed by the last of them, so that all transactions of
+ * the group share the sync of one commit.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+final class SqlJetGroupCommit {
+
+    /**
+     * Maximum number of transactions committed together.
+     */
+    private static final String SQLJET_GROUP_COMMIT_SIZE_PROP = "SQLJET.GROUP_COMMIT_SIZE";
+
+    private static final int SQLJET_GROUP_COMMIT_SIZE = SqlJetUtility.getIntSysProp(SQLJET_GROUP_COMMIT_SIZE_PROP,
+            100);
+
+    /**
+     * Transaction of one thread and its outcome.
+     */
+    static final class Entry<T> {
+        private final ISqlJetTransaction<T, SqlJetEngine> op;
+        private T result;
+        private Throwable error;
+        private boolean done;
+
+        Entry(ISqlJetTransaction<T, SqlJetEngine> op) {
+            this.op = op;
+        }
+
+        void run(SqlJetEngine engine) throws SqlJetException {
+            result = op.run(engine);
+        }
+
+        synchronized void complete() {
+            done = true;
+            notifyAll();
+        }
+
+        synchronized void fail(Throwable error) {
+            this.error = error;
+            this.result = null;
+            done = true;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the group of this transaction is committed or rolled
+         * back.
+         */
+        synchronized void await() {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized T getResult() throws SqlJetException {
+            if (error instanceof SqlJetException) {
+                throw (SqlJetException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else if (null != error) {
+                throw new SqlJetException(error);
+            }
+            return result;
+        }
+    }
+
+    private final List<Entry<?>> queue = new ArrayList<>();
+    private final List<Entry<?>> group = new ArrayList<>();
+    private boolean open;
+
+    synchronized void add(Entry<?> entry) {
+        queue.add(entry);
+    }
+
+    synchronized void remove(Entry<?> entry) {
+        queue.remove(entry);
+    }
+
+    synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return true if the transaction of the database is left open for
+     *         transactions of the queue.
+     */
+    synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Adds transaction which has run to the group.
+     * 
+     * @return true if the group is complete and should be committed.
+     */
+    synchronized boolean join(Entry<?> entry) {
+        queue.remove(entry);
+        group.add(entry);
+        open = true;
+        return queue.isEmpty() || group.size() >= Math.max(1, SQLJET_GROUP_COMMIT_SIZE);
+    }
+
+    /**
+     * Closes the group before the transaction of the database is committed
+     * or rolled back, and wakes threads waiting for it.
+     * 
+     * @return transactions of the group.
+     */
+    synchronized List<Entry<?>> close() {
+        final List<Entry<?>> entries = new ArrayList<>(group);
+        group.clear();
+        open = false;
+        notifyAll();
+        return entries;
+    }
+
+    /**
+     * Waits until the group is closed.
+     */
+    synchronized void awaitClosed() {
+        boolean interrupted = false;
+        while (open) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
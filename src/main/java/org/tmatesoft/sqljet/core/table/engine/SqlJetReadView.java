@@ -0,0 +1,48 @@
+/**
+ * SqlJetReadView.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table.engine;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * Read-only connection to the database file of an engine, which runs a
+ * concurrent read transaction of one thread at a time. It has its own
+ * B-Tree, pager and mutex, and shares cached pages with other connections to
+ * the file through the shared page cache.
+ * 
+ * @author TMate Software Ltd.
+ * 
+ */
+final class SqlJetReadView extends SqlJetEngine {
+
+    /**
+     * Opens read view with settings of the engine.
+     * 
+     * @param engine
+     *            engine whose read transactions the view runs.
+     * @throws SqlJetException
+     */
+    SqlJetReadView(SqlJetEngine engine) throws SqlJetException {
+        super(engine.getFile(), false, engine.getFileSystem(), true);
+        setBusyHandler(engine.getBusyHandler());
+        setCacheSize(engine.btree.getCacheSize());
+        setMmapSize(engine.btree.getMmapSize());
+        setChangeLog(engine.btree.isChangeLog());
+    }
+
+}
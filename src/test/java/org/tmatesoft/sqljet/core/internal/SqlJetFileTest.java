@@ -110,6 +110,19 @@ public class SqlJetFileTest extends SqlJetAbstractFileSystemMockTest {
                 .getBuffer().asArray());
     }
 
+	@Test
+    public void testWriteGathering() throws Exception {
+        Assert.assertTrue(0 == path.length());
+        final ISqlJetMemoryPointer[] wb = { SqlJetUtility.wrapPtr(new byte[] { 1, 2, 3 }),
+                SqlJetUtility.memoryManager.allocatePtr(3), SqlJetUtility.wrapPtr(new byte[] { 7, 8, 9, 10 }) };
+        wb[1].putBytes(new byte[] { 4, 5, 6 });
+        file.write(wb, 3, 1);
+        final ISqlJetMemoryPointer rb = SqlJetUtility.memoryManager.allocatePtr(10);
+        Assert.assertEquals(10, file.read(rb, 10, 0));
+        Assert.assertArrayEquals("Buffers should be written one after another",
+                new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }, rb.getBytes());
+    }
+
 	@Test
     public void testSize() throws Exception {
         final long fileSize = file.fileSize();
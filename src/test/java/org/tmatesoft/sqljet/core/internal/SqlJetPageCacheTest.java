@@ -0,0 +1,193 @@
+/**
+ * SqlJetPageCacheTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetMemoryManager;
+import org.tmatesoft.sqljet.core.internal.pager.SqlJetPageCache;
+
+/**
+ * @author TMate Software Ltd.
+ *
+ */
+public class SqlJetPageCacheTest {
+
+    private static final int CACHE_SIZE = 10;
+
+    private SqlJetPageCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new SqlJetPageCache(1024, true, page -> Assert.fail("No dirty pages expected"));
+        cache.setCacheSize(CACHE_SIZE);
+    }
+
+    private void touch(int pgno) throws SqlJetException {
+        final ISqlJetPage page = cache.fetch(pgno, true);
+        Assert.assertNotNull(page);
+        page.release();
+    }
+
+    private boolean isCached(int pgno) throws SqlJetException {
+        final ISqlJetPage page = cache.fetch(pgno, false);
+        if (null != page) {
+            page.release();
+        }
+        return null != page;
+    }
+
+    @Test
+    public void testLruRecyclesLeastRecentlyUsed() throws SqlJetException {
+        Assert.assertEquals(SqlJetPageCachePolicy.LRU, cache.getPolicy());
+        for (int i = 1; i <= CACHE_SIZE; i++) {
+            touch(i);
+        }
+        touch(1);
+        touch(CACHE_SIZE + 1);
+        Assert.assertEquals(CACHE_SIZE, cache.getPageCount());
+        Assert.assertTrue(isCached(1));
+        Assert.assertFalse(isCached(2));
+        Assert.assertTrue(isCached(3));
+    }
+
+    @Test
+    public void testClockGivesSecondChance() throws SqlJetException {
+        cache.setPolicy(SqlJetPageCachePolicy.CLOCK);
+        Assert.assertEquals(SqlJetPageCachePolicy.CLOCK, cache.getPolicy());
+        for (int i = 1; i <= CACHE_SIZE; i++) {
+            touch(i);
+        }
+        touch(CACHE_SIZE + 1);
+        Assert.assertFalse(isCached(1));
+        touch(2);
+        touch(CACHE_SIZE + 2);
+        Assert.assertEquals(CACHE_SIZE, cache.getPageCount());
+        Assert.assertTrue(isCached(2));
+        Assert.assertFalse(isCached(3));
+    }
+
+    @Test
+    public void testFullCacheIsNotDrained() throws SqlJetException {
+        for (SqlJetPageCachePolicy policy : SqlJetPageCachePolicy.values()) {
+            cache.clear();
+            cache.setPolicy(policy);
+            for (int i = 1; i <= 10 * CACHE_SIZE; i++) {
+                touch(i);
+                Assert.assertEquals(Math.min(i, CACHE_SIZE), cache.getPageCount());
+            }
+        }
+    }
+
+    @Test
+    public void testPinnedPagesAreKept() throws SqlJetException {
+        for (SqlJetPageCachePolicy policy : SqlJetPageCachePolicy.values()) {
+            cache.clear();
+            cache.setPolicy(policy);
+            final ISqlJetPage pinned = cache.fetch(1, true);
+            for (int i = 2; i <= 10 * CACHE_SIZE; i++) {
+                touch(i);
+            }
+            Assert.assertSame(pinned, cache.fetch(1, false));
+            pinned.release();
+            pinned.release();
+        }
+    }
+
+    @Test
+    public void testUnrecyclablePagesAreKept() throws SqlJetException {
+        for (SqlJetPageCachePolicy policy : SqlJetPageCachePolicy.values()) {
+            cache.clear();
+            cache.setPolicy(policy);
+            final ISqlJetPage held = cache.fetch(1, true);
+            held.getFlags().add(SqlJetPageFlags.NEED_SYNC);
+            held.release();
+            for (int i = 2; i <= 10 * CACHE_SIZE; i++) {
+                touch(i);
+                Assert.assertEquals(Math.min(i, CACHE_SIZE), cache.getPageCount());
+            }
+            Assert.assertTrue(isCached(1));
+        }
+    }
+
+    @Test
+    public void testTruncateDropsTailPages() throws SqlJetException {
+        cache.setCacheSize(1000);
+        for (int i = 1; i <= 500; i++) {
+            touch(i);
+        }
+        cache.truncate(450);
+        Assert.assertEquals(450, cache.getPageCount());
+        Assert.assertTrue(isCached(450));
+        Assert.assertFalse(isCached(451));
+        cache.truncate(100);
+        Assert.assertEquals(100, cache.getPageCount());
+        Assert.assertTrue(isCached(1));
+        Assert.assertTrue(isCached(100));
+        Assert.assertFalse(isCached(101));
+        cache.clear();
+        Assert.assertEquals(0, cache.getPageCount());
+        for (int i = 1; i <= 500; i++) {
+            touch(i);
+        }
+        Assert.assertEquals(500, cache.getPageCount());
+    }
+
+    @Test
+    public void testRecycledBuffersAreReused() throws SqlJetException {
+        final SqlJetMemoryManager memoryManager = (SqlJetMemoryManager) SqlJetUtility.memoryManager;
+        for (int i = 1; i <= CACHE_SIZE; i++) {
+            final ISqlJetPage page = cache.fetch(i, true);
+            page.getData().fill(1024, (byte) 0xFF);
+            page.release();
+        }
+        final long poolSize = memoryManager.getPoolSize();
+        for (int i = CACHE_SIZE + 1; i <= 2 * CACHE_SIZE; i++) {
+            final ISqlJetPage page = cache.fetch(i, true);
+            for (int j = 0; j < 1024; j++) {
+                Assert.assertEquals(0, page.getData().getByteUnsigned(j));
+            }
+            page.release();
+        }
+        final long reused = memoryManager.getPoolSize();
+        Assert.assertTrue(reused <= poolSize + 1024);
+        cache.close();
+        Assert.assertTrue(memoryManager.getPoolSize() >= Math.min(reused + CACHE_SIZE * 1024, 8L * 1024 * 1024 - 1024));
+    }
+
+    @Test
+    public void testMemoryOfCollectedCacheIsGivenBack() throws Exception {
+        final ISqlJetMemoryManager memoryManager = SqlJetUtility.memoryManager;
+        System.gc();
+        memoryManager.releaseMemory(Long.MAX_VALUE);
+        final long used = memoryManager.getMemoryUsed();
+        for (int i = 1; i <= CACHE_SIZE; i++) {
+            touch(i);
+        }
+        Assert.assertTrue(memoryManager.getMemoryUsed() >= used + CACHE_SIZE * 1024);
+        cache = null;
+        for (int i = 0; i < 100 && memoryManager.getMemoryUsed() > used; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(memoryManager.getMemoryUsed() <= used);
+    }
+
+}
@@ -31,6 +31,7 @@ import org.junit.Test;
 import org.tmatesoft.sqljet.core.SqlJetAbstractLoggedTest;
 import org.tmatesoft.sqljet.core.internal.fs.SqlJetFileSystemsManager;
 import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetMappedBuffer;
 import org.tmatesoft.sqljet.core.internal.pager.SqlJetPager;
 
 /**
@@ -220,6 +221,43 @@ public class SqlJetPagerTest extends SqlJetAbstractLoggedTest {
 
     }
 
+    @Test
+    public final void testSharedCachePagesAreMapped() throws Exception {
+        final Set<SqlJetPagerFlags> shared = EnumSet.of(SqlJetPagerFlags.SHARED_CACHE);
+        final Set<SqlJetFileOpenPermission> permissions = SqlJetUtility.of(SqlJetFileOpenPermission.CREATE,
+                SqlJetFileOpenPermission.READWRITE);
+        pager = new SqlJetPager(fileSystem, file, shared, SqlJetFileType.MAIN_DB, permissions);
+        final int pageSize = pager.getPageSize();
+        final ISqlJetPage written = pager.acquirePage(2, true);
+        pager.begin(true);
+        written.write();
+        written.getData().fill(pageSize, (byte) 1);
+        pager.commitPhaseOne(false);
+        pager.commitPhaseTwo();
+        Assert.assertTrue(((SqlJetMappedBuffer) written.getData().getBuffer()).isMapped());
+        written.unref();
+
+        final ISqlJetPager reader = new SqlJetPager(fileSystem, file, shared, SqlJetFileType.MAIN_DB, permissions);
+        final ISqlJetPager writer = new SqlJetPager(fileSystem, file, shared, SqlJetFileType.MAIN_DB, permissions);
+        try {
+            final ISqlJetPage read = reader.acquirePage(2, true);
+            final ISqlJetPage changed = writer.acquirePage(2, true);
+            Assert.assertTrue(((SqlJetMappedBuffer) read.getData().getBuffer()).isMapped());
+            Assert.assertTrue(((SqlJetMappedBuffer) changed.getData().getBuffer()).isMapped());
+            writer.begin(false);
+            changed.write();
+            changed.getData().fill(pageSize, (byte) 2);
+            Assert.assertFalse(((SqlJetMappedBuffer) changed.getData().getBuffer()).isMapped());
+            Assert.assertEquals(1, read.getData().getByte(pageSize - 1));
+            writer.rollback();
+            changed.unref();
+            read.unref();
+        } finally {
+            writer.close();
+            reader.close();
+        }
+    }
+
     /**
      * Test method for
      * {@link org.tmatesoft.sqljet.core.internal.pager.SqlJetPager#open(org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem, java.io.File, org.tmatesoft.sqljet.core.ISqlJetPageDestructor, int, java.util.Set, org.tmatesoft.sqljet.core.internal.SqlJetFileType, java.util.Set)}
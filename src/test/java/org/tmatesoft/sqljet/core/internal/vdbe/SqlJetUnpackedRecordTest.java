@@ -0,0 +1,70 @@
+package org.tmatesoft.sqljet.core.internal.vdbe;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.SqlJetEncoding;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+
+public class SqlJetUnpackedRecordTest {
+
+	private static final Object[] VALUES = { null, Long.valueOf(0), Long.valueOf(1), Long.valueOf(-1),
+			Long.valueOf(100), Long.valueOf(-30000), Long.valueOf(3000000), Long.valueOf(-2000000000),
+			Long.valueOf(100000000000L), Long.valueOf(Long.MAX_VALUE), Long.valueOf(Long.MIN_VALUE),
+			Double.valueOf(0.5), Double.valueOf(-1.5), Double.valueOf(1), Double.valueOf(1e300), "", "a", "ab",
+			"abc", "b", "B", "a\u00e9", "a\u00e8z", "\u044f\u0431", "\u044f\u0430", "\ue000", "\ufffd",
+			"\ud83d\ude00", "x\ud83d\ude00", "x\uffff", new byte[0], new byte[] { 1, 2 }, new byte[] { 1, 3 } };
+
+	private static void assertSameOrder(SqlJetEncoding enc, Object[][] keys) throws SqlJetException {
+		final SqlJetKeyInfo keyInfo = new SqlJetKeyInfo(enc);
+		keyInfo.setNField(keys[0].length);
+		final List<ISqlJetMemoryPointer> records = new ArrayList<>();
+		final List<SqlJetUnpackedRecord> unpacked = new ArrayList<>();
+		for (Object[] key : keys) {
+			final ISqlJetMemoryPointer record = SqlJetBtreeRecord.getRecord(enc, key).getRawRecord();
+			records.add(record);
+			unpacked.add(keyInfo.recordUnpack(record.remaining(), record));
+		}
+		for (int i = 0; i < keys.length; i++) {
+			for (int j = 0; j < keys.length; j++) {
+				final ISqlJetMemoryPointer record = records.get(i);
+				assertEquals(Integer.signum(unpacked.get(i).compareTo(unpacked.get(j))),
+						Integer.signum(unpacked.get(j).recordCompare(record.remaining(), record)));
+			}
+		}
+	}
+
+	@Test
+	public void testSingleField() throws SqlJetException {
+		final Object[][] keys = new Object[VALUES.length][];
+		for (int i = 0; i < VALUES.length; i++) {
+			keys[i] = new Object[] { VALUES[i] };
+		}
+		assertSameOrder(SqlJetEncoding.UTF8, keys);
+	}
+
+	@Test
+	public void testTwoFields() throws SqlJetException {
+		final Object[][] keys = new Object[VALUES.length * 3][];
+		for (int i = 0; i < VALUES.length; i++) {
+			keys[i * 3] = new Object[] { VALUES[i], Long.valueOf(i) };
+			keys[i * 3 + 1] = new Object[] { "a", VALUES[i] };
+			keys[i * 3 + 2] = new Object[] { Long.valueOf(1), VALUES[i] };
+		}
+		assertSameOrder(SqlJetEncoding.UTF8, keys);
+	}
+
+	@Test
+	public void testUtf16() throws SqlJetException {
+		final Object[][] keys = new Object[VALUES.length][];
+		for (int i = 0; i < VALUES.length; i++) {
+			keys[i] = new Object[] { VALUES[i] };
+		}
+		assertSameOrder(SqlJetEncoding.UTF16LE, keys);
+	}
+
+}
@@ -0,0 +1,268 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetIOErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetIOException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
+import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
+import org.tmatesoft.sqljet.core.internal.fs.SqlJetFileSystem;
+import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+
+public class BackgroundCheckpointTest extends AbstractNewDbTest {
+
+	private File wal;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		wal = new File(file.getPath() + "-wal");
+		db.setJournalMode(SqlJetPagerJournalMode.WAL);
+		db.write().asVoid(db -> db.createTable("create table t(a integer primary key, b text)"));
+		db.runSynchronized(engine -> {
+			engine.getBtree().setWalAutoCheckpoint(10);
+			return null;
+		});
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		try {
+			super.tearDown();
+		} finally {
+			SqlJetFileUtil.deleteFile(wal);
+		}
+	}
+
+	private void insert(int from, int count) throws SqlJetException {
+		for (int i = from; i < from + count; i++) {
+			final int value = i;
+			db.write().asVoid(db -> db.getTable("t").insert(Integer.valueOf(value), "value " + value));
+		}
+	}
+
+	private static long count(SqlJetDb db) throws SqlJetException {
+		return db.read().asLong(db2 -> {
+			ISqlJetCursor c = db2.getTable("t").open();
+			try {
+				long n = 0;
+				while (!c.eof()) {
+					n++;
+					c.next();
+				}
+				return n;
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	private int frames() throws SqlJetException {
+		return db.runSynchronized(engine -> Integer.valueOf(engine.getBtree().getWalFrameCount())).intValue();
+	}
+
+	@Test
+	public void testCommitsAreCheckpointed() throws Exception {
+		db.setBackgroundCheckpoint(true);
+		assertTrue(db.isBackgroundCheckpoint());
+		insert(1, 100);
+		for (int i = 0; i < 1000 && frames() >= 10; i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(frames() < 10);
+		assertEquals(100, count(db));
+		db.close();
+		db = SqlJetDb.open(file, true);
+		assertEquals(100, count(db));
+	}
+
+	@Test
+	public void testCheckpoint() throws SqlJetException {
+		db.runSynchronized(engine -> {
+			engine.getBtree().setWalAutoCheckpoint(0);
+			return null;
+		});
+		insert(1, 20);
+		assertTrue(frames() >= 20);
+		assertTrue(db.checkpoint());
+		assertEquals(0, frames());
+		assertEquals(20, count(db));
+	}
+
+	@Test
+	public void testCheckpointWaitsForReaders() throws SqlJetException {
+		db.runSynchronized(engine -> {
+			engine.getBtree().setWalAutoCheckpoint(0);
+			return null;
+		});
+		insert(1, 5);
+		final SqlJetDb reader = SqlJetDb.open(file, false);
+		try {
+			reader.beginTransaction(SqlJetTransactionMode.READ_ONLY);
+			assertEquals(5, count(reader));
+			assertFalse(db.checkpoint());
+			assertEquals(5, count(db));
+			reader.commit();
+			assertTrue(db.checkpoint());
+			assertEquals(0, frames());
+			assertEquals(5, count(reader));
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testCheckpointWithinTransaction() throws SqlJetException {
+		db.write().asVoid(db -> {
+			try {
+				db.checkpoint();
+				fail();
+			} catch (SqlJetException e) {
+				assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+			}
+		});
+	}
+
+	@Test
+	public void testDisable() throws SqlJetException {
+		db.setBackgroundCheckpoint(true);
+		insert(1, 5);
+		db.setBackgroundCheckpoint(false);
+		assertFalse(db.isBackgroundCheckpoint());
+		insert(6, 5);
+		assertEquals(10, count(db));
+	}
+
+	@Test
+	public void testRequiresWal() throws SqlJetException {
+		db.setJournalMode(SqlJetPagerJournalMode.DELETE);
+		try {
+			db.setBackgroundCheckpoint(true);
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+		}
+		assertFalse(db.isBackgroundCheckpoint());
+	}
+
+	@Test
+	public void testLimitWaitsForReaders() throws Exception {
+		db.runSynchronized(engine -> {
+			engine.getBtree().setWalAutoCheckpoint(0);
+			engine.getBtree().setWalCheckpointLimit(10);
+			return null;
+		});
+		db.setBusyHandler(new SqlJetDefaultBusyHandler(2, 10));
+		insert(1, 5);
+		final SqlJetDb reader = SqlJetDb.open(file, false);
+		try {
+			reader.beginTransaction(SqlJetTransactionMode.READ_ONLY);
+			assertEquals(5, count(reader));
+			int n = 5;
+			while (frames() < 10) {
+				insert(++n, 1);
+			}
+			final int frames = frames();
+			try {
+				insert(++n, 1);
+				fail();
+			} catch (SqlJetException e) {
+				assertEquals(SqlJetErrorCode.BUSY, e.getErrorCode());
+			}
+			assertEquals(frames, frames());
+			db.setBusyHandler(new SqlJetDefaultBusyHandler(100, 50));
+			final Thread release = new Thread(() -> {
+				try {
+					Thread.sleep(100);
+					reader.commit();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			release.start();
+			insert(n, 1);
+			release.join();
+			assertTrue(frames() < frames);
+			assertEquals(n, count(db));
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testFailedCheckpointIsReported() throws Exception {
+		final AtomicBoolean failWrites = new AtomicBoolean();
+		final AtomicInteger failedWrites = new AtomicInteger();
+		final SqlJetFileSystem fs = new SqlJetFileSystem() {
+			@Override
+			public ISqlJetFile open(File path, SqlJetFileType type, Set<SqlJetFileOpenPermission> permissions)
+					throws SqlJetException {
+				final ISqlJetFile f = super.open(path, type, permissions);
+				if (type != SqlJetFileType.MAIN_DB) {
+					return f;
+				}
+				return (ISqlJetFile) Proxy.newProxyInstance(getClass().getClassLoader(),
+						new Class<?>[] { ISqlJetFile.class }, (proxy, method, args) -> {
+							if (failWrites.get() && "write".equals(method.getName())) {
+								failedWrites.incrementAndGet();
+								throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_WRITE);
+							}
+							try {
+								return method.invoke(f, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						});
+			}
+		};
+		db.close();
+		db = SqlJetDb.open(file, true, fs);
+		db.setJournalMode(SqlJetPagerJournalMode.WAL);
+		db.runSynchronized(engine -> {
+			engine.getBtree().setWalAutoCheckpoint(10);
+			return null;
+		});
+		db.setBackgroundCheckpoint(true);
+		failWrites.set(true);
+		insert(1, 20);
+		for (int i = 0; i < 1000 && failedWrites.get() == 0; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		final int failed = failedWrites.get();
+		assertTrue(failed > 0);
+		Thread.sleep(300);
+		assertEquals(failed, failedWrites.get());
+		failWrites.set(false);
+		try {
+			db.close();
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.IOERR, e.getErrorCode());
+		}
+		db = SqlJetDb.open(file, true);
+		assertEquals(20, count(db));
+	}
+
+}
@@ -0,0 +1,37 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class BalanceQuickTest extends AbstractNewDbTest {
+
+	private static final long LAST = 1000000;
+
+	/**
+	 * The first cell of a page is stored at its end. Rows with smaller rowids
+	 * are inserted before it, so when the page is full and a row is appended,
+	 * balanceQuick() reads the key of a right-most cell which lies at the very
+	 * end of the page. One of the filler counts fills the page exactly.
+	 */
+	@Test
+	public void testRightMostCellAtPageEnd() throws SqlJetException {
+		for (int fillers = 100; fillers <= 140; fillers++) {
+			final String name = "t" + fillers;
+			final int count = fillers;
+			db.write().asVoid(db -> {
+				db.createTable("create table " + name + "(a integer primary key, b)");
+				final ISqlJetTable t = db.getTable(name);
+				t.insert(Long.valueOf(LAST), null);
+				for (int i = 1; i <= count; i++) {
+					t.insert(Long.valueOf(LAST - i), null);
+				}
+				t.insert(Long.valueOf(LAST + 1), null);
+			});
+			assertEquals(count + 2, (long) db.read().asLong(db -> db.getTable(name).open().getRowCount()));
+		}
+	}
+
+}
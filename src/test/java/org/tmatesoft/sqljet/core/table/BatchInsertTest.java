@@ -0,0 +1,151 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class BatchInsertTest extends AbstractNewDbTest {
+
+	private static final int ROWS = 2000;
+
+	private ISqlJetTable table;
+	private ISqlJetTable expected;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text, c integer, d text unique)");
+			db.createIndex("create index tb on t(b)");
+			db.createIndex("create index tcb on t(c desc, b)");
+			db.createTable("create table u(a integer primary key, b text, c integer, d text unique)");
+			db.createIndex("create index ub on u(b)");
+			db.createIndex("create index ucb on u(c desc, b)");
+		});
+		table = db.getTable("t");
+		expected = db.getTable("u");
+	}
+
+	private static List<Object[]> rows(int from, int count) {
+		final List<Object[]> rows = new ArrayList<>(count);
+		for (int i = from; i < from + count; i++) {
+			// keys of both indexes are out of rowid order
+			rows.add(new Object[] { null, "b" + (i * 7919 % count), Long.valueOf(i % 13), "d" + i });
+		}
+		return rows;
+	}
+
+	private List<Object> column(ISqlJetTable table, String index, String column) throws SqlJetException {
+		return db.read().as(db -> {
+			final List<Object> values = new ArrayList<>();
+			final ISqlJetCursor c = table.order(index);
+			try {
+				while (!c.eof()) {
+					values.add(c.getValue(column));
+					c.next();
+				}
+			} finally {
+				c.close();
+			}
+			return values;
+		});
+	}
+
+	private List<Object> column(String index, String column) throws SqlJetException {
+		return column(table, index, column);
+	}
+
+	/**
+	 * Checks that indexes of batch inserted rows are same as indexes of rows
+	 * inserted one by one.
+	 */
+	private void assertSameAsInsert(List<Object[]> rows) throws SqlJetException {
+		db.write().asVoid(db -> {
+			for (Object[] row : rows) {
+				expected.insert(row);
+			}
+		});
+		assertEquals(column(expected, "ub", "a"), column("tb", "a"));
+		assertEquals(column(expected, "ucb", "a"), column("tcb", "a"));
+		assertEquals(column(expected, null, "d"), column(null, "d"));
+	}
+
+	@Test
+	public void testInsertBatch() throws SqlJetException {
+		final List<Object[]> rows = rows(1, ROWS);
+		assertEquals(ROWS, table.insertBatch(rows));
+		assertEquals(ROWS, column("tb", "a").size());
+		assertSameAsInsert(rows);
+	}
+
+	@Test
+	public void testInsertBatchIntoTable() throws SqlJetException {
+		final List<Object[]> rows = rows(1, ROWS);
+		db.write().asVoid(db -> table.insertBatch(rows.subList(0, ROWS / 2)));
+		db.write().asVoid(db -> {
+			table.insertBatch(rows.subList(ROWS / 2, ROWS));
+			assertEquals(ROWS, column("tcb", "a").size());
+		});
+		assertSameAsInsert(rows);
+	}
+
+	@Test
+	public void testUniqueIndexWithinBatch() throws SqlJetException {
+		final List<Object[]> rows = rows(1, 10);
+		rows.add(new Object[] { null, "b", Long.valueOf(0), "d5" });
+		try {
+			table.insertBatch(rows);
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.CONSTRAINT, e.getErrorCode());
+		}
+		assertEquals(0, column("tb", "a").size());
+	}
+
+	@Test
+	public void testIndexesAfterFailedRow() throws SqlJetException {
+		final List<Object[]> rows = rows(1, 10);
+		db.write().asVoid(db -> {
+			try {
+				table.insertBatch(Arrays.asList(rows.get(0), rows.get(1), new Object[] { Long.valueOf(1), "b", Long.valueOf(0), "d" }));
+				fail();
+			} catch (SqlJetException e) {
+				assertEquals(SqlJetErrorCode.CONSTRAINT, e.getErrorCode());
+			}
+		});
+		assertEquals(2, column("tb", "a").size());
+		assertEquals(2, column("tcb", "a").size());
+		assertSameAsInsert(rows.subList(0, 2));
+	}
+
+	@Test
+	public void testKeysOfFailedRowAreDropped() throws SqlJetException {
+		final List<Object[]> rows = rows(1, 10);
+		db.write().asVoid(db -> db.createIndex("create unique index tu on t(b)"));
+		db.write().asVoid(db -> {
+			try {
+				table.insertBatch(Arrays.asList(rows.get(0), rows.get(1), rows.get(2),
+						new Object[] { null, rows.get(2)[1], Long.valueOf(100), "failed" }));
+				fail();
+			} catch (SqlJetException e) {
+				assertEquals(SqlJetErrorCode.CONSTRAINT, e.getErrorCode());
+				assertEquals(0, e.getSuppressed().length);
+			}
+		});
+		assertEquals(3, column(null, "a").size());
+		assertEquals(3, column("tb", "a").size());
+		assertEquals(3, column("tcb", "a").size());
+		assertSameAsInsert(rows.subList(0, 3));
+	}
+
+}
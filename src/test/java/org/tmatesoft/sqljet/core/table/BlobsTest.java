@@ -12,6 +12,7 @@ import org.tmatesoft.sqljet.core.AbstractNewDbTest;
 import org.tmatesoft.sqljet.core.IntConstants;
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 
 public class BlobsTest extends AbstractNewDbTest {
 
@@ -132,4 +133,77 @@ public class BlobsTest extends AbstractNewDbTest {
 		});
     }
 
+
+    @Test
+    public void readFieldsAroundBlob() throws Exception {
+        final StringBuilder ddl = new StringBuilder("CREATE TABLE w (id integer primary key");
+        for (int i = 1; i < 40; i++) {
+            ddl.append(i == 20 ? ", image blob" : ", c" + i + " text");
+        }
+        db.createTable(ddl.append(")").toString());
+
+        final ISqlJetTable t = db.getTable("w");
+        final byte[] blob = new byte[64 * 1024];
+        new SecureRandom().nextBytes(blob);
+        final Object[] row = new Object[40];
+        for (int i = 1; i < 40; i++) {
+            row[i] = i == 20 ? blob : "value " + i;
+        }
+
+        db.write().asVoid(db -> {
+            for (int r = 1; r <= 10; r++) {
+                row[0] = Integer.valueOf(r);
+                t.insert(row);
+            }
+        });
+
+        db.read().asVoid(db -> {
+            final ISqlJetCursor c = t.open();
+            try {
+                long sum = 0;
+                while (!c.eof()) {
+                    sum += c.getInteger(0);
+                    Assert.assertEquals("value 39", c.getString(39));
+                    Assert.assertEquals("value 1", c.getString(1));
+                    c.next();
+                }
+                Assert.assertEquals(55, sum);
+                Assert.assertTrue(c.first());
+                Assert.assertArrayEquals(blob, c.getBlobAsArray(20).orElse(null));
+                Assert.assertEquals("value 21", c.getString(21));
+                Assert.assertEquals(40, c.getRowValues().length);
+            } finally {
+                c.close();
+            }
+        });
+    }
+
+    @Test
+    public void rowValuesOutliveEvictedPages() throws Exception {
+        db.setCacheSize(10);
+        db.createTable(T_DDL);
+        final ISqlJetTable t = db.getTable("t");
+        final byte[] blob = new byte[200];
+        new SecureRandom().nextBytes(blob);
+
+        db.write().asVoid(db -> {
+            for (int r = 1; r <= 2000; r++) {
+                t.insert(Integer.valueOf(r), r == 1 ? blob : new byte[200]);
+            }
+        });
+
+        db.read().asVoid(db -> {
+            final ISqlJetCursor c = t.open();
+            try {
+                final Object[] values = c.getRowValues();
+                while (c.next()) {
+                    c.getBlobAsArray(1);
+                }
+                Assert.assertArrayEquals(blob, ((ISqlJetMemoryPointer) values[1]).getBytes());
+            } finally {
+                c.close();
+            }
+        });
+    }
+
 }
@@ -0,0 +1,93 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class BusyHandlerTest extends AbstractNewDbTest {
+
+	private ExecutorService executor;
+	private SqlJetDb db2;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		executor = Executors.newCachedThreadPool();
+		db.write().asVoid(db -> db.createTable("create table t(a integer primary key, b text)"));
+		db2 = SqlJetDb.open(file, true);
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		try {
+			db2.close();
+			executor.shutdownNow();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		} finally {
+			super.tearDown();
+		}
+	}
+
+	private Future<?> holdWriteLock(final CountDownLatch locked, final long millis) {
+		return executor.submit(() -> {
+			db.write().asVoid(db -> {
+				db.getTable("t").insert(Integer.valueOf(1), "first");
+				locked.countDown();
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					throw new SqlJetException(e);
+				}
+			});
+			return null;
+		});
+	}
+
+	@Test
+	public void testRetryOnRelease() throws Exception {
+		db2.setBusyHandler(new SqlJetDefaultBusyHandler(10, 2000));
+		final CountDownLatch locked = new CountDownLatch(1);
+		final Future<?> writer = holdWriteLock(locked, 100);
+		assertTrue(locked.await(10, TimeUnit.SECONDS));
+		final long start = System.currentTimeMillis();
+		db2.write().asVoid(db -> db.getTable("t").insert(Integer.valueOf(2), "second"));
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		writer.get();
+		assertEquals(2, (long) db.read().asLong(db -> db.getTable("t").open().getRowCount()));
+	}
+
+	@Test
+	public void testBusyAfterRetries() throws Exception {
+		db2.setBusyHandler(new SqlJetDefaultBusyHandler(2, 50));
+		final CountDownLatch locked = new CountDownLatch(1);
+		final Future<?> writer = holdWriteLock(locked, 2000);
+		assertTrue(locked.await(10, TimeUnit.SECONDS));
+		final long start = System.currentTimeMillis();
+		try {
+			db2.write().asVoid(db -> db.getTable("t").insert(Integer.valueOf(2), "second"));
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.BUSY, e.getErrorCode());
+		}
+		final long elapsed = System.currentTimeMillis() - start;
+		assertTrue(elapsed >= 150);
+		assertTrue(elapsed < 1500);
+		writer.get();
+	}
+
+}
@@ -0,0 +1,179 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class ChangeLogTest extends AbstractNewDbTest {
+
+	private final List<SqlJetDb> connections = new ArrayList<>();
+
+	private File log;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.setChangeLog(true);
+		log = new File(file.getPath() + "-changes");
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text)");
+			db.createIndex("create index tb on t(b)");
+		});
+		insert(db, 1, 1000);
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		try {
+			for (SqlJetDb connection : connections) {
+				connection.close();
+			}
+		} finally {
+			super.tearDown();
+			log.delete();
+		}
+	}
+
+	private SqlJetDb open(boolean changeLog) throws SqlJetException {
+		final SqlJetDb connection = SqlJetDb.open(file, true);
+		connections.add(connection);
+		connection.setChangeLog(changeLog);
+		return connection;
+	}
+
+	private static void insert(SqlJetDb db, int from, int count) throws SqlJetException {
+		db.write().asVoid(db2 -> {
+			ISqlJetTable t = db2.getTable("t");
+			for (int i = from; i < from + count; i++) {
+				t.insert(Integer.valueOf(i), "value " + i);
+			}
+		});
+	}
+
+	private static void update(SqlJetDb db, long rowId, String value) throws SqlJetException {
+		db.write().asVoid(db2 -> {
+			ISqlJetCursor c = db2.getTable("t").open();
+			try {
+				if (c.goTo(rowId)) {
+					c.update(Long.valueOf(rowId), value);
+				}
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	private static String summary(SqlJetDb db) throws SqlJetException {
+		return db.read().as(db2 -> {
+			long count = 0;
+			long sum = 0;
+			StringBuilder values = new StringBuilder();
+			ISqlJetCursor c = db2.getTable("t").order("tb");
+			try {
+				while (!c.eof()) {
+					count++;
+					sum += c.getInteger("a");
+					if (!c.getString("b").startsWith("value ")) {
+						values.append(c.getString("b"));
+					}
+					c.next();
+				}
+			} finally {
+				c.close();
+			}
+			return count + ":" + sum + ":" + values;
+		});
+	}
+
+	@Test
+	public void testChangesAreVisible() throws SqlJetException {
+		SqlJetDb reader = open(true);
+		assertTrue(reader.isChangeLog());
+		assertEquals("1000:500500:", summary(reader));
+		for (int round = 0; round < 10; round++) {
+			update(db, round * 97 + 1, "u" + round);
+			assertTrue(summary(reader).endsWith("u" + round));
+		}
+		insert(db, 1001, 10);
+		assertTrue(summary(reader).startsWith("1010:"));
+		assertTrue(log.length() > 0);
+	}
+
+	@Test
+	public void testReaderWrites() throws SqlJetException {
+		SqlJetDb other = open(true);
+		assertEquals("1000:500500:", summary(other));
+		update(other, 5, "x");
+		assertEquals("1000:500500:x", summary(db));
+		update(db, 5, "y");
+		assertEquals("1000:500500:y", summary(other));
+		update(other, 7, "z");
+		update(other, 5, "w");
+		assertEquals("1000:500500:wz", summary(db));
+	}
+
+	@Test
+	public void testWriterWithoutLog() throws SqlJetException {
+		SqlJetDb reader = open(true);
+		SqlJetDb writer = open(false);
+		assertEquals("1000:500500:", summary(reader));
+		update(writer, 5, "x");
+		assertEquals("1000:500500:x", summary(reader));
+		update(db, 6, "y");
+		assertEquals("1000:500500:xy", summary(reader));
+	}
+
+	@Test
+	public void testLogDeleted() throws SqlJetException {
+		SqlJetDb reader = open(true);
+		assertEquals("1000:500500:", summary(reader));
+		update(db, 5, "x");
+		assertTrue(log.delete());
+		update(db, 6, "y");
+		assertEquals("1000:500500:xy", summary(reader));
+		update(db, 7, "z");
+		assertEquals("1000:500500:xyz", summary(reader));
+	}
+
+	@Test
+	public void testDisable() throws SqlJetException {
+		assertTrue(db.isChangeLog());
+		db.setChangeLog(false);
+		assertFalse(db.isChangeLog());
+		SqlJetDb reader = open(true);
+		assertEquals("1000:500500:", summary(reader));
+		update(db, 5, "x");
+		assertEquals("1000:500500:x", summary(reader));
+	}
+
+	@Test
+	public void testTornRecord() throws Exception {
+		SqlJetDb reader = open(true);
+		assertEquals("1000:500500:", summary(reader));
+		update(db, 5, "x");
+		for (int count : new int[] { Integer.MAX_VALUE, 0x20000001, 1 }) {
+			try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+				raf.seek(raf.length());
+				raf.writeInt(count);
+				raf.write(new byte[40]);
+			}
+			assertEquals("1000:500500:x", summary(reader));
+		}
+		update(db, 6, "y");
+		assertEquals("1000:500500:xy", summary(reader));
+	}
+
+}
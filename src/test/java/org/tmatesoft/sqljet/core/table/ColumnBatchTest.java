@@ -0,0 +1,280 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetEncoding;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetValueType;
+import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+
+public class ColumnBatchTest extends AbstractNewDbTest {
+
+	private static final int ROWS = 1000;
+
+	private static final int[] FIELDS = { 0, 1, 2, 3, 4 };
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text, c real, d blob, e integer default 7)");
+			db.createIndex("create index tb on t(b)");
+			final ISqlJetTable t = db.getTable("t");
+			for (int i = 1; i <= ROWS; i++) {
+				t.insert(Integer.valueOf(i), i % 10 == 0 ? null : "b\u00e9" + i, Double.valueOf(i / 4.0),
+						i % 3 == 0 ? new byte[] { (byte) i, 1 } : null, i % 5 == 0 ? null : Integer.valueOf(i));
+			}
+		});
+	}
+
+	private static void assertRow(ISqlJetCursor c, SqlJetColumnBatch batch, int row) throws SqlJetException {
+		assertEquals(c.getRowId(), batch.getRowId(row));
+		for (int i = 0; i < FIELDS.length; i++) {
+			final int field = FIELDS[i];
+			assertEquals(field == 0 ? SqlJetValueType.INTEGER : c.getFieldType(field), batch.getType(i, row));
+			assertEquals(c.isNull(field), batch.isNull(i, row));
+			assertEquals(c.isNull(field), batch.getNulls(i).get(row));
+			switch (batch.getType(i, row)) {
+			case INTEGER:
+				assertEquals(c.getInteger(field), batch.getInteger(i, row));
+				assertEquals(c.getInteger(field), batch.getFloat(i, row), 0);
+				break;
+			case FLOAT:
+				assertEquals(c.getFloat(field), batch.getFloats(i)[row], 0);
+				break;
+			case TEXT:
+				assertEquals(c.getString(field), batch.getString(i, row));
+				break;
+			case BLOB:
+				assertArrayEquals(c.getBlobAsArray(field).get(), batch.getBlob(i, row));
+				break;
+			default:
+				assertEquals(batch.getOffsets(i)[row], batch.getOffsets(i)[row + 1]);
+				break;
+			}
+		}
+	}
+
+	private void assertSameAsCursor(ISqlJetCursor batchCursor, ISqlJetCursor c, int maxRows) throws SqlJetException {
+		final SqlJetColumnBatch batch = new SqlJetColumnBatch(FIELDS.length, 64);
+		int n = 0;
+		int rows;
+		while ((rows = batchCursor.fetch(maxRows, FIELDS, batch)) > 0) {
+			assertEquals(rows, batch.getRowsCount());
+			assertTrue(rows <= Math.min(maxRows, 64));
+			for (int row = 0; row < rows; row++) {
+				assertFalse(c.eof());
+				assertRow(c, batch, row);
+				c.next();
+				n++;
+			}
+		}
+		assertTrue(c.eof());
+		assertTrue(batchCursor.eof());
+		assertEquals(0, batch.getRowsCount());
+		assertEquals(c.getRowCount(), n);
+	}
+
+	@Test
+	public void testTable() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			assertSameAsCursor(t.open(), t.open(), 100);
+		});
+	}
+
+	@Test
+	public void testValues() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				final SqlJetColumnBatch batch = new SqlJetColumnBatch(FIELDS.length, 16);
+				assertTrue(c.goTo(10));
+				assertEquals(6, c.fetch(6, FIELDS, batch));
+				assertEquals(16, c.getRowId());
+				assertArrayEquals(new long[] { 10, 11, 12, 13, 14, 15 }, Arrays.copyOf(batch.getRowIds(), 6));
+				assertEquals(10, batch.getInteger(0, 0));
+				assertEquals(SqlJetValueType.NULL, batch.getType(1, 0));
+				assertEquals("b\u00e911", batch.getString(1, 1));
+				assertEquals(2.75, batch.getFloat(2, 1), 0);
+				assertEquals(2, batch.getInteger(2, 1));
+				assertArrayEquals(new byte[] { 12, 1 }, batch.getBlob(3, 2));
+				assertNull(batch.getBlob(3, 1));
+				assertEquals(SqlJetValueType.NULL, batch.getType(4, 0));
+				assertEquals(0, batch.getInteger(4, 0));
+				assertEquals(SqlJetValueType.INTEGER, batch.getType(4, 4));
+				assertEquals(14, batch.getInteger(4, 4));
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testIndexScopes() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			assertSameAsCursor(t.order("tb"), t.order("tb"), 1000);
+			assertSameAsCursor(t.scope("tb", new Object[] { "b\u00e91" }, new Object[] { "b\u00e95" }).reverse(),
+					t.scope("tb", new Object[] { "b\u00e91" }, new Object[] { "b\u00e95" }).reverse(), 7);
+			final SqlJetColumnBatch batch = new SqlJetColumnBatch(2, 200);
+			final ISqlJetCursor c = t.order("tb").project("a", "b");
+			try {
+				int n = 0;
+				while (c.fetch(1000, new int[] { 1, 0 }, batch) > 0) {
+					for (int row = 0; row < batch.getRowsCount(); row++) {
+						assertEquals(batch.getRowId(row), batch.getInteger(1, row));
+						if (batch.getRowId(row) % 10 == 0) {
+							assertTrue(batch.isNull(0, row));
+						} else {
+							assertEquals("b\u00e9" + batch.getRowId(row), batch.getString(0, row));
+						}
+					}
+					n += batch.getRowsCount();
+				}
+				assertEquals(ROWS, n);
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testStoredValues() throws SqlJetException {
+		final char[] chars = new char[3000];
+		Arrays.fill(chars, '\u00e9');
+		final String longText = new String(chars);
+		final byte[] longBlob = new byte[5000];
+		for (int i = 0; i < longBlob.length; i++) {
+			longBlob[i] = (byte) i;
+		}
+		db.write().asVoid(db -> {
+			db.createTable("create table v(a text, b numeric, c blob, d)");
+			final ISqlJetTable v = db.getTable("v");
+			v.insert(longText, "12", longBlob, "x");
+			v.insert("", "b12", new byte[0], "12");
+		});
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("v").open();
+			try {
+				final SqlJetColumnBatch batch = new SqlJetColumnBatch(4, 10);
+				assertEquals(2, c.fetch(10, new int[] { 0, 1, 2, 3 }, batch));
+				assertEquals(longText, batch.getString(0, 0));
+				assertEquals(SqlJetValueType.INTEGER, batch.getType(1, 0));
+				assertEquals(12, batch.getInteger(1, 0));
+				assertArrayEquals(longBlob, batch.getBlob(2, 0));
+				assertEquals("x", batch.getString(3, 0));
+				assertEquals("", batch.getString(0, 1));
+				assertEquals("b12", batch.getString(1, 1));
+				assertArrayEquals(new byte[0], batch.getBlob(2, 1));
+				assertEquals("12", batch.getString(3, 1));
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testTextWithZeroByte() throws SqlJetException {
+		db.write().asVoid(db -> {
+			db.createTable("create table z(a text, b blob)");
+			db.createIndex("create index za on z(a)");
+			db.getTable("z").insert("ab\u0000cd", new byte[] { 1, 0, 2 });
+		});
+		db.read().asVoid(db -> {
+			final ISqlJetTable z = db.getTable("z");
+			final ISqlJetCursor c = z.open();
+			final ISqlJetCursor i = z.order("za").project("a");
+			try {
+				assertEquals("ab", c.getString(0));
+				final SqlJetColumnBatch batch = new SqlJetColumnBatch(2, 1);
+				assertEquals(1, c.fetch(1, new int[] { 0, 1 }, batch));
+				assertEquals("ab", batch.getString(0, 0));
+				assertArrayEquals(new byte[] { 1, 0, 2 }, batch.getBlob(1, 0));
+				final SqlJetColumnBatch indexBatch = new SqlJetColumnBatch(1, 1);
+				assertEquals(1, i.fetch(1, new int[] { 0 }, indexBatch));
+				assertEquals("ab", indexBatch.getString(0, 0));
+			} finally {
+				i.close();
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testUtf16() throws Exception {
+		final File utf16File = File.createTempFile(getClass().getSimpleName(), null);
+		utf16File.deleteOnExit();
+		final SqlJetDb utf16Db = SqlJetDb.open(utf16File, true);
+		try {
+			utf16Db.getOptions().setEncoding(SqlJetEncoding.UTF16LE);
+			utf16Db.write().asVoid(db -> {
+				db.createTable("create table u(a text, b blob)");
+				db.getTable("u").insert("b\u00e9", new byte[] { 1, 2 });
+			});
+			utf16Db.read().asVoid(db -> {
+				final ISqlJetCursor c = db.getTable("u").open();
+				try {
+					final SqlJetColumnBatch batch = new SqlJetColumnBatch(2, 1);
+					assertEquals(1, c.fetch(1, new int[] { 0, 1 }, batch));
+					assertEquals("b\u00e9", batch.getString(0, 0));
+					assertArrayEquals(new byte[] { 1, 2 }, batch.getBlob(1, 0));
+				} finally {
+					c.close();
+				}
+			});
+		} finally {
+			utf16Db.close();
+			SqlJetFileUtil.deleteFile(utf16File);
+		}
+	}
+
+	@Test
+	public void testPutBytes() throws SqlJetException {
+		final SqlJetColumnBatch batch = new SqlJetColumnBatch(1, 2);
+		batch.addRow(1);
+		batch.putText(0, "ab");
+		batch.addRow(2);
+		final int offset = batch.putBytes(0, SqlJetValueType.BLOB, 3);
+		assertEquals(2, offset);
+		System.arraycopy(new byte[] { 7, 8, 9 }, 0, batch.getBytes(0), offset, 3);
+		assertEquals("ab", batch.getString(0, 0));
+		assertArrayEquals(new byte[] { 7, 8, 9 }, batch.getBlob(0, 1));
+		assertArrayEquals(new int[] { 0, 2, 5 }, batch.getOffsets(0));
+		try {
+			batch.putBytes(0, SqlJetValueType.INTEGER, 1);
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+		}
+	}
+
+	@Test
+	public void testWrongColumnsCount() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				c.fetch(10, new int[] { 0 }, new SqlJetColumnBatch(2, 10));
+				fail();
+			} catch (SqlJetException e) {
+				assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+}
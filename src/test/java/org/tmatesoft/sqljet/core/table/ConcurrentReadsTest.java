@@ -0,0 +1,203 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
+
+public class ConcurrentReadsTest extends AbstractNewDbTest {
+
+	private static final int ROWS = 1000;
+
+	private ExecutorService executor;
+	private ISqlJetTable table;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		executor = Executors.newCachedThreadPool();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text)");
+			db.createIndex("create index tb on t(b)");
+		});
+		table = db.getTable("t");
+		insert(1, ROWS);
+		db.setConcurrentReads(true);
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		try {
+			executor.shutdownNow();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		} finally {
+			super.tearDown();
+		}
+	}
+
+	private void insert(int from, int count) throws SqlJetException {
+		db.write().asVoid(db -> {
+			for (int i = from; i < from + count; i++) {
+				table.insert(Integer.valueOf(i), "value " + i);
+			}
+		});
+	}
+
+	private long count() throws SqlJetException {
+		return db.read().asLong(db -> {
+			long count = 0;
+			final ISqlJetCursor c = table.order("tb");
+			try {
+				while (!c.eof()) {
+					count++;
+					c.next();
+				}
+			} finally {
+				c.close();
+			}
+			return count;
+		});
+	}
+
+	/**
+	 * Runs read transaction on other thread which stays open until the
+	 * returned latch is released.
+	 */
+	private Future<Long> holdRead(final CountDownLatch started, final CountDownLatch release) {
+		return executor.submit(() -> db.read().as(db -> {
+			final long before = count();
+			started.countDown();
+			await(release);
+			return Long.valueOf(before == count() ? before : -1);
+		}));
+	}
+
+	private static void await(CountDownLatch latch) throws SqlJetException {
+		try {
+			assertTrue(latch.await(30, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			throw new SqlJetException(e);
+		}
+	}
+
+	@Test
+	public void testReadsDontWaitForOtherReads() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<Long> reader = holdRead(started, release);
+		assertTrue(started.await(30, TimeUnit.SECONDS));
+		try {
+			final Future<Long> other = executor.submit(() -> Long.valueOf(count()));
+			assertEquals(ROWS, other.get(30, TimeUnit.SECONDS).longValue());
+			assertEquals(ROWS, count());
+		} finally {
+			release.countDown();
+		}
+		assertEquals(ROWS, reader.get(30, TimeUnit.SECONDS).longValue());
+	}
+
+	@Test
+	public void testParallelReadsOfCapturedTable() throws Exception {
+		final List<Future<Long>> readers = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			final long from = i * 100 + 1;
+			readers.add(executor.submit(() -> db.read().asLong(db -> {
+				long sum = 0;
+				for (int j = 0; j < 20; j++) {
+					final ISqlJetCursor c = table.scope("tb", new Object[] { "value " + from },
+							new Object[] { "value " + (from + 99) });
+					try {
+						while (!c.eof()) {
+							sum += c.getInteger("a");
+							c.next();
+						}
+					} finally {
+						c.close();
+					}
+				}
+				return sum;
+			})));
+		}
+		for (Future<Long> reader : readers) {
+			assertTrue(reader.get(60, TimeUnit.SECONDS).longValue() > 0);
+		}
+	}
+
+	@Test
+	public void testReadsWithinWriteSeeItsChanges() throws SqlJetException {
+		db.write().asVoid(db -> {
+			table.insert(Integer.valueOf(ROWS + 1), "new");
+			assertEquals(ROWS + 1, count());
+		});
+		assertEquals(ROWS + 1, count());
+	}
+
+	@Test
+	public void testReadsSeeSnapshotDuringWalCommits() throws Exception {
+		db.setConcurrentReads(false);
+		db.setJournalMode(SqlJetPagerJournalMode.WAL);
+		db.setConcurrentReads(true);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<Long> reader = holdRead(started, release);
+		assertTrue(started.await(30, TimeUnit.SECONDS));
+		try {
+			insert(ROWS + 1, 10);
+			assertEquals(ROWS + 10, count());
+		} finally {
+			release.countDown();
+		}
+		assertEquals(ROWS, reader.get(30, TimeUnit.SECONDS).longValue());
+		assertEquals(ROWS + 10, count());
+	}
+
+	@Test
+	public void testWriteWithinConcurrentReadFails() throws SqlJetException {
+		db.read().asVoid(db -> {
+			try {
+				db.write().asVoid(db2 -> table.insert(Integer.valueOf(ROWS + 1), "new"));
+				fail();
+			} catch (SqlJetException e) {
+				assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+			}
+		});
+		assertEquals(ROWS, count());
+	}
+
+	@Test
+	public void testDisable() throws SqlJetException {
+		assertTrue(db.isConcurrentReads());
+		assertEquals(ROWS, count());
+		db.setConcurrentReads(false);
+		assertFalse(db.isConcurrentReads());
+		assertEquals(ROWS, count());
+	}
+
+	@Test(expected = SqlJetException.class)
+	public void testInMemoryDatabase() throws SqlJetException {
+		final SqlJetDb memory = SqlJetDb.open(SqlJetDb.IN_MEMORY, true);
+		try {
+			memory.setConcurrentReads(true);
+		} finally {
+			memory.close();
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetPage;
+import org.tmatesoft.sqljet.core.internal.ISqlJetPager;
+
+public class CoveringIndexTest extends AbstractNewDbTest {
+
+	private static final int ROWS = 2000;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text, c integer, d text, e real default 1.5)");
+			db.createIndex("create index tbc on t(b, c)");
+			db.createIndex("create index te on t(e)");
+			final ISqlJetTable t = db.getTable("t");
+			for (int i = 1; i <= ROWS; i++) {
+				t.insert(Integer.valueOf(i), b(i), Integer.valueOf(i % 7), d(i), null);
+			}
+		});
+		reopen();
+	}
+
+	private void reopen() throws SqlJetException {
+		db.close();
+		db = SqlJetDb.open(file, true);
+	}
+
+	private static String b(int i) {
+		return String.format("b%05d", Integer.valueOf(i));
+	}
+
+	private static String d(int i) {
+		final StringBuilder d = new StringBuilder();
+		while (d.length() < 300) {
+			d.append("row ").append(i).append(' ');
+		}
+		return d.toString();
+	}
+
+	private static List<Object[]> read(ISqlJetCursor c, String... fields) throws SqlJetException {
+		final List<Object[]> rows = new ArrayList<>();
+		try {
+			while (!c.eof()) {
+				final Object[] row = new Object[fields.length + 1];
+				row[0] = Long.valueOf(c.getRowId());
+				for (int i = 0; i < fields.length; i++) {
+					row[i + 1] = c.getValue(fields[i]);
+				}
+				rows.add(row);
+				c.next();
+			}
+		} finally {
+			c.close();
+		}
+		return rows;
+	}
+
+	private static int cachedPages(SqlJetDb db) throws SqlJetException {
+		final ISqlJetPager pager = db.getBtree().getPager();
+		int n = 0;
+		for (int i = 1; i <= pager.getPageCount(); i++) {
+			final ISqlJetPage page = pager.lookupPage(i);
+			if (page != null) {
+				page.unref();
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static void assertSameRows(List<Object[]> expected, List<Object[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testScopeReadsIndexOnly() throws SqlJetException {
+		final SqlJetScope scope = new SqlJetScope(new Object[] { b(100) }, new Object[] { b(1900) });
+		final int[] pages = new int[2];
+		final List<Object[]> expected = db.read().as(db -> {
+			final List<Object[]> rows = read(db.getTable("t").scope("tbc", scope), "a", "b", "c");
+			pages[0] = cachedPages(db);
+			return rows;
+		});
+		reopen();
+		final List<Object[]> actual = db.read().as(db -> {
+			final List<Object[]> rows = read(db.getTable("t").scope("tbc", scope).project("a", "b", "c"), "a",
+					"b", "c");
+			pages[1] = cachedPages(db);
+			return rows;
+		});
+		assertEquals(1801, actual.size());
+		assertSameRows(expected, actual);
+		assertTrue(pages[1] * 4 < pages[0]);
+	}
+
+	@Test
+	public void testFieldsOutsideOfIndex() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").order("tbc").project("b", "c");
+			try {
+				for (int i = 1; i <= ROWS; i++) {
+					assertFalse(c.eof());
+					assertEquals(b(i), c.getString("b"));
+					if (i % 100 == 0) {
+						assertEquals(d(i), c.getString("d"));
+						assertEquals(i, c.getInteger("a"));
+						assertEquals(5, c.getRowValues().length);
+					}
+					assertEquals(i % 7, c.getInteger(2));
+					c.next();
+				}
+				assertTrue(c.eof());
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testProjectionNotCovered() throws SqlJetException {
+		final List<Object[]> expected = db.read().as(db -> read(db.getTable("t").order("tbc"), "b", "d"));
+		final List<Object[]> actual = db.read().as(db -> read(db.getTable("t").order("tbc").project("b", "d"), "b", "d"));
+		assertSameRows(expected, actual);
+	}
+
+	@Test
+	public void testLookupAndReverse() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			final ISqlJetCursor c = t.lookup("tbc", b(77), Integer.valueOf(0)).project("rowid", "c");
+			try {
+				assertFalse(c.eof());
+				assertEquals(77, c.getRowId());
+				assertEquals(Long.valueOf(0), c.getValue("c"));
+				assertFalse(c.next());
+			} finally {
+				c.close();
+			}
+			final List<Object[]> rows = read(t.order("tbc").reverse().project("a", "b"), "a", "b");
+			assertEquals(ROWS, rows.size());
+			assertArrayEquals(new Object[] { Long.valueOf(ROWS), Long.valueOf(ROWS), b(ROWS) }, rows.get(0));
+		});
+	}
+
+	@Test
+	public void testDefaultsAndAffinity() throws SqlJetException {
+		db.write().asVoid(db -> db.getTable("t").insert(Integer.valueOf(ROWS + 1), "x", "12", "y", Integer.valueOf(3)));
+		final List<Object[]> expected = db.read().as(db -> read(db.getTable("t").order("te"), "e", "a"));
+		final List<Object[]> actual = db.read().as(db -> read(db.getTable("t").order("te").project("e", "a"), "e", "a"));
+		assertSameRows(expected, actual);
+		assertEquals(3, ((Number) actual.get(ROWS)[1]).doubleValue(), 0);
+		assertEquals(Long.valueOf(12), db.read().as(db -> {
+			final ISqlJetCursor c = db.getTable("t").lookup("tbc", "x").project("c");
+			try {
+				return c.getValue("c");
+			} finally {
+				c.close();
+			}
+		}));
+	}
+
+	@Test
+	public void testModifyThroughProjectedCursor() throws SqlJetException {
+		db.write().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t")
+					.scope("tbc", new Object[] { b(10) }, new Object[] { b(19) }).project("b");
+			try {
+				while (!c.eof()) {
+					final long a = c.getRowId();
+					if (a % 2 == 0) {
+						c.delete();
+					} else {
+						c.updateByFieldNames(Collections.singletonMap("d", "updated " + a));
+						c.next();
+					}
+				}
+			} finally {
+				c.close();
+			}
+		});
+		final List<Object[]> rows = db.read()
+				.as(db -> read(db.getTable("t").scope("tbc", new Object[] { b(10) }, new Object[] { b(19) }), "d"));
+		assertEquals(5, rows.size());
+		for (Object[] row : rows) {
+			assertEquals("updated " + row[0], row[1]);
+		}
+	}
+
+	@Test
+	public void testGoToAfterProject() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").order("tbc").project("b", "c");
+			try {
+				assertEquals(b(1), c.getString("b"));
+				assertTrue(c.goTo(500));
+				assertEquals(500, c.getRowId());
+				assertEquals(b(500), c.getString("b"));
+				assertEquals(500 % 7, c.getInteger("c"));
+				assertEquals(b(500), c.getValue("b"));
+				assertTrue(c.next());
+				assertEquals(b(2), c.getString("b"));
+				assertEquals(2, c.getRowId());
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+}
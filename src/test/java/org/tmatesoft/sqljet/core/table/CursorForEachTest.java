@@ -0,0 +1,216 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class CursorForEachTest extends AbstractNewDbTest {
+
+	private static final int ROWS = 1000;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text, c integer)");
+			db.createIndex("create index tc on t(c)");
+			final ISqlJetTable t = db.getTable("t");
+			for (int i = 1; i <= ROWS; i++) {
+				t.insert(Integer.valueOf(i), "b" + i, Integer.valueOf(ROWS - i));
+			}
+		});
+	}
+
+	@Test
+	public void testTable() throws SqlJetException {
+		final long[] sum = new long[2];
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				c.forEach(row -> {
+					sum[0]++;
+					sum[1] += row.getInteger("a");
+					assertEquals("b" + row.getInteger("a"), row.getString("b"));
+				});
+				assertTrue(c.eof());
+			} finally {
+				c.close();
+			}
+		});
+		assertEquals(ROWS, sum[0]);
+		assertEquals((long) ROWS * (ROWS + 1) / 2, sum[1]);
+	}
+
+	@Test
+	public void testReversedScope() throws SqlJetException {
+		final List<Long> rows = new ArrayList<>();
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").scope("tc", new Object[] { Integer.valueOf(10) },
+					new Object[] { Integer.valueOf(19) }).reverse();
+			try {
+				c.forEach(row -> rows.add(Long.valueOf(row.getInteger("c"))));
+			} finally {
+				c.close();
+			}
+		});
+		assertEquals(10, rows.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(19 - i, rows.get(i).longValue());
+		}
+	}
+
+	@Test
+	public void testFromCurrentRecord() throws SqlJetException {
+		final List<Long> rows = new ArrayList<>();
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				assertTrue(c.goTo(ROWS - 2));
+				c.forEach(row -> rows.add(Long.valueOf(row.getRowId())));
+			} finally {
+				c.close();
+			}
+		});
+		assertEquals(3, rows.size());
+		assertEquals(ROWS - 2, rows.get(0).longValue());
+	}
+
+	@Test
+	public void testFailure() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").order("tc");
+			try {
+				try {
+					c.forEach(row -> {
+						if (row.getInteger("c") == 5) {
+							throw new SqlJetException(SqlJetErrorCode.ABORT);
+						}
+					});
+					fail();
+				} catch (SqlJetException e) {
+					assertEquals(SqlJetErrorCode.ABORT, e.getErrorCode());
+				}
+				assertEquals(5, c.getInteger("c"));
+				assertTrue(c.next());
+				assertEquals(6, c.getInteger("c"));
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testUpdateInWriteTransaction() throws SqlJetException {
+		db.write().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				c.forEach(row -> {
+					if (row.getInteger("a") % 2 == 0) {
+						row.update(Long.valueOf(row.getInteger("a")), "even", Long.valueOf(row.getInteger("c")));
+					}
+				});
+			} finally {
+				c.close();
+			}
+		});
+		assertEquals(ROWS / 2, (long) db.read().asLong(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			final long[] n = new long[1];
+			try {
+				c.forEach(row -> {
+					if ("even".equals(row.getString("b"))) {
+						n[0]++;
+					}
+				});
+			} finally {
+				c.close();
+			}
+			return n[0];
+		}));
+	}
+
+	@Test
+	public void testDeleteInWriteTransaction() throws SqlJetException {
+		final List<Long> visited = new ArrayList<>();
+		db.write().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				c.forEach(row -> {
+					visited.add(Long.valueOf(row.getRowId()));
+					if (row.getRowId() % 3 != 0) {
+						row.delete();
+					}
+				});
+				assertTrue(c.eof());
+			} finally {
+				c.close();
+			}
+		});
+		assertEquals(ROWS, visited.size());
+		final List<Long> rows = new ArrayList<>();
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").order("tc");
+			try {
+				c.forEach(row -> rows.add(Long.valueOf(row.getRowId())));
+			} finally {
+				c.close();
+			}
+		});
+		assertEquals(ROWS / 3, rows.size());
+		for (Long row : rows) {
+			assertEquals(0, row.longValue() % 3);
+		}
+	}
+
+	@Test
+	public void testDeleteFromIndexAndReverse() throws SqlJetException {
+		final List<Long> visited = new ArrayList<>();
+		db.write().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			final ISqlJetCursor c = t.scope("tc", new Object[] { Integer.valueOf(10) },
+					new Object[] { Integer.valueOf(19) });
+			try {
+				c.forEach(row -> {
+					visited.add(Long.valueOf(row.getInteger("c")));
+					row.delete();
+				});
+			} finally {
+				c.close();
+			}
+			final ISqlJetCursor r = t.scope("tc", new Object[] { Integer.valueOf(20) },
+					new Object[] { Integer.valueOf(29) }).reverse();
+			try {
+				r.forEach(row -> {
+					visited.add(Long.valueOf(row.getInteger("c")));
+					row.delete();
+				});
+			} finally {
+				r.close();
+			}
+		});
+		assertEquals(20, visited.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(10 + i, visited.get(i).longValue());
+			assertEquals(29 - i, visited.get(10 + i).longValue());
+		}
+		assertEquals(ROWS - 20, (long) db.read().asLong(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				return c.getRowCount();
+			} finally {
+				c.close();
+			}
+		}));
+	}
+
+}
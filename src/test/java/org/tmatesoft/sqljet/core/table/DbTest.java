@@ -30,6 +30,7 @@ import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetVarint;
 
 /**
  * @author TMate Software Ltd.
@@ -86,6 +87,22 @@ public class DbTest extends AbstractNewDbTest {
         Assert.assertEquals(l, p.getVarint().getValue());
     }
 
+    @Test
+    public void testVarintPacked() throws SqlJetException {
+        final byte[] b = new byte[10];
+        final ISqlJetMemoryPointer p = SqlJetUtility.wrapPtr(b);
+        final long[] values = { 0, 0x7f, 0x80, 0x3fff, 0x4000, 0x1fffff, 0x200000, 0xfffffff, 0x10000000,
+                Integer.MAX_VALUE, 0xffffffffL, 1L << 56, Long.MAX_VALUE, -1 };
+        for (long v : values) {
+            final int n = p.putVarint(1, v);
+            Assert.assertEquals(v, p.getVarintValue(1));
+            Assert.assertEquals(n, p.getVarintLength(1));
+            final long packed = p.getVarint32Packed(1);
+            Assert.assertEquals(n, SqlJetVarint.length(packed));
+            Assert.assertEquals((int) v, SqlJetVarint.value(packed));
+        }
+    }
+
     @Test
     public void testCacheSize() throws SqlJetException {
         db.setCacheSize(1000);
@@ -100,6 +117,26 @@ public class DbTest extends AbstractNewDbTest {
         });
     }
 
+    @Test
+    public void testPageSize() throws SqlJetException {
+        db.setPageSize(4096);
+        Assert.assertEquals(4096, db.getPageSize());
+        db.createTable("create table t(a integer primary key, b text)");
+        db.write().asVoid(db -> {
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 1; i <= 100; i++) {
+                    t.insert(Integer.valueOf(i), "value " + i);
+                }
+        });
+        db.setPageSize(1024);
+        Assert.assertEquals(4096, db.getPageSize());
+        db.close();
+        Assert.assertEquals(0, file.length() % 4096);
+        db = SqlJetDb.open(file, true);
+        Assert.assertEquals(4096, db.getPageSize());
+        Assert.assertEquals(100, db.read().asLong(db -> db.getTable("t").open().getRowCount()));
+    }
+
     /**
      * @param dbTmp
      * @throws SqlJetException
@@ -0,0 +1,204 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+
+public class GroupCommitTest extends AbstractNewDbTest {
+
+	private static final int THREADS = 8;
+
+	private ISqlJetTable table;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> db.createTable("create table t(a integer primary key, b text)"));
+		table = db.getTable("t");
+		db.setGroupCommit(true);
+	}
+
+	private long count() throws SqlJetException {
+		return db.read().asLong(db -> {
+			long count = 0;
+			final ISqlJetCursor c = table.open();
+			try {
+				while (!c.eof()) {
+					count++;
+					c.next();
+				}
+			} finally {
+				c.close();
+			}
+			return count;
+		});
+	}
+
+	private int changeCounter() throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(24);
+			return raf.readInt();
+		}
+	}
+
+	private interface Writer {
+		Object write(int thread) throws SqlJetException;
+	}
+
+	/**
+	 * Starts writers while the connection is locked, so that their
+	 * transactions are queued, and returns their results or exceptions.
+	 */
+	private AtomicReferenceArray<Object> runQueued(final Writer writer) throws Exception {
+		final AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(THREADS);
+		final List<Thread> threads = new ArrayList<>();
+		db.runWithLock(db -> {
+			for (int i = 0; i < THREADS; i++) {
+				final int n = i;
+				final Thread thread = new Thread(() -> {
+					try {
+						results.set(n, writer.write(n));
+					} catch (SqlJetException | RuntimeException e) {
+						results.set(n, e);
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			final long deadline = System.currentTimeMillis() + 30000;
+			while (db.getGroupCommitQueueSize() < THREADS) {
+				assertTrue(System.currentTimeMillis() < deadline);
+				Thread.yield();
+			}
+			return null;
+		});
+		for (Thread thread : threads) {
+			thread.join(30000);
+			assertFalse(thread.isAlive());
+		}
+		return results;
+	}
+
+	@Test
+	public void testQueuedWritesAreCommittedTogether() throws Exception {
+		final Set<Thread> writers = Collections.synchronizedSet(new HashSet<>());
+		final int before = changeCounter();
+		final AtomicReferenceArray<Object> results = runQueued(n -> {
+			final Thread caller = Thread.currentThread();
+			return db.write().as(db -> {
+				assertTrue(caller == Thread.currentThread());
+				writers.add(caller);
+				table.insert(Integer.valueOf(n + 1), "value " + n);
+				return Integer.valueOf(n);
+			});
+		});
+		for (int i = 0; i < THREADS; i++) {
+			assertEquals(Integer.valueOf(i), results.get(i));
+		}
+		assertEquals(THREADS, writers.size());
+		assertTrue(changeCounter() - before < THREADS);
+		assertEquals(THREADS, count());
+	}
+
+	@Test
+	public void testFailureOfOneWrite() throws Exception {
+		final AtomicIntegerArray runs = new AtomicIntegerArray(THREADS);
+		final AtomicReferenceArray<Object> results = runQueued(n -> db.write().as(db -> {
+			runs.incrementAndGet(n);
+			table.insert(Integer.valueOf(n + 1), "value " + n);
+			if (n == 3) {
+				throw new SqlJetException(SqlJetErrorCode.CONSTRAINT);
+			}
+			return null;
+		}));
+		int committed = 0;
+		for (int i = 0; i < THREADS; i++) {
+			assertEquals(1, runs.get(i));
+			if (i == 3) {
+				assertEquals(SqlJetErrorCode.CONSTRAINT, ((SqlJetException) results.get(i)).getErrorCode());
+			} else if (null == results.get(i)) {
+				committed++;
+			} else {
+				final SqlJetException e = (SqlJetException) results.get(i);
+				assertEquals(SqlJetErrorCode.ABORT, e.getErrorCode());
+				assertEquals(SqlJetErrorCode.CONSTRAINT, ((SqlJetException) e.getCause()).getErrorCode());
+			}
+		}
+		assertEquals(committed, count());
+		assertFalse(db.read().asBool(db -> {
+			final ISqlJetCursor c = table.open();
+			try {
+				return c.goTo(4);
+			} finally {
+				c.close();
+			}
+		}));
+	}
+
+	@Test
+	public void testManyWriters() throws Exception {
+		final List<Thread> threads = new ArrayList<>();
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < THREADS; i++) {
+			final int n = i;
+			final Thread thread = new Thread(() -> {
+				try {
+					for (int j = 0; j < 50; j++) {
+						final long id = n * 1000 + j + 1;
+						assertEquals(id, db.write().asLong(db -> table.insert(Long.valueOf(id), "v")));
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join(60000);
+		}
+		assertEquals(Collections.emptyList(), errors);
+		assertEquals(THREADS * 50, count());
+	}
+
+	@Test
+	public void testWriteWithinTransaction() throws SqlJetException {
+		db.beginTransaction(SqlJetTransactionMode.WRITE);
+		try {
+			db.write().asVoid(db -> table.insert(Integer.valueOf(1), "a"));
+			db.write().asVoid(db -> table.insert(Integer.valueOf(2), "b"));
+		} finally {
+			db.rollback();
+		}
+		assertEquals(0, count());
+	}
+
+	@Test
+	public void testDisable() throws SqlJetException {
+		assertTrue(db.isGroupCommit());
+		db.setGroupCommit(false);
+		assertFalse(db.isGroupCommit());
+		db.write().asVoid(db -> table.insert(Integer.valueOf(1), "a"));
+		assertEquals(1, count());
+	}
+
+}
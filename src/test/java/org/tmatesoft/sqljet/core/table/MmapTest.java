@@ -0,0 +1,172 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class MmapTest extends AbstractNewDbTest {
+
+	private static final long MMAP_SIZE = 64L * 1024 * 1024;
+
+	private final List<SqlJetDb> connections = new ArrayList<>();
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.getOptions().setAutovacuum(true);
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text)");
+			db.createIndex("create index tb on t(b)");
+		});
+		db.setMmapSize(MMAP_SIZE);
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		for (SqlJetDb connection : connections) {
+			connection.close();
+		}
+		super.tearDown();
+	}
+
+	private SqlJetDb open(long mmapSize) throws SqlJetException {
+		final SqlJetDb connection = SqlJetDb.open(file, true);
+		connections.add(connection);
+		connection.setMmapSize(mmapSize);
+		return connection;
+	}
+
+	private static void insert(SqlJetDb db, int from, int count) throws SqlJetException {
+		db.write().asVoid(db2 -> {
+			ISqlJetTable t = db2.getTable("t");
+			for (int i = from; i < from + count; i++) {
+				t.insert(Integer.valueOf(i), "value " + i);
+			}
+		});
+	}
+
+	private static String summary(SqlJetDb db) throws SqlJetException {
+		return db.read().as(db2 -> {
+			long count = 0;
+			long sum = 0;
+			long length = 0;
+			ISqlJetCursor c = db2.getTable("t").open();
+			try {
+				while (!c.eof()) {
+					count++;
+					sum += c.getInteger("a");
+					length += c.getString("b").length();
+					c.next();
+				}
+			} finally {
+				c.close();
+			}
+			long indexed = 0;
+			ISqlJetCursor i = db2.getTable("t").order("tb");
+			try {
+				while (!i.eof()) {
+					indexed++;
+					i.next();
+				}
+			} finally {
+				i.close();
+			}
+			return count + ":" + sum + ":" + length + ":" + indexed;
+		});
+	}
+
+	@Test
+	public void testMmapSize() throws SqlJetException {
+		assertEquals(MMAP_SIZE, db.getMmapSize());
+		db.setMmapSize(0);
+		assertEquals(0, db.getMmapSize());
+		db.setMmapSize(-1);
+		assertEquals(0, db.getMmapSize());
+	}
+
+	@Test
+	public void testUpdatesOfMappedPages() throws SqlJetException {
+		insert(db, 1, 2000);
+		SqlJetDb mapped = open(MMAP_SIZE);
+		SqlJetDb plain = open(0);
+		final String inserted = summary(plain);
+		assertEquals(inserted, summary(mapped));
+		mapped.write().asVoid(db -> {
+			ISqlJetCursor c = db.getTable("t").open();
+			while (!c.eof()) {
+				if (c.getInteger("a") % 2 == 0) {
+					c.update(c.getValue("a"), "updated " + c.getInteger("a"));
+				}
+				c.next();
+			}
+			c.close();
+		});
+		final String updated = summary(plain);
+		assertEquals(updated, summary(mapped));
+		assertEquals(updated, summary(db));
+		assertEquals(false, inserted.equals(updated));
+	}
+
+	@Test
+	public void testPagesBeyondMappedSize() throws SqlJetException {
+		SqlJetDb mapped = open(3 * 1024);
+		insert(mapped, 1, 3000);
+		SqlJetDb plain = open(0);
+		assertEquals(summary(plain), summary(mapped));
+		assertEquals(summary(plain), summary(db));
+	}
+
+	@Test
+	public void testFileGrowsAndShrinks() throws SqlJetException {
+		SqlJetDb mapped = open(MMAP_SIZE);
+		for (int round = 0; round < 5; round++) {
+			insert(db, round * 1000 + 1, 1000);
+			assertEquals(summary(db), summary(mapped));
+		}
+		db.write().asVoid(db -> {
+			ISqlJetCursor c = db.getTable("t").open();
+			while (!c.eof()) {
+				if (c.getInteger("a") > 100) {
+					c.delete();
+				} else {
+					c.next();
+				}
+			}
+			c.close();
+		});
+		assertEquals(summary(db), summary(mapped));
+		insert(mapped, 101, 500);
+		assertEquals(summary(mapped), summary(db));
+	}
+
+	@Test
+	public void testRollbackOfMappedPages() throws SqlJetException {
+		insert(db, 1, 1000);
+		final String before = summary(db);
+		try {
+			db.write().asVoid(db -> {
+				ISqlJetCursor c = db.getTable("t").open();
+				while (!c.eof()) {
+					c.update(c.getValue("a"), "rolled back");
+					c.next();
+				}
+				c.close();
+				throw new SqlJetException("rollback");
+			});
+		} catch (SqlJetException e) {
+			assertEquals("rollback", e.getMessage());
+		}
+		assertEquals(before, summary(db));
+		assertEquals(before, summary(open(0)));
+	}
+
+}
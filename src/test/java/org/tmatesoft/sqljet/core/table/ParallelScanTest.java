@@ -0,0 +1,180 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class ParallelScanTest extends AbstractNewDbTest {
+
+	private static final int ROWS = 5000;
+
+	private static final int GROUPS = 50;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text, c integer)");
+			db.createIndex("create index tb on t(b)");
+			db.createIndex("create index tc on t(c)");
+			db.createTable("create table s(a integer primary key, b text)");
+			final ISqlJetTable t = db.getTable("t");
+			for (int i = 1; i <= ROWS; i++) {
+				t.insert(Integer.valueOf(i), String.format("value %05d of the table", Integer.valueOf(i)),
+						Integer.valueOf(i % GROUPS));
+			}
+			db.getTable("s").insert(Integer.valueOf(1), "a");
+		});
+	}
+
+	private BitSet scan(final String indexName, final List<SqlJetScope> scopes) throws SqlJetException {
+		return db.read().as(db -> {
+			final BitSet rows = new BitSet();
+			for (SqlJetScope scope : scopes) {
+				final ISqlJetCursor c = db.getTable("t").scope(indexName, scope);
+				try {
+					while (!c.eof()) {
+						final int a = (int) c.getInteger("a");
+						assertFalse(rows.get(a));
+						rows.set(a);
+						c.next();
+					}
+				} finally {
+					c.close();
+				}
+			}
+			return rows;
+		});
+	}
+
+	@Test
+	public void testSplitTable() throws SqlJetException {
+		final List<SqlJetScope> scopes = db.read().as(db -> db.getTable("t").split(null, 8));
+		assertTrue(scopes.size() > 1);
+		assertTrue(scopes.size() <= 8);
+		assertEquals(ROWS, scan(null, scopes).cardinality());
+	}
+
+	@Test
+	public void testSplitIndex() throws SqlJetException {
+		final List<SqlJetScope> scopes = db.read().as(db -> db.getTable("t").split("tb", 4));
+		assertTrue(scopes.size() > 1);
+		assertEquals(ROWS, scan("tb", scopes).cardinality());
+	}
+
+	@Test
+	public void testSplitIndexWithEqualKeys() throws SqlJetException {
+		final List<SqlJetScope> scopes = db.read().as(db -> db.getTable("t").split("tc", 4));
+		assertTrue(scopes.size() > 1);
+		assertEquals(ROWS, scan("tc", scopes).cardinality());
+		final Set<Long> groups = new HashSet<>();
+		for (SqlJetScope scope : scopes) {
+			db.read().asVoid(db -> {
+				final Set<Long> scopeGroups = new HashSet<>();
+				final ISqlJetCursor c = db.getTable("t").scope("tc", scope);
+				try {
+					while (!c.eof()) {
+						scopeGroups.add(Long.valueOf(c.getInteger("c")));
+						c.next();
+					}
+				} finally {
+					c.close();
+				}
+				for (Long group : scopeGroups) {
+					assertTrue(groups.add(group));
+				}
+			});
+		}
+		assertEquals(GROUPS, groups.size());
+	}
+
+	@Test
+	public void testSmallTableIsNotSplit() throws SqlJetException {
+		assertEquals(1, db.read().as(db -> db.getTable("s").split(null, 4)).size());
+	}
+
+	@Test
+	public void testParallelScan() throws SqlJetException {
+		db.setConcurrentReads(true);
+		final AtomicLong sum = new AtomicLong();
+		final Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+		db.getTable("t").parallelScan(null, 4, c -> {
+			threads.add(Thread.currentThread().getName());
+			while (!c.eof()) {
+				sum.addAndGet(c.getInteger("a"));
+				c.next();
+			}
+		});
+		assertEquals((long) ROWS * (ROWS + 1) / 2, sum.get());
+		assertTrue(threads.size() <= Runtime.getRuntime().availableProcessors());
+		for (String thread : threads) {
+			assertTrue(thread.startsWith("SqlJet scan t "));
+		}
+	}
+
+	@Test
+	public void testParallelScanWithExecutor() throws SqlJetException {
+		db.setConcurrentReads(true);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final AtomicLong sum = new AtomicLong();
+			final Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+			db.getTable("t").parallelScan(null, 4, executor, c -> {
+				threads.add(Thread.currentThread().getName());
+				while (!c.eof()) {
+					sum.addAndGet(c.getInteger("a"));
+					c.next();
+				}
+			});
+			assertEquals((long) ROWS * (ROWS + 1) / 2, sum.get());
+			assertTrue(threads.size() > 1);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelScanInTransaction() throws SqlJetException {
+		final List<Long> rows = new ArrayList<>();
+		db.read().asVoid(db -> db.getTable("t").parallelScan("tc", 4, c -> {
+			while (!c.eof()) {
+				rows.add(Long.valueOf(c.getInteger("a")));
+				c.next();
+			}
+		}));
+		assertEquals(ROWS, rows.size());
+	}
+
+	@Test
+	public void testParallelScanFailure() throws SqlJetException {
+		try {
+			db.getTable("t").parallelScan(null, 4, c -> {
+				if (c.getInteger("a") == 1) {
+					throw new SqlJetException(SqlJetErrorCode.ABORT);
+				}
+			});
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.ABORT, e.getErrorCode());
+		}
+	}
+
+}
@@ -0,0 +1,203 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetPage;
+import org.tmatesoft.sqljet.core.internal.ISqlJetPager;
+import org.tmatesoft.sqljet.core.internal.SqlJetPageFlags;
+
+public class ReadAheadTest extends AbstractNewDbTest {
+
+	private static final int ROWS = 3000;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text)");
+			db.createIndex("create index tb on t(b)");
+			final ISqlJetTable t = db.getTable("t");
+			for (int i = 1; i <= ROWS; i++) {
+				t.insert(Integer.valueOf(i), value(i));
+			}
+		});
+		reopen();
+	}
+
+	private void reopen() throws SqlJetException {
+		db.close();
+		db = SqlJetDb.open(file, true);
+	}
+
+	private static String value(int i) {
+		return String.format("value %05d value %05d value %05d", Integer.valueOf(i), Integer.valueOf(i),
+				Integer.valueOf(i));
+	}
+
+	@Test
+	public void testForwardScan() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				int i = 0;
+				while (!c.eof()) {
+					i++;
+					assertEquals(i, c.getInteger("a"));
+					assertEquals(value(i), c.getString("b"));
+					c.next();
+				}
+				assertEquals(ROWS, i);
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testBackwardScan() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open().reverse();
+			try {
+				int i = ROWS;
+				while (!c.eof()) {
+					assertEquals(i, c.getInteger("a"));
+					assertEquals(value(i), c.getString("b"));
+					i--;
+					c.next();
+				}
+				assertEquals(0, i);
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testIndexScan() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").order("tb");
+			try {
+				int i = 0;
+				while (!c.eof()) {
+					i++;
+					assertEquals(value(i), c.getString("b"));
+					c.next();
+				}
+				assertEquals(ROWS, i);
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testPrefetch() throws Exception {
+		final int pageSize = db.getPageSize();
+		final byte[] file = Files.readAllBytes(this.file.toPath());
+		db.read().asVoid(db -> {
+			final ISqlJetPager pager = db.getBtree().getPager();
+			final int pageCount = pager.getPageCount();
+			assertTrue(pageCount > 10);
+			final int[] pageNumbers = { pageCount - 1, pageCount - 3, pageCount - 2, pageCount + 5 };
+			for (int i = 0; i < 3; i++) {
+				assertNull(pager.lookupPage(pageNumbers[i]));
+			}
+			pager.prefetch(pageNumbers);
+			for (int i = 0; i < 3; i++) {
+				final ISqlJetPage page = pager.lookupPage(pageNumbers[i]);
+				assertNotNull(page);
+				try {
+					assertArrayEquals(Arrays.copyOfRange(file, (pageNumbers[i] - 1) * pageSize, pageNumbers[i] * pageSize),
+							Arrays.copyOf(page.getData().getBytes(), pageSize));
+				} finally {
+					page.unref();
+				}
+			}
+			assertNull(pager.lookupPage(pageCount + 5));
+		});
+	}
+
+	@Test
+	public void testScanPrefetches() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				for (int i = 0; i < 10; i++) {
+					c.next();
+				}
+				final int firstLeaf = cachedPages(db);
+				for (int i = 10; i < 200; i++) {
+					c.next();
+				}
+				assertFalse(c.eof());
+				assertTrue(cachedPages(db) - firstLeaf > 16);
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testPrefetchDoesNotSpill() throws SqlJetException {
+		db.write().asVoid(db -> {
+			final ISqlJetPager pager = db.getBtree().getPager();
+			pager.setCacheSize(20);
+			final List<Integer> dirty = new ArrayList<>();
+			for (int i = pager.getPageCount(); cachedPages(db) < 20; i--) {
+				final ISqlJetPage page = pager.getPage(i);
+				try {
+					page.write();
+				} finally {
+					page.unref();
+				}
+				dirty.add(Integer.valueOf(i));
+			}
+			final int[] pageNumbers = { 2, 3, 4, 5 };
+			for (final int pageNumber : pageNumbers) {
+				assertNull(pager.lookupPage(pageNumber));
+			}
+			pager.prefetch(pageNumbers);
+			for (final int pageNumber : pageNumbers) {
+				assertNull(pager.lookupPage(pageNumber));
+			}
+			for (final Integer pageNumber : dirty) {
+				final ISqlJetPage page = pager.lookupPage(pageNumber.intValue());
+				assertNotNull(page);
+				try {
+					assertTrue(page.getFlags().contains(SqlJetPageFlags.DIRTY));
+				} finally {
+					page.unref();
+				}
+			}
+		});
+	}
+
+	private static int cachedPages(SqlJetDb db) throws SqlJetException {
+		final ISqlJetPager pager = db.getBtree().getPager();
+		int n = 0;
+		for (int i = 1; i <= pager.getPageCount(); i++) {
+			final ISqlJetPage page = pager.lookupPage(i);
+			if (page != null) {
+				page.unref();
+				n++;
+			}
+		}
+		return n;
+	}
+
+}
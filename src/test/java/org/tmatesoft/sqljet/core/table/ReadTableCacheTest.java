@@ -0,0 +1,111 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class ReadTableCacheTest extends AbstractNewDbTest {
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text, c integer)");
+			db.createIndex("create index tb on t(b)");
+			db.createIndex("create index tc on t(c)");
+			final ISqlJetTable t = db.getTable("t");
+			for (int i = 1; i <= 100; i++) {
+				t.insert(Integer.valueOf(i), "b" + i % 10, Integer.valueOf(i % 7));
+			}
+		});
+	}
+
+	private static long count(ISqlJetCursor c) throws SqlJetException {
+		try {
+			long n = 0;
+			while (!c.eof()) {
+				n++;
+				c.next();
+			}
+			return n;
+		} finally {
+			c.close();
+		}
+	}
+
+	@Test
+	public void testLookupsInOneTransaction() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			for (int round = 0; round < 10; round++) {
+				assertEquals(10, count(t.lookup("tb", "b3")));
+				assertEquals(15, count(t.lookup("tc", Integer.valueOf(1))));
+				assertEquals(100, count(t.order("tb")));
+				assertEquals(100, t.order("tc").getRowCount());
+				assertEquals(100, count(t.open()));
+				assertEquals(11, count(t.scope(null, new Object[] { Integer.valueOf(10) }, new Object[] { Integer.valueOf(20) })));
+			}
+		});
+	}
+
+	@Test
+	public void testNestedCursors() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			final ISqlJetCursor outer = t.lookup("tb", "b3");
+			try {
+				long n = 0;
+				while (!outer.eof()) {
+					assertEquals(1, count(t.lookup(null, Long.valueOf(outer.getRowId()))));
+					assertTrue(count(t.lookup("tc", Long.valueOf(outer.getInteger("c")))) >= 14);
+					n++;
+					outer.next();
+				}
+				assertEquals(10, n);
+			} finally {
+				outer.close();
+			}
+		});
+	}
+
+	@Test
+	public void testCursorClosedTwice() throws SqlJetException {
+		db.read().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			final ISqlJetCursor first = t.open();
+			first.close();
+			final ISqlJetCursor second = t.open();
+			try {
+				first.close();
+				assertEquals(100, count(second));
+			} finally {
+				second.close();
+			}
+		});
+	}
+
+	@Test
+	public void testWritesBetweenLookups() throws SqlJetException {
+		db.write().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			assertEquals(10, count(t.lookup("tb", "b3")));
+			t.insert(Integer.valueOf(101), "b3", Integer.valueOf(0));
+			assertEquals(11, count(t.lookup("tb", "b3")));
+			final ISqlJetCursor c = t.lookup("tb", "b3");
+			try {
+				c.delete();
+			} finally {
+				c.close();
+			}
+			assertEquals(10, count(t.lookup("tb", "b3")));
+			assertEquals(0, count(t.lookup(null, Integer.valueOf(3))));
+		});
+		assertEquals(10, (long) db.read().asLong(db -> count(db.getTable("t").lookup("tb", "b3"))));
+	}
+
+}
@@ -18,6 +18,8 @@
 package org.tmatesoft.sqljet.core.table;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import org.junit.After;
@@ -219,4 +221,57 @@ public class RowNumTest extends AbstractDataCopyTest {
             c.close();
         }
     }
+
+    @Test
+    public void testRowNumbersOfTable() throws SqlJetException {
+        assertRowNumbers(table.open());
+    }
+
+    @Test
+    public void testRowNumbersOfIndex() throws SqlJetException {
+        assertRowNumbers(table.order(table.getPrimaryKeyIndexName()));
+    }
+
+    @Test
+    public void testRowCountAfterWrites() throws SqlJetException {
+        final ISqlJetCursor c = table.open();
+        try {
+            final long rowCount = c.getRowCount();
+            Assert.assertTrue(c.goToRow(rowCount / 2));
+            c.delete();
+            Assert.assertEquals(rowCount - 1, c.getRowCount());
+            Assert.assertEquals(rowCount / 2, c.getRowIndex());
+            table.insert("0", Integer.valueOf(1), Integer.valueOf(1), Integer.valueOf(1), Integer.valueOf(1));
+            Assert.assertEquals(rowCount, c.getRowCount());
+            Assert.assertTrue(c.goToRow(rowCount));
+            Assert.assertEquals("0", c.getString("hash"));
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void assertRowNumbers(ISqlJetCursor c) throws SqlJetException {
+        try {
+            final List<Long> rowIds = new ArrayList<>();
+            for (c.first(); !c.eof(); c.next()) {
+                rowIds.add(Long.valueOf(c.getRowId()));
+                Assert.assertEquals(rowIds.size(), c.getRowIndex());
+            }
+            Assert.assertTrue(rowIds.size() > 1000);
+            Assert.assertEquals(rowIds.size(), c.getRowCount());
+            Assert.assertEquals(rowIds.size(), c.getRowIndex());
+            for (int rowNum = rowIds.size(); rowNum > 0; rowNum -= 7) {
+                Assert.assertTrue(c.goToRow(rowNum));
+                Assert.assertEquals(rowIds.get(rowNum - 1).longValue(), c.getRowId());
+                Assert.assertEquals(rowNum, c.getRowIndex());
+            }
+            Assert.assertTrue(c.goToRow(5));
+            Assert.assertFalse(c.goToRow(0));
+            Assert.assertFalse(c.goToRow(rowIds.size() + 1));
+            Assert.assertEquals(rowIds.get(4).longValue(), c.getRowId());
+            Assert.assertEquals(5, c.getRowIndex());
+        } finally {
+            c.close();
+        }
+    }
 }
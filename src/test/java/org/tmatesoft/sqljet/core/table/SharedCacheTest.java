@@ -0,0 +1,160 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+public class SharedCacheTest extends AbstractNewDbTest {
+
+	private static final String SHARED_CACHE = "SQLJET_SHARED_CACHE";
+
+	private final List<SqlJetDb> connections = new ArrayList<>();
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty(SHARED_CACHE, "true");
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text)");
+			db.createIndex("create index tb on t(b)");
+		});
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		try {
+			for (SqlJetDb connection : connections) {
+				connection.close();
+			}
+			super.tearDown();
+		} finally {
+			System.clearProperty(SHARED_CACHE);
+		}
+	}
+
+	private SqlJetDb open() throws SqlJetException {
+		final SqlJetDb connection = SqlJetDb.open(file, true);
+		connections.add(connection);
+		return connection;
+	}
+
+	private static void insert(SqlJetDb db, int from, int count) throws SqlJetException {
+		db.write().asVoid(db2 -> {
+			ISqlJetTable t = db2.getTable("t");
+			for (int i = from; i < from + count; i++) {
+				t.insert(Integer.valueOf(i), "value " + i);
+			}
+		});
+	}
+
+	private static String summary(SqlJetDb db) throws SqlJetException {
+		return db.read().as(db2 -> {
+			long count = 0;
+			long sum = 0;
+			ISqlJetCursor c = db2.getTable("t").open();
+			try {
+				while (!c.eof()) {
+					count++;
+					sum += c.getInteger("a");
+					c.next();
+				}
+			} finally {
+				c.close();
+			}
+			long indexed = 0;
+			ISqlJetCursor i = db2.getTable("t").order("tb");
+			try {
+				while (!i.eof()) {
+					indexed++;
+					i.next();
+				}
+			} finally {
+				i.close();
+			}
+			return count + ":" + sum + ":" + indexed;
+		});
+	}
+
+	private static String expected(int count, int sum) {
+		return count + ":" + sum + ":" + count;
+	}
+
+	@Test
+	public void testChangesAreVisible() throws SqlJetException {
+		SqlJetDb db2 = open();
+		SqlJetDb db3 = open();
+		int sum = 0;
+		for (int round = 0; round < 20; round++) {
+			SqlJetDb writer = round % 2 == 0 ? db2 : db3;
+			insert(writer, round * 100 + 1, 100);
+			for (int i = round * 100 + 1; i <= round * 100 + 100; i++) {
+				sum += i;
+			}
+			assertEquals(expected(round * 100 + 100, sum), summary(db));
+			assertEquals(expected(round * 100 + 100, sum), summary(db2));
+			assertEquals(expected(round * 100 + 100, sum), summary(db3));
+		}
+	}
+
+	@Test
+	public void testDeletesAreVisible() throws SqlJetException {
+		SqlJetDb db2 = open();
+		insert(db, 1, 1000);
+		assertEquals(expected(1000, 500500), summary(db2));
+		db2.write().asVoid(db -> {
+			ISqlJetCursor c = db.getTable("t").open();
+			while (!c.eof()) {
+				c.delete();
+			}
+			c.close();
+		});
+		assertEquals(expected(0, 0), summary(db));
+		insert(db, 1, 10);
+		assertEquals(expected(10, 55), summary(db2));
+	}
+
+	@Test
+	public void testRollbackIsNotShared() throws SqlJetException {
+		SqlJetDb db2 = open();
+		insert(db, 1, 10);
+		assertEquals(expected(10, 55), summary(db2));
+		try {
+			db.write().asVoid(db -> {
+				ISqlJetTable t = db.getTable("t");
+				for (int i = 11; i < 5000; i++) {
+					t.insert(Integer.valueOf(i), "rolled back " + i);
+				}
+				throw new SqlJetException("rollback");
+			});
+		} catch (SqlJetException e) {
+			assertEquals("rollback", e.getMessage());
+		}
+		assertEquals(expected(10, 55), summary(db2));
+		assertEquals(expected(10, 55), summary(db));
+	}
+
+	@Test
+	public void testChangesWithoutSharedCache() throws SqlJetException {
+		SqlJetDb db2 = open();
+		insert(db, 1, 10);
+		assertEquals(expected(10, 55), summary(db2));
+		System.clearProperty(SHARED_CACHE);
+		SqlJetDb other = open();
+		insert(other, 11, 10);
+		assertEquals(expected(20, 210), summary(db));
+		assertEquals(expected(20, 210), summary(db2));
+		insert(db2, 21, 10);
+		assertEquals(expected(30, 465), summary(other));
+		assertEquals(expected(30, 465), summary(db));
+	}
+
+}
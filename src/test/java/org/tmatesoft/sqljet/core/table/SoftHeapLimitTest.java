@@ -0,0 +1,163 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+import org.tmatesoft.sqljet.core.table.engine.SqlJetEngine;
+
+public class SoftHeapLimitTest extends AbstractNewDbTest {
+
+	private static final int DATABASES = 4;
+
+	private static final int ROWS = 2000;
+
+	private static final long BUDGET = 256 * 1024;
+
+	private final List<File> files = new ArrayList<>();
+
+	private final List<SqlJetDb> databases = new ArrayList<>();
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		databases.add(db);
+		for (int i = 1; i < DATABASES; i++) {
+			final File f = File.createTempFile(getClass().getSimpleName(), null);
+			f.deleteOnExit();
+			files.add(f);
+			databases.add(SqlJetDb.open(f, true));
+		}
+		for (SqlJetDb database : databases) {
+			database.write().asVoid(db -> db.createTable("create table t(a integer primary key, b text)"));
+		}
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		try {
+			SqlJetEngine.setSoftHeapLimit(0);
+			for (SqlJetDb database : databases) {
+				if (database != db) {
+					database.close();
+				}
+			}
+			for (File f : files) {
+				SqlJetFileUtil.deleteFile(f);
+			}
+		} finally {
+			super.tearDown();
+		}
+	}
+
+	private static String value(int i) {
+		final StringBuilder b = new StringBuilder();
+		while (b.length() < 200) {
+			b.append("value ").append(i).append(' ');
+		}
+		return b.toString();
+	}
+
+	private static void fill(SqlJetDb database) throws SqlJetException {
+		database.write().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			for (int i = 1; i <= ROWS; i++) {
+				t.insert(Integer.valueOf(i), value(i));
+			}
+		});
+	}
+
+	private static void check(SqlJetDb database) throws SqlJetException {
+		assertEquals(ROWS, database.read().asLong(db -> {
+			final ISqlJetCursor c = db.getTable("t").open();
+			try {
+				long n = 0;
+				while (!c.eof()) {
+					n++;
+					assertEquals(value((int) c.getInteger("a")), c.getString("b"));
+					c.next();
+				}
+				return n;
+			} finally {
+				c.close();
+			}
+		}));
+	}
+
+	@Test
+	public void testNoLimitByDefault() {
+		assertEquals(0, SqlJetEngine.getSoftHeapLimit());
+	}
+
+	@Test
+	public void testLimitIsKept() throws SqlJetException {
+		SqlJetUtility.memoryManager.releaseMemory(Long.MAX_VALUE);
+		final long limit = SqlJetEngine.getMemoryUsed() + BUDGET;
+		SqlJetEngine.setSoftHeapLimit(limit);
+		assertEquals(limit, SqlJetEngine.getSoftHeapLimit());
+		for (SqlJetDb database : databases) {
+			fill(database);
+			assertTrue(SqlJetEngine.getMemoryUsed() <= limit + 64 * database.getPageSize());
+		}
+		for (int round = 0; round < 2; round++) {
+			for (SqlJetDb database : databases) {
+				check(database);
+				assertTrue(SqlJetEngine.getMemoryUsed() <= limit + 64 * database.getPageSize());
+			}
+		}
+	}
+
+	@Test
+	public void testMemoryIsAccounted() throws SqlJetException {
+		SqlJetUtility.memoryManager.releaseMemory(Long.MAX_VALUE);
+		final long used = SqlJetEngine.getMemoryUsed();
+		for (SqlJetDb database : databases) {
+			fill(database);
+		}
+		assertTrue(SqlJetEngine.getMemoryUsed() >= used + DATABASES * BUDGET);
+		SqlJetEngine.setSoftHeapLimit(used + BUDGET);
+		assertTrue(SqlJetEngine.getMemoryUsed() <= used + BUDGET + 64 * db.getPageSize());
+		for (SqlJetDb database : databases) {
+			check(database);
+		}
+	}
+
+	@Test
+	public void testSharedCacheIsAccounted() throws SqlJetException {
+		fill(db);
+		System.setProperty("SQLJET_SHARED_CACHE", "true");
+		final SqlJetDb shared;
+		try {
+			shared = SqlJetDb.open(file, true);
+		} finally {
+			System.clearProperty("SQLJET_SHARED_CACHE");
+		}
+		try {
+			/* Pages released by the caches go to the pool, release it as well. */
+			SqlJetUtility.memoryManager.releaseMemory(Long.MAX_VALUE);
+			SqlJetUtility.memoryManager.releaseMemory(Long.MAX_VALUE);
+			final long used = SqlJetEngine.getMemoryUsed();
+			check(shared);
+			assertTrue(SqlJetEngine.getMemoryUsed() >= used + 2 * BUDGET);
+			SqlJetUtility.memoryManager.releaseMemory(Long.MAX_VALUE);
+			SqlJetUtility.memoryManager.releaseMemory(Long.MAX_VALUE);
+			assertTrue(SqlJetEngine.getMemoryUsed() <= used);
+			check(shared);
+		} finally {
+			shared.close();
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
+import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+
+public class WalJournalModeTest extends AbstractNewDbTest {
+
+	private File wal;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		wal = new File(file.getPath() + "-wal");
+		db.setJournalMode(SqlJetPagerJournalMode.WAL);
+		db.write().asVoid(db -> db.createTable("create table t(a integer primary key, b text)"));
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		try {
+			super.tearDown();
+		} finally {
+			SqlJetFileUtil.deleteFile(wal);
+		}
+	}
+
+	private static long count(SqlJetDb db) throws SqlJetException {
+		return db.read().asLong(db2 -> {
+			ISqlJetCursor c = db2.getTable("t").open();
+			try {
+				long n = 0;
+				while (!c.eof()) {
+					n++;
+					c.next();
+				}
+				return n;
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	private void insert(SqlJetDb db, int rows) throws SqlJetException {
+		db.write().asVoid(db2 -> {
+			ISqlJetTable t = db2.getTable("t");
+			for (int i = 0; i < rows; i++) {
+				t.insert(null, "value " + i);
+			}
+		});
+	}
+
+	@Test
+	public void testCommitGoesToLog() throws SqlJetException {
+		assertEquals(SqlJetPagerJournalMode.WAL, db.getJournalMode());
+		long size = file.length();
+		insert(db, 100);
+		assertTrue(wal.length() > 0);
+		assertEquals(size, file.length());
+		assertEquals(100, count(db));
+	}
+
+	@Test
+	public void testCheckpointOnClose() throws SqlJetException {
+		insert(db, 100);
+		db.close();
+		db = null;
+		assertFalse(wal.exists());
+		SqlJetDb db2 = SqlJetDb.open(file, false);
+		try {
+			assertEquals(100, count(db2));
+		} finally {
+			db2.close();
+		}
+	}
+
+	@Test
+	public void testRollback() throws SqlJetException {
+		insert(db, 10);
+		try {
+			db.write().asVoid(db2 -> {
+				ISqlJetTable t = db2.getTable("t");
+				for (int i = 0; i < 5000; i++) {
+					t.insert(null, "rolled back " + i);
+				}
+				throw new SqlJetException("rollback");
+			});
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals("rollback", e.getMessage());
+		}
+		assertEquals(10, count(db));
+		insert(db, 10);
+		assertEquals(20, count(db));
+	}
+
+	@Test
+	public void testReaderDoesNotBlockWriter() throws Exception {
+		insert(db, 10);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			SqlJetDb reader = executor.submit(() -> SqlJetDb.open(file, false)).get();
+			try {
+				CountDownLatch reading = new CountDownLatch(1);
+				CountDownLatch written = new CountDownLatch(1);
+				Future<String> snapshot = executor.submit(() -> reader.read().as(db2 -> {
+					long before = count(db2);
+					reading.countDown();
+					try {
+						written.await();
+					} catch (InterruptedException e) {
+						throw new SqlJetException(e);
+					}
+					return before + "," + count(db2);
+				}));
+				reading.await();
+				insert(db, 1);
+				written.countDown();
+				assertEquals("10,10", snapshot.get());
+				assertEquals(Long.valueOf(11), executor.submit(() -> Long.valueOf(count(reader))).get());
+			} finally {
+				executor.submit(() -> {
+					reader.close();
+					return null;
+				}).get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRecoveryOfLeftLog() throws Exception {
+		insert(db, 10);
+		File copy = File.createTempFile("WalJournalModeTest", null);
+		File copyWal = new File(copy.getPath() + "-wal");
+		try {
+			Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.copy(wal.toPath(), copyWal.toPath());
+			SqlJetDb db2 = SqlJetDb.open(copy, true);
+			try {
+				assertEquals(10, count(db2));
+				assertFalse(copyWal.exists());
+			} finally {
+				db2.close();
+			}
+		} finally {
+			SqlJetFileUtil.deleteFile(copy);
+			SqlJetFileUtil.deleteFile(copyWal);
+		}
+	}
+
+	@Test
+	public void testLogOfOpenConnectionIsKept() throws Exception {
+		insert(db, 10);
+		SqlJetDb db2 = SqlJetDb.open(file, true);
+		try {
+			assertEquals(10, count(db2));
+			assertTrue(wal.exists());
+			assertEquals(SqlJetPagerJournalMode.WAL, db2.getJournalMode());
+			insert(db2, 5);
+			insert(db, 5);
+			assertEquals(20, count(db));
+		} finally {
+			db2.close();
+		}
+		assertTrue(wal.exists());
+		insert(db, 1);
+		assertEquals(21, count(db));
+	}
+
+	@Test
+	public void testFileFormatMarksWal() throws Exception {
+		insert(db, 10);
+		db.close();
+		db = null;
+		assertFalse(wal.exists());
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(18);
+			assertEquals(2, raf.read());
+			assertEquals(2, raf.read());
+		}
+		SqlJetDb db2 = SqlJetDb.open(file, true);
+		try {
+			assertEquals(SqlJetPagerJournalMode.WAL, db2.getJournalMode());
+			insert(db2, 1);
+			assertTrue(wal.exists());
+			db2.setJournalMode(SqlJetPagerJournalMode.DELETE);
+			assertEquals(11, count(db2));
+			assertFalse(wal.exists());
+		} finally {
+			db2.close();
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(18);
+			assertEquals(1, raf.read());
+			assertEquals(1, raf.read());
+		}
+	}
+
+	@Test
+	public void testInvalidModeChangesFail() throws Exception {
+		try {
+			db.write().asVoid(db2 -> db2.setJournalMode(SqlJetPagerJournalMode.DELETE));
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+		}
+		assertEquals(SqlJetPagerJournalMode.WAL, db.getJournalMode());
+		db.setJournalMode(SqlJetPagerJournalMode.DELETE);
+		SqlJetDb reader = SqlJetDb.open(file, false);
+		try {
+			reader.setJournalMode(SqlJetPagerJournalMode.WAL);
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.READONLY, e.getErrorCode());
+		} finally {
+			reader.close();
+		}
+		SqlJetDb memory = SqlJetDb.open(SqlJetDb.IN_MEMORY, true);
+		try {
+			memory.setJournalMode(SqlJetPagerJournalMode.WAL);
+			fail();
+		} catch (SqlJetException e) {
+			assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+		} finally {
+			memory.close();
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+
+public class WriteTableCacheTest extends AbstractNewDbTest {
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db.write().asVoid(db -> {
+			db.createTable("create table t(a integer primary key, b text, c integer, d text unique)");
+			db.createIndex("create index tb on t(b)");
+			db.createIndex("create index tc on t(c)");
+		});
+	}
+
+	private long count(final String indexName, final Object... key) throws SqlJetException {
+		return db.read().asLong(db -> {
+			final ISqlJetCursor c = db.getTable("t").lookup(indexName, key);
+			try {
+				long n = 0;
+				while (!c.eof()) {
+					n++;
+					c.next();
+				}
+				return n;
+			} finally {
+				c.close();
+			}
+		});
+	}
+
+	@Test
+	public void testInsertsInOneTransaction() throws SqlJetException {
+		db.write().asVoid(db -> {
+			for (int i = 1; i <= 1000; i++) {
+				db.getTable("t").insert(Integer.valueOf(i), "b" + i % 10, Integer.valueOf(i % 7), "d" + i);
+			}
+		});
+		assertEquals(100, count("tb", "b3"));
+		assertEquals(143, count("tc", Integer.valueOf(1)));
+		assertEquals(1, count("sqlite_autoindex_t_1", "d500"));
+	}
+
+	@Test
+	public void testSchemaChangeInTransaction() throws SqlJetException {
+		db.write().asVoid(db -> {
+			final ISqlJetTable t = db.getTable("t");
+			t.insert(Integer.valueOf(1), "x", Integer.valueOf(1), "d1");
+			db.dropIndex("tb");
+			t.insert(Integer.valueOf(2), "x", Integer.valueOf(1), "d2");
+			db.createIndex("create index tcb on t(c, b)");
+			t.insert(Integer.valueOf(3), "x", Integer.valueOf(1), "d3");
+		});
+		assertEquals(3, count("tcb", Integer.valueOf(1), "x"));
+		assertEquals(3, count("tc", Integer.valueOf(1)));
+		assertFalse(db.getTable("t").getIndexesNames().contains("tb"));
+	}
+
+	@Test
+	public void testFailedInsertInTransaction() throws SqlJetException {
+		db.beginTransaction(SqlJetTransactionMode.WRITE);
+		try {
+			final ISqlJetTable t = db.getTable("t");
+			t.insert(Integer.valueOf(1), "x", Integer.valueOf(1), "d1");
+			try {
+				t.insert(Integer.valueOf(2), "y", Integer.valueOf(2), "d1");
+				fail();
+			} catch (SqlJetException e) {
+				assertEquals(SqlJetErrorCode.CONSTRAINT, e.getErrorCode());
+			}
+			t.insert(Integer.valueOf(3), "z", Integer.valueOf(3), "d3");
+			db.commit();
+		} finally {
+			if (db.isInTransaction()) {
+				db.rollback();
+			}
+		}
+		assertEquals(1, count("tb", "x"));
+		assertEquals(0, count("tb", "y"));
+		assertEquals(1, count("tb", "z"));
+	}
+
+	@Test
+	public void testRollback() throws SqlJetException {
+		db.beginTransaction(SqlJetTransactionMode.WRITE);
+		db.getTable("t").insert(Integer.valueOf(1), "x", Integer.valueOf(1), "d1");
+		db.rollback();
+		db.getTable("t").insert(Integer.valueOf(2), "y", Integer.valueOf(2), "d2");
+		assertEquals(0, count("tb", "x"));
+		assertEquals(1, count("tb", "y"));
+		assertEquals(1, count("tc", Integer.valueOf(2)));
+	}
+
+}
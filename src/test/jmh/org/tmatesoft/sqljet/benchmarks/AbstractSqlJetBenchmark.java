@@ -0,0 +1,137 @@
+/**
+ * AbstractSqlJetBenchmark.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+import org.tmatesoft.sqljet.core.table.ISqlJetTable;
+import org.tmatesoft.sqljet.core.table.SqlJetDb;
+
+/**
+ * Database shared by the benchmarks: a table of {@link #rows} rows with an
+ * integer primary key, an indexed text column and an integer column, created
+ * in a temporary file with the given page size and opened with the given
+ * cache size.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public abstract class AbstractSqlJetBenchmark {
+
+    protected static final String TABLE_NAME = "t";
+    protected static final String INDEX_NAME = "t_name";
+
+    protected static final int BATCH = 1000;
+
+    @Param({ "1024", "4096" })
+    public int pageSize;
+
+    @Param({ "2000" })
+    public int cacheSize;
+
+    @Param({ "100000" })
+    public int rows;
+
+    protected File file;
+    protected SqlJetDb db;
+    protected ISqlJetTable table;
+
+    private long seed = 1;
+
+    @Setup(Level.Trial)
+    public void createDb() throws Exception {
+        file = File.createTempFile("sqljet-jmh", ".db");
+        db = open();
+        db.setPageSize(pageSize);
+        db.createTable("create table " + TABLE_NAME + " (id integer primary key, name text, value integer)");
+        db.createIndex("create index " + INDEX_NAME + " on " + TABLE_NAME + " (name)");
+        table = db.getTable(TABLE_NAME);
+        insert(1, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDb() throws Exception {
+        if (db != null) {
+            db.close();
+            db = null;
+        }
+        if (file != null) {
+            SqlJetFileUtil.deleteFile(new File(file.getPath() + "-journal"));
+            SqlJetFileUtil.deleteFile(new File(file.getPath() + "-wal"));
+            SqlJetFileUtil.deleteFile(file);
+        }
+    }
+
+    protected SqlJetDb open() throws SqlJetException {
+        final SqlJetDb connection = SqlJetDb.open(file, true);
+        connection.setCacheSize(cacheSize);
+        return connection;
+    }
+
+    /**
+     * Closes and opens the database again, so nothing of it is cached.
+     */
+    protected void reopen() throws SqlJetException {
+        db.close();
+        db = open();
+        table = db.getTable(TABLE_NAME);
+    }
+
+    protected void insert(long from, int count) throws SqlJetException {
+        db.write().asVoid(db -> {
+            for (long id = from; id < from + count; id++) {
+                table.insert(Long.valueOf(id), name(id), Long.valueOf(id));
+            }
+        });
+    }
+
+    protected static String name(long id) {
+        return String.format("name%010d", Long.valueOf(id));
+    }
+
+    /**
+     * @return pseudo-random row id of an inserted row, the same sequence in
+     *         every fork.
+     */
+    protected long nextId() {
+        seed = seed * 6364136223846793005L + 1442695040888963407L;
+        return 1 + ((seed >>> 33) % rows);
+    }
+
+}
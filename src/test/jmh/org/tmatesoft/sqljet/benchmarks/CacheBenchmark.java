@@ -0,0 +1,82 @@
+/**
+ * CacheBenchmark.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+
+/**
+ * Batches of lookups by index on a connection whose page cache is warm from
+ * previous invocations, and on a connection opened right before, so every
+ * page is read from the file (or the operating system cache).
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+@State(Scope.Benchmark)
+public class CacheBenchmark extends AbstractSqlJetBenchmark {
+
+    private static final int LOOKUPS = 100;
+
+    /**
+     * Opens the database again before every invocation of
+     * {@link CacheBenchmark#cold(Reopen)}.
+     */
+    @State(Scope.Thread)
+    public static class Reopen {
+
+        @Setup(Level.Invocation)
+        public void reopen(CacheBenchmark benchmark) throws SqlJetException {
+            benchmark.reopen();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public long warm() throws SqlJetException {
+        return lookups();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public long cold(Reopen reopen) throws SqlJetException {
+        return lookups();
+    }
+
+    private long lookups() throws SqlJetException {
+        return db.read().asLong(db -> {
+            long sum = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                final ISqlJetCursor c = table.lookup(INDEX_NAME, name(nextId()));
+                try {
+                    sum += c.getInteger("value");
+                } finally {
+                    c.close();
+                }
+            }
+            return sum;
+        });
+    }
+
+}
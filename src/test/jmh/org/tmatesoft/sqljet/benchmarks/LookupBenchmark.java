@@ -0,0 +1,61 @@
+/**
+ * LookupBenchmark.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+
+/**
+ * Point lookups, each in its own read transaction.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+@State(Scope.Benchmark)
+public class LookupBenchmark extends AbstractSqlJetBenchmark {
+
+    @Benchmark
+    public long byRowId() throws SqlJetException {
+        final long id = nextId();
+        return db.read().asLong(db -> {
+            final ISqlJetCursor c = table.open();
+            try {
+                return c.goTo(id) ? c.getInteger("value") : -1;
+            } finally {
+                c.close();
+            }
+        });
+    }
+
+    @Benchmark
+    public long byIndex() throws SqlJetException {
+        final String name = name(nextId());
+        return db.read().asLong(db -> {
+            final ISqlJetCursor c = table.lookup(INDEX_NAME, name);
+            try {
+                return c.eof() ? -1 : c.getInteger("value");
+            } finally {
+                c.close();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * MapBenchmark.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+import org.tmatesoft.sqljet.core.map.ISqlJetMap;
+import org.tmatesoft.sqljet.core.map.SqlJetMapDb;
+
+/**
+ * {@link SqlJetMapDb} puts in batches and gets of single keys.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MapBenchmark {
+
+    private static final String MAP_NAME = "map";
+    private static final int BATCH = 1000;
+
+    @Param({ "1024", "4096" })
+    public int pageSize;
+
+    @Param({ "2000" })
+    public int cacheSize;
+
+    @Param({ "100000" })
+    public int keys;
+
+    private File file;
+    private SqlJetMapDb db;
+    private ISqlJetMap map;
+    private long nextKey;
+    private long seed = 1;
+
+    @Setup(Level.Trial)
+    public void createMap() throws Exception {
+        file = File.createTempFile("sqljet-jmh", ".db");
+        db = SqlJetMapDb.open(file, true);
+        db.setPageSize(pageSize);
+        db.setCacheSize(cacheSize);
+        map = db.getMap(db.createMap(MAP_NAME).getMapName());
+        while (nextKey < keys) {
+            put();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteMap() throws Exception {
+        if (db != null) {
+            db.close();
+            db = null;
+        }
+        if (file != null) {
+            SqlJetFileUtil.deleteFile(file);
+        }
+    }
+
+    private static Object[] key(long i) {
+        return new Object[] { String.format("key%010d", Long.valueOf(i)) };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void put() throws SqlJetException {
+        db.write().asVoid(db -> {
+            for (int i = 0; i < BATCH; i++, nextKey++) {
+                map.put(key(nextKey), new Object[] { Long.valueOf(nextKey) });
+            }
+        });
+    }
+
+    @Benchmark
+    public Object[] get() throws SqlJetException {
+        seed = seed * 6364136223846793005L + 1442695040888963407L;
+        final Object[] key = key((seed >>> 33) % keys);
+        return db.read().as(db -> map.get(key));
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * ScanBenchmark.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+
+/**
+ * Range scans through {@link org.tmatesoft.sqljet.core.table.ISqlJetTable#scope}
+ * over the primary key and over an index, reading every row of the range.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+@State(Scope.Benchmark)
+public class ScanBenchmark extends AbstractSqlJetBenchmark {
+
+    @Param({ "100", "10000" })
+    public int range;
+
+    @Benchmark
+    public long byPrimaryKey() throws SqlJetException {
+        final long from = Math.max(1, nextId() - range);
+        return db.read().asLong(db -> sum(table.scope(null, new Object[] { Long.valueOf(from) },
+                new Object[] { Long.valueOf(from + range - 1) })));
+    }
+
+    @Benchmark
+    public long byIndex() throws SqlJetException {
+        final long from = Math.max(1, nextId() - range);
+        return db.read().asLong(db -> sum(table.scope(INDEX_NAME, new Object[] { name(from) },
+                new Object[] { name(from + range - 1) })));
+    }
+
+    private static long sum(ISqlJetCursor c) throws SqlJetException {
+        try {
+            long sum = 0;
+            while (!c.eof()) {
+                sum += c.getInteger("value");
+                c.next();
+            }
+            return sum;
+        } finally {
+            c.close();
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * WriteBenchmark.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
+import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+import org.tmatesoft.sqljet.core.table.SqlJetDb;
+
+/**
+ * Write transactions per journal mode. Bulk operations change {@link #BATCH}
+ * rows in one transaction and report time per row, single row operations
+ * report the latency of a whole transaction including its commit.
+ *
+ * @author TMate Software Ltd.
+ *
+ */
+@State(Scope.Benchmark)
+public class WriteBenchmark extends AbstractSqlJetBenchmark {
+
+    @Param({ "DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF" })
+    public SqlJetPagerJournalMode journalMode;
+
+    /** Row id above every inserted row */
+    private long nextRowId;
+
+    @Setup(Level.Trial)
+    public void setNextRowId() {
+        nextRowId = rows + 1;
+    }
+
+    @Override
+    protected SqlJetDb open() throws SqlJetException {
+        final SqlJetDb connection = super.open();
+        connection.setJournalMode(journalMode);
+        return connection;
+    }
+
+    /**
+     * Rows inserted before every invocation of {@link #deleteBatch(Batch)}.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+
+        long from;
+
+        @Setup(Level.Invocation)
+        public void insert(WriteBenchmark benchmark) throws SqlJetException {
+            from = benchmark.nextRowId;
+            benchmark.insert(from, BATCH);
+            benchmark.nextRowId += BATCH;
+        }
+    }
+
+    @Benchmark
+    public void commit() throws SqlJetException {
+        final long id = nextRowId++;
+        db.write().asVoid(db -> table.insert(Long.valueOf(id), name(id), Long.valueOf(id)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertBatch() throws SqlJetException {
+        insert(nextRowId, BATCH);
+        nextRowId += BATCH;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long bulkInsertBatch() throws SqlJetException {
+        final List<Object[]> batch = new ArrayList<>(BATCH);
+        for (long id = nextRowId; id < nextRowId + BATCH; id++) {
+            batch.add(new Object[] { Long.valueOf(id), name(id), Long.valueOf(id) });
+        }
+        nextRowId += BATCH;
+        return table.insertBatch(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void updateBatch() throws SqlJetException {
+        final long from = Math.max(1, nextId() - BATCH);
+        db.write().asVoid(db -> {
+            final ISqlJetCursor c = table.scope(null, new Object[] { Long.valueOf(from) },
+                    new Object[] { Long.valueOf(from + BATCH - 1) });
+            try {
+                while (!c.eof()) {
+                    c.updateByFieldNames(Collections.singletonMap("value",
+                            Long.valueOf(c.getInteger("value") + 1)));
+                    c.next();
+                }
+            } finally {
+                c.close();
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void deleteBatch(Batch batch) throws SqlJetException {
+        db.write().asVoid(db -> {
+            final ISqlJetCursor c = table.scope(null, new Object[] { Long.valueOf(batch.from) },
+                    new Object[] { Long.valueOf(batch.from + BATCH - 1) });
+            try {
+                while (!c.eof()) {
+                    c.delete();
+                }
+            } finally {
+                c.close();
+            }
+        });
+    }
+
+}